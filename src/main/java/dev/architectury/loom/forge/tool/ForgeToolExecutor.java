@@ -18,12 +18,19 @@ import org.gradle.api.tasks.Input;
 import org.gradle.process.ExecOperations;
 import org.gradle.process.ExecResult;
 import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.fabricmc.loom.util.Constants;
+import net.fabricmc.loom.util.gradle.GradleUtils;
 
 /**
  * Contains helpers for executing Forge's command line tools
  * with suppressed output streams to prevent annoying log spam.
  */
 public abstract class ForgeToolExecutor {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ForgeToolExecutor.class);
+
 	@Inject
 	protected abstract ExecOperations getExecOperations();
 
@@ -42,6 +49,7 @@ public abstract class ForgeToolExecutor {
 		settings.getExecutable().set(JavaExecutableFetcher.getJavaToolchainExecutable(project));
 		settings.getShowVerboseStdout().set(shouldShowVerboseStdout(project));
 		settings.getShowVerboseStderr().set(shouldShowVerboseStderr(project));
+		settings.getInProcess().set(GradleUtils.getBooleanProperty(project, Constants.Properties.IN_PROCESS_FORGE_TOOLS));
 		return settings;
 	}
 
@@ -66,6 +74,16 @@ public abstract class ForgeToolExecutor {
 	}
 
 	public static ExecResult exec(ExecOperations execOperations, Settings settings) {
+		if (settings.getInProcess().getOrElse(false)) {
+			final @Nullable String forkReason = InProcessToolRunner.getForkReason(settings);
+
+			if (forkReason == null) {
+				return InProcessToolRunner.exec(settings);
+			}
+
+			LOGGER.info("Forking {} as {}", settings.getMainClass().get(), forkReason);
+		}
+
 		return execOperations.javaexec(spec -> {
 			final @Nullable String executable = settings.getExecutable().getOrNull();
 			if (executable != null) spec.setExecutable(executable);
@@ -110,6 +128,13 @@ public abstract class ForgeToolExecutor {
 		@Input
 		Property<Boolean> getShowVerboseStderr();
 
+		/**
+		 * Whether the tool may be run inside the Gradle daemon instead of a new JVM.
+		 * Tools with JVM arguments, tools for a different Java installation and known incompatible tools are always forked.
+		 */
+		@Input
+		Property<Boolean> getInProcess();
+
 		default void classpath(Object... paths) {
 			getExecClasspath().from(paths);
 		}
@@ -0,0 +1,581 @@
+package dev.architectury.loom.forge.tool;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.CodeSource;
+import java.security.cert.Certificate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.output.NullOutputStream;
+import org.gradle.api.GradleException;
+import org.gradle.process.ExecResult;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.fabricmc.loom.util.Constants;
+
+/**
+ * Runs the {@code main} method of Forge tools inside the Gradle daemon, avoiding the startup and JIT warmup of a new
+ * JVM for every tool execution.
+ *
+ * <p>Each tool is loaded by an isolated class loader that only sees the platform classes and the tool's classpath.
+ * Class loaders are kept in a pool after use, so that running the same tool again reuses its loaded and compiled
+ * classes. A class loader is only used by one execution at a time, as tools are free to keep state in static fields.
+ *
+ * <p>Calls to {@link System#exit} in the tool are rewritten to throw {@link ToolSystemExit.Exit}, and the output of
+ * the tool is routed by thread so that concurrent tools and Gradle's own output are kept apart. The tool runs on its
+ * own threads, which are waited for like the JVM would and stopped once the tool has finished.
+ */
+final class InProcessToolRunner {
+	private static final Logger LOGGER = LoggerFactory.getLogger(InProcessToolRunner.class);
+	private static final int MAX_IDLE_LOADERS = 8;
+	// The tail of the output kept for error messages when the tool output is not shown
+	private static final int MAX_CAPTURED_OUTPUT = 16 * 1024;
+	private static final long THREAD_POLL_INTERVAL_MS = 50;
+	private static final long THREAD_STOP_TIMEOUT_MS = 1000;
+	/**
+	 * Tools that must always be forked. The decompilers start many threads and need a larger heap than the daemon
+	 * may have to spare.
+	 */
+	private static final Set<String> INCOMPATIBLE_MAIN_CLASSES = Set.of(
+			"org.jetbrains.java.decompiler.main.decompiler.ConsoleDecompiler",
+			"net.minecraftforge.fernflower.ForkedConsoleDecompiler"
+	);
+	// Tools whose threads did not stop after they finished
+	private static final Set<String> LEAKING_MAIN_CLASSES = ConcurrentHashMap.newKeySet();
+	// Classpath -> idle class loaders, in least recently used order
+	private static final Map<List<String>, Deque<ToolClassLoader>> IDLE_LOADERS = new LinkedHashMap<>(16, 0.75F, true);
+
+	private InProcessToolRunner() {
+	}
+
+	/**
+	 * @return whether the tool can be run in-process, or the reason that it must be forked
+	 */
+	static @Nullable String getForkReason(ForgeToolExecutor.Settings settings) {
+		if (!settings.getJvmArgs().get().isEmpty()) {
+			return "it has JVM arguments";
+		} else if (INCOMPATIBLE_MAIN_CLASSES.contains(settings.getMainClass().get())) {
+			return "it is not compatible with running in-process";
+		} else if (LEAKING_MAIN_CLASSES.contains(settings.getMainClass().get())) {
+			return "it left threads running when it was last run in-process";
+		}
+
+		final @Nullable String executable = settings.getExecutable().getOrNull();
+
+		if (executable != null && !isCurrentJava(executable)) {
+			return "it uses a different Java installation";
+		}
+
+		return null;
+	}
+
+	private static boolean isCurrentJava(String executable) {
+		try {
+			final Path javaHome = Path.of(System.getProperty("java.home")).toRealPath();
+			// <java home>/bin/java
+			final Path executableHome = Path.of(executable).toRealPath().getParent().getParent();
+			return javaHome.equals(executableHome);
+		} catch (IOException | NullPointerException e) {
+			return false;
+		}
+	}
+
+	static ExecResult exec(ForgeToolExecutor.Settings settings) {
+		final String mainClassName = settings.getMainClass().get();
+		final String[] args = settings.getProgramArgs().get().toArray(String[]::new);
+		final List<File> classpath = List.copyOf(settings.getExecClasspath().getFiles());
+		final List<String> key = getClasspathKey(classpath);
+		final ToolClassLoader classLoader = borrow(key, classpath);
+		final ByteArrayOutputStream captured = new ByteArrayOutputStream();
+		final ToolThreadGroup threadGroup = new ToolThreadGroup(mainClassName);
+		boolean reusable = false;
+
+		// Must be called before starting the tool, so that its threads inherit the output streams
+		ToolOutputRouter.begin(
+				settings.getShowVerboseStdout().get() ? ToolOutputRouter.ORIGINAL : NullOutputStream.NULL_OUTPUT_STREAM,
+				settings.getShowVerboseStderr().get() ? ToolOutputRouter.ORIGINAL : new TailOutputStream(captured)
+		);
+
+		try {
+			threadGroup.start(classLoader, mainClassName, args);
+			threadGroup.awaitExit();
+
+			final @Nullable ToolSystemExit.Exit exit = threadGroup.exit;
+
+			if (exit != null) {
+				reusable = exit.getStatus() == 0;
+				return new Result(mainClassName, exit.getStatus(), null, captured.toString(StandardCharsets.UTF_8));
+			} else if (threadGroup.failure != null) {
+				return new Result(mainClassName, 1, describeFailure(mainClassName, threadGroup.failure, captured), "");
+			}
+
+			reusable = true;
+			return new Result(mainClassName, 0, null, "");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return new Result(mainClassName, 1, new GradleException("Interrupted while running tool " + mainClassName, e), "");
+		} finally {
+			// Threads left running would keep the class loader and the tool's output streams alive
+			if (!threadGroup.stopThreads()) {
+				LOGGER.warn("Tool {} left threads running, it will be forked from now on", mainClassName);
+				LEAKING_MAIN_CLASSES.add(mainClassName);
+				reusable = false;
+			}
+
+			ToolOutputRouter.end();
+			release(key, classLoader, reusable);
+		}
+	}
+
+	private static @Nullable ToolSystemExit.Exit findExit(@Nullable Throwable throwable) {
+		while (throwable != null) {
+			if (throwable instanceof ToolSystemExit.Exit exit) {
+				return exit;
+			}
+
+			throwable = throwable.getCause();
+		}
+
+		return null;
+	}
+
+	private static GradleException describeFailure(String mainClassName, Throwable cause, ByteArrayOutputStream captured) {
+		final String output = captured.toString(StandardCharsets.UTF_8);
+		final String message = output.isBlank()
+				? "Tool %s failed".formatted(mainClassName)
+				: "Tool %s failed, error output:%n%s".formatted(mainClassName, output);
+		return new GradleException(message, cause);
+	}
+
+	private static List<String> getClasspathKey(List<File> classpath) {
+		final List<String> key = new ArrayList<>(classpath.size());
+
+		for (File file : classpath) {
+			// Include the size and modification time so that a changed jar gets a new class loader
+			key.add(file.getAbsolutePath() + ":" + file.length() + ":" + file.lastModified());
+		}
+
+		return key;
+	}
+
+	private static ToolClassLoader borrow(List<String> key, List<File> classpath) {
+		synchronized (IDLE_LOADERS) {
+			final @Nullable Deque<ToolClassLoader> idle = IDLE_LOADERS.get(key);
+
+			if (idle != null && !idle.isEmpty()) {
+				return idle.pop();
+			}
+		}
+
+		final URL[] urls = new URL[classpath.size()];
+
+		for (int i = 0; i < urls.length; i++) {
+			try {
+				urls[i] = classpath.get(i).toURI().toURL();
+			} catch (MalformedURLException e) {
+				throw new IllegalArgumentException("Invalid tool classpath entry: " + classpath.get(i), e);
+			}
+		}
+
+		return new ToolClassLoader(urls);
+	}
+
+	private static void release(List<String> key, ToolClassLoader classLoader, boolean reusable) {
+		final List<ToolClassLoader> evicted = new ArrayList<>();
+
+		if (reusable) {
+			synchronized (IDLE_LOADERS) {
+				IDLE_LOADERS.computeIfAbsent(key, k -> new ArrayDeque<>()).push(classLoader);
+				int idleCount = IDLE_LOADERS.values().stream().mapToInt(Deque::size).sum();
+				final Iterator<Deque<ToolClassLoader>> iterator = IDLE_LOADERS.values().iterator();
+
+				// Close the least recently used class loaders
+				while (idleCount > MAX_IDLE_LOADERS && iterator.hasNext()) {
+					final Deque<ToolClassLoader> loaders = iterator.next();
+
+					while (idleCount > MAX_IDLE_LOADERS && !loaders.isEmpty()) {
+						evicted.add(loaders.removeLast());
+						idleCount--;
+					}
+
+					if (loaders.isEmpty()) {
+						iterator.remove();
+					}
+				}
+			}
+		} else {
+			// The tool may have been left in a broken state, don't reuse it
+			evicted.add(classLoader);
+		}
+
+		for (ToolClassLoader loader : evicted) {
+			try {
+				loader.close();
+			} catch (IOException e) {
+				LOGGER.warn("Failed to close tool class loader", e);
+			}
+		}
+	}
+
+	/**
+	 * Rewrites the calls that would exit the JVM to call {@link ToolSystemExit} instead.
+	 */
+	static byte[] rewriteExits(byte[] bytes) {
+		// Cheap check to skip parsing classes that can't contain an exit call
+		if (!containsAscii(bytes, "exit") && !containsAscii(bytes, "halt")) {
+			return bytes;
+		}
+
+		final ClassReader reader = new ClassReader(bytes);
+		// The replacements have the same stack effect, so the frames can be copied as-is
+		final ClassWriter writer = new ClassWriter(reader, 0);
+		final String hook = Type.getInternalName(ToolSystemExit.class);
+
+		reader.accept(new ClassVisitor(Constants.ASM_VERSION, writer) {
+			@Override
+			public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+				return new MethodVisitor(Constants.ASM_VERSION, super.visitMethod(access, name, descriptor, signature, exceptions)) {
+					@Override
+					public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
+						if (opcode == Opcodes.INVOKESTATIC && owner.equals("java/lang/System") && name.equals("exit") && descriptor.equals("(I)V")) {
+							super.visitMethodInsn(Opcodes.INVOKESTATIC, hook, "exit", "(I)V", false);
+						} else if (opcode == Opcodes.INVOKEVIRTUAL && owner.equals("java/lang/Runtime") && (name.equals("exit") || name.equals("halt")) && descriptor.equals("(I)V")) {
+							super.visitMethodInsn(Opcodes.INVOKESTATIC, hook, name, "(Ljava/lang/Runtime;I)V", false);
+						} else {
+							super.visitMethodInsn(opcode, owner, name, descriptor, isInterface);
+						}
+					}
+				};
+			}
+		}, 0);
+
+		return writer.toByteArray();
+	}
+
+	private static boolean containsAscii(byte[] bytes, String string) {
+		final byte[] search = string.getBytes(StandardCharsets.US_ASCII);
+
+		outer:
+		for (int i = 0; i <= bytes.length - search.length; i++) {
+			for (int j = 0; j < search.length; j++) {
+				if (bytes[i + j] != search[j]) {
+					continue outer;
+				}
+			}
+
+			return true;
+		}
+
+		return false;
+	}
+
+	private static final class ToolClassLoader extends URLClassLoader {
+		static {
+			registerAsParallelCapable();
+		}
+
+		private ToolClassLoader(URL[] urls) {
+			super("loom-forge-tool", urls, ClassLoader.getPlatformClassLoader());
+		}
+
+		@Override
+		protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			// The exit hook is shared with Loom so that the exit can be caught by type
+			if (name.startsWith(ToolSystemExit.class.getName())) {
+				return Class.forName(name, false, ToolSystemExit.class.getClassLoader());
+			}
+
+			return super.loadClass(name, resolve);
+		}
+
+		@Override
+		protected Class<?> findClass(String name) throws ClassNotFoundException {
+			final String path = name.replace('.', '/') + ".class";
+			final @Nullable URL url = findResource(path);
+
+			if (url == null) {
+				throw new ClassNotFoundException(name);
+			}
+
+			final byte[] bytes;
+			final URL codeSourceUrl;
+
+			// Read through getResourceAsStream, so that the opened jars are closed along with this class loader
+			try (InputStream is = getResourceAsStream(path)) {
+				if (is == null) {
+					throw new ClassNotFoundException(name);
+				}
+
+				bytes = rewriteExits(is.readAllBytes());
+				codeSourceUrl = getCodeSourceUrl(url, path);
+			} catch (IOException e) {
+				throw new ClassNotFoundException(name, e);
+			}
+
+			final int lastDot = name.lastIndexOf('.');
+
+			if (lastDot > 0) {
+				final String packageName = name.substring(0, lastDot);
+
+				if (getDefinedPackage(packageName) == null) {
+					try {
+						definePackage(packageName, null, null, null, null, null, null, null);
+					} catch (IllegalArgumentException e) {
+						// Defined concurrently by another thread
+					}
+				}
+			}
+
+			final CodeSource codeSource = new CodeSource(codeSourceUrl, (Certificate[]) null);
+			return defineClass(name, bytes, 0, bytes.length, codeSource);
+		}
+
+		// The jar or directory that contains the resource, as tools may look for files next to themselves
+		private static URL getCodeSourceUrl(URL url, String path) throws MalformedURLException {
+			final String spec = url.toString();
+
+			if (url.getProtocol().equals("jar")) {
+				return new URL(spec.substring("jar:".length(), spec.lastIndexOf("!/")));
+			}
+
+			return new URL(spec.substring(0, spec.length() - path.length()));
+		}
+	}
+
+	/**
+	 * Keeps the last {@value #MAX_CAPTURED_OUTPUT} bytes written.
+	 */
+	private static final class TailOutputStream extends OutputStream {
+		private final ByteArrayOutputStream output;
+
+		private TailOutputStream(ByteArrayOutputStream output) {
+			this.output = output;
+		}
+
+		@Override
+		public synchronized void write(int b) {
+			output.write(b);
+			trim();
+		}
+
+		@Override
+		public synchronized void write(byte[] b, int off, int len) {
+			output.write(b, off, len);
+			trim();
+		}
+
+		private void trim() {
+			if (output.size() > MAX_CAPTURED_OUTPUT * 2) {
+				final byte[] bytes = output.toByteArray();
+				output.reset();
+				output.write(bytes, bytes.length - MAX_CAPTURED_OUTPUT, MAX_CAPTURED_OUTPUT);
+			}
+		}
+	}
+
+	/**
+	 * The threads of a tool execution. The tool's main method runs on its own thread in this group, and the threads
+	 * it starts are added to the group, which allows to treat an exit on any of them as the exit of the tool.
+	 */
+	private static final class ToolThreadGroup extends ThreadGroup {
+		private final Object lock = new Object();
+		private @Nullable Thread mainThread;
+		private boolean mainFinished = false;
+		private @Nullable ToolSystemExit.Exit exit;
+		private @Nullable Throwable failure;
+
+		private ToolThreadGroup(String mainClassName) {
+			super("loom-forge-tool " + mainClassName);
+		}
+
+		private void start(ClassLoader classLoader, String mainClassName, String[] args) {
+			final Thread thread = new Thread(this, () -> runMain(classLoader, mainClassName, args), getName());
+			thread.setContextClassLoader(classLoader);
+			// Like the JVM's main thread, so that the threads started by the tool are not daemons either
+			thread.setDaemon(false);
+			mainThread = thread;
+			thread.start();
+		}
+
+		private void runMain(ClassLoader classLoader, String mainClassName, String[] args) {
+			@Nullable Throwable thrown = null;
+
+			try {
+				final Class<?> mainClass = Class.forName(mainClassName, true, classLoader);
+				final Method main = mainClass.getMethod("main", String[].class);
+
+				if (!Modifier.isStatic(main.getModifiers())) {
+					throw new NoSuchMethodException("Main method of %s is not static".formatted(mainClassName));
+				}
+
+				main.invoke(null, (Object) args);
+			} catch (InvocationTargetException e) {
+				thrown = e.getCause();
+			} catch (Throwable t) {
+				thrown = t;
+			} finally {
+				synchronized (lock) {
+					mainFinished = true;
+					final @Nullable ToolSystemExit.Exit thrownExit = findExit(thrown);
+
+					if (thrownExit != null) {
+						exited(thrownExit);
+					} else if (thrown != null) {
+						failure = thrown;
+					}
+
+					lock.notifyAll();
+				}
+			}
+		}
+
+		@Override
+		public void uncaughtException(Thread thread, Throwable throwable) {
+			final @Nullable ToolSystemExit.Exit thrownExit = findExit(throwable);
+
+			if (thrownExit == null) {
+				super.uncaughtException(thread, throwable);
+				return;
+			}
+
+			synchronized (lock) {
+				exited(thrownExit);
+				lock.notifyAll();
+			}
+		}
+
+		private void exited(ToolSystemExit.Exit thrownExit) {
+			// Only the first exit counts, the JVM would have stopped after it
+			if (exit == null) {
+				exit = thrownExit;
+			}
+		}
+
+		/**
+		 * Waits until the tool exits, or until its main method and all of its non-daemon threads have finished.
+		 */
+		private void awaitExit() throws InterruptedException {
+			synchronized (lock) {
+				// The end of the other threads isn't signalled, so they are polled
+				while (exit == null && (!mainFinished || hasNonDaemonThreads())) {
+					lock.wait(THREAD_POLL_INTERVAL_MS);
+				}
+			}
+		}
+
+		private boolean hasNonDaemonThreads() {
+			for (Thread thread : getThreads()) {
+				if (thread != mainThread && !thread.isDaemon()) {
+					return true;
+				}
+			}
+
+			return false;
+		}
+
+		/**
+		 * Interrupts the threads that are still running and waits for them to stop.
+		 *
+		 * @return whether all threads have stopped
+		 */
+		private boolean stopThreads() {
+			final List<Thread> threads = getThreads();
+
+			if (threads.isEmpty()) {
+				return true;
+			}
+
+			interrupt();
+			final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(THREAD_STOP_TIMEOUT_MS);
+
+			for (Thread thread : threads) {
+				final long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+
+				if (remaining <= 0) {
+					break;
+				}
+
+				try {
+					thread.join(remaining);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+
+			return threads.stream().noneMatch(Thread::isAlive);
+		}
+
+		private List<Thread> getThreads() {
+			Thread[] threads;
+			int count;
+
+			// The array must be larger than the thread count to know that no thread was left out
+			do {
+				threads = new Thread[activeCount() + 16];
+				count = enumerate(threads, true);
+			} while (count == threads.length);
+
+			return Arrays.asList(threads).subList(0, count);
+		}
+	}
+
+	/**
+	 * @param errorOutput the captured error output, if the tool's output is not shown
+	 */
+	private record Result(String mainClass, int exitValue, @Nullable GradleException failure, String errorOutput) implements ExecResult, Serializable {
+		@Override
+		public int getExitValue() {
+			return exitValue;
+		}
+
+		@Override
+		public ExecResult assertNormalExitValue() {
+			if (exitValue != 0) {
+				final String message = "Tool %s finished with non-zero exit value %d".formatted(mainClass, exitValue);
+				throw new GradleException(errorOutput.isBlank() ? message : message + ", error output:\n" + errorOutput);
+			}
+
+			return this;
+		}
+
+		@Override
+		public ExecResult rethrowFailure() {
+			if (failure != null) {
+				throw failure;
+			}
+
+			return this;
+		}
+	}
+}
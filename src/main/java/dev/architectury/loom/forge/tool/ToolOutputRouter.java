@@ -0,0 +1,87 @@
+package dev.architectury.loom.forge.tool;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Replaces {@link System#out} and {@link System#err} while any tool is running, sending the output of the tool's
+ * threads to the tool's streams and everything else to the original streams.
+ *
+ * <p>This is also used to silence libraries that print to the standard streams while running inside the daemon,
+ * without hiding the output of other threads.
+ */
+public final class ToolOutputRouter extends OutputStream {
+	public static final OutputStream ORIGINAL = OutputStream.nullOutputStream();
+	// Threads started by the tool inherit its streams
+	private static final InheritableThreadLocal<OutputStream[]> TOOL_OUTPUT = new InheritableThreadLocal<>();
+	private static int active = 0;
+	private static PrintStream originalOut;
+	private static PrintStream originalErr;
+
+	private final PrintStream original;
+	private final int index;
+
+	private ToolOutputRouter(PrintStream original, int index) {
+		this.original = original;
+		this.index = index;
+	}
+
+	/**
+	 * Routes the output of the current thread, and of the threads it starts, until {@link #end()} is called.
+	 *
+	 * @param stdout the stream for {@link System#out}, or {@link #ORIGINAL} to keep the original stream
+	 * @param stderr the stream for {@link System#err}, or {@link #ORIGINAL} to keep the original stream
+	 */
+	public static synchronized void begin(OutputStream stdout, OutputStream stderr) {
+		if (active++ == 0) {
+			originalOut = System.out;
+			originalErr = System.err;
+			System.setOut(new PrintStream(new ToolOutputRouter(originalOut, 0), true));
+			System.setErr(new PrintStream(new ToolOutputRouter(originalErr, 1), true));
+		}
+
+		TOOL_OUTPUT.set(new OutputStream[] {stdout, stderr});
+	}
+
+	/**
+	 * Stops routing the output of the current thread, this must be called on the thread that called {@link #begin}.
+	 */
+	public static synchronized void end() {
+		TOOL_OUTPUT.remove();
+
+		if (--active == 0) {
+			System.setOut(originalOut);
+			System.setErr(originalErr);
+			originalOut = null;
+			originalErr = null;
+		}
+	}
+
+	private OutputStream target() {
+		final OutputStream @Nullable [] toolOutput = TOOL_OUTPUT.get();
+
+		if (toolOutput == null || toolOutput[index] == ORIGINAL) {
+			return original;
+		}
+
+		return toolOutput[index];
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		target().write(b);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		target().write(b, off, len);
+	}
+
+	@Override
+	public void flush() throws IOException {
+		target().flush();
+	}
+}
@@ -0,0 +1,40 @@
+package dev.architectury.loom.forge.tool;
+
+/**
+ * Replaces the calls to {@link System#exit} and {@link Runtime#exit} in tools that are run in-process,
+ * so that a tool exiting stops the tool rather than the Gradle daemon.
+ *
+ * <p>This must only be called by the rewritten tool classes.
+ */
+public final class ToolSystemExit {
+	private ToolSystemExit() {
+	}
+
+	public static void exit(int status) {
+		throw new Exit(status);
+	}
+
+	public static void exit(Runtime runtime, int status) {
+		throw new Exit(status);
+	}
+
+	public static void halt(Runtime runtime, int status) {
+		throw new Exit(status);
+	}
+
+	/**
+	 * Thrown in place of exiting, this is an error so that it is not caught by the tool's own exception handling.
+	 */
+	public static final class Exit extends Error {
+		private final int status;
+
+		private Exit(int status) {
+			super("Tool exited with status " + status, null, false, false);
+			this.status = status;
+		}
+
+		public int getStatus() {
+			return status;
+		}
+	}
+}
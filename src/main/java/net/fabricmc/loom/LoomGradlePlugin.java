@@ -51,6 +51,9 @@ import net.fabricmc.loom.task.LoomTasks;
 import net.fabricmc.loom.task.RemapTaskConfiguration;
 import net.fabricmc.loom.util.Constants;
 import net.fabricmc.loom.util.LibraryLocationLogger;
+import net.fabricmc.loom.util.gradle.LoomExecutorBuildService;
+import net.fabricmc.loom.util.gradle.RemapClasspathIndexBuildService;
+import net.fabricmc.loom.util.gradle.SharedServiceCacheBuildService;
 
 public class LoomGradlePlugin implements BootstrappedPlugin {
 	public static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
@@ -96,6 +99,9 @@ public class LoomGradlePlugin implements BootstrappedPlugin {
 
 		LibraryLocationLogger.logLibraryVersions();
 
+		// The shared executors are created on demand, and shut down when the build finishes
+		LoomExecutorBuildService.register(project);
+
 		// Apply default plugins
 		project.apply(ImmutableMap.of("plugin", "java-library"));
 		project.apply(ImmutableMap.of("plugin", "eclipse"));
@@ -104,6 +110,12 @@ public class LoomGradlePlugin implements BootstrappedPlugin {
 		project.getExtensions().create(LoomGradleExtensionAPI.class, "loom", LoomGradleExtensionImpl.class, project, LoomFiles.create(project));
 		project.getExtensions().create("fabricApi", FabricApiExtension.class);
 
+		// Share the tiny remapper classpath index between all projects in this build
+		RemapClasspathIndexBuildService.register(project, LoomGradleExtension.get(project).getFiles().getUserCache()).get();
+
+		// Share mapping trees and other immutable services between all tasks in this build
+		SharedServiceCacheBuildService.register(project).get();
+
 		for (Class<? extends Runnable> jobClass : SETUP_JOBS) {
 			project.getObjects().newInstance(jobClass).run();
 		}
@@ -59,12 +59,27 @@ public abstract class DecompilerOptions implements Named {
 	 */
 	public abstract Property<Integer> getMaxThreads();
 
+	/**
+	 * Number of forked JVMs to split the decompilation across, defaults to 1.
+	 *
+	 * <p>Each shard decompiles a subset of the outer classes, with the whole jar available as a library.
+	 * The {@link #getMaxThreads()} are divided between the shards.
+	 */
+	public abstract Property<Integer> getShards();
+
+	/**
+	 * Memory used for each forked JVM in megabytes when more than one shard is used, defaults to {@link #getMemory()}.
+	 */
+	public abstract Property<Long> getShardMemory();
+
 	public DecompilerOptions() {
 		getDecompilerClassName().finalizeValueOnRead();
 		getClasspath().finalizeValueOnRead();
 		getOptions().finalizeValueOnRead();
 		getMemory().convention(4096L).finalizeValueOnRead();
 		getMaxThreads().convention(Runtime.getRuntime().availableProcessors()).finalizeValueOnRead();
+		getShards().convention(1).finalizeValueOnRead();
+		getShardMemory().convention(getMemory()).finalizeValueOnRead();
 	}
 
 	public String getFormattedName() {
@@ -72,7 +87,11 @@ public abstract class DecompilerOptions implements Named {
 	}
 
 	// Done to work around weird issues with the workers, possibly https://github.com/gradle/gradle/issues/13422
-	public record Dto(String className, Map<String, String> options, int maxThreads) implements Serializable { }
+	public record Dto(String className, Map<String, String> options, int maxThreads) implements Serializable {
+		public Dto withMaxThreads(int maxThreads) {
+			return new Dto(className, options, maxThreads);
+		}
+	}
 
 	public Dto toDto() {
 		Preconditions.checkArgument(getDecompilerClassName().isPresent(), "No decompiler classname specified for decompiler: " + getName());
@@ -29,6 +29,7 @@ import java.nio.file.Path;
 
 import org.gradle.api.Named;
 import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassVisitor;
 
 import net.fabricmc.mappingio.tree.MemoryMappingTree;
 
@@ -43,11 +44,60 @@ public interface MinecraftJarProcessor<S extends MinecraftJarProcessor.Spec> ext
 		return null;
 	}
 
+	/**
+	 * Processors that only transform classes with ASM can return a {@link ClassProcessor}, allowing the classes to be
+	 * transformed in a single pass over the jar shared with other processors. When present, {@link #processJar} is not
+	 * called by Loom.
+	 */
+	@Nullable
+	default ClassProcessor<S> processClasses() {
+		return null;
+	}
+
 	interface Spec {
 		// Must make sure hashCode is correctly implemented.
+
+		/**
+		 * A key describing everything that affects the output of the processor, such as the hashes of any input files.
+		 * Unlike {@link #hashCode()} the key must be the same between builds and on every machine.
+		 *
+		 * <p>Processed jars are only shared between projects when every spec provides a key.
+		 *
+		 * @return the key, or null when the spec cannot provide a stable key
+		 */
+		@Nullable
+		default String getCacheKey() {
+			return null;
+		}
 	}
 
 	interface MappingsProcessor<S> {
 		boolean transform(MemoryMappingTree mappings, S spec, MappingProcessorContext context);
 	}
+
+	interface ClassProcessor<S> {
+		/**
+		 * Called once per jar, before any classes are visited.
+		 *
+		 * @return the factory used to create the visitors for each class, or null when there is nothing to transform
+		 */
+		@Nullable
+		ClassVisitorFactory createVisitorFactory(S spec, ProcessorContext context) throws IOException;
+	}
+
+	interface ClassVisitorFactory {
+		/**
+		 * @param className the internal name of the class
+		 * @return true when the class should be visited
+		 */
+		boolean shouldVisit(String className);
+
+		/**
+		 * Create a visitor for a class, this may be called from multiple threads at once.
+		 *
+		 * @param className the internal name of the class
+		 * @param next the visitor to pass the class on to
+		 */
+		ClassVisitor createVisitor(String className, ClassVisitor next);
+	}
 }
@@ -34,6 +34,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.util.Optional;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
@@ -82,12 +83,11 @@ import net.fabricmc.loom.configuration.providers.minecraft.MinecraftProvider;
 import net.fabricmc.loom.configuration.providers.minecraft.MinecraftSourceSets;
 import net.fabricmc.loom.configuration.providers.minecraft.mapped.AbstractMappedMinecraftProvider;
 import net.fabricmc.loom.configuration.providers.minecraft.mapped.IntermediaryMinecraftProvider;
-import net.fabricmc.loom.configuration.providers.minecraft.mapped.MojangMappedMinecraftProvider;
 import net.fabricmc.loom.configuration.providers.minecraft.mapped.NamedMinecraftProvider;
-import net.fabricmc.loom.configuration.providers.minecraft.mapped.SrgMinecraftProvider;
 import net.fabricmc.loom.configuration.sources.ForgeSourcesRemapper;
 import net.fabricmc.loom.extension.MixinExtension;
 import net.fabricmc.loom.util.Checksum;
+import net.fabricmc.loom.util.Constants;
 import net.fabricmc.loom.util.ExceptionUtil;
 import net.fabricmc.loom.util.ProcessUtil;
 import net.fabricmc.loom.util.gradle.GradleUtils;
@@ -199,79 +199,106 @@ public abstract class CompileConfiguration implements Runnable {
 	private synchronized void setupMinecraft(ConfigContext configContext) throws Exception {
 		final Project project = configContext.project();
 		final LoomGradleExtension extension = configContext.extension();
+		final boolean concurrent = GradleUtils.getBooleanProperty(project, Constants.Properties.PARALLEL_MINECRAFT_SETUP);
+		final SetupScheduler scheduler = new SetupScheduler(concurrent);
+		final var jarConfiguration = extension.getMinecraftJarConfiguration().get();
 
-		final MinecraftMetadataProvider metadataProvider = MinecraftMetadataProvider.create(configContext);
-		extension.setMetadataProvider(metadataProvider);
+		scheduler.add("minecraft", () -> {
+			final MinecraftMetadataProvider metadataProvider = MinecraftMetadataProvider.create(configContext);
+			extension.setMetadataProvider(metadataProvider);
 
-		var jarConfiguration = extension.getMinecraftJarConfiguration().get();
+			// Provide the vanilla mc jars
+			final MinecraftProvider minecraftProvider = jarConfiguration.createMinecraftProvider(metadataProvider, configContext);
 
-		// Provide the vanilla mc jars
-		final MinecraftProvider minecraftProvider = jarConfiguration.createMinecraftProvider(metadataProvider, configContext);
-
-		if (extension.isForgeLike() && !(minecraftProvider instanceof ForgeMinecraftProvider)) {
-			throw new UnsupportedOperationException("Using Forge with split jars is not supported!");
-		}
+			if (extension.isForgeLike() && !(minecraftProvider instanceof ForgeMinecraftProvider)) {
+				throw new UnsupportedOperationException("Using Forge with split jars is not supported!");
+			}
 
-		extension.setMinecraftProvider(minecraftProvider);
-		minecraftProvider.provide();
+			extension.setMinecraftProvider(minecraftProvider);
+			minecraftProvider.provide();
+		});
 
 		// Created any layered mapping files.
-		LayeredMappingsFactory.afterEvaluate(configContext);
+		scheduler.add("layeredMappings", () -> LayeredMappingsFactory.afterEvaluate(configContext), "minecraft");
 
 		// This needs to run after MinecraftProvider.initFiles and MinecraftLibraryProvider.provide
 		// but before MinecraftPatchedProvider.provide.
-		setupDependencyProviders(project, extension);
+		scheduler.add("dependencyProviders", () -> setupDependencyProviders(project, extension), "layeredMappings");
 
-		final DependencyInfo mappingsDep = DependencyInfo.create(getProject(), Configurations.MAPPINGS);
-		final MappingConfiguration mappingConfiguration = MappingConfiguration.create(getProject(), configContext.serviceFactory(), mappingsDep, minecraftProvider);
-		extension.setMappingConfiguration(mappingConfiguration);
+		scheduler.add("mappings", () -> {
+			final MinecraftProvider minecraftProvider = extension.getMinecraftProvider();
+			final DependencyInfo mappingsDep = DependencyInfo.create(getProject(), Configurations.MAPPINGS);
+			final MappingConfiguration mappingConfiguration = MappingConfiguration.create(getProject(), configContext.serviceFactory(), mappingsDep, minecraftProvider);
+			extension.setMappingConfiguration(mappingConfiguration);
 
-		if (extension.isForgeLike()) {
-			ForgeLibrariesProvider.provide(mappingConfiguration, project);
-			((ForgeMinecraftProvider) minecraftProvider).getPatchedProvider().provide();
-		}
+			if (extension.isForgeLike()) {
+				ForgeLibrariesProvider.provide(mappingConfiguration, project);
+				((ForgeMinecraftProvider) minecraftProvider).getPatchedProvider().provide();
+			}
 
-		mappingConfiguration.setupPost(project);
-		mappingConfiguration.applyToProject(getProject(), mappingsDep);
+			mappingConfiguration.setupPost(project);
+			mappingConfiguration.applyToProject(getProject(), mappingsDep);
 
-		if (extension.isForgeLike()) {
-			extension.setForgeRunsProvider(ForgeRunsProvider.create(project));
-		}
+			if (extension.isForgeLike()) {
+				extension.setForgeRunsProvider(ForgeRunsProvider.create(project));
+			}
 
-		if (minecraftProvider instanceof ForgeMinecraftProvider patched) {
-			patched.getPatchedProvider().remapJar(configContext.serviceFactory());
-		}
+			if (minecraftProvider instanceof ForgeMinecraftProvider patched) {
+				patched.getPatchedProvider().remapJar(configContext.serviceFactory());
+			}
+		}, "dependencyProviders");
 
-		// Provide the remapped mc jars
-		final IntermediaryMinecraftProvider<?> intermediaryMinecraftProvider = jarConfiguration.createIntermediaryMinecraftProvider(project);
-		NamedMinecraftProvider<?> namedMinecraftProvider = jarConfiguration.createNamedMinecraftProvider(project);
+		// Create all of the mapped providers up front, the remapping steps below only do file work.
+		scheduler.add("mappedProviders", () -> {
+			final IntermediaryMinecraftProvider<?> intermediaryMinecraftProvider = jarConfiguration.createIntermediaryMinecraftProvider(project);
+			NamedMinecraftProvider<?> namedMinecraftProvider = jarConfiguration.createNamedMinecraftProvider(project);
 
-		registerGameProcessors(configContext);
-		MinecraftJarProcessorManager minecraftJarProcessorManager = MinecraftJarProcessorManager.create(getProject());
+			registerGameProcessors(configContext);
+			MinecraftJarProcessorManager minecraftJarProcessorManager = MinecraftJarProcessorManager.create(getProject());
 
-		if (minecraftJarProcessorManager != null) {
-			// Wrap the named MC provider for one that will provide the processed jars
-			namedMinecraftProvider = jarConfiguration.createProcessedNamedMinecraftProvider(namedMinecraftProvider, minecraftJarProcessorManager);
-		}
+			if (minecraftJarProcessorManager != null) {
+				// Wrap the named MC provider for one that will provide the processed jars
+				namedMinecraftProvider = jarConfiguration.createProcessedNamedMinecraftProvider(namedMinecraftProvider, minecraftJarProcessorManager);
+			}
 
-		final var provideContext = new AbstractMappedMinecraftProvider.ProvideContext(true, extension.refreshDeps(), configContext);
+			extension.setIntermediaryMinecraftProvider(intermediaryMinecraftProvider);
+			extension.setNamedMinecraftProvider(namedMinecraftProvider);
 
-		extension.setIntermediaryMinecraftProvider(intermediaryMinecraftProvider);
-		intermediaryMinecraftProvider.provide(provideContext);
+			if (extension.isSrgForgeLike()) {
+				extension.setSrgMinecraftProvider(jarConfiguration.createSrgMinecraftProvider(project));
+			}
 
-		extension.setNamedMinecraftProvider(namedMinecraftProvider);
-		namedMinecraftProvider.provide(provideContext);
+			if (extension.isForgeLike() && extension.getForgeProvider().usesMojangAtRuntime()) {
+				extension.setMojangMappedMinecraftProvider(jarConfiguration.createMojangMappedMinecraftProvider(project));
+			}
+		}, "mappings");
 
-		if (extension.isSrgForgeLike()) {
-			final SrgMinecraftProvider<?> srgMinecraftProvider = jarConfiguration.createSrgMinecraftProvider(project);
-			extension.setSrgMinecraftProvider(srgMinecraftProvider);
-			srgMinecraftProvider.provide(provideContext);
-		}
+		// Dependencies are applied to the project separately, on this thread.
+		// When concurrent, the jars of all of the remap steps share a single executor that bounds the number of remaps at once.
+		final Executor remapExecutor = concurrent ? AbstractMappedMinecraftProvider.createRemapExecutor() : null;
+		final var provideContext = new AbstractMappedMinecraftProvider.ProvideContext(false, extension.refreshDeps(), configContext, remapExecutor);
 
-		if (extension.isForgeLike() && extension.getForgeProvider().usesMojangAtRuntime()) {
-			final MojangMappedMinecraftProvider<?> mojangMappedMinecraftProvider = jarConfiguration.createMojangMappedMinecraftProvider(project);
-			extension.setMojangMappedMinecraftProvider(mojangMappedMinecraftProvider);
-			mojangMappedMinecraftProvider.provide(provideContext);
+		scheduler.addBackground("intermediaryRemap", () -> extension.getIntermediaryMinecraftProvider().provide(provideContext), "mappedProviders");
+		// The jar processors read the intermediary jars
+		scheduler.addBackground("namedRemap", () -> extension.getNamedMinecraftProvider().provide(provideContext), "intermediaryRemap");
+		scheduler.add("namedDependencies", () -> extension.getNamedMinecraftProvider().applyDependencies(), "namedRemap");
+
+		scheduler.addBackground("srgRemap", () -> {
+			if (extension.isSrgForgeLike()) {
+				extension.getSrgMinecraftProvider().provide(provideContext);
+			}
+		}, "mappedProviders");
+
+		scheduler.addBackground("mojangMappedRemap", () -> {
+			if (extension.isForgeLike() && extension.getForgeProvider().usesMojangAtRuntime()) {
+				extension.getMojangMappedMinecraftProvider().provide(provideContext);
+			}
+		}, "mappedProviders");
+
+		try {
+			scheduler.run();
+		} finally {
+			project.getLogger().info(scheduler.report());
 		}
 	}
 
@@ -0,0 +1,242 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.configuration;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import net.fabricmc.loom.util.LoomExecutors;
+
+/**
+ * Runs the steps of the Minecraft setup as a dependency graph.
+ *
+ * <p>Steps that touch the Gradle project model always run on the calling thread, in the order that they were added.
+ * Background steps only do file work, when running concurrently they are started as soon as their dependencies have
+ * completed, overlapping with any later steps that do not depend on them.
+ *
+ * <p>The time taken by each step is recorded, {@link #report()} describes the critical path through the graph.
+ */
+public final class SetupScheduler {
+	private final boolean concurrent;
+	private final Executor executor;
+	private final Map<String, Node> nodes = new LinkedHashMap<>();
+	private long startTime;
+
+	public SetupScheduler(boolean concurrent) {
+		this.concurrent = concurrent;
+		this.executor = LoomExecutors.io();
+	}
+
+	/**
+	 * Add a step that runs on the calling thread. All of the dependencies must have already been added.
+	 */
+	public void add(String name, Step step, String... dependencies) {
+		addNode(name, step, false, dependencies);
+	}
+
+	/**
+	 * Add a step that may run concurrently with other steps. All of the dependencies must have already been added.
+	 */
+	public void addBackground(String name, Step step, String... dependencies) {
+		addNode(name, step, true, dependencies);
+	}
+
+	private void addNode(String name, Step step, boolean background, String... dependencies) {
+		final List<Node> dependencyNodes = new ArrayList<>(dependencies.length);
+
+		for (String dependency : dependencies) {
+			final Node node = nodes.get(dependency);
+
+			if (node == null) {
+				throw new IllegalArgumentException("Step %s depends on unknown step %s".formatted(name, dependency));
+			}
+
+			dependencyNodes.add(node);
+		}
+
+		if (nodes.putIfAbsent(name, new Node(name, step, background, dependencyNodes)) != null) {
+			throw new IllegalArgumentException("Duplicate step: " + name);
+		}
+	}
+
+	/**
+	 * Run all of the steps, waiting for any background steps to complete before returning.
+	 */
+	public void run() throws Exception {
+		startTime = System.nanoTime();
+		Throwable failure = null;
+
+		for (Node node : nodes.values()) {
+			if (node.background && concurrent) {
+				node.future = CompletableFuture.allOf(node.dependencyFutures())
+						.thenRunAsync(node::runUnchecked, executor);
+				continue;
+			}
+
+			try {
+				CompletableFuture.allOf(node.dependencyFutures()).join();
+				node.run();
+				node.future = CompletableFuture.completedFuture(null);
+			} catch (Throwable t) {
+				failure = t;
+				break;
+			}
+		}
+
+		// Always wait for the background steps, even after a failure so that nothing is left running.
+		for (Node node : nodes.values()) {
+			if (node.future == null) {
+				continue;
+			}
+
+			try {
+				node.future.join();
+			} catch (Throwable t) {
+				if (failure == null) {
+					failure = t;
+				}
+			}
+		}
+
+		if (failure != null) {
+			throw unwrap(failure);
+		}
+	}
+
+	/**
+	 * @return a description of the time taken by each step, with the steps on the critical path marked
+	 */
+	public String report() {
+		Node last = null;
+
+		for (Node node : nodes.values()) {
+			if (node.endTime != 0 && (last == null || node.endTime > last.endTime)) {
+				last = node;
+			}
+		}
+
+		// Walk back from the last step to finish, through the dependency that finished last
+		final List<Node> criticalPath = new ArrayList<>();
+
+		while (last != null) {
+			criticalPath.add(last);
+			Node next = null;
+
+			for (Node dependency : last.dependencies) {
+				if (next == null || dependency.endTime > next.endTime) {
+					next = dependency;
+				}
+			}
+
+			last = next;
+		}
+
+		final StringBuilder sb = new StringBuilder("Minecraft setup steps:");
+
+		for (Node node : nodes.values()) {
+			if (node.endTime == 0) {
+				sb.append("\n  %-24s not run".formatted(node.name));
+				continue;
+			}
+
+			sb.append("\n  %-24s %8s  (%s -> %s)%s".formatted(
+					node.name,
+					seconds(node.endTime - node.startTime),
+					seconds(node.startTime - startTime),
+					seconds(node.endTime - startTime),
+					criticalPath.contains(node) ? " *" : ""
+			));
+		}
+
+		sb.append("\n  * on the critical path");
+		return sb.toString();
+	}
+
+	private static String seconds(long nanos) {
+		return String.format(Locale.ROOT, "%.2fs", nanos / 1_000_000_000D);
+	}
+
+	private static Exception unwrap(Throwable throwable) {
+		while (throwable instanceof CompletionException && throwable.getCause() != null) {
+			throwable = throwable.getCause();
+		}
+
+		if (throwable instanceof Error error) {
+			throw error;
+		}
+
+		return (Exception) throwable;
+	}
+
+	@FunctionalInterface
+	public interface Step {
+		void run() throws Exception;
+	}
+
+	private static final class Node {
+		private final String name;
+		private final Step step;
+		private final boolean background;
+		private final List<Node> dependencies;
+		private CompletableFuture<Void> future;
+		private volatile long startTime;
+		private volatile long endTime;
+
+		private Node(String name, Step step, boolean background, List<Node> dependencies) {
+			this.name = name;
+			this.step = step;
+			this.background = background;
+			this.dependencies = dependencies;
+		}
+
+		private CompletableFuture<?>[] dependencyFutures() {
+			return dependencies.stream().map(node -> node.future).toArray(CompletableFuture[]::new);
+		}
+
+		private void run() throws Exception {
+			startTime = System.nanoTime();
+
+			try {
+				step.run();
+			} finally {
+				endTime = System.nanoTime();
+			}
+		}
+
+		private void runUnchecked() {
+			try {
+				run();
+			} catch (Exception e) {
+				throw new CompletionException(e);
+			}
+		}
+	}
+}
@@ -38,6 +38,11 @@ import net.fabricmc.loom.util.fmj.FabricModJson;
 public interface AccessTransformerEntry {
 	Reader openReader() throws IOException;
 
+	/**
+	 * @return the hash of the access transformer contents
+	 */
+	String hash();
+
 	record Standalone(Path path, String hash) implements AccessTransformerEntry {
 		@Override
 		public Reader openReader() throws IOException {
@@ -35,6 +35,7 @@ import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import javax.inject.Inject;
 
@@ -182,6 +183,13 @@ public class AccessTransformerJarProcessor implements MinecraftJarProcessor<Acce
 		});
 	}
 
+	/**
+	 * @return the Maven notations of the tool used by {@link #executeAt}, to key cached outputs on its version
+	 */
+	public static String getToolNotation(Project project) {
+		return String.join(",", chooseAccessTransformer(project).mavenNotation(), LoomVersions.ASM.mavenNotation(), LoomVersions.ACCESS_TRANSFORMERS_LOG4J_BOM.mavenNotation());
+	}
+
 	private static LoomVersions chooseAccessTransformer(Project project) {
 		LoomGradleExtension extension = LoomGradleExtension.get(project);
 
@@ -202,5 +210,11 @@ public class AccessTransformerJarProcessor implements MinecraftJarProcessor<Acce
 	}
 
 	public record Spec(List<AccessTransformerEntry> accessTransformers) implements MinecraftJarProcessor.Spec {
+		@Override
+		public String getCacheKey() {
+			return accessTransformers.stream()
+					.map(AccessTransformerEntry::hash)
+					.collect(Collectors.joining(","));
+		}
 	}
 }
@@ -44,5 +44,10 @@ public interface AccessWidenerEntry {
 
 	String getSortKey();
 
+	/**
+	 * @return A key that identifies the contents of this entry, stable between builds
+	 */
+	String getCacheKey();
+
 	void read(AccessWidenerVisitor visitor, LazyCloseable<TinyRemapper> remapper) throws IOException;
 }
@@ -32,6 +32,7 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import javax.inject.Inject;
 
@@ -43,6 +44,7 @@ import net.fabricmc.loom.api.mappings.layered.MappingsNamespace;
 import net.fabricmc.loom.api.processor.MinecraftJarProcessor;
 import net.fabricmc.loom.api.processor.ProcessorContext;
 import net.fabricmc.loom.api.processor.SpecContext;
+import net.fabricmc.loom.configuration.processors.MinecraftJarProcessorManager;
 import net.fabricmc.loom.util.LazyCloseable;
 import net.fabricmc.loom.util.fmj.FabricModJson;
 import net.fabricmc.loom.util.fmj.ModEnvironment;
@@ -102,6 +104,13 @@ public class AccessWidenerJarProcessor implements MinecraftJarProcessor<AccessWi
 	}
 
 	public record Spec(List<AccessWidenerEntry> accessWideners) implements MinecraftJarProcessor.Spec {
+		@Override
+		public String getCacheKey() {
+			return accessWideners.stream()
+					.map(AccessWidenerEntry::getCacheKey)
+					.collect(Collectors.joining(","));
+		}
+
 		List<AccessWidenerEntry> accessWidenersForContext(ProcessorContext context) {
 			return accessWideners.stream()
 					.filter(entry -> isSupported(entry.environment(), context))
@@ -129,6 +138,15 @@ public class AccessWidenerJarProcessor implements MinecraftJarProcessor<AccessWi
 
 	@Override
 	public void processJar(Path jar, AccessWidenerJarProcessor.Spec spec, ProcessorContext context) throws IOException {
+		MinecraftJarProcessorManager.transformClasses(jar, List.of(createVisitorFactory(spec, context)));
+	}
+
+	@Override
+	public ClassProcessor<Spec> processClasses() {
+		return this::createVisitorFactory;
+	}
+
+	private ClassVisitorFactory createVisitorFactory(AccessWidenerJarProcessor.Spec spec, ProcessorContext context) throws IOException {
 		final List<AccessWidenerEntry> accessWideners = spec.accessWidenersForContext(context);
 
 		final var accessWidener = new AccessWidener();
@@ -139,8 +157,7 @@ public class AccessWidenerJarProcessor implements MinecraftJarProcessor<AccessWi
 			}
 		}
 
-		AccessWidenerTransformer transformer = new AccessWidenerTransformer(accessWidener);
-		transformer.apply(jar);
+		return new AccessWidenerTransformer(accessWidener);
 	}
 
 	@Override
@@ -24,61 +24,39 @@
 
 package net.fabricmc.loom.configuration.accesswidener;
 
-import java.io.IOException;
-import java.io.UncheckedIOException;
-import java.nio.file.Path;
-import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
-import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
-import org.objectweb.asm.ClassWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import net.fabricmc.accesswidener.AccessWidener;
 import net.fabricmc.accesswidener.AccessWidenerClassVisitor;
+import net.fabricmc.loom.api.processor.MinecraftJarProcessor;
 import net.fabricmc.loom.util.Constants;
-import net.fabricmc.loom.util.Pair;
-import net.fabricmc.loom.util.ZipUtils;
 
-final class AccessWidenerTransformer {
+final class AccessWidenerTransformer implements MinecraftJarProcessor.ClassVisitorFactory {
 	private static final Logger LOGGER = LoggerFactory.getLogger(AccessWidenerTransformer.class);
 
 	private final AccessWidener accessWidener;
+	private final Set<String> targets;
 
 	AccessWidenerTransformer(AccessWidener accessWidener) {
 		this.accessWidener = accessWidener;
+		this.targets = accessWidener.getTargets().stream()
+				.map(string -> string.replaceAll("\\.", "/"))
+				.collect(Collectors.toUnmodifiableSet());
 	}
 
-	/**
-	 * Apply the rules from an access-widener to the given jar or zip file.
-	 */
-	void apply(Path jarFile) {
-		try {
-			ZipUtils.transform(jarFile, getTransformers(accessWidener.getTargets()));
-		} catch (IOException e) {
-			throw new UncheckedIOException("Failed to apply access wideners to %s".formatted(jarFile), e);
-		}
+	@Override
+	public boolean shouldVisit(String className) {
+		return targets.contains(className);
 	}
 
-	private List<Pair<String, ZipUtils.UnsafeUnaryOperator<byte[]>>> getTransformers(Set<String> classes) {
-		return classes.stream()
-				.map(string -> new Pair<>(string.replaceAll("\\.", "/") + ".class", getTransformer(string)))
-				.collect(Collectors.toList());
-	}
-
-	private ZipUtils.UnsafeUnaryOperator<byte[]> getTransformer(String className) {
-		return input -> {
-			ClassReader reader = new ClassReader(input);
-			ClassWriter writer = new ClassWriter(0);
-			ClassVisitor classVisitor = AccessWidenerClassVisitor.createClassVisitor(Constants.ASM_VERSION, writer, accessWidener);
-
-			LOGGER.debug("Applying access widener to " + className);
-
-			reader.accept(classVisitor, 0);
-			return writer.toByteArray();
-		};
+	@Override
+	public ClassVisitor createVisitor(String className, ClassVisitor next) {
+		LOGGER.debug("Applying access widener to " + className);
+		return AccessWidenerClassVisitor.createClassVisitor(Constants.ASM_VERSION, next, accessWidener);
 	}
 }
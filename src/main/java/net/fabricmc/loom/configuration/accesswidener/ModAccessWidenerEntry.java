@@ -25,6 +25,7 @@
 package net.fabricmc.loom.configuration.accesswidener;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -37,6 +38,7 @@ import net.fabricmc.accesswidener.AccessWidenerRemapper;
 import net.fabricmc.accesswidener.AccessWidenerVisitor;
 import net.fabricmc.accesswidener.TransitiveOnlyFilter;
 import net.fabricmc.loom.api.mappings.layered.MappingsNamespace;
+import net.fabricmc.loom.util.Checksum;
 import net.fabricmc.loom.util.LazyCloseable;
 import net.fabricmc.loom.util.fmj.FabricModJson;
 import net.fabricmc.loom.util.fmj.ModEnvironment;
@@ -66,6 +68,20 @@ public record ModAccessWidenerEntry(FabricModJson mod, String path, ModEnvironme
 		return mod.getId() + ":" + path;
 	}
 
+	@Override
+	public String getCacheKey() {
+		final String hash;
+
+		try {
+			// The mod version alone is not enough, as local mods may change without a new version
+			hash = Checksum.sha1Hex(readRaw());
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to read access widener %s from %s".formatted(path, mod.getId()), e);
+		}
+
+		return "mod:%s:%s:%s:%s:%s".formatted(mod.getId(), path, environment.name(), transitiveOnly, hash);
+	}
+
 	@Override
 	public void read(AccessWidenerVisitor visitor, LazyCloseable<TinyRemapper> remapper) throws IOException {
 		if (transitiveOnly) {
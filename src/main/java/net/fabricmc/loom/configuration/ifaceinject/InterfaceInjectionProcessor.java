@@ -42,9 +42,7 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import org.jetbrains.annotations.Nullable;
-import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
-import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.signature.SignatureReader;
 import org.objectweb.asm.signature.SignatureVisitor;
@@ -56,10 +54,9 @@ import net.fabricmc.loom.api.mappings.layered.MappingsNamespace;
 import net.fabricmc.loom.api.processor.MinecraftJarProcessor;
 import net.fabricmc.loom.api.processor.ProcessorContext;
 import net.fabricmc.loom.api.processor.SpecContext;
+import net.fabricmc.loom.configuration.processors.MinecraftJarProcessorManager;
 import net.fabricmc.loom.util.Constants;
 import net.fabricmc.loom.util.LazyCloseable;
-import net.fabricmc.loom.util.Pair;
-import net.fabricmc.loom.util.ZipUtils;
 import net.fabricmc.loom.util.fmj.FabricModJson;
 import net.fabricmc.loom.util.fmj.ModMetadataFabricModJson;
 import net.fabricmc.mappingio.tree.MappingTree;
@@ -104,10 +101,31 @@ public abstract class InterfaceInjectionProcessor implements MinecraftJarProcess
 	}
 
 	public record Spec(List<InjectedInterface> injectedInterfaces) implements MinecraftJarProcessor.Spec {
+		@Override
+		public String getCacheKey() {
+			return injectedInterfaces.stream()
+					.map(i -> "%s:%s:%s:%s".formatted(i.modId(), i.className(), i.ifaceName(), i.generics()))
+					.collect(Collectors.joining(","));
+		}
 	}
 
 	@Override
 	public void processJar(Path jar, Spec spec, ProcessorContext context) throws IOException {
+		final ClassVisitorFactory factory = createVisitorFactory(spec, context);
+
+		try {
+			MinecraftJarProcessorManager.transformClasses(jar, List.of(factory));
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to apply interface injections to " + jar, e);
+		}
+	}
+
+	@Override
+	public ClassProcessor<Spec> processClasses() {
+		return this::createVisitorFactory;
+	}
+
+	private ClassVisitorFactory createVisitorFactory(Spec spec, ProcessorContext context) throws IOException {
 		// Remap from intermediary->named
 		final MemoryMappingTree mappings = context.getMappings();
 		final int intermediaryIndex = mappings.getNamespaceId(MappingsNamespace.INTERMEDIARY.toString());
@@ -121,11 +139,21 @@ public abstract class InterfaceInjectionProcessor implements MinecraftJarProcess
 							tinyRemapper.get().getEnvironment().getRemapper()
 					))
 					.toList();
-			try {
-				ZipUtils.transform(jar, getTransformers(remappedInjectedInterfaces));
-			} catch (IOException e) {
-				throw new RuntimeException("Failed to apply interface injections to " + jar, e);
-			}
+
+			final Map<String, List<InjectedInterface>> byClass = remappedInjectedInterfaces.stream()
+					.collect(Collectors.groupingBy(injectedInterface -> injectedInterface.className().replaceAll("\\.", "/")));
+
+			return new ClassVisitorFactory() {
+				@Override
+				public boolean shouldVisit(String className) {
+					return byClass.containsKey(className);
+				}
+
+				@Override
+				public ClassVisitor createVisitor(String className, ClassVisitor next) {
+					return new InjectingClassVisitor(Constants.ASM_VERSION, next, byClass.get(className));
+				}
+			};
 		}
 	}
 
@@ -145,27 +173,6 @@ public abstract class InterfaceInjectionProcessor implements MinecraftJarProcess
 		);
 	}
 
-	private List<Pair<String, ZipUtils.UnsafeUnaryOperator<byte[]>>> getTransformers(List<InjectedInterface> injectedInterfaces) {
-		return injectedInterfaces.stream()
-				.collect(Collectors.groupingBy(InjectedInterface::className))
-				.entrySet()
-				.stream()
-				.map(entry -> {
-					final String zipEntry = entry.getKey().replaceAll("\\.", "/") + ".class";
-					return new Pair<>(zipEntry, getTransformer(entry.getValue()));
-				}).toList();
-	}
-
-	private ZipUtils.UnsafeUnaryOperator<byte[]> getTransformer(List<InjectedInterface> injectedInterfaces) {
-		return input -> {
-			final ClassReader reader = new ClassReader(input);
-			final ClassWriter writer = new ClassWriter(0);
-			final ClassVisitor classVisitor = new InjectingClassVisitor(Constants.ASM_VERSION, writer, injectedInterfaces);
-			reader.accept(classVisitor, 0);
-			return writer.toByteArray();
-		};
-	}
-
 	@Override
 	public MappingsProcessor<Spec> processMappings() {
 		return (mappings, spec, context) -> {
@@ -284,8 +291,8 @@ public abstract class InterfaceInjectionProcessor implements MinecraftJarProcess
 		private final List<InjectedInterface> injectedInterfaces;
 		private final Set<String> knownInnerClasses = new HashSet<>();
 
-		InjectingClassVisitor(int asmVersion, ClassWriter writer, List<InjectedInterface> injectedInterfaces) {
-			super(asmVersion, writer);
+		InjectingClassVisitor(int asmVersion, ClassVisitor next, List<InjectedInterface> injectedInterfaces) {
+			super(asmVersion, next);
 			this.injectedInterfaces = injectedInterfaces;
 		}
 
@@ -34,6 +34,8 @@ import java.util.Set;
 import java.util.TreeSet;
 import java.util.jar.Manifest;
 
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import dev.architectury.at.AccessTransformSet;
 import dev.architectury.loom.metadata.ModMetadataFile;
 import dev.architectury.loom.metadata.ModMetadataFiles;
@@ -52,48 +54,70 @@ public record AccessTransformerAnalyzeVisitorProvider(AccessTransformSet accessT
 
 		for (ModDependency mod : mods) {
 			try (FileSystemUtil.Delegate fs = FileSystemUtil.getJarFileSystem(mod.getInputFile(), false)) {
-				Set<Path> atPaths = new TreeSet<>();
-
-				if (platform == ModPlatform.FORGE) {
-					atPaths.add(fs.getPath(Constants.Forge.ACCESS_TRANSFORMER_PATH));
+				for (Path atPath : getAccessTransformerPaths(fs, mod.getInputFile(), platform)) {
+					if (Files.exists(atPath)) {
+						LegacyFmlAccessTransformReader.read(Files.newBufferedReader(atPath, StandardCharsets.UTF_8), accessTransformSet);
+					}
 				}
+			}
+		}
 
-				if (platform == ModPlatform.NEOFORGE) {
-					ModMetadataFile modMetadata = ModMetadataFiles.fromJar(mod.getInputFile());
+		return new AccessTransformerAnalyzeVisitorProvider(accessTransformSet);
+	}
 
-					if (modMetadata != null) {
-						for (String atFile : modMetadata.getAccessTransformers(ModPlatform.NEOFORGE)) {
-							atPaths.add(fs.getPath(atFile));
-						}
-					}
+	/**
+	 * @return a hash of the access transformers that {@link #createFromMods(List, ModPlatform)} reads from the mod
+	 */
+	static String hashAccessTransformers(Path modJar, ModPlatform platform) throws IOException {
+		final Hasher hasher = Hashing.sha256().newHasher();
+
+		try (FileSystemUtil.Delegate fs = FileSystemUtil.getJarFileSystem(modJar, false)) {
+			for (Path atPath : getAccessTransformerPaths(fs, modJar, platform)) {
+				if (Files.exists(atPath)) {
+					hasher.putString(atPath.toString(), StandardCharsets.UTF_8);
+					hasher.putBytes(Files.readAllBytes(atPath));
 				}
+			}
+		}
 
-				if (platform.isLegacyForgeLike()) {
-					Path manifestPath = fs.getPath("META-INF", "MANIFEST.MF");
+		return hasher.hash().toString();
+	}
 
-					if (Files.exists(manifestPath)) {
-						Manifest manifest = new Manifest(new ByteArrayInputStream(Files.readAllBytes(manifestPath)));
-						String atList = manifest.getMainAttributes().getValue(Constants.LegacyForge.ACCESS_TRANSFORMERS_MANIFEST_KEY);
+	private static Set<Path> getAccessTransformerPaths(FileSystemUtil.Delegate fs, Path modJar, ModPlatform platform) throws IOException {
+		Set<Path> atPaths = new TreeSet<>();
 
-						if (atList != null) {
-							for (String atFile : atList.split(" ")) {
-								atPaths.add(fs.getPath("META-INF", atFile));
-							}
-						}
-					}
+		if (platform == ModPlatform.FORGE) {
+			atPaths.add(fs.getPath(Constants.Forge.ACCESS_TRANSFORMER_PATH));
+		}
+
+		if (platform == ModPlatform.NEOFORGE) {
+			ModMetadataFile modMetadata = ModMetadataFiles.fromJar(modJar);
 
-					Files.walk(fs.getPath("/"), 1).filter(path -> path.toString().endsWith("at.cfg")).forEach(atPaths::add);
+			if (modMetadata != null) {
+				for (String atFile : modMetadata.getAccessTransformers(ModPlatform.NEOFORGE)) {
+					atPaths.add(fs.getPath(atFile));
 				}
+			}
+		}
 
-				for (Path atPath : atPaths) {
-					if (Files.exists(atPath)) {
-						LegacyFmlAccessTransformReader.read(Files.newBufferedReader(atPath, StandardCharsets.UTF_8), accessTransformSet);
+		if (platform.isLegacyForgeLike()) {
+			Path manifestPath = fs.getPath("META-INF", "MANIFEST.MF");
+
+			if (Files.exists(manifestPath)) {
+				Manifest manifest = new Manifest(new ByteArrayInputStream(Files.readAllBytes(manifestPath)));
+				String atList = manifest.getMainAttributes().getValue(Constants.LegacyForge.ACCESS_TRANSFORMERS_MANIFEST_KEY);
+
+				if (atList != null) {
+					for (String atFile : atList.split(" ")) {
+						atPaths.add(fs.getPath("META-INF", atFile));
 					}
 				}
 			}
+
+			Files.walk(fs.getPath("/"), 1).filter(path -> path.toString().endsWith("at.cfg")).forEach(atPaths::add);
 		}
 
-		return new AccessTransformerAnalyzeVisitorProvider(accessTransformSet);
+		return atPaths;
 	}
 
 	@Override
@@ -31,13 +31,17 @@ import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.jar.Manifest;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -48,19 +52,26 @@ import dev.architectury.loom.util.MappingOption;
 import org.gradle.api.Project;
 import org.gradle.api.artifacts.Configuration;
 import org.gradle.api.attributes.Usage;
+import org.jetbrains.annotations.Nullable;
 
 import net.fabricmc.loom.LoomGradleExtension;
+import net.fabricmc.loom.LoomGradlePlugin;
 import net.fabricmc.loom.api.RemapConfigurationSettings;
 import net.fabricmc.loom.api.mappings.layered.MappingsNamespace;
 import net.fabricmc.loom.build.IntermediaryNamespaces;
 import net.fabricmc.loom.configuration.mods.dependency.ModDependency;
 import net.fabricmc.loom.configuration.providers.mappings.MappingConfiguration;
 import net.fabricmc.loom.extension.RemapperExtensionHolder;
+import net.fabricmc.loom.util.Checksum;
 import net.fabricmc.loom.util.Constants;
+import net.fabricmc.loom.util.IOFunction;
 import net.fabricmc.loom.util.LoggerFilter;
+import net.fabricmc.loom.util.LoomExecutors;
 import net.fabricmc.loom.util.ModPlatform;
 import net.fabricmc.loom.util.Pair;
+import net.fabricmc.loom.util.RemapClasspathIndex;
 import net.fabricmc.loom.util.TinyRemapperHelper;
+import net.fabricmc.loom.util.ZipRewriter;
 import net.fabricmc.loom.util.ZipUtils;
 import net.fabricmc.loom.util.kotlin.KotlinClasspathService;
 import net.fabricmc.loom.util.kotlin.KotlinRemapperClassloader;
@@ -126,46 +137,35 @@ public class ModProcessor {
 		return description;
 	}
 
-	private void stripNestedJars(Path path) {
-		try {
-			ZipUtils.deleteIfExists(path, "META-INF/jarjar/metadata.json");
-		} catch (IOException e) {
-			throw new UncheckedIOException("Failed to strip nested jars from %s".formatted(path), e);
-		}
+	private void stripNestedJars(ZipRewriter zip) throws IOException {
+		zip.remove("META-INF/jarjar/metadata.json");
 
-		if (!ZipUtils.contains(path, "fabric.mod.json")) {
-			if (ZipUtils.contains(path, "quilt.mod.json")) {
+		if (!zip.contains("fabric.mod.json")) {
+			if (zip.contains("quilt.mod.json")) {
 				// Strip out all contained jar info as we dont want loader to try and load the jars contained in dev.
-				try {
-					ZipUtils.transformJson(JsonObject.class, path, Map.of("quilt.mod.json", json -> {
-						if (json.has("quilt_loader")) {
-							json.getAsJsonObject("quilt_loader").remove("jars");
-						}
+				ZipUtils.transformJson(JsonObject.class, zip, Map.of("quilt.mod.json", json -> {
+					if (json.has("quilt_loader")) {
+						json.getAsJsonObject("quilt_loader").remove("jars");
+					}
 
-						return json;
-					}));
-				} catch (IOException e) {
-					throw new UncheckedIOException("Failed to strip nested jars from %s".formatted(path), e);
-				}
+					return json;
+				}));
 			}
 
 			return;
 		}
 
 		// Strip out all contained jar info as we dont want loader to try and load the jars contained in dev.
-		try {
-			ZipUtils.transformJson(JsonObject.class, path, Map.of("fabric.mod.json", json -> {
-				json.remove("jars");
-				return json;
-			}));
-		} catch (IOException e) {
-			throw new UncheckedIOException("Failed to strip nested jars from %s".formatted(path), e);
-		}
+		ZipUtils.transformJson(JsonObject.class, zip, Map.of("fabric.mod.json", json -> {
+			json.remove("jars");
+			return json;
+		}));
 	}
 
 	private void remapJars(List<ModDependency> remapList) throws IOException {
 		final LoomGradleExtension extension = LoomGradleExtension.get(project);
 		final MappingConfiguration mappingConfiguration = extension.getMappingConfiguration();
+		final ModPlatform platform = extension.getPlatform().get();
 		String fromM = IntermediaryNamespaces.runtimeIntermediary(project);
 		Stopwatch stopwatch = Stopwatch.createStarted();
 		Set<String> knownIndyBsms = new HashSet<>(extension.getKnownIndyBsms().get());
@@ -174,18 +174,58 @@ public class ModProcessor {
 			knownIndyBsms.addAll(modDependency.getMetadata().knownIdyBsms());
 		}
 
+		final List<Path> minecraftJars = extension.getMinecraftJars(IntermediaryNamespaces.runtimeIntermediaryNamespace(project));
+		final List<Path> remapClasspath = new ArrayList<>();
+
+		for (RemapConfigurationSettings entry : extension.getRemapConfigurations()) {
+			for (File inputFile : entry.getSourceConfiguration().get().getFiles()) {
+				if (remapList.stream().noneMatch(info -> info.getInputFile().toFile().equals(inputFile))) {
+					project.getLogger().debug("Adding " + inputFile + " onto the remap classpath");
+					remapClasspath.add(inputFile.toPath());
+				}
+			}
+		}
+
 		MappingOption mappingOption = MappingOption.forPlatform(extension);
+		final KotlinClasspathService kotlinClasspathService = serviceFactory.getOrNull(KotlinClasspathService.createOptions(project));
+		final ModRemapCache cache = createCache(fromM, mappingOption, knownIndyBsms, kotlinClasspathService);
+		final Map<ModDependency, String> cacheKeys = cache != null ? getCacheKeys(cache, remapList, minecraftJars, remapClasspath) : Map.of();
+		final List<ModDependency> toRemap = new ArrayList<>();
+		final Map<ModDependency, Path> cachedJars = new HashMap<>();
+
+		for (ModDependency dependency : remapList) {
+			final Path cached = cache != null ? cache.get(cacheKeys.get(dependency)) : null;
+
+			if (cached == null) {
+				toRemap.add(dependency);
+				continue;
+			}
+
+			project.getLogger().info("Using the cached remapped jar for {}", dependency.getInputFile());
+			cachedJars.put(dependency, cached);
+		}
+
+		forEachParallel(List.copyOf(cachedJars.keySet()), dependency -> {
+			dependency.copyToCache(project, cachedJars.get(dependency));
+			return null;
+		});
+
+		if (toRemap.isEmpty()) {
+			project.getLogger().lifecycle(":restored {} mods from the remap cache in {}", remapList.size(), stopwatch.stop());
+			return;
+		}
+
 		MemoryMappingTree mappings = mappingConfiguration.getMappingsService(project, serviceFactory, mappingOption).getMappingTree();
 		LoggerFilter.replaceSystemOut();
 
+		// The access wideners and transformers of every mod apply, including the ones restored from the cache.
 		TinyRemapper.Builder builder = TinyRemapper.newRemapper()
 				.withKnownIndyBsm(knownIndyBsms)
 				.withMappings(TinyRemapperHelper.create(mappings, fromM, toM, false))
 				.renameInvalidLocals(false)
-				.extraAnalyzeVisitor(AccessTransformerAnalyzeVisitorProvider.createFromMods(remapList, extension.getPlatform().get()))
-				.extraAnalyzeVisitor(AccessWidenerAnalyzeVisitorProvider.createFromMods(fromM, remapList, extension.getPlatform().get()));
+				.extraAnalyzeVisitor(AccessTransformerAnalyzeVisitorProvider.createFromMods(remapList, platform))
+				.extraAnalyzeVisitor(AccessWidenerAnalyzeVisitorProvider.createFromMods(fromM, remapList, platform));
 
-		final KotlinClasspathService kotlinClasspathService = serviceFactory.getOrNull(KotlinClasspathService.createOptions(project));
 		KotlinRemapperClassloader kotlinRemapperClassloader = null;
 
 		if (kotlinClasspathService != null) {
@@ -194,11 +234,11 @@ public class ModProcessor {
 		}
 
 		final Set<InputTag> remapMixins = new HashSet<>();
-		final boolean requiresStaticMixinRemap = remapList.stream()
+		final boolean requiresStaticMixinRemap = toRemap.stream()
 				.anyMatch(modDependency -> modDependency.getMetadata().mixinRemapType() == ArtifactMetadata.MixinRemapType.STATIC);
 
 		final Set<InputTag> remapMixinsHard = new HashSet<>();
-		final boolean requiresSemiStaticMixinRemap = remapList.stream()
+		final boolean requiresSemiStaticMixinRemap = toRemap.stream()
 				.anyMatch(modDependency -> modDependency.getMetadata().mixinRemapType() == ArtifactMetadata.MixinRemapType.SEMI_STATIC);
 
 		if (requiresStaticMixinRemap) {
@@ -216,22 +256,17 @@ public class ModProcessor {
 
 		final TinyRemapper remapper = builder.build();
 
-		remapper.readClassPath(extension.getMinecraftJars(IntermediaryNamespaces.runtimeIntermediaryNamespace(project)).toArray(Path[]::new));
+		remapper.readClassPath(RemapClasspathIndex.resolve(minecraftJars));
 
 		final Map<ModDependency, InputTag> tagMap = new HashMap<>();
 		final Map<ModDependency, OutputConsumerPath> outputConsumerMap = new HashMap<>();
 		final Map<ModDependency, Pair<byte[], String>> accessWidenerMap = new HashMap<>();
 
-		for (RemapConfigurationSettings entry : extension.getRemapConfigurations()) {
-			for (File inputFile : entry.getSourceConfiguration().get().getFiles()) {
-				if (remapList.stream().noneMatch(info -> info.getInputFile().toFile().equals(inputFile))) {
-					project.getLogger().debug("Adding " + inputFile + " onto the remap classpath");
-					remapper.readClassPathAsync(inputFile.toPath());
-				}
-			}
-		}
+		remapper.readClassPathAsync(RemapClasspathIndex.resolve(remapClasspath));
+		// The mods restored from the cache are still needed on the classpath of the mods being remapped
+		remapper.readClassPathAsync(RemapClasspathIndex.resolve(cachedJars.keySet().stream().map(ModDependency::getInputFile).toList()));
 
-		for (ModDependency info : remapList) {
+		for (ModDependency info : toRemap) {
 			InputTag tag = remapper.createInputTag();
 
 			project.getLogger().debug("Adding " + info.getInputFile() + " as a remap input");
@@ -265,14 +300,13 @@ public class ModProcessor {
 
 		try {
 			// Apply this in a second loop as we need to ensure all the inputs are on the classpath before remapping.
-			for (ModDependency dependency : remapList) {
+			for (ModDependency dependency : toRemap) {
 				try {
 					OutputConsumerPath outputConsumer = new OutputConsumerPath.Builder(getRemappedOutput(dependency)).build();
 
 					outputConsumer.addNonClassFiles(dependency.getInputFile(), NonClassCopyMode.FIX_META_INF, remapper);
 					outputConsumerMap.put(dependency, outputConsumer);
 
-					final ModPlatform platform = LoomGradleExtension.get(project).getPlatform().get();
 					final AccessWidenerUtils.AccessWidenerData accessWidenerData = AccessWidenerUtils.readAccessWidenerData(dependency.getInputFile(), platform);
 
 					if (accessWidenerData != null) {
@@ -294,39 +328,150 @@ public class ModProcessor {
 			}
 		}
 
-		project.getLogger().lifecycle(":remapped {} mods ({} -> {}) in {}", remapList.size(), fromM, toM, stopwatch.stop());
+		project.getLogger().lifecycle(":remapped {} mods ({} -> {}) in {}", toRemap.size(), fromM, toM, stopwatch.stop());
 
-		for (ModDependency dependency : remapList) {
+		if (toRemap.size() < remapList.size()) {
+			project.getLogger().lifecycle(":restored {} mods from the remap cache", remapList.size() - toRemap.size());
+		}
+
+		// Each jar is finished independently of the others
+		forEachParallel(toRemap, dependency -> {
 			outputConsumerMap.get(dependency).close();
 
 			final Path output = getRemappedOutput(dependency);
 			final Pair<byte[], String> accessWidener = accessWidenerMap.get(dependency);
 
-			if (accessWidener != null) {
-				ZipUtils.replace(output, accessWidener.right(), accessWidener.left());
-			}
+			// Apply all of the changes to the remapped jar in a single rewrite
+			try (ZipRewriter zip = ZipRewriter.open(output)) {
+				if (accessWidener != null) {
+					ZipUtils.replace(zip, accessWidener.right(), accessWidener.left());
+				}
 
-			stripNestedJars(output);
-			remapJarManifestEntries(output);
+				try {
+					stripNestedJars(zip);
+				} catch (IOException e) {
+					throw new UncheckedIOException("Failed to strip nested jars from %s".formatted(output), e);
+				}
+
+				remapJarManifestEntries(zip);
+				zip.commit();
+			}
 
 			if (extension.isForgeLike()) {
 				AtRemapper.remap(project, output, mappings);
-				CoreModClassRemapper.remapJar(project, extension.getPlatform().get(), output, mappings);
+				CoreModClassRemapper.remapJar(project, platform, output, mappings);
 			}
 
-			dependency.copyToCache(project, output, null);
+			if (cache != null) {
+				dependency.copyToCache(project, cache.put(cacheKeys.get(dependency), output));
+			} else {
+				dependency.copyToCache(project, output, null);
+			}
+
+			return null;
+		});
+
+		for (ModDependency dependency : toRemap) {
+			dependency.deleteWorkingFile();
+		}
+	}
+
+	@Nullable
+	private ModRemapCache createCache(String fromM, MappingOption mappingOption, Set<String> knownIndyBsms, @Nullable KotlinClasspathService kotlinClasspathService) {
+		final LoomGradleExtension extension = LoomGradleExtension.get(project);
+
+		if (!extension.getRemapperExtensions().get().isEmpty()) {
+			// The output of a remapper extension cannot be keyed, so always remap.
+			project.getLogger().info("Not using the mod remap cache as remapper extensions are registered");
+			return null;
 		}
 
+		final List<String> context = new ArrayList<>();
+		context.add(LoomGradlePlugin.LOOM_VERSION);
+		context.add(fromM);
+		context.add(toM);
+		context.add(extension.getPlatform().get().name());
+		context.add(mappingOption.name());
+		context.add(extension.getMinecraftProvider().minecraftVersion());
+		context.add(extension.getMappingConfiguration().mappingsIdentifier());
+		context.add(kotlinClasspathService != null ? kotlinClasspathService.version() : "");
+		context.addAll(knownIndyBsms.stream().sorted().toList());
+
+		return ModRemapCache.create(extension.getFiles().getUserCache().toPath().resolve("remapped_mods_cache"), context);
+	}
+
+	private Map<ModDependency, String> getCacheKeys(ModRemapCache cache, List<ModDependency> remapList, List<Path> minecraftJars, List<Path> remapClasspath) throws IOException {
+		final boolean forgeLike = LoomGradleExtension.get(project).isForgeLike();
+		final ModPlatform platform = LoomGradleExtension.get(project).getPlatform().get();
+
+		final List<Path> classpath = new ArrayList<>(minecraftJars);
+		classpath.addAll(remapClasspath);
+		final List<String> classpathHashes = new ArrayList<>(forEachParallel(classpath, RemapClasspathIndex::abiHash).values());
+
+		final Map<ModDependency, String> inputHashes = forEachParallel(remapList, dependency -> Checksum.toHex(Checksum.sha256(dependency.getInputFile().toFile())));
+		// How each mod affects the remapping of the other mods in this batch: its ABI and the access it widens or transforms.
+		final Map<ModDependency, String> modHashes = forEachParallel(remapList, dependency -> {
+			if (forgeLike) {
+				return RemapClasspathIndex.abiHash(dependency.getInputFile()) + AccessTransformerAnalyzeVisitorProvider.hashAccessTransformers(dependency.getInputFile(), platform);
+			}
+
+			final AccessWidenerUtils.AccessWidenerData accessWidenerData = AccessWidenerUtils.readAccessWidenerData(dependency.getInputFile(), platform);
+			final String accessWidenerHash = accessWidenerData != null ? Checksum.sha256Hex(accessWidenerData.content()) : "";
+			return RemapClasspathIndex.abiHash(dependency.getInputFile()) + accessWidenerHash;
+		});
+
+		final Map<ModDependency, String> keys = new HashMap<>();
+
 		for (ModDependency dependency : remapList) {
-			dependency.deleteWorkingFile();
+			final List<String> hashes = new ArrayList<>(classpathHashes);
+
+			for (ModDependency other : remapList) {
+				if (other != dependency) {
+					hashes.add(modHashes.get(other));
+				}
+			}
+
+			keys.put(dependency, cache.getKey(inputHashes.get(dependency), dependency.getMetadata().mixinRemapType().name(), hashes));
 		}
+
+		return keys;
+	}
+
+	private static <T, R> Map<T, R> forEachParallel(List<T> inputs, IOFunction<T, R> function) throws IOException {
+		final Map<T, CompletableFuture<R>> futures = new LinkedHashMap<>();
+
+		for (T input : inputs) {
+			futures.put(input, CompletableFuture.supplyAsync(() -> {
+				try {
+					return function.apply(input);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}, LoomExecutors.io()));
+		}
+
+		final Map<T, R> results = new LinkedHashMap<>();
+
+		try {
+			for (Map.Entry<T, CompletableFuture<R>> entry : futures.entrySet()) {
+				results.put(entry.getKey(), entry.getValue().join());
+			}
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof UncheckedIOException uncheckedIOException) {
+				throw uncheckedIOException.getCause();
+			}
+
+			throw e.getCause() instanceof RuntimeException runtimeException ? runtimeException : e;
+		}
+
+		return results;
 	}
 
 	private static Path getRemappedOutput(ModDependency dependency) {
 		return dependency.getWorkingFile(null);
 	}
 
-	private void remapJarManifestEntries(Path jar) throws IOException {
+	private void remapJarManifestEntries(ZipRewriter jar) throws IOException {
 		ZipUtils.transform(jar, Map.of(Constants.Manifest.PATH, bytes -> {
 			var manifest = new Manifest(new ByteArrayInputStream(bytes));
 
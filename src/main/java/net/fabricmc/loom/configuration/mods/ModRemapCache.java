@@ -0,0 +1,165 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.configuration.mods;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.VisibleForTesting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A content addressed cache of remapped mod jars, shared between projects through the user cache.
+ *
+ * <p>Each mod is keyed by the hash of the input jar, the hash of everything that applies to the whole remap (the
+ * namespaces, mappings and remapper options) and the ABI hashes of the rest of the remap classpath. Only the mods with
+ * a changed key need to be remapped again.
+ *
+ * <p>Cached jars are copied out of the cache rather than linked, so that nothing outside of the cache can modify them.
+ */
+@VisibleForTesting
+public final class ModRemapCache {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ModRemapCache.class);
+	private static final int VERSION = 1;
+	private static final Duration MAX_AGE = Duration.ofDays(14);
+
+	private final Path directory;
+	private final String contextHash;
+
+	private ModRemapCache(Path directory, String contextHash) {
+		this.directory = directory;
+		this.contextHash = contextHash;
+	}
+
+	/**
+	 * @param context strings describing everything that affects the remapped output of every mod
+	 */
+	public static ModRemapCache create(Path directory, Iterable<String> context) {
+		final Hasher hasher = Hashing.sha256().newHasher();
+		hasher.putInt(VERSION);
+
+		for (String s : context) {
+			hasher.putString(s, StandardCharsets.UTF_8);
+			hasher.putByte((byte) 0);
+		}
+
+		try {
+			deleteUnused(directory.resolve("v" + VERSION));
+		} catch (IOException e) {
+			LOGGER.warn("Failed to clean up the mod remap cache", e);
+		}
+
+		return new ModRemapCache(directory.resolve("v" + VERSION), hasher.hash().toString());
+	}
+
+	/**
+	 * @param inputHash the hash of the mod jar
+	 * @param options any options that only apply to this mod
+	 * @param classpathHashes the ABI hashes of every other jar on the remap classpath
+	 */
+	public String getKey(String inputHash, String options, Collection<String> classpathHashes) {
+		final Hasher hasher = Hashing.sha256().newHasher()
+				.putString(contextHash, StandardCharsets.UTF_8)
+				.putString(inputHash, StandardCharsets.UTF_8)
+				.putString(options, StandardCharsets.UTF_8);
+
+		for (String hash : classpathHashes.stream().sorted().toList()) {
+			hasher.putString(hash, StandardCharsets.UTF_8);
+		}
+
+		return hasher.hash().toString();
+	}
+
+	/**
+	 * @return the cached jar, this must not be modified
+	 */
+	@Nullable
+	public Path get(String key) throws IOException {
+		final Path path = getPath(key);
+
+		if (Files.notExists(path)) {
+			return null;
+		}
+
+		// Mark as used so that it is not cleaned up
+		Files.setLastModifiedTime(path, FileTime.from(Instant.now()));
+		return path;
+	}
+
+	/**
+	 * @return the cached jar
+	 */
+	public Path put(String key, Path jar) throws IOException {
+		final Path path = getPath(key);
+		Files.createDirectories(path.getParent());
+
+		final Path tempFile = Files.createTempFile(path.getParent(), key, ".tmp");
+
+		try {
+			Files.copy(jar, tempFile, StandardCopyOption.REPLACE_EXISTING);
+			Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tempFile);
+		}
+
+		return path;
+	}
+
+	private Path getPath(String key) {
+		return directory.resolve(key.substring(0, 2)).resolve(key + ".jar");
+	}
+
+	private static void deleteUnused(Path directory) throws IOException {
+		if (Files.notExists(directory)) {
+			return;
+		}
+
+		final Instant cutoff = Instant.now().minus(MAX_AGE);
+		final List<Path> files;
+
+		try (Stream<Path> stream = Files.walk(directory)) {
+			files = stream.filter(Files::isRegularFile).toList();
+		}
+
+		for (Path path : files) {
+			if (Files.getLastModifiedTime(path).toInstant().isBefore(cutoff)) {
+				Files.deleteIfExists(path);
+			}
+		}
+	}
+}
@@ -45,6 +45,28 @@ public record LocalMavenHelper(String group, String name, String version, @Nulla
 		return Files.copy(artifact, getOutputFile(classifier), StandardCopyOption.REPLACE_EXISTING);
 	}
 
+	/**
+	 * Hard link the artifact into the maven repository, falling back to a copy when links are not supported.
+	 * The artifact must not be modified in place afterwards.
+	 */
+	public Path linkToMaven(Path artifact, @Nullable String classifier) throws IOException {
+		if (!artifact.getFileName().toString().endsWith(".jar")) {
+			throw new UnsupportedOperationException();
+		}
+
+		Files.createDirectories(getDirectory());
+		savePom();
+
+		final Path outputFile = getOutputFile(classifier);
+		Files.deleteIfExists(outputFile);
+
+		try {
+			return Files.createLink(outputFile, artifact);
+		} catch (IOException | UnsupportedOperationException e) {
+			return Files.copy(artifact, outputFile, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
 	public boolean exists(String classifier) {
 		return Files.exists(getOutputFile(classifier)) && Files.exists(getPomPath());
 	}
@@ -26,11 +26,11 @@ package net.fabricmc.loom.configuration.processors;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
-import java.nio.file.Path;
 
 import net.fabricmc.loom.api.mappings.layered.MappingsNamespace;
 import net.fabricmc.loom.configuration.ConfigContext;
 import net.fabricmc.loom.util.LazyCloseable;
+import net.fabricmc.loom.util.RemapClasspathIndex;
 import net.fabricmc.loom.util.TinyRemapperHelper;
 import net.fabricmc.tinyremapper.TinyRemapper;
 
@@ -43,9 +43,7 @@ public final class ContextImplHelper {
 			try {
 				TinyRemapper tinyRemapper = TinyRemapperHelper.getTinyRemapper(configContext.project(), configContext.serviceFactory(), from.toString(), to.toString());
 
-				for (Path minecraftJar : configContext.extension().getMinecraftJars(MappingsNamespace.INTERMEDIARY)) {
-					tinyRemapper.readClassPath(minecraftJar);
-				}
+				tinyRemapper.readClassPath(RemapClasspathIndex.resolve(configContext.extension().getMinecraftJars(MappingsNamespace.INTERMEDIARY)));
 
 				return tinyRemapper;
 			} catch (IOException e) {
@@ -25,19 +25,26 @@
 package net.fabricmc.loom.configuration.processors;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.StringJoiner;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import org.gradle.api.Project;
 import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -47,15 +54,38 @@ import net.fabricmc.loom.api.processor.MinecraftJarProcessor;
 import net.fabricmc.loom.api.processor.ProcessorContext;
 import net.fabricmc.loom.api.processor.SpecContext;
 import net.fabricmc.loom.util.Checksum;
+import net.fabricmc.loom.util.LoomExecutors;
+import net.fabricmc.loom.util.ZipRewriter;
 import net.fabricmc.mappingio.tree.MemoryMappingTree;
 
 public final class MinecraftJarProcessorManager {
 	private static final Logger LOGGER = LoggerFactory.getLogger(MinecraftJarProcessorManager.class);
 
 	private final List<ProcessorEntry<?>> jarProcessors;
+	private final String cacheValue;
+	private final boolean stableCacheValue;
 
 	private MinecraftJarProcessorManager(List<ProcessorEntry<?>> jarProcessors) {
 		this.jarProcessors = Collections.unmodifiableList(jarProcessors);
+		// Computed once, as the cache keys may hash the contents of the processor inputs
+		final List<ProcessorEntry<?>> sorted = jarProcessors.stream()
+				.sorted(Comparator.comparing(ProcessorEntry::name))
+				.toList();
+		final StringJoiner joiner = new StringJoiner("::");
+		boolean stable = true;
+
+		for (ProcessorEntry<?> entry : sorted) {
+			final String cacheKey = entry.spec().getCacheKey();
+
+			if (cacheKey == null) {
+				stable = false;
+			}
+
+			joiner.add(entry.name() + ":" + (cacheKey != null ? cacheKey : entry.spec().hashCode()));
+		}
+
+		this.cacheValue = joiner.toString();
+		this.stableCacheValue = stable;
 	}
 
 	@Nullable
@@ -92,20 +122,13 @@ public final class MinecraftJarProcessorManager {
 		return new MinecraftJarProcessorManager(entries);
 	}
 
-	private String getCacheValue() {
-		return jarProcessors.stream()
-				.sorted(Comparator.comparing(ProcessorEntry::name))
-				.map(ProcessorEntry::cacheValue)
-				.collect(Collectors.joining("::"));
-	}
-
 	private String getDebugString() {
 		final var sj = new StringJoiner("\n");
 
 		for (ProcessorEntry<?> jarProcessor : jarProcessors) {
 			sj.add(jarProcessor.name() + ":");
 			sj.add("\tHash: " + jarProcessor.hashCode());
-			sj.add("\tStr: " + jarProcessor.cacheValue());
+			sj.add("\tKey: " + jarProcessor.spec().getCacheKey());
 		}
 
 		return sj.toString();
@@ -113,11 +136,24 @@ public final class MinecraftJarProcessorManager {
 
 	public String getJarHash() {
 		//fabric-loom:mod-javadoc:-1289977000
-		return Checksum.sha1Hex(getCacheValue().getBytes(StandardCharsets.UTF_8)).substring(0, 10);
+		return Checksum.sha1Hex(cacheValue.getBytes(StandardCharsets.UTF_8)).substring(0, 10);
 	}
 
 	public String getSourceMappingsHash() {
-		return Checksum.sha1Hex(getCacheValue().getBytes(StandardCharsets.UTF_8));
+		return Checksum.sha1Hex(cacheValue.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * @return a sha256 hash of the cache keys of every processor spec, or null when a spec does not provide a stable
+	 * key and the processed jars cannot be shared between projects
+	 */
+	@Nullable
+	public String getSharedCacheKey() {
+		if (!stableCacheValue) {
+			return null;
+		}
+
+		return Checksum.toHex(Checksum.sha256(cacheValue));
 	}
 
 	public boolean requiresProcessingJar(Path jar) {
@@ -132,13 +168,108 @@ public final class MinecraftJarProcessorManager {
 	}
 
 	public void processJar(Path jar, ProcessorContext context) throws IOException {
+		// Consecutive processors that transform classes share a single pass over the jar
+		final List<ProcessorEntry<?>> classProcessors = new ArrayList<>();
+
 		for (ProcessorEntry<?> entry : jarProcessors) {
+			if (entry.classProcessor() != null) {
+				classProcessors.add(entry);
+				continue;
+			}
+
+			transformClasses(jar, classProcessors, context);
+			classProcessors.clear();
+
 			try {
 				entry.processJar(jar, context);
 			} catch (IOException e) {
 				throw new IOException("Failed to process jar when running jar processor: %s".formatted(entry.name()), e);
 			}
 		}
+
+		transformClasses(jar, classProcessors, context);
+	}
+
+	private static void transformClasses(Path jar, List<ProcessorEntry<?>> entries, ProcessorContext context) throws IOException {
+		final List<MinecraftJarProcessor.ClassVisitorFactory> factories = new ArrayList<>();
+
+		for (ProcessorEntry<?> entry : entries) {
+			try {
+				final MinecraftJarProcessor.ClassVisitorFactory factory = entry.createVisitorFactory(context);
+
+				if (factory != null) {
+					factories.add(factory);
+				}
+			} catch (IOException e) {
+				throw new IOException("Failed to process jar when running jar processor: %s".formatted(entry.name()), e);
+			}
+		}
+
+		if (!factories.isEmpty()) {
+			LOGGER.debug("Transforming classes with {} processors", factories.size());
+			transformClasses(jar, factories);
+		}
+	}
+
+	/**
+	 * Transform the classes of a jar in a single parallel pass, each class is passed through the visitors of the
+	 * factories in order.
+	 */
+	public static void transformClasses(Path jar, List<MinecraftJarProcessor.ClassVisitorFactory> factories) throws IOException {
+		try (ZipRewriter zip = ZipRewriter.open(jar)) {
+			final Map<String, CompletableFuture<byte[]>> transformed = new LinkedHashMap<>();
+
+			for (String name : zip.getEntryNames()) {
+				if (!name.endsWith(".class")) {
+					continue;
+				}
+
+				final String className = name.substring(0, name.length() - ".class".length());
+				final List<MinecraftJarProcessor.ClassVisitorFactory> visiting = factories.stream()
+						.filter(factory -> factory.shouldVisit(className))
+						.toList();
+
+				if (visiting.isEmpty()) {
+					continue;
+				}
+
+				transformed.put(name, CompletableFuture.supplyAsync(() -> {
+					try {
+						return transformClass(zip.read(name), className, visiting);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}, LoomExecutors.cpu()));
+			}
+
+			for (Map.Entry<String, CompletableFuture<byte[]>> entry : transformed.entrySet()) {
+				try {
+					zip.put(entry.getKey(), entry.getValue().join());
+				} catch (CompletionException e) {
+					if (e.getCause() instanceof UncheckedIOException uncheckedIOException) {
+						throw uncheckedIOException.getCause();
+					}
+
+					throw new RuntimeException("Failed to transform " + entry.getKey(), e.getCause());
+				}
+			}
+
+			zip.commit();
+		}
+	}
+
+	private static byte[] transformClass(byte[] input, String className, List<MinecraftJarProcessor.ClassVisitorFactory> factories) {
+		final ClassReader reader = new ClassReader(input);
+		final ClassWriter writer = new ClassWriter(0);
+		ClassVisitor visitor = writer;
+
+		// Chain in reverse, so that the first processor sees the class first
+		for (int i = factories.size() - 1; i >= 0; i--) {
+			visitor = factories.get(i).createVisitor(className, visitor);
+		}
+
+		reader.accept(visitor, 0);
+		return writer.toByteArray();
 	}
 
 	public boolean processMappings(MemoryMappingTree mappings, MappingProcessorContext context) {
@@ -153,16 +284,21 @@ public final class MinecraftJarProcessorManager {
 		return transformed;
 	}
 
-	record ProcessorEntry<S extends MinecraftJarProcessor.Spec>(S spec, MinecraftJarProcessor<S> processor, @Nullable MinecraftJarProcessor.MappingsProcessor<S> mappingsProcessor) {
+	record ProcessorEntry<S extends MinecraftJarProcessor.Spec>(S spec, MinecraftJarProcessor<S> processor, @Nullable MinecraftJarProcessor.MappingsProcessor<S> mappingsProcessor, @Nullable MinecraftJarProcessor.ClassProcessor<S> classProcessor) {
 		@SuppressWarnings("unchecked")
 		ProcessorEntry(MinecraftJarProcessor<?> processor, MinecraftJarProcessor.Spec spec) {
-			this((S) Objects.requireNonNull(spec), (MinecraftJarProcessor<S>) processor, (MinecraftJarProcessor.MappingsProcessor<S>) processor.processMappings());
+			this((S) Objects.requireNonNull(spec), (MinecraftJarProcessor<S>) processor, (MinecraftJarProcessor.MappingsProcessor<S>) processor.processMappings(), (MinecraftJarProcessor.ClassProcessor<S>) processor.processClasses());
 		}
 
 		private void processJar(Path jar, ProcessorContext context) throws IOException {
 			processor().processJar(jar, spec, context);
 		}
 
+		@Nullable
+		private MinecraftJarProcessor.ClassVisitorFactory createVisitorFactory(ProcessorContext context) throws IOException {
+			return Objects.requireNonNull(classProcessor()).createVisitorFactory(spec, context);
+		}
+
 		private boolean processMappings(MemoryMappingTree mappings, MappingProcessorContext context) {
 			if (mappingsProcessor() == null) {
 				return false;
@@ -174,9 +310,5 @@ public final class MinecraftJarProcessorManager {
 		private String name() {
 			return processor.getName();
 		}
-
-		private String cacheValue() {
-			return processor.getName() + ":" + spec.hashCode();
-		}
 	}
 }
@@ -0,0 +1,227 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.configuration.processors;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.fabricmc.loom.util.Checksum;
+
+/**
+ * A content addressed cache of processed Minecraft jars, shared between projects through the user cache.
+ *
+ * <p>Each jar is keyed by the hash of the unprocessed jar and the stable cache keys of the processor specs, see
+ * {@link MinecraftJarProcessorManager#getSharedCacheKey()}. Projects with the same processors share a single processed
+ * jar, instead of each processing Minecraft themselves.
+ *
+ * <p>A jar is created while holding a file lock, so that concurrent builds wait for each other rather than processing
+ * the same jar twice. The least recently used jars are deleted once the cache grows past its maximum size.
+ */
+public final class ProcessedJarCache {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ProcessedJarCache.class);
+	private static final int VERSION = 1;
+	// Jars used more recently than this are never evicted, as another build may be about to link them
+	private static final Duration MIN_AGE = Duration.ofMinutes(10);
+	// File locks are held by the JVM, so threads of the same JVM must also be kept apart
+	private static final Map<Path, ReentrantLock> LOCKS = new ConcurrentHashMap<>();
+
+	private final Path directory;
+	private final long maxSize;
+
+	private ProcessedJarCache(Path directory, long maxSize) {
+		this.directory = directory;
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * @param maxSize the size in bytes that the cache is trimmed to after adding a jar
+	 */
+	public static ProcessedJarCache create(Path directory, long maxSize) {
+		return new ProcessedJarCache(directory.resolve("v" + VERSION), maxSize);
+	}
+
+	/**
+	 * @param inputJar the unprocessed jar
+	 * @param context strings describing everything else that affects the processed jar
+	 */
+	public String getKey(Path inputJar, String... context) throws IOException {
+		final Hasher hasher = Hashing.sha256().newHasher()
+				.putString(Checksum.toHex(Checksum.sha256(inputJar.toFile())), StandardCharsets.UTF_8);
+
+		for (String s : context) {
+			hasher.putByte((byte) 0);
+			hasher.putString(s, StandardCharsets.UTF_8);
+		}
+
+		return hasher.hash().toString();
+	}
+
+	/**
+	 * Get the cached jar, creating it first when it is not cached.
+	 *
+	 * @param refresh when true the jar is created again, replacing any cached jar
+	 * @return the cached jar, this must not be modified as it may be linked into the project caches
+	 */
+	public Path getOrCreate(String key, boolean refresh, JarCreator creator) throws IOException {
+		final Path path = getPath(key);
+		Files.createDirectories(path.getParent());
+
+		try (BucketLock lock = lock(path.getParent())) {
+			if (!refresh && Files.exists(path)) {
+				LOGGER.info("Using processed jar {} from the shared cache", key);
+				// Mark as used so that it is evicted last
+				Files.setLastModifiedTime(path, FileTime.from(Instant.now()));
+				return path;
+			}
+
+			final Path tempFile = Files.createTempFile(path.getParent(), key + "-", ".jar");
+
+			try {
+				Files.delete(tempFile);
+				creator.create(tempFile);
+				Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(tempFile);
+			}
+		}
+
+		try {
+			evict();
+		} catch (IOException e) {
+			LOGGER.warn("Failed to trim the processed jar cache", e);
+		}
+
+		return path;
+	}
+
+	private Path getPath(String key) {
+		return directory.resolve(key.substring(0, 2)).resolve(key + ".jar");
+	}
+
+	private void evict() throws IOException {
+		final List<CachedJar> jars = new ArrayList<>();
+		long size = 0;
+
+		try (Stream<Path> stream = Files.walk(directory)) {
+			for (Path path : stream.filter(ProcessedJarCache::isCachedJar).toList()) {
+				final CachedJar jar = new CachedJar(path, Files.size(path), Files.getLastModifiedTime(path).toInstant());
+				jars.add(jar);
+				size += jar.size();
+			}
+		}
+
+		if (size <= maxSize) {
+			return;
+		}
+
+		final Instant cutoff = Instant.now().minus(MIN_AGE);
+		jars.sort(Comparator.comparing(CachedJar::lastUsed));
+
+		for (CachedJar jar : jars) {
+			if (size <= maxSize || jar.lastUsed().isAfter(cutoff)) {
+				break;
+			}
+
+			try (BucketLock lock = lock(jar.path().getParent())) {
+				Files.deleteIfExists(jar.path());
+			}
+
+			LOGGER.debug("Evicted processed jar {}", jar.path());
+			size -= jar.size();
+		}
+	}
+
+	// Locks a directory of the cache against other threads and processes
+	private static BucketLock lock(Path bucket) throws IOException {
+		final ReentrantLock threadLock = LOCKS.computeIfAbsent(bucket, p -> new ReentrantLock());
+		threadLock.lock();
+
+		try {
+			final FileChannel channel = FileChannel.open(bucket.resolve(".lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+
+			try {
+				return new BucketLock(threadLock, channel, channel.lock());
+			} catch (IOException | RuntimeException e) {
+				channel.close();
+				throw e;
+			}
+		} catch (IOException | RuntimeException e) {
+			threadLock.unlock();
+			throw e;
+		}
+	}
+
+	// Skips the lock and temp files, the name of a cached jar is its sha256 hash
+	private static boolean isCachedJar(Path path) {
+		final String fileName = path.getFileName().toString();
+		return fileName.length() == 64 + ".jar".length() && fileName.endsWith(".jar") && Files.isRegularFile(path);
+	}
+
+	@FunctionalInterface
+	public interface JarCreator {
+		/**
+		 * Create the processed jar.
+		 *
+		 * @param output the path to write the jar to, this does not exist yet
+		 */
+		void create(Path output) throws IOException;
+	}
+
+	private record BucketLock(ReentrantLock threadLock, FileChannel channel, FileLock fileLock) implements Closeable {
+		@Override
+		public void close() throws IOException {
+			try (channel) {
+				fileLock.release();
+			} finally {
+				threadLock.unlock();
+			}
+		}
+	}
+
+	private record CachedJar(Path path, long size, Instant lastUsed) {
+	}
+}
@@ -41,6 +41,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.BiFunction;
@@ -54,6 +55,8 @@ import java.util.stream.Stream;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Stopwatch;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import dev.architectury.loom.forge.UserdevConfig;
 import dev.architectury.loom.forge.tool.ForgeToolValueSource;
 import dev.architectury.loom.util.MappingOption;
@@ -62,6 +65,7 @@ import net.minecraftforge.fart.api.Transformer;
 import org.gradle.api.Project;
 import org.gradle.api.file.FileCollection;
 import org.gradle.api.logging.Logger;
+import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
@@ -72,9 +76,11 @@ import org.objectweb.asm.Opcodes;
 import net.fabricmc.loom.LoomGradleExtension;
 import net.fabricmc.loom.build.IntermediaryNamespaces;
 import net.fabricmc.loom.configuration.accesstransformer.AccessTransformerJarProcessor;
+import net.fabricmc.loom.configuration.providers.forge.binpatch.BinaryPatcher;
 import net.fabricmc.loom.configuration.providers.forge.legacy.MinecraftLegacyPatchedProvider;
 import net.fabricmc.loom.configuration.providers.forge.mcpconfig.McpConfigProvider;
 import net.fabricmc.loom.configuration.providers.forge.mcpconfig.McpExecutor;
+import net.fabricmc.loom.configuration.providers.forge.mcpconfig.McpStepCache;
 import net.fabricmc.loom.configuration.providers.forge.minecraft.ForgeMinecraftProvider;
 import net.fabricmc.loom.configuration.providers.mappings.TinyMappingsService;
 import net.fabricmc.loom.configuration.providers.minecraft.MinecraftProvider;
@@ -100,6 +106,8 @@ public class MinecraftPatchedProvider {
 	protected static final String LOOM_PATCH_VERSION_KEY = "Loom-Patch-Version";
 	protected static final String CURRENT_LOOM_PATCH_VERSION = "9";
 	protected static final String NAME_MAPPING_SERVICE_PATH = "/inject/META-INF/services/cpw.mods.modlauncher.api.INameMappingService";
+	private static final Map<String, String> BINARY_PATCHER_PLACEHOLDERS = Map.of("--clean", "{clean}", "--output", "{output}", "--apply", "{patch}");
+	private static final Pattern VIGNETTE_PARAMETERS = Pattern.compile("p_[0-9a-zA-Z]+_(?:[0-9a-zA-Z]+_)?");
 
 	protected final Project project;
 	protected final Logger logger;
@@ -264,8 +272,7 @@ public class MinecraftPatchedProvider {
 
 				completer.add(() -> {
 					byte[] bytes = Files.readAllBytes(file);
-					Transformer.ClassEntry entry = Transformer.ClassEntry.create(file.toString(), 0, bytes);
-					byte[] out = transformer.process(entry).getData();
+					byte[] out = fixParameterAnnotation(transformer, file.toString(), bytes);
 
 					if (!Arrays.equals(bytes, out)) {
 						Files.write(file, out);
@@ -279,46 +286,24 @@ public class MinecraftPatchedProvider {
 		logger.info(":fixed parameter annotations for " + jarFile.toAbsolutePath() + " in " + stopwatch);
 	}
 
+	private static byte[] fixParameterAnnotation(Transformer transformer, String name, byte[] bytes) {
+		Transformer.ClassEntry entry = Transformer.ClassEntry.create(name, 0, bytes);
+		return transformer.process(entry).getData();
+	}
+
 	private void deleteParameterNames(Path jarFile) throws Exception {
 		logger.info(":deleting parameter names for " + jarFile.toAbsolutePath());
 		Stopwatch stopwatch = Stopwatch.createStarted();
 
 		try (FileSystemUtil.Delegate fs = FileSystemUtil.getJarFileSystem(jarFile, false)) {
 			ThreadingUtils.TaskCompleter completer = ThreadingUtils.taskCompleter();
-			Pattern vignetteParameters = Pattern.compile("p_[0-9a-zA-Z]+_(?:[0-9a-zA-Z]+_)?");
 
 			for (Path file : (Iterable<? extends Path>) Files.walk(fs.getPath("/"))::iterator) {
 				if (!file.toString().endsWith(".class")) continue;
 
 				completer.add(() -> {
 					byte[] bytes = Files.readAllBytes(file);
-					ClassReader reader = new ClassReader(bytes);
-					ClassWriter writer = new ClassWriter(0);
-
-					reader.accept(new ClassVisitor(Opcodes.ASM9, writer) {
-						@Override
-						public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
-							return new MethodVisitor(Opcodes.ASM9, super.visitMethod(access, name, descriptor, signature, exceptions)) {
-								@Override
-								public void visitParameter(String name, int access) {
-									if (name != null && vignetteParameters.matcher(name).matches()) {
-										super.visitParameter(null, access);
-									} else {
-										super.visitParameter(name, access);
-									}
-								}
-
-								@Override
-								public void visitLocalVariable(String name, String descriptor, String signature, Label start, Label end, int index) {
-									if (!vignetteParameters.matcher(name).matches()) {
-										super.visitLocalVariable(name, descriptor, signature, start, end, index);
-									}
-								}
-							};
-						}
-					}, 0);
-
-					byte[] out = writer.toByteArray();
+					byte[] out = deleteParameterNames(bytes);
 
 					if (!Arrays.equals(bytes, out)) {
 						Files.write(file, out);
@@ -332,6 +317,36 @@ public class MinecraftPatchedProvider {
 		logger.info(":deleted parameter names for " + jarFile.toAbsolutePath() + " in " + stopwatch);
 	}
 
+	private static byte[] deleteParameterNames(byte[] bytes) {
+		ClassReader reader = new ClassReader(bytes);
+		ClassWriter writer = new ClassWriter(0);
+
+		reader.accept(new ClassVisitor(Opcodes.ASM9, writer) {
+			@Override
+			public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+				return new MethodVisitor(Opcodes.ASM9, super.visitMethod(access, name, descriptor, signature, exceptions)) {
+					@Override
+					public void visitParameter(String name, int access) {
+						if (name != null && VIGNETTE_PARAMETERS.matcher(name).matches()) {
+							super.visitParameter(null, access);
+						} else {
+							super.visitParameter(name, access);
+						}
+					}
+
+					@Override
+					public void visitLocalVariable(String name, String descriptor, String signature, Label start, Label end, int index) {
+						if (!VIGNETTE_PARAMETERS.matcher(name).matches()) {
+							super.visitLocalVariable(name, descriptor, signature, start, end, index);
+						}
+					}
+				};
+			}
+		}, 0);
+
+		return writer.toByteArray();
+	}
+
 	private File getForgeJar() {
 		return getExtension().getForgeUniversalProvider().getForge();
 	}
@@ -391,6 +406,23 @@ public class MinecraftPatchedProvider {
 		project.getLogger().lifecycle(":access transformed minecraft in " + stopwatch.stop());
 	}
 
+	/**
+	 * @return a hash of the access transformers applied by {@link #accessTransform}
+	 */
+	public static String hashAccessTransformers(Project project) throws IOException {
+		LoomGradleExtension extension = LoomGradleExtension.get(project);
+		Path userdevJar = extension.getForgeUserdevProvider().getUserdevJar().toPath();
+		Hasher hasher = Hashing.sha256().newHasher();
+
+		try (TempFiles tempFiles = new TempFiles()) {
+			for (String atFile : extractAccessTransformers(userdevJar, extension.getForgeUserdevProvider().getConfig().ats(), tempFiles)) {
+				hasher.putBytes(Files.readAllBytes(Path.of(atFile))).putByte((byte) 0);
+			}
+		}
+
+		return hasher.hash().toString();
+	}
+
 	private static List<String> extractAccessTransformers(Path jar, UserdevConfig.AccessTransformerLocation location, TempFiles tempFiles) throws IOException {
 		final List<String> extracted = new ArrayList<>();
 
@@ -496,18 +528,81 @@ public class MinecraftPatchedProvider {
 	protected void patchJars(Path input, Path output, Type type) throws Exception {
 		Stopwatch stopwatch = Stopwatch.createStarted();
 		logger.lifecycle(":patching jars");
-		patchJars(input, output, type.patches.apply(getExtension().getPatchProvider(), getExtension().getForgeUserdevProvider()));
+		Path patches = type.patches.apply(getExtension().getPatchProvider(), getExtension().getForgeUserdevProvider());
+		@Nullable BinaryPatcher binaryPatcher = createBinaryPatcher(patches);
+
+		if (binaryPatcher != null) {
+			// Patch, copy the missing classes and fix the parameters in a single pass
+			final boolean fixParameterAnnotations = getExtension().isForgeLikeAndNotOfficial();
+			final Transformer transformer = Transformer.parameterAnnotationFixerFactory().create(null);
+
+			binaryPatcher.copyMissingClasses(true)
+					.classTransformer(bytes -> {
+						byte[] out = deleteParameterNames(bytes);
+						return fixParameterAnnotations ? fixParameterAnnotation(transformer, new ClassReader(out).getClassName() + ".class", out) : out;
+					})
+					.apply(input, output);
+		} else {
+			patchJars(input, output, patches);
 
-		copyMissingClasses(input, output);
-		deleteParameterNames(output);
+			copyMissingClasses(input, output);
+			deleteParameterNames(output);
 
-		if (getExtension().isForgeLikeAndNotOfficial()) {
-			fixParameterAnnotation(output);
+			if (getExtension().isForgeLikeAndNotOfficial()) {
+				fixParameterAnnotation(output);
+			}
 		}
 
 		logger.lifecycle(":patched jars in " + stopwatch.stop());
 	}
 
+	/**
+	 * Creates the built-in patcher for the arguments of the userdev's binary patcher,
+	 * or returns null if the arguments are not understood and the patcher tool must be used.
+	 */
+	private @Nullable BinaryPatcher createBinaryPatcher(Path patches) throws IOException {
+		final List<String> args = getExtension().getForgeUserdevProvider().getConfig().binpatcher().args();
+		boolean keepData = false;
+		@Nullable String prefix = null;
+
+		for (int i = 0; i < args.size(); i++) {
+			final String arg = args.get(i);
+			final @Nullable String value = i + 1 < args.size() ? args.get(i + 1) : null;
+
+			switch (arg) {
+			case "--clean", "--output", "--apply" -> {
+				if (!BINARY_PATCHER_PLACEHOLDERS.get(arg).equals(value)) {
+					return unsupportedBinaryPatcherArgs(args);
+				}
+
+				i++;
+			}
+			case "--prefix" -> {
+				if (value == null) {
+					return unsupportedBinaryPatcherArgs(args);
+				}
+
+				prefix = value;
+				i++;
+			}
+			case "--data" -> keepData = true;
+			case "--unpatched" -> {
+				// The unpatched classes are always copied
+			}
+			default -> {
+				return unsupportedBinaryPatcherArgs(args);
+			}
+			}
+		}
+
+		return BinaryPatcher.load(patches, prefix).keepData(keepData);
+	}
+
+	private @Nullable BinaryPatcher unsupportedBinaryPatcherArgs(List<String> args) {
+		logger.info(":using the binary patcher tool for unsupported arguments {}", args);
+		return null;
+	}
+
 	private void patchJars(Path clean, Path output, Path patches) {
 		ForgeToolValueSource.exec(project, spec -> {
 			UserdevConfig.BinaryPatcherConfig config = getExtension().getForgeUserdevProvider().getConfig().binpatcher();
@@ -671,7 +766,16 @@ public class MinecraftPatchedProvider {
 
 	public McpExecutor createMcpExecutor(Path cache, Type type) {
 		McpConfigProvider provider = getExtension().getMcpConfigProvider();
-		return new McpExecutor(project, minecraftProvider, cache, provider, type.mcpId);
+		McpExecutor executor = new McpExecutor(project, minecraftProvider, cache, provider, type.mcpId);
+		executor.setStepCache(createMcpStepCache());
+		return executor;
+	}
+
+	/**
+	 * Creates the cache of MCP step outputs, which is shared with the other Forge toolchain steps.
+	 */
+	public McpStepCache createMcpStepCache() {
+		return McpStepCache.create(getExtension().getFiles().getUserCache().toPath().resolve("mcp_steps"));
 	}
 
 	public Path getMinecraftIntermediateJar() {
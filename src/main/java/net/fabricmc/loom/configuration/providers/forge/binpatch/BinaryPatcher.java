@@ -0,0 +1,275 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.configuration.providers.forge.binpatch;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.UnaryOperator;
+import java.util.jar.JarEntry;
+import java.util.jar.JarInputStream;
+import java.util.zip.Adler32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.compress.compressors.lzma.LZMACompressorInputStream;
+import org.jetbrains.annotations.Nullable;
+
+import net.fabricmc.loom.util.ParallelJarWriter;
+
+/**
+ * Applies Forge's binary patches to a jar, producing the same classes as Forge's binarypatcher tool.
+ *
+ * <p>The patch archive is an LZMA compressed jar of {@code .binpatch} files, each holding a GDIFF delta for one class.
+ * The clean jar is read once, with the classes being patched and transformed in parallel while the output is written.
+ */
+public final class BinaryPatcher {
+	private static final int PATCH_VERSION = 1;
+
+	// Class name -> patches in the order they are applied
+	private final Map<String, List<Patch>> patches;
+	private boolean keepData = false;
+	private boolean copyMissingClasses = false;
+	private UnaryOperator<byte[]> classTransformer = UnaryOperator.identity();
+
+	private BinaryPatcher(Map<String, List<Patch>> patches) {
+		this.patches = patches;
+	}
+
+	/**
+	 * Read the patches from an LZMA compressed patch archive.
+	 *
+	 * @param prefix the directory of the archive to read patches from, or {@code null} to read all patches
+	 */
+	public static BinaryPatcher load(Path patchArchive, @Nullable String prefix) throws IOException {
+		try (InputStream is = new LZMACompressorInputStream(new BufferedInputStream(Files.newInputStream(patchArchive)))) {
+			return read(is, prefix);
+		}
+	}
+
+	/**
+	 * Read the patches from an uncompressed patch archive.
+	 */
+	public static BinaryPatcher read(InputStream patchArchive, @Nullable String prefix) throws IOException {
+		final Map<String, List<Patch>> patches = new LinkedHashMap<>();
+
+		try (JarInputStream jar = new JarInputStream(patchArchive)) {
+			JarEntry entry;
+
+			while ((entry = jar.getNextJarEntry()) != null) {
+				final String name = entry.getName();
+
+				if (name.endsWith(".binpatch") && (prefix == null || name.startsWith(prefix + '/'))) {
+					final Patch patch = Patch.read(new DataInputStream(jar));
+					patches.computeIfAbsent(patch.obf(), k -> new ArrayList<>()).add(patch);
+				}
+			}
+		}
+
+		return new BinaryPatcher(patches);
+	}
+
+	/**
+	 * Copy the entries of the clean jar that are not classes into the output.
+	 */
+	public BinaryPatcher keepData(boolean keepData) {
+		this.keepData = keepData;
+		return this;
+	}
+
+	/**
+	 * Copy the classes of the clean jar that are not in the patched output, either because they have no patches or
+	 * because their patches remove them.
+	 */
+	public BinaryPatcher copyMissingClasses(boolean copyMissingClasses) {
+		this.copyMissingClasses = copyMissingClasses;
+		return this;
+	}
+
+	/**
+	 * Set a transformation that is applied to every class written to the output, after patching.
+	 * It is called concurrently and must be thread safe.
+	 */
+	public BinaryPatcher classTransformer(UnaryOperator<byte[]> classTransformer) {
+		this.classTransformer = classTransformer;
+		return this;
+	}
+
+	public int getPatchCount() {
+		return patches.size();
+	}
+
+	public void apply(Path clean, Path output) throws IOException {
+		final Set<String> processed = new HashSet<>();
+
+		try (ZipFile cleanJar = new ZipFile(clean.toFile());
+				ParallelJarWriter writer = ParallelJarWriter.create(output)) {
+			final Enumeration<? extends ZipEntry> entries = cleanJar.entries();
+
+			while (entries.hasMoreElements()) {
+				final ZipEntry entry = entries.nextElement();
+				final String name = entry.getName();
+
+				if (!name.endsWith(".class")) {
+					if (!keepData) {
+						continue;
+					}
+
+					if (entry.isDirectory()) {
+						writer.putDirectory(name, -1);
+					} else {
+						writer.put(name, -1, () -> readEntry(cleanJar, entry));
+					}
+
+					continue;
+				}
+
+				final String className = name.substring(0, name.length() - ".class".length());
+				final @Nullable List<Patch> classPatches = patches.get(className);
+
+				if (classPatches == null) {
+					if (copyMissingClasses) {
+						writer.put(name, -1, () -> classTransformer.apply(readEntry(cleanJar, entry)));
+					}
+
+					continue;
+				}
+
+				processed.add(className);
+
+				if (isRemoved(classPatches)) {
+					if (copyMissingClasses) {
+						// The patches are still validated, even though their output is discarded
+						writer.put(name, -1, () -> {
+							final byte[] bytes = readEntry(cleanJar, entry);
+							applyAll(bytes, classPatches);
+							return classTransformer.apply(bytes);
+						});
+					}
+
+					continue;
+				}
+
+				writer.put(name, -1, () -> classTransformer.apply(applyAll(readEntry(cleanJar, entry), classPatches)));
+			}
+
+			// New classes, in a stable order
+			for (Map.Entry<String, List<Patch>> entry : new TreeMap<>(patches).entrySet()) {
+				if (processed.contains(entry.getKey()) || isRemoved(entry.getValue())) {
+					continue;
+				}
+
+				writer.put(entry.getKey() + ".class", -1, () -> classTransformer.apply(applyAll(new byte[0], entry.getValue())));
+			}
+
+			// Wait for the pending entries before the clean jar is closed
+			writer.flush();
+		}
+	}
+
+	private static boolean isRemoved(List<Patch> classPatches) {
+		return classPatches.get(classPatches.size() - 1).data().length == 0;
+	}
+
+	private static byte[] applyAll(byte[] data, List<Patch> classPatches) throws IOException {
+		for (Patch patch : classPatches) {
+			data = patch.apply(data);
+		}
+
+		return data;
+	}
+
+	private static byte[] readEntry(ZipFile zipFile, ZipEntry entry) throws IOException {
+		try (InputStream is = zipFile.getInputStream(entry)) {
+			return is.readAllBytes();
+		}
+	}
+
+	/**
+	 * @param obf the internal name of the class in the clean jar
+	 * @param srg the internal name of the class in the patched jar, only used for display
+	 * @param exists whether the class exists before patching
+	 * @param checksum the Adler-32 checksum of the class before patching
+	 * @param data the GDIFF delta, empty if the class is removed
+	 */
+	private record Patch(String obf, String srg, boolean exists, int checksum, byte[] data) {
+		private static Patch read(DataInputStream input) throws IOException {
+			final int version = input.readUnsignedByte();
+
+			if (version != PATCH_VERSION) {
+				throw new IOException("Unsupported binary patch version: " + version);
+			}
+
+			final String obf = input.readUTF();
+			final String srg = input.readUTF();
+			final boolean exists = input.readBoolean();
+			final int checksum = exists ? input.readInt() : 0;
+			final byte[] data = new byte[input.readInt()];
+			input.readFully(data);
+			return new Patch(obf, srg, exists, checksum, data);
+		}
+
+		private byte[] apply(byte[] input) throws IOException {
+			if (exists && input.length == 0) {
+				throw new IOException("Patch expected %s to exist, but received empty data".formatted(describe()));
+			} else if (!exists && input.length > 0) {
+				throw new IOException("Patch expected %s to not exist, but received %d bytes".formatted(describe(), input.length));
+			}
+
+			final int actualChecksum = exists ? adler32(input) : 0;
+
+			if (actualChecksum != checksum) {
+				throw new IOException("Patch expected %s to have the checksum %s but it was %s".formatted(describe(), Integer.toHexString(checksum), Integer.toHexString(actualChecksum)));
+			}
+
+			if (data.length == 0) {
+				return new byte[0];
+			}
+
+			return GDiffPatcher.patch(input, data);
+		}
+
+		private String describe() {
+			return obf.equals(srg) ? obf : obf + " (" + srg + ")";
+		}
+
+		private static int adler32(byte[] bytes) {
+			final Adler32 adler32 = new Adler32();
+			adler32.update(bytes);
+			return (int) adler32.getValue();
+		}
+	}
+}
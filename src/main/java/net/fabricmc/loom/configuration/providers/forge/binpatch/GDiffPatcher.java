@@ -0,0 +1,116 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.configuration.providers.forge.binpatch;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+
+/**
+ * Applies a delta in the GDIFF format, as produced by the javaxdelta library that Forge's binary patches are made with.
+ *
+ * @see <a href="https://www.w3.org/TR/NOTE-gdiff-19970901">The GDIFF format</a>
+ */
+final class GDiffPatcher {
+	private static final int MAGIC = 0xD1FFD1FF;
+	private static final int VERSION = 4;
+
+	private static final int EOF = 0;
+	private static final int DATA_MAX = 246;
+	private static final int DATA_USHORT = 247;
+	private static final int DATA_INT = 248;
+	private static final int COPY_USHORT_UBYTE = 249;
+	private static final int COPY_USHORT_USHORT = 250;
+	private static final int COPY_USHORT_INT = 251;
+	private static final int COPY_INT_UBYTE = 252;
+	private static final int COPY_INT_USHORT = 253;
+	private static final int COPY_INT_INT = 254;
+	private static final int COPY_LONG_INT = 255;
+
+	private GDiffPatcher() {
+	}
+
+	static byte[] patch(byte[] source, byte[] delta) throws IOException {
+		final DataInputStream input = new DataInputStream(new ByteArrayInputStream(delta));
+
+		if (input.readInt() != MAGIC || input.readUnsignedByte() != VERSION) {
+			throw new IOException("Invalid GDIFF header");
+		}
+
+		final ByteArrayOutputStream output = new ByteArrayOutputStream(source.length + delta.length);
+
+		while (true) {
+			final int command = input.read();
+
+			if (command < 0) {
+				throw new EOFException("GDIFF delta ended without an EOF command");
+			}
+
+			switch (command) {
+			case EOF -> {
+				return output.toByteArray();
+			}
+			case DATA_USHORT -> data(input, output, input.readUnsignedShort());
+			case DATA_INT -> data(input, output, input.readInt());
+			case COPY_USHORT_UBYTE -> copy(source, output, input.readUnsignedShort(), input.readUnsignedByte());
+			case COPY_USHORT_USHORT -> copy(source, output, input.readUnsignedShort(), input.readUnsignedShort());
+			case COPY_USHORT_INT -> copy(source, output, input.readUnsignedShort(), input.readInt());
+			case COPY_INT_UBYTE -> copy(source, output, input.readInt(), input.readUnsignedByte());
+			case COPY_INT_USHORT -> copy(source, output, input.readInt(), input.readUnsignedShort());
+			case COPY_INT_INT -> copy(source, output, input.readInt(), input.readInt());
+			case COPY_LONG_INT -> copy(source, output, input.readLong(), input.readInt());
+			default -> {
+				// Commands 1 to 246 are followed by that many bytes of data
+				assert command <= DATA_MAX;
+				data(input, output, command);
+			}
+			}
+		}
+	}
+
+	private static void data(DataInputStream input, ByteArrayOutputStream output, int length) throws IOException {
+		if (length < 0) {
+			throw new IOException("Invalid GDIFF data length: " + length);
+		}
+
+		final byte[] data = input.readNBytes(length);
+
+		if (data.length != length) {
+			throw new EOFException("GDIFF delta ended inside a data command");
+		}
+
+		output.write(data, 0, length);
+	}
+
+	private static void copy(byte[] source, ByteArrayOutputStream output, long offset, int length) throws IOException {
+		if (offset < 0 || length < 0 || offset + length > source.length) {
+			throw new IOException("GDIFF copy of %d bytes at %d is outside of the %d byte source".formatted(length, offset, source.length));
+		}
+
+		output.write(source, (int) offset, length);
+	}
+}
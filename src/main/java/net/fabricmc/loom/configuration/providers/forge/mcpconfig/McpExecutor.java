@@ -27,18 +27,34 @@ package net.fabricmc.loom.configuration.providers.forge.mcpconfig;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.SortedMap;
 import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
 
 import com.google.common.base.Stopwatch;
 import com.google.common.hash.Hashing;
@@ -52,6 +68,8 @@ import org.gradle.api.artifacts.Configuration;
 import org.gradle.api.artifacts.Dependency;
 import org.gradle.api.logging.LogLevel;
 import org.gradle.api.logging.Logger;
+import org.gradle.api.provider.Provider;
+import org.gradle.process.ExecResult;
 import org.jetbrains.annotations.Nullable;
 
 import net.fabricmc.loom.LoomGradleExtension;
@@ -68,10 +86,21 @@ import net.fabricmc.loom.configuration.providers.forge.mcpconfig.steplogic.StepL
 import net.fabricmc.loom.configuration.providers.forge.mcpconfig.steplogic.StripLogic;
 import net.fabricmc.loom.configuration.providers.minecraft.MinecraftProvider;
 import net.fabricmc.loom.util.Constants;
+import net.fabricmc.loom.util.LoomExecutors;
 import net.fabricmc.loom.util.download.DownloadBuilder;
 import net.fabricmc.loom.util.function.CollectionUtil;
 import net.fabricmc.loom.util.gradle.GradleUtils;
 
+/**
+ * Executes the steps of an MCPConfig setup.
+ *
+ * <p>When a {@linkplain #setStepCache step cache} is set, the outputs of steps with a
+ * {@linkplain StepLogic#getCacheKey cache key} are stored in it and reused while their inputs do not change.
+ *
+ * <p>With {@value Constants.Properties#PARALLEL_MINECRAFT_SETUP} enabled, steps that do not depend on each other are
+ * executed concurrently. Anything that touches the Gradle project model (resolving dependencies and creating tool
+ * executions) is still done on the calling thread.
+ */
 public final class McpExecutor {
 	private static final LogLevel STEP_LOG_LEVEL = LogLevel.LIFECYCLE;
 	private final Project project;
@@ -81,8 +110,15 @@ public final class McpExecutor {
 	private final DependencySet dependencySet;
 	private final Map<String, McpConfigFunction> functions;
 	private final Map<String, String> config = new HashMap<>();
-	private final Map<String, String> extraConfig = new HashMap<>();
+	private final Map<String, String> extraConfig = new ConcurrentHashMap<>();
+	// Names of the config values that are files, only these are hashed for cache keys
+	private final Set<String> fileInputs = new HashSet<>();
+	private final boolean concurrent;
+	// Work that must run on the calling thread, submitted by concurrently executing steps
+	private final BlockingQueue<Runnable> projectTasks = new LinkedBlockingQueue<>();
+	private volatile @Nullable Thread projectThread = null;
 	private @Nullable StepLogic.Provider stepLogicProvider = null;
+	private @Nullable McpStepCache stepCache = null;
 
 	public McpExecutor(Project project, MinecraftProvider minecraftProvider, Path cache, McpConfigProvider provider, String environment) {
 		this.project = project;
@@ -93,6 +129,7 @@ public final class McpExecutor {
 		this.dependencySet = new DependencySet(this.steps);
 		this.dependencySet.skip(step -> getStepLogic(step.name(), step.type()) instanceof NoOpLogic);
 		this.dependencySet.setIgnoreDependenciesFilter(step -> getStepLogic(step.name(), step.type()).hasNoContext());
+		this.concurrent = GradleUtils.getBooleanProperty(project, Constants.Properties.PARALLEL_MINECRAFT_SETUP);
 
 		checkMinecraftVersion(provider);
 		addDefaultFiles(provider, environment);
@@ -149,6 +186,7 @@ public final class McpExecutor {
 		}
 
 		addConfig(key, path.toString());
+		fileInputs.add(key);
 	}
 
 	public void addConfig(String key, String value) {
@@ -171,7 +209,11 @@ public final class McpExecutor {
 		return stepCache;
 	}
 
-	private String resolve(McpConfigStep step, ConfigValue value) {
+	/**
+	 * @param output the output of the step, or {@code null} if it has not been set
+	 * @param forCacheKey whether to resolve the value for a cache key, replacing file inputs with a hash of their contents
+	 */
+	private String resolve(McpConfigStep step, ConfigValue value, @Nullable String output, boolean forCacheKey) {
 		return value.resolve(variable -> {
 			String name = variable.name();
 			@Nullable ConfigValue valueFromStep = step.config().get(name);
@@ -180,18 +222,38 @@ public final class McpExecutor {
 			// Also skip if it would recurse with the same variable.
 			if (valueFromStep != null && !valueFromStep.equals(variable)) {
 				// Otherwise, resolve the nested variable.
-				return resolve(step, valueFromStep);
+				return resolve(step, valueFromStep, output, forCacheKey);
+			}
+
+			// These are written by the step itself, so their location doesn't affect the output.
+			if (forCacheKey && (name.equals(ConfigValue.OUTPUT) || name.equals(ConfigValue.LOG))) {
+				return "{" + name + "}";
 			}
 
+			final String resolved;
+
 			if (config.containsKey(name)) {
-				return config.get(name);
+				resolved = config.get(name);
 			} else if (extraConfig.containsKey(name)) {
-				return extraConfig.get(name);
+				resolved = extraConfig.get(name);
+			} else if (name.equals(ConfigValue.OUTPUT) && output != null) {
+				resolved = output;
 			} else if (name.equals(ConfigValue.LOG)) {
-				return cache.resolve("log.log").toAbsolutePath().toString();
+				resolved = cache.resolve("log.log").toAbsolutePath().toString();
+			} else {
+				throw new IllegalArgumentException("Unknown MCP config variable: " + name);
+			}
+
+			// Only the MCP config files and the outputs of previous steps are inputs, other values are kept as they are
+			if (!forCacheKey || stepCache == null || !(fileInputs.contains(name) || name.endsWith(ConfigValue.PREVIOUS_OUTPUT_SUFFIX))) {
+				return resolved;
 			}
 
-			throw new IllegalArgumentException("Unknown MCP config variable: " + name);
+			try {
+				return stepCache.hashInput(Path.of(resolved));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
 		});
 	}
 
@@ -235,21 +297,157 @@ public final class McpExecutor {
 		extraConfig.clear();
 
 		int totalSteps = steps.size();
-		int currentStepIndex = 0;
-
 		project.getLogger().log(STEP_LOG_LEVEL, ":executing {} MCP steps", totalSteps);
 
-		for (McpConfigStep currentStep : steps) {
-			currentStepIndex++;
-			StepLogic stepLogic = getStepLogic(currentStep.name(), currentStep.type());
-			project.getLogger().log(STEP_LOG_LEVEL, ":step {}/{} - {}", currentStepIndex, totalSteps, stepLogic.getDisplayName(currentStep.name()));
+		final Map<String, StepRun> runs = new LinkedHashMap<>();
 
-			Stopwatch stopwatch = Stopwatch.createStarted();
-			stepLogic.execute(new ExecutionContextImpl(currentStep));
-			project.getLogger().log(STEP_LOG_LEVEL, ":{} done in {}", currentStep.name(), stopwatch.stop());
+		for (McpConfigStep step : steps) {
+			final StepLogic stepLogic = getStepLogic(step.name(), step.type());
+			runs.put(step.name(), new StepRun(step, stepLogic, runs.size() + 1, totalSteps, getDependencies(step, stepLogic, runs)));
+		}
+
+		final long startTime = System.nanoTime();
+
+		try {
+			if (concurrent) {
+				executeConcurrently(runs.values());
+			} else {
+				for (StepRun run : runs.values()) {
+					run.execute();
+				}
+			}
+		} finally {
+			project.getLogger().info(report(runs.values(), startTime));
+		}
+
+		return Path.of(extraConfig.get(steps.get(steps.size() - 1).name() + ConfigValue.PREVIOUS_OUTPUT_SUFFIX));
+	}
+
+	private static List<StepRun> getDependencies(McpConfigStep step, StepLogic stepLogic, Map<String, StepRun> previousRuns) {
+		final List<StepRun> dependencies = new ArrayList<>();
+
+		if (stepLogic.hasNoContext()) {
+			return dependencies;
+		}
+
+		for (ConfigValue value : step.config().values()) {
+			if (value instanceof ConfigValue.Variable variable && variable.name().endsWith(ConfigValue.PREVIOUS_OUTPUT_SUFFIX)) {
+				final String name = variable.name();
+				final @Nullable StepRun dependency = previousRuns.get(name.substring(0, name.length() - ConfigValue.PREVIOUS_OUTPUT_SUFFIX.length()));
+
+				if (dependency != null) {
+					dependencies.add(dependency);
+				}
+			}
+		}
+
+		return dependencies;
+	}
+
+	private void executeConcurrently(Collection<StepRun> runs) throws IOException {
+		projectThread = Thread.currentThread();
+
+		try {
+			for (StepRun run : runs) {
+				run.future = CompletableFuture.allOf(run.dependencyFutures())
+						.thenRunAsync(run::executeUnchecked, LoomExecutors.io());
+			}
+
+			final CompletableFuture<Void> all = CompletableFuture.allOf(runs.stream().map(run -> run.future).toArray(CompletableFuture[]::new));
+			// Wake up the calling thread once everything has completed
+			all.whenComplete((result, throwable) -> projectTasks.add(() -> { }));
+
+			// Run any project work requested by the steps until they have all completed
+			while (!all.isDone()) {
+				projectTasks.take().run();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while executing MCP steps", e);
+		} finally {
+			projectThread = null;
+			projectTasks.clear();
 		}
 
-		return Path.of(extraConfig.get(ConfigValue.OUTPUT));
+		for (StepRun run : runs) {
+			try {
+				run.future.join();
+			} catch (CompletionException e) {
+				Throwable cause = e;
+
+				while (cause instanceof CompletionException && cause.getCause() != null) {
+					cause = cause.getCause();
+				}
+
+				if (cause instanceof IOException ioe) {
+					throw ioe;
+				} else if (cause instanceof RuntimeException re) {
+					throw re;
+				} else if (cause instanceof Error error) {
+					throw error;
+				}
+
+				throw new IOException("Failed to execute MCP step " + run.step.name(), cause);
+			}
+		}
+	}
+
+	/**
+	 * Runs an action on the calling thread of {@link #executeSteps}, as the Gradle project model must not be touched
+	 * by the steps executing concurrently.
+	 */
+	private <T> T onProjectThread(Callable<T> action) {
+		final @Nullable Thread thread = projectThread;
+
+		try {
+			if (thread == null || thread == Thread.currentThread()) {
+				return action.call();
+			}
+
+			final FutureTask<T> task = new FutureTask<>(action);
+			projectTasks.add(task);
+			return task.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException re) {
+				throw re;
+			} else if (e.getCause() instanceof Error error) {
+				throw error;
+			}
+
+			throw new RuntimeException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static String report(Collection<StepRun> runs, long startTime) {
+		final StringBuilder sb = new StringBuilder("MCP steps:");
+
+		for (StepRun run : runs) {
+			if (run.endTime == 0) {
+				sb.append("\n  %-24s not run".formatted(run.step.name()));
+				continue;
+			}
+
+			sb.append("\n  %-24s %8s  (%s -> %s)%s".formatted(
+					run.step.name(),
+					seconds(run.endTime - run.startTime),
+					seconds(run.startTime - startTime),
+					seconds(run.endTime - startTime),
+					run.cached ? " cached" : ""
+			));
+		}
+
+		return sb.toString();
+	}
+
+	private static String seconds(long nanos) {
+		return String.format(Locale.ROOT, "%.2fs", nanos / 1_000_000_000D);
 	}
 
 	/**
@@ -261,6 +459,15 @@ public final class McpExecutor {
 		this.stepLogicProvider = stepLogicProvider;
 	}
 
+	/**
+	 * Sets the cache used to store the outputs of steps between builds.
+	 *
+	 * @param stepCache the cache, or null to disable
+	 */
+	public void setStepCache(@Nullable McpStepCache stepCache) {
+		this.stepCache = stepCache;
+	}
+
 	private StepLogic getStepLogic(String name, String type) {
 		if (stepLogicProvider != null) {
 			final @Nullable StepLogic custom = stepLogicProvider.getStepLogic(name, type).orElse(null);
@@ -287,13 +494,109 @@ public final class McpExecutor {
 		};
 	}
 
+	private final class StepRun {
+		private final McpConfigStep step;
+		private final StepLogic stepLogic;
+		private final int index;
+		private final int totalSteps;
+		private final List<StepRun> dependencies;
+		private CompletableFuture<Void> future;
+		private volatile boolean cached;
+		private volatile long startTime;
+		private volatile long endTime;
+
+		private StepRun(McpConfigStep step, StepLogic stepLogic, int index, int totalSteps, List<StepRun> dependencies) {
+			this.step = step;
+			this.stepLogic = stepLogic;
+			this.index = index;
+			this.totalSteps = totalSteps;
+			this.dependencies = dependencies;
+		}
+
+		private CompletableFuture<?>[] dependencyFutures() {
+			return dependencies.stream().map(run -> run.future).toArray(CompletableFuture[]::new);
+		}
+
+		private void execute() throws IOException {
+			project.getLogger().log(STEP_LOG_LEVEL, ":step {}/{} - {}", index, totalSteps, stepLogic.getDisplayName(step.name()));
+			Stopwatch stopwatch = Stopwatch.createStarted();
+			startTime = System.nanoTime();
+
+			try {
+				final ExecutionContextImpl context = new ExecutionContextImpl(step);
+				final @Nullable String key = getCacheKey(context);
+
+				if (key == null) {
+					stepLogic.execute(context);
+				} else {
+					@Nullable Path output = stepCache.get(key);
+
+					if (output == null) {
+						output = stepCache.put(key, workingDirectory -> {
+							context.workingDirectory = workingDirectory;
+							stepLogic.execute(context);
+							return Path.of(context.getOutput());
+						});
+					} else {
+						cached = true;
+					}
+
+					context.setOutput(output);
+				}
+			} finally {
+				endTime = System.nanoTime();
+			}
+
+			project.getLogger().log(STEP_LOG_LEVEL, ":{} {} in {}", step.name(), cached ? "restored from cache" : "done", stopwatch.stop());
+		}
+
+		private void executeUnchecked() {
+			try {
+				execute();
+			} catch (IOException e) {
+				throw new CompletionException(e);
+			}
+		}
+
+		private @Nullable String getCacheKey(ExecutionContextImpl context) throws IOException {
+			if (stepCache == null) {
+				return null;
+			}
+
+			final @Nullable String logicKey = stepLogic.getCacheKey(context);
+
+			if (logicKey == null) {
+				return null;
+			}
+
+			final SortedMap<String, String> resolvedConfig = new TreeMap<>();
+
+			for (Map.Entry<String, ConfigValue> entry : step.config().entrySet()) {
+				resolvedConfig.put(entry.getKey(), context.resolveCacheKey(entry.getValue()));
+			}
+
+			return stepCache.getKey(step.type(), logicKey, resolvedConfig);
+		}
+	}
+
 	private class ExecutionContextImpl implements StepLogic.ExecutionContext {
 		private final McpConfigStep step;
+		// The directory of the step's files when its output is being cached, otherwise they go into the step cache
+		private @Nullable Path workingDirectory = null;
+		private @Nullable String output = null;
 
 		ExecutionContextImpl(McpConfigStep step) {
 			this.step = step;
 		}
 
+		private String getOutput() {
+			if (output == null) {
+				throw new IllegalStateException("MCP step " + step.name() + " did not set an output");
+			}
+
+			return output;
+		}
+
 		@Override
 		public Logger logger() {
 			return project.getLogger();
@@ -307,13 +610,17 @@ public final class McpExecutor {
 		@Override
 		public Path setOutput(Path output) {
 			String absolutePath = output.toAbsolutePath().toString();
-			extraConfig.put(ConfigValue.OUTPUT, absolutePath);
+			this.output = absolutePath;
 			extraConfig.put(step.name() + ConfigValue.PREVIOUS_OUTPUT_SUFFIX, absolutePath);
 			return output;
 		}
 
 		@Override
 		public Path cache() throws IOException {
+			if (workingDirectory != null) {
+				return workingDirectory;
+			}
+
 			return createStepCache(step.name());
 		}
 
@@ -324,27 +631,53 @@ public final class McpExecutor {
 
 		@Override
 		public String resolve(ConfigValue value) {
-			return McpExecutor.this.resolve(step, value);
+			return McpExecutor.this.resolve(step, value, output, false);
+		}
+
+		@Override
+		public String resolveCacheKey(ConfigValue value) throws IOException {
+			try {
+				return McpExecutor.this.resolve(step, value, output, true);
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
 		}
 
 		@Override
 		public Path downloadFile(String url) throws IOException {
 			Path path = getDownloadCache().resolve(Hashing.sha256().hashString(url, StandardCharsets.UTF_8).toString().substring(0, 24));
-			redirectAwareDownload(url, path);
+
+			// Steps running concurrently may use the same file
+			synchronized (McpExecutor.this) {
+				if (Files.notExists(path)) {
+					// Moved into place once complete, so that an interrupted download is never reused
+					final Path tempFile = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+
+					try {
+						redirectAwareDownload(url, tempFile);
+						Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+					} finally {
+						Files.deleteIfExists(tempFile);
+					}
+				}
+			}
+
 			return path;
 		}
 
 		@Override
 		public Path downloadDependency(String notation) {
-			final Dependency dependency = project.getDependencies().create(notation);
-			final Configuration configuration = project.getConfigurations().detachedConfiguration(dependency);
-			configuration.setTransitive(false);
-			return configuration.getSingleFile().toPath();
+			return onProjectThread(() -> {
+				final Dependency dependency = project.getDependencies().create(notation);
+				final Configuration configuration = project.getConfigurations().detachedConfiguration(dependency);
+				configuration.setTransitive(false);
+				return configuration.getSingleFile().toPath();
+			});
 		}
 
 		@Override
 		public DownloadBuilder downloadBuilder(String url) {
-			return LoomGradleExtension.get(project).download(url);
+			return onProjectThread(() -> LoomGradleExtension.get(project).download(url));
 		}
 
 		// Some of these files linked to the old Forge maven, let's follow the redirects to the new one.
@@ -362,20 +695,22 @@ public final class McpExecutor {
 				redirectAwareDownload(connection.getHeaderField("Location"), path);
 			} else {
 				try (InputStream in = connection.getInputStream()) {
-					Files.copy(in, path);
+					Files.copy(in, path, StandardCopyOption.REPLACE_EXISTING);
 				}
 			}
 		}
 
 		@Override
 		public void javaexec(Action<? super ForgeToolExecutor.Settings> configurator) {
-			ForgeToolValueSource.exec(project, configurator);
+			// Only creating the provider touches the project, the tool itself runs on the step's thread
+			final Provider<ExecResult> result = onProjectThread(() -> ForgeToolValueSource.create(project, configurator));
+			result.get().rethrowFailure().assertNormalExitValue();
 		}
 
 		@Override
 		public Set<File> getMinecraftLibraries() {
 			// (1.2) minecraftRuntimeLibraries contains the compile-time libraries as well.
-			return project.getConfigurations().getByName(Constants.Configurations.MINECRAFT_RUNTIME_LIBRARIES).resolve();
+			return onProjectThread(() -> project.getConfigurations().getByName(Constants.Configurations.MINECRAFT_RUNTIME_LIBRARIES).resolve());
 		}
 	}
 }
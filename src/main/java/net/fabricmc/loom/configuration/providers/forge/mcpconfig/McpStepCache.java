@@ -0,0 +1,259 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.configuration.providers.forge.mcpconfig;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.apache.commons.io.FileUtils;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.fabricmc.loom.util.Checksum;
+
+/**
+ * A content addressed cache of MCP step outputs, shared between projects through the user cache.
+ *
+ * <p>Each step is keyed by its type, the cache key of its {@linkplain net.fabricmc.loom.configuration.providers.forge.mcpconfig.steplogic.StepLogic logic}
+ * and its config values, with any file inputs replaced by the hash of their contents. A step whose inputs have not changed
+ * is not executed again, its cached output is used instead.
+ *
+ * <p>Every entry is a directory holding the whole working directory of the step, so that any files written next to
+ * the output (such as patch rejects) are kept. It is written to a temporary directory and moved into place once
+ * complete.
+ */
+public final class McpStepCache {
+	private static final Logger LOGGER = LoggerFactory.getLogger(McpStepCache.class);
+	private static final int VERSION = 1;
+	private static final Duration MAX_AGE = Duration.ofDays(14);
+	// Stores the path of the output file, relative to the entry directory
+	private static final String OUTPUT_MARKER = ".output";
+
+	private final Path directory;
+	// Absolute path -> content hash, cached outputs are recorded by their key so that they never need to be read
+	private final Map<String, String> inputHashes = new ConcurrentHashMap<>();
+
+	private McpStepCache(Path directory) {
+		this.directory = directory;
+	}
+
+	public static McpStepCache create(Path directory) {
+		final Path versioned = directory.resolve("v" + VERSION);
+
+		try {
+			deleteUnused(versioned);
+		} catch (IOException e) {
+			LOGGER.warn("Failed to clean up the MCP step cache", e);
+		}
+
+		return new McpStepCache(versioned);
+	}
+
+	/**
+	 * @param type the type of the step
+	 * @param logicKey the cache key of the step logic
+	 * @param config the step's config values, resolved for the cache key
+	 */
+	public String getKey(String type, String logicKey, SortedMap<String, String> config) {
+		final Hasher hasher = Hashing.sha256().newHasher()
+				.putString(type, StandardCharsets.UTF_8)
+				.putByte((byte) 0)
+				.putString(logicKey, StandardCharsets.UTF_8)
+				.putByte((byte) 0);
+
+		for (Map.Entry<String, String> entry : config.entrySet()) {
+			hasher.putString(entry.getKey(), StandardCharsets.UTF_8)
+					.putByte((byte) 0)
+					.putString(entry.getValue(), StandardCharsets.UTF_8)
+					.putByte((byte) 0);
+		}
+
+		return hasher.hash().toString();
+	}
+
+	/**
+	 * Replaces a file input of a step with a hash of its contents. Directories are hashed by the paths and contents
+	 * of their files.
+	 *
+	 * @throws NoSuchFileException if the input does not exist
+	 */
+	public String hashInput(Path input) throws IOException {
+		final Path path = input.toAbsolutePath();
+		final String existing = inputHashes.get(path.toString());
+
+		if (existing != null) {
+			return existing;
+		}
+
+		final String hash;
+
+		if (Files.isRegularFile(path)) {
+			hash = "file:" + Checksum.toHex(Checksum.sha256(path.toFile()));
+		} else if (Files.isDirectory(path)) {
+			hash = "dir:" + hashDirectory(path);
+		} else {
+			throw new NoSuchFileException(path.toString());
+		}
+
+		inputHashes.put(path.toString(), hash);
+		return hash;
+	}
+
+	/**
+	 * @return the cached output of the step, or {@code null} if it has not been cached
+	 */
+	@Nullable
+	public Path get(String key) throws IOException {
+		final Path entry = getPath(key);
+		final Path marker = entry.resolve(OUTPUT_MARKER);
+
+		if (Files.notExists(marker)) {
+			return null;
+		}
+
+		final Path output = entry.resolve(Files.readString(marker, StandardCharsets.UTF_8));
+
+		if (Files.notExists(output)) {
+			return null;
+		}
+
+		// Mark as used so that it is not cleaned up
+		Files.setLastModifiedTime(marker, FileTime.from(Instant.now()));
+		inputHashes.put(output.toAbsolutePath().toString(), "step:" + key);
+		return output;
+	}
+
+	/**
+	 * Executes a step in a temporary directory and stores its working directory in the cache.
+	 *
+	 * @return the cached output of the step
+	 */
+	public Path put(String key, StepExecutor executor) throws IOException {
+		final Path entry = getPath(key);
+		Files.createDirectories(entry.getParent());
+		final Path tempDir = Files.createTempDirectory(entry.getParent(), key + "-");
+
+		try {
+			final Path output = executor.execute(tempDir).toAbsolutePath();
+			final Path tempDirAbsolute = tempDir.toAbsolutePath();
+
+			if (!output.startsWith(tempDirAbsolute) || !Files.isRegularFile(output)) {
+				throw new IOException("MCP step output %s was not written to its working directory %s".formatted(output, tempDir));
+			}
+
+			final String relativeOutput = tempDirAbsolute.relativize(output).toString().replace(output.getFileSystem().getSeparator(), "/");
+			Files.writeString(tempDir.resolve(OUTPUT_MARKER), relativeOutput, StandardCharsets.UTF_8);
+
+			try {
+				Files.move(tempDir, entry, StandardCopyOption.ATOMIC_MOVE);
+			} catch (IOException e) {
+				// Another build has stored the same step while this one was running, use theirs
+				if (Files.notExists(entry.resolve(OUTPUT_MARKER))) {
+					throw e;
+				}
+			}
+
+			final Path cached = entry.resolve(relativeOutput);
+			inputHashes.put(cached.toAbsolutePath().toString(), "step:" + key);
+			return cached;
+		} finally {
+			if (Files.exists(tempDir)) {
+				FileUtils.deleteDirectory(tempDir.toFile());
+			}
+		}
+	}
+
+	private Path getPath(String key) {
+		return directory.resolve(key.substring(0, 2)).resolve(key);
+	}
+
+	private String hashDirectory(Path dir) throws IOException {
+		final Hasher hasher = Hashing.sha256().newHasher();
+		final List<Path> files;
+
+		try (Stream<Path> stream = Files.walk(dir)) {
+			files = stream.filter(Files::isRegularFile).sorted().toList();
+		}
+
+		for (Path file : files) {
+			hasher.putString(dir.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/"), StandardCharsets.UTF_8)
+					.putByte((byte) 0);
+
+			try (InputStream is = Files.newInputStream(file)) {
+				hasher.putBytes(is.readAllBytes());
+			}
+		}
+
+		return hasher.hash().toString();
+	}
+
+	private static void deleteUnused(Path directory) throws IOException {
+		if (Files.notExists(directory)) {
+			return;
+		}
+
+		final Instant cutoff = Instant.now().minus(MAX_AGE);
+		final List<Path> entries;
+
+		try (Stream<Path> stream = Files.walk(directory, 2)) {
+			entries = stream.filter(path -> directory.relativize(path).getNameCount() == 2 && Files.isDirectory(path)).toList();
+		}
+
+		for (Path entry : entries) {
+			final Path marker = entry.resolve(OUTPUT_MARKER);
+			// Unfinished entries have no marker, they are only deleted once old enough to not be in use
+			final Path timestamped = Files.exists(marker) ? marker : entry;
+
+			if (Files.getLastModifiedTime(timestamped).toInstant().isBefore(cutoff)) {
+				FileUtils.deleteDirectory(entry.toFile());
+			}
+		}
+	}
+
+	@FunctionalInterface
+	public interface StepExecutor {
+		/**
+		 * @param workingDirectory the directory to execute the step in
+		 * @return the output file, inside the working directory
+		 */
+		Path execute(Path workingDirectory) throws IOException;
+	}
+}
@@ -44,4 +44,9 @@ public final class DownloadManifestFileLogic implements StepLogic {
 				.sha1(download.sha1())
 				.downloadPath(context.setOutput("output"));
 	}
+
+	@Override
+	public String getCacheKey(ExecutionContext context) {
+		return "download:" + download.sha1();
+	}
 }
@@ -64,6 +64,12 @@ public final class FunctionLogic implements StepLogic {
 		});
 	}
 
+	@Override
+	public String getCacheKey(ExecutionContext context) throws IOException {
+		// The tool is identified by its version, its inputs are passed through the arguments
+		return "function:%s:%s:%s:%s".formatted(function.version(), function.repo(), context.resolveCacheKey(function.args()), context.resolveCacheKey(function.jvmArgs()));
+	}
+
 	@Override
 	public String getDisplayName(String stepName) {
 		return stepName + " with " + function.version();
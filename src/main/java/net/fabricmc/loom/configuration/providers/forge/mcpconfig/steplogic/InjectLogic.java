@@ -63,4 +63,9 @@ public final class InjectLogic implements StepLogic {
 			}
 		}
 	}
+
+	@Override
+	public String getCacheKey(ExecutionContext context) throws IOException {
+		return "inject:" + context.resolveCacheKey(new ConfigValue.Variable("inject"));
+	}
 }
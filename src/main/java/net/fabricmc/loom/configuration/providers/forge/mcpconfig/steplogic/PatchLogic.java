@@ -57,4 +57,9 @@ public final class PatchLogic implements StepLogic {
 			throw new RuntimeException("Could not patch " + input + "; rejects saved to " + rejects.toAbsolutePath());
 		}
 	}
+
+	@Override
+	public String getCacheKey(ExecutionContext context) throws IOException {
+		return "patch:" + context.resolveCacheKey(new ConfigValue.Variable("patches"));
+	}
 }
@@ -27,6 +27,7 @@ package net.fabricmc.loom.configuration.providers.forge.mcpconfig.steplogic;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -34,6 +35,7 @@ import java.util.Set;
 import dev.architectury.loom.forge.tool.ForgeToolExecutor;
 import org.gradle.api.Action;
 import org.gradle.api.logging.Logger;
+import org.jetbrains.annotations.Nullable;
 
 import net.fabricmc.loom.configuration.providers.forge.ConfigValue;
 import net.fabricmc.loom.util.download.DownloadBuilder;
@@ -53,6 +55,16 @@ public interface StepLogic {
 		return false;
 	}
 
+	/**
+	 * Gets a key describing everything that affects the output of this step, apart from the step's own config values.
+	 * Steps with the same type, key and config share a cached output.
+	 *
+	 * @return the key, or {@code null} if the output must not be cached
+	 */
+	default @Nullable String getCacheKey(ExecutionContext context) throws IOException {
+		return null;
+	}
+
 	interface ExecutionContext {
 		Logger logger();
 		Path setOutput(String fileName) throws IOException;
@@ -61,6 +73,8 @@ public interface StepLogic {
 		/** Mappings extracted from {@code data.mappings} in the MCPConfig JSON. */
 		Path mappings();
 		String resolve(ConfigValue value);
+		/** Resolves a value for a cache key, files are replaced with a hash of their contents. */
+		String resolveCacheKey(ConfigValue value) throws IOException;
 		Path downloadFile(String url) throws IOException;
 		Path downloadDependency(String notation);
 		DownloadBuilder downloadBuilder(String url);
@@ -70,6 +84,16 @@ public interface StepLogic {
 		default List<String> resolve(List<ConfigValue> configValues) {
 			return CollectionUtil.map(configValues, this::resolve);
 		}
+
+		default List<String> resolveCacheKey(List<ConfigValue> configValues) throws IOException {
+			final List<String> result = new ArrayList<>(configValues.size());
+
+			for (ConfigValue value : configValues) {
+				result.add(resolveCacheKey(value));
+			}
+
+			return result;
+		}
 	}
 
 	@FunctionalInterface
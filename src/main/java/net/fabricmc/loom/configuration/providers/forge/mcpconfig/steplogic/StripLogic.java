@@ -34,6 +34,7 @@ import java.util.Set;
 import java.util.stream.Collectors;
 
 import net.fabricmc.loom.configuration.providers.forge.ConfigValue;
+import net.fabricmc.loom.util.Checksum;
 import net.fabricmc.loom.util.FileSystemUtil;
 import net.fabricmc.loom.util.ThreadingUtils;
 
@@ -80,6 +81,11 @@ public final class StripLogic implements StepLogic {
 		}
 	}
 
+	@Override
+	public String getCacheKey(ExecutionContext context) throws IOException {
+		return "strip:" + Checksum.sha1Hex(context.mappings());
+	}
+
 	private static String trimLeadingSlash(String string) {
 		if (string.startsWith(File.separator)) {
 			return string.substring(File.separator.length());
@@ -85,6 +85,13 @@ public class GradleMappingContext implements MappingContext {
 		};
 	}
 
+	/**
+	 * @return the intermediate mappings file used by {@link #intermediaryTree()}, it is provided if needed
+	 */
+	public Path intermediaryFile() {
+		return IntermediateMappingsService.createOptions(project, minecraftProvider()).get().getIntermediaryTiny().get().getAsFile().toPath();
+	}
+
 	@Override
 	public MinecraftProvider minecraftProvider() {
 		return extension.getMinecraftProvider();
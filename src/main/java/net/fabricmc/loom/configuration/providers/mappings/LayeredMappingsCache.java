@@ -0,0 +1,246 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.configuration.providers.mappings;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.fabricmc.loom.api.mappings.layered.MappingContext;
+import net.fabricmc.loom.api.mappings.layered.MappingLayer;
+import net.fabricmc.loom.configuration.providers.mappings.extras.signatures.SignatureFixesLayerImpl;
+import net.fabricmc.loom.configuration.providers.mappings.file.FileMappingsLayer;
+import net.fabricmc.loom.configuration.providers.mappings.intermediary.IntermediaryMappingLayer;
+import net.fabricmc.loom.configuration.providers.mappings.mojmap.MojangMappingLayer;
+import net.fabricmc.loom.configuration.providers.mappings.parchment.ParchmentMappingLayer;
+import net.fabricmc.loom.configuration.providers.mappings.tiny.BinaryMappingTree;
+import net.fabricmc.loom.util.Checksum;
+import net.fabricmc.mappingio.format.tiny.Tiny2FileWriter;
+import net.fabricmc.mappingio.tree.MappingTreeView;
+import net.fabricmc.mappingio.tree.MemoryMappingTree;
+
+/**
+ * A content addressed cache of parsed mapping layers, and of the merged result of each prefix of a layer stack. The
+ * cache is shared between projects through the user cache.
+ *
+ * <p>Each layer is keyed by the content of its input files and its options, and each prefix by the keys of the layers
+ * in it. When only the top layer of a stack changes, the layers below it are neither read nor merged again. Entries are
+ * stored as tiny v2 files along with their {@link BinaryMappingTree binary form}.
+ */
+public final class LayeredMappingsCache {
+	private static final Logger LOGGER = LoggerFactory.getLogger(LayeredMappingsCache.class);
+	private static final int VERSION = 1;
+	private static final Duration MAX_AGE = Duration.ofDays(14);
+
+	private final Path directory;
+	private final MappingContext context;
+
+	private LayeredMappingsCache(Path directory, MappingContext context) {
+		this.directory = directory;
+		this.context = context;
+	}
+
+	public static LayeredMappingsCache create(Path directory, MappingContext context) {
+		try {
+			deleteUnused(directory.resolve("v" + VERSION));
+		} catch (IOException e) {
+			LOGGER.warn("Failed to clean up the layered mappings cache", e);
+		}
+
+		return new LayeredMappingsCache(directory.resolve("v" + VERSION), context);
+	}
+
+	/**
+	 * @return the key of the mappings visited by the layer, or null when the layer cannot be cached
+	 */
+	@Nullable
+	public String getLayerKey(MappingLayer layer) {
+		final List<String> parts = new ArrayList<>();
+		parts.add(layer.getClass().getName());
+
+		if (layer instanceof IntermediaryMappingLayer) {
+			if (!(context instanceof GradleMappingContext gradleContext)) {
+				return null;
+			}
+
+			parts.add(hash(gradleContext.intermediaryFile()));
+		} else if (layer instanceof MojangMappingLayer mojang) {
+			parts.add(hash(mojang.clientMappings()));
+			parts.add(hash(mojang.serverMappings()));
+			parts.add(Boolean.toString(mojang.nameSyntheticMembers()));
+			parts.add(Boolean.toString(mojang.skipClassNames()));
+		} else if (layer instanceof ParchmentMappingLayer parchment) {
+			parts.add(hash(parchment.parchmentFile()));
+			parts.add(Boolean.toString(parchment.removePrefix()));
+		} else if (layer instanceof FileMappingsLayer file) {
+			if (Files.isDirectory(file.path())) {
+				// Enigma directories are not worth hashing
+				return null;
+			}
+
+			parts.add(hash(file.path()));
+			parts.add(file.mappingPath());
+			parts.add(file.fallbackSourceNamespace());
+			parts.add(file.fallbackTargetNamespace());
+			parts.add(Boolean.toString(file.enigma()));
+			parts.add(file.mergeNamespace());
+		} else if (!(layer instanceof SignatureFixesLayerImpl)) {
+			// Unknown layers may read anything
+			return null;
+		}
+
+		return hash(parts);
+	}
+
+	/**
+	 * @param parentKey the key of the prefix below the layer, or null for the first layer
+	 * @return the key of the merged result of the prefix and the layer
+	 */
+	public String getPrefixKey(@Nullable String parentKey, MappingLayer layer, String layerKey) {
+		return hash(List.of("prefix", parentKey != null ? parentKey : "", layer.getSourceNamespace().toString(), layerKey));
+	}
+
+	/**
+	 * @return a new tree containing the cached mappings, or null when they are not cached or deps are being refreshed
+	 */
+	@Nullable
+	public MemoryMappingTree get(String key) {
+		if (context.refreshDeps()) {
+			return null;
+		}
+
+		final Path path = getPath(key);
+
+		if (Files.notExists(path)) {
+			return null;
+		}
+
+		try {
+			final MemoryMappingTree tree = new MemoryMappingTree();
+			BinaryMappingTree.read(path, tree);
+
+			// Mark as used so that it is not cleaned up, the tiny file is left alone as the binary form depends on its mtime
+			final Path binaryPath = BinaryMappingTree.getBinaryPath(path);
+
+			if (Files.exists(binaryPath)) {
+				Files.setLastModifiedTime(binaryPath, FileTime.from(Instant.now()));
+			}
+
+			return tree;
+		} catch (IOException | RuntimeException e) {
+			LOGGER.warn("Ignoring unreadable layered mappings cache entry: {}", path, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Store the mappings, failures are logged as the cache is only an optimisation.
+	 */
+	public void put(String key, MappingTreeView tree) {
+		if (tree.getSrcNamespace() == null) {
+			// Nothing was visited
+			return;
+		}
+
+		final Path path = getPath(key);
+
+		try {
+			Files.createDirectories(path.getParent());
+			final Path tempFile = Files.createTempFile(path.getParent(), key, ".tmp");
+
+			try {
+				try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+					tree.accept(new Tiny2FileWriter(writer, false));
+				}
+
+				Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(tempFile);
+			}
+
+			BinaryMappingTree.write(tree, path);
+		} catch (IOException e) {
+			LOGGER.warn("Failed to write layered mappings cache entry: {}", path, e);
+		}
+	}
+
+	private Path getPath(String key) {
+		return directory.resolve(key.substring(0, 2)).resolve(key + ".tiny");
+	}
+
+	private static String hash(Path path) {
+		return Checksum.toHex(Checksum.sha256(path.toFile()));
+	}
+
+	private static String hash(List<String> parts) {
+		final Hasher hasher = Hashing.sha256().newHasher();
+		hasher.putInt(VERSION);
+
+		for (String part : parts) {
+			hasher.putString(part, StandardCharsets.UTF_8);
+			hasher.putByte((byte) 0);
+		}
+
+		return hasher.hash().toString();
+	}
+
+	private static void deleteUnused(Path directory) throws IOException {
+		if (Files.notExists(directory)) {
+			return;
+		}
+
+		final Instant cutoff = Instant.now().minus(MAX_AGE);
+		final List<Path> files;
+
+		try (Stream<Path> stream = Files.walk(directory)) {
+			files = stream.filter(path -> path.getFileName().toString().endsWith(".tiny")).toList();
+		}
+
+		for (Path path : files) {
+			final Path binaryPath = BinaryMappingTree.getBinaryPath(path);
+			final Instant lastUsed = Files.exists(binaryPath) ? Files.getLastModifiedTime(binaryPath).toInstant() : Files.getLastModifiedTime(path).toInstant();
+
+			if (lastUsed.isBefore(cutoff)) {
+				Files.deleteIfExists(path);
+				Files.deleteIfExists(binaryPath);
+			}
+		}
+	}
+}
@@ -93,7 +93,8 @@ public record LayeredMappingsFactory(LayeredMappingSpec spec) {
 		}
 
 		boolean noIntermediateMappings = extension.getIntermediateMappingsProvider() instanceof NoOpIntermediateMappingsProvider;
-		var processor = new LayeredMappingsProcessor(spec, noIntermediateMappings);
+		var cache = LayeredMappingsCache.create(extension.getFiles().getUserCache().toPath().resolve("layered_mappings_cache"), mappingContext);
+		var processor = new LayeredMappingsProcessor(spec, noIntermediateMappings, cache);
 		List<MappingLayer> layers = processor.resolveLayers(mappingContext);
 
 		Files.deleteIfExists(mappingsZip);
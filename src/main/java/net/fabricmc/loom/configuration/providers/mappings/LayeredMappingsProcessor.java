@@ -25,14 +25,19 @@
 package net.fabricmc.loom.configuration.providers.mappings;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import net.fabricmc.loom.api.mappings.layered.MappingContext;
 import net.fabricmc.loom.api.mappings.layered.MappingLayer;
@@ -40,17 +45,28 @@ import net.fabricmc.loom.api.mappings.layered.MappingsNamespace;
 import net.fabricmc.loom.api.mappings.layered.spec.MappingsSpec;
 import net.fabricmc.loom.configuration.providers.mappings.extras.signatures.SignatureFixesLayer;
 import net.fabricmc.loom.configuration.providers.mappings.extras.unpick.UnpickLayer;
+import net.fabricmc.loom.configuration.providers.mappings.intermediary.IntermediaryMappingLayer;
+import net.fabricmc.loom.configuration.providers.mappings.mojmap.MojangMappingLayer;
+import net.fabricmc.loom.util.LoomExecutors;
 import net.fabricmc.mappingio.adapter.MappingNsCompleter;
 import net.fabricmc.mappingio.adapter.MappingSourceNsSwitch;
 import net.fabricmc.mappingio.tree.MemoryMappingTree;
 
 public class LayeredMappingsProcessor {
+	private static final Logger LOGGER = LoggerFactory.getLogger(LayeredMappingsProcessor.class);
+
 	private final LayeredMappingSpec layeredMappingSpec;
 	private final boolean noIntermediateMappings;
+	private final @Nullable LayeredMappingsCache cache;
 
 	public LayeredMappingsProcessor(LayeredMappingSpec spec, boolean noIntermediateMappings) {
+		this(spec, noIntermediateMappings, null);
+	}
+
+	public LayeredMappingsProcessor(LayeredMappingSpec spec, boolean noIntermediateMappings, @Nullable LayeredMappingsCache cache) {
 		this.layeredMappingSpec = spec;
 		this.noIntermediateMappings = noIntermediateMappings;
+		this.cache = cache;
 	}
 
 	public List<MappingLayer> resolveLayers(MappingContext context) {
@@ -74,36 +90,83 @@ public class LayeredMappingsProcessor {
 	}
 
 	public MemoryMappingTree getMappings(List<MappingLayer> layers) throws IOException {
-		MemoryMappingTree mappingTree = new MemoryMappingTree();
+		final List<@Nullable String> layerKeys = new ArrayList<>(layers.size());
+		// The key of the merged result of the first n layers, null once a layer cannot be cached
+		final List<@Nullable String> prefixKeys = new ArrayList<>(layers.size());
 
-		for (MappingLayer layer : layers) {
-			// We have to rebuild a new tree to work on when a layer doesnt merge into layered
-			boolean rebuild = layer.getSourceNamespace() != MappingsNamespace.NAMED;
-			MemoryMappingTree workingTree;
+		if (cache != null) {
+			String prefixKey = null;
 
-			if (rebuild) {
-				var tempTree = new MemoryMappingTree();
+			for (int i = 0; i < layers.size(); i++) {
+				final String layerKey = cache.getLayerKey(layers.get(i));
+				prefixKey = layerKey != null && (i == 0 || prefixKey != null) ? cache.getPrefixKey(prefixKey, layers.get(i), layerKey) : null;
+				layerKeys.add(layerKey);
+				prefixKeys.add(prefixKey);
+			}
+		}
 
-				// This can be null on the first layer
-				if (mappingTree.getSrcNamespace() != null) {
-					var sourceNsSwitch = new MappingSourceNsSwitch(tempTree, layer.getSourceNamespace().toString());
-					mappingTree.accept(sourceNsSwitch);
-				}
+		// Start from the largest cached prefix
+		MemoryMappingTree mappingTree = null;
+		int start = 0;
 
-				workingTree = tempTree;
-			} else {
-				workingTree = mappingTree;
+		for (int i = prefixKeys.size() - 1; i >= 0; i--) {
+			if (cache != null && prefixKeys.get(i) != null && (mappingTree = cache.get(prefixKeys.get(i))) != null) {
+				LOGGER.info("Using cached mappings for {} of {} layers", i + 1, layers.size());
+				start = i + 1;
+				break;
 			}
+		}
+
+		for (int i = 0; i < start; i++) {
+			if (layers.get(i) instanceof MojangMappingLayer mojangLayer) {
+				mojangLayer.printMappingsLicense();
+			}
+		}
+
+		if (mappingTree == null) {
+			mappingTree = new MemoryMappingTree();
+		}
+
+		// Read the remaining layers in parallel, they are merged in order below
+		final List<CompletableFuture<MemoryMappingTree>> layerTrees = new ArrayList<>();
+
+		for (int i = start; i < layers.size(); i++) {
+			final MappingLayer layer = layers.get(i);
+			final String layerKey = cache != null ? layerKeys.get(i) : null;
+
+			if (layer instanceof IntermediaryMappingLayer) {
+				// Reads the intermediary mappings through the project, so must be done on this thread
+				layerTrees.add(CompletableFuture.completedFuture(readLayer(layer, layerKey)));
+				continue;
+			}
+
+			layerTrees.add(CompletableFuture.supplyAsync(() -> {
+				try {
+					return readLayer(layer, layerKey);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}, LoomExecutors.cpu()));
+		}
+
+		for (int i = start; i < layers.size(); i++) {
+			final MappingLayer layer = layers.get(i);
+			final MemoryMappingTree layerTree;
 
 			try {
-				layer.visit(workingTree);
-			} catch (IOException e) {
-				throw new IOException("Failed to visit: " + layer.getClass(), e);
+				layerTree = layerTrees.get(i - start).join();
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof UncheckedIOException uncheckedIOException) {
+					throw uncheckedIOException.getCause();
+				}
+
+				throw e.getCause() instanceof RuntimeException runtimeException ? runtimeException : e;
 			}
 
-			if (rebuild) {
-				mappingTree = new MemoryMappingTree();
-				workingTree.accept(new MappingSourceNsSwitch(mappingTree, MappingsNamespace.NAMED.toString()));
+			mappingTree = merge(mappingTree, layer, layerTree);
+
+			if (cache != null && prefixKeys.get(i) != null) {
+				cache.put(prefixKeys.get(i), mappingTree);
 			}
 		}
 
@@ -117,6 +180,67 @@ public class LayeredMappingsProcessor {
 		return mappingTree;
 	}
 
+	private MemoryMappingTree readLayer(MappingLayer layer, @Nullable String key) throws IOException {
+		if (key != null) {
+			final MemoryMappingTree cached = cache.get(key);
+
+			if (cached != null) {
+				if (layer instanceof MojangMappingLayer mojangLayer) {
+					mojangLayer.printMappingsLicense();
+				}
+
+				return cached;
+			}
+		}
+
+		final MemoryMappingTree layerTree = new MemoryMappingTree();
+
+		try {
+			layer.visit(layerTree);
+		} catch (IOException e) {
+			throw new IOException("Failed to visit: " + layer.getClass(), e);
+		}
+
+		if (key != null) {
+			cache.put(key, layerTree);
+		}
+
+		return layerTree;
+	}
+
+	private static MemoryMappingTree merge(MemoryMappingTree mappingTree, MappingLayer layer, MemoryMappingTree layerTree) throws IOException {
+		// We have to rebuild a new tree to work on when a layer doesnt merge into layered
+		boolean rebuild = layer.getSourceNamespace() != MappingsNamespace.NAMED;
+		MemoryMappingTree workingTree;
+
+		if (rebuild) {
+			var tempTree = new MemoryMappingTree();
+
+			// This can be null on the first layer
+			if (mappingTree.getSrcNamespace() != null) {
+				var sourceNsSwitch = new MappingSourceNsSwitch(tempTree, layer.getSourceNamespace().toString());
+				mappingTree.accept(sourceNsSwitch);
+			}
+
+			workingTree = tempTree;
+		} else {
+			workingTree = mappingTree;
+		}
+
+		// This is null when the layer did not visit anything
+		if (layerTree.getSrcNamespace() != null) {
+			layerTree.accept(workingTree);
+		}
+
+		if (rebuild) {
+			final MemoryMappingTree rebuiltTree = new MemoryMappingTree();
+			workingTree.accept(new MappingSourceNsSwitch(rebuiltTree, MappingsNamespace.NAMED.toString()));
+			return rebuiltTree;
+		}
+
+		return mappingTree;
+	}
+
 	@Nullable
 	public Map<String, String> getSignatureFixes(List<MappingLayer> layers) {
 		Map<String, String> signatureFixes = new HashMap<>();
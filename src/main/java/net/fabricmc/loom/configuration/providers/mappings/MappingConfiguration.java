@@ -39,9 +39,11 @@ import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 import com.google.common.base.Stopwatch;
 import com.google.common.base.Supplier;
@@ -63,6 +65,7 @@ import net.fabricmc.loom.api.mappings.layered.MappingContext;
 import net.fabricmc.loom.configuration.DependencyInfo;
 import net.fabricmc.loom.configuration.providers.forge.ForgeMigratedMappingConfiguration;
 import net.fabricmc.loom.configuration.providers.forge.SrgProvider;
+import net.fabricmc.loom.configuration.providers.mappings.tiny.BinaryMappingTree;
 import net.fabricmc.loom.configuration.providers.mappings.tiny.MappingsMerger;
 import net.fabricmc.loom.configuration.providers.mappings.tiny.TinyJarInfo;
 import net.fabricmc.loom.configuration.providers.minecraft.MinecraftProvider;
@@ -266,6 +269,38 @@ public class MappingConfiguration {
 		}
 
 		manipulateMappings(project, tinyMappingsJar);
+		writeBinaryMappings(extension.refreshDeps());
+	}
+
+	/**
+	 * Write the binary form of each of the tiny mapping files, so that they can be read without parsing.
+	 */
+	private void writeBinaryMappings(boolean refresh) throws IOException {
+		final Set<Path> mappingFiles = new LinkedHashSet<>();
+
+		for (Supplier<Path> supplier : mappingOptions.values()) {
+			mappingFiles.add(supplier.get());
+		}
+
+		for (Path mappingFile : mappingFiles) {
+			if (Files.notExists(mappingFile) || (!refresh && BinaryMappingTree.open(mappingFile) != null)) {
+				continue;
+			}
+
+			final Stopwatch stopwatch = Stopwatch.createStarted();
+			final MemoryMappingTree mappingTree = new MemoryMappingTree();
+			MappingReader.read(mappingFile, mappingTree);
+
+			try {
+				BinaryMappingTree.write(mappingTree, mappingFile);
+			} catch (IOException e) {
+				// Not fatal, the tiny file is read instead. This can happen on Windows when the old file is still mapped.
+				LOGGER.warn("Failed to write binary mappings for {}", mappingFile, e);
+				continue;
+			}
+
+			LOGGER.info(":wrote binary mappings for {} in {}", mappingFile.getFileName(), stopwatch.stop());
+		}
 	}
 
 	public void applyToProject(Project project, DependencyInfo dependency) throws IOException {
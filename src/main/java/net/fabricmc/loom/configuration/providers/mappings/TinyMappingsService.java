@@ -24,12 +24,11 @@
 
 package net.fabricmc.loom.configuration.providers.mappings;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.file.Path;
-import java.util.function.Supplier;
 
-import com.google.common.base.Suppliers;
 import org.gradle.api.Project;
 import org.gradle.api.file.ConfigurableFileCollection;
 import org.gradle.api.file.FileCollection;
@@ -40,15 +39,17 @@ import org.gradle.api.tasks.InputFiles;
 import org.gradle.api.tasks.Optional;
 import org.jetbrains.annotations.Nullable;
 
+import net.fabricmc.loom.configuration.providers.mappings.tiny.BinaryMappingTree;
 import net.fabricmc.loom.util.FileSystemUtil;
 import net.fabricmc.loom.util.service.Service;
 import net.fabricmc.loom.util.service.ServiceFactory;
 import net.fabricmc.loom.util.service.ServiceType;
-import net.fabricmc.mappingio.MappingReader;
+import net.fabricmc.loom.util.service.SharedServiceCache;
 import net.fabricmc.mappingio.tree.MemoryMappingTree;
 
-public final class TinyMappingsService extends Service<TinyMappingsService.Options> {
+public final class TinyMappingsService extends Service<TinyMappingsService.Options> implements Closeable {
 	public static final ServiceType<Options, TinyMappingsService> TYPE = new ServiceType<>(Options.class, TinyMappingsService.class);
+	public static final String MAPPING_TREE_KIND = "mapping trees";
 
 	public interface Options extends Service.Options {
 		@InputFiles
@@ -80,7 +81,9 @@ public final class TinyMappingsService extends Service<TinyMappingsService.Optio
 		super(options, serviceFactory);
 	}
 
-	private final Supplier<MemoryMappingTree> mappingTree = Suppliers.memoize(() -> {
+	private SharedServiceCache.Handle<MemoryMappingTree> mappingTree;
+
+	private MemoryMappingTree loadMappings() {
 		Path mappings = getOptions().getMappings().getSingleFile().toPath();
 
 		if (getOptions().getZipEntryPath().isPresent()) {
@@ -92,19 +95,43 @@ public final class TinyMappingsService extends Service<TinyMappingsService.Optio
 		}
 
 		return readMappings(mappings);
-	});
+	}
 
 	private MemoryMappingTree readMappings(Path mappings) {
 		try {
 			MemoryMappingTree mappingTree = new MemoryMappingTree();
-			MappingReader.read(mappings, mappingTree);
+			BinaryMappingTree.read(mappings, mappingTree);
 			return mappingTree;
 		} catch (IOException e) {
 			throw new UncheckedIOException("Failed to read mappings", e);
 		}
 	}
 
-	public MemoryMappingTree getMappingTree() {
+	/**
+	 * @return the mapping tree, this is shared with other services reading the same mappings so must not be modified
+	 */
+	public synchronized MemoryMappingTree getMappingTree() {
+		if (mappingTree == null) {
+			final Path mappings = getOptions().getMappings().getSingleFile().toPath();
+			final String key;
+
+			try {
+				key = SharedServiceCache.fileKey(mappings) + getOptions().getZipEntryPath().map(path -> "!" + path).getOrElse("");
+			} catch (IOException e) {
+				throw new UncheckedIOException("Failed to hash mappings", e);
+			}
+
+			mappingTree = SharedServiceCache.acquire(MAPPING_TREE_KIND, key, this::loadMappings);
+		}
+
 		return mappingTree.get();
 	}
+
+	@Override
+	public synchronized void close() {
+		if (mappingTree != null) {
+			mappingTree.close();
+			mappingTree = null;
+		}
+	}
 }
@@ -54,9 +54,7 @@ public record MojangMappingLayer(
 	private static final Pattern SYNTHETIC_NAME_PATTERN = Pattern.compile("^(access|this|val\\$this|lambda\\$.*)\\$[0-9]+$");
 	@Override
 	public void visit(MappingVisitor mappingVisitor) throws IOException {
-		if (!silenceLicense.isSilent()) {
-			printMappingsLicense(clientMappings);
-		}
+		printMappingsLicense();
 
 		if (!nameSyntheticMembers) {
 			mappingVisitor = new DstNameFilterMappingVisitor(mappingVisitor, SYNTHETIC_NAME_PATTERN);
@@ -76,7 +74,14 @@ public record MojangMappingLayer(
 		}
 	}
 
-	private void printMappingsLicense(Path clientMappings) {
+	/**
+	 * Print the license of the mappings, unless it has been silenced. This is also called when the layer is read from a cache.
+	 */
+	public void printMappingsLicense() {
+		if (silenceLicense.isSilent()) {
+			return;
+		}
+
 		try (BufferedReader clientBufferedReader = Files.newBufferedReader(clientMappings, StandardCharsets.UTF_8)) {
 			logger().warn("~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~");
 			logger().warn("Using of the official minecraft mappings is at your own risk!");
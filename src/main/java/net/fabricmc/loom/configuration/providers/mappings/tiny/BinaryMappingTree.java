@@ -0,0 +1,713 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.configuration.providers.mappings.tiny;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.fabricmc.mappingio.MappedElementKind;
+import net.fabricmc.mappingio.MappingReader;
+import net.fabricmc.mappingio.MappingVisitor;
+import net.fabricmc.mappingio.tree.MappingTreeView;
+
+/**
+ * A compact binary form of a tiny mappings file, read in place from a memory mapped file.
+ *
+ * <p>All names, descriptors and comments are interned into a single string table, and every class, field, method,
+ * argument and variable is a fixed width record of string table indices. Nothing is parsed when the file is opened,
+ * strings are only decoded the first time they are read. The binary file is written next to the tiny file it was
+ * created from, and is ignored once the tiny file has changed.
+ *
+ * <p>Instances are immutable and safe to share between threads.
+ */
+public final class BinaryMappingTree implements MappingsView {
+	private static final Logger LOGGER = LoggerFactory.getLogger(BinaryMappingTree.class);
+	private static final int MAGIC = 0x4C4D4254; // LMBT
+	private static final int VERSION = 1;
+	// Magic, version, tiny file size and last modified time, namespace and record counts
+	private static final int HEADER_SIZE = 4 * 2 + 8 * 2 + 4 * 8;
+	private static final int NULL = -1;
+
+	private final ByteBuffer buffer;
+	private final int namespaceCount;
+	private final List<String> namespaces;
+	private final int classCount;
+	private final int namespacesOffset;
+	private final int metadataOffset;
+	private final int metadataCount;
+	private final int classesOffset;
+	private final int classIndexOffset;
+	private final int fieldsOffset;
+	private final int methodsOffset;
+	private final int argsOffset;
+	private final int varsOffset;
+	private final int stringOffsetsOffset;
+	private final int stringDataOffset;
+	private final String[] strings;
+
+	private BinaryMappingTree(ByteBuffer buffer) {
+		this.buffer = buffer;
+
+		this.namespaceCount = buffer.getInt(24);
+		this.metadataCount = buffer.getInt(28);
+		final int stringCount = buffer.getInt(32);
+		this.classCount = buffer.getInt(36);
+		final int fieldCount = buffer.getInt(40);
+		final int methodCount = buffer.getInt(44);
+		final int argCount = buffer.getInt(48);
+		final int varCount = buffer.getInt(52);
+
+		this.namespacesOffset = HEADER_SIZE;
+		this.metadataOffset = namespacesOffset + namespaceCount * 4;
+		this.classesOffset = metadataOffset + metadataCount * 2 * 4;
+		this.classIndexOffset = classesOffset + classCount * classWidth() * 4;
+		this.fieldsOffset = classIndexOffset + classCount * 4;
+		this.methodsOffset = fieldsOffset + fieldCount * fieldWidth() * 4;
+		this.argsOffset = methodsOffset + methodCount * methodWidth() * 4;
+		this.varsOffset = argsOffset + argCount * argWidth() * 4;
+		this.stringOffsetsOffset = varsOffset + varCount * varWidth() * 4;
+		this.stringDataOffset = stringOffsetsOffset + stringCount * 4;
+		this.strings = new String[stringCount];
+
+		final List<String> namespaces = new ArrayList<>(namespaceCount);
+
+		for (int i = 0; i < namespaceCount; i++) {
+			namespaces.add(getString(buffer.getInt(namespacesOffset + i * 4)));
+		}
+
+		this.namespaces = List.copyOf(namespaces);
+	}
+
+	/**
+	 * @return the path of the binary form of the given tiny file
+	 */
+	public static Path getBinaryPath(Path tinyFile) {
+		return tinyFile.resolveSibling(tinyFile.getFileName() + ".bin");
+	}
+
+	/**
+	 * Open the binary form of the given tiny file.
+	 *
+	 * @return the binary mappings, or null when they are missing or older than the tiny file
+	 */
+	@Nullable
+	public static BinaryMappingTree open(Path tinyFile) throws IOException {
+		final Path binaryFile = getBinaryPath(tinyFile);
+
+		if (Files.notExists(binaryFile) || Files.notExists(tinyFile)) {
+			return null;
+		}
+
+		final ByteBuffer buffer;
+
+		try (FileChannel channel = FileChannel.open(binaryFile, StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_SIZE) {
+				return null;
+			}
+
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+
+		if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+			return null;
+		}
+
+		if (buffer.getLong(8) != Files.size(tinyFile) || buffer.getLong(16) != Files.getLastModifiedTime(tinyFile).toMillis()) {
+			LOGGER.debug("Ignoring outdated binary mappings: {}", binaryFile);
+			return null;
+		}
+
+		return new BinaryMappingTree(buffer);
+	}
+
+	/**
+	 * Read the given tiny file into the visitor, using the binary form when it is up to date.
+	 */
+	public static void read(Path tinyFile, MappingVisitor visitor) throws IOException {
+		final BinaryMappingTree binary = open(tinyFile);
+
+		if (binary != null) {
+			binary.accept(visitor);
+			return;
+		}
+
+		MappingReader.read(tinyFile, visitor);
+	}
+
+	/**
+	 * Write the binary form of the given tiny file, from a tree that was read from it.
+	 */
+	public static void write(MappingTreeView tree, Path tinyFile) throws IOException {
+		new Writer(tree).write(tinyFile, getBinaryPath(tinyFile));
+	}
+
+	@Override
+	public String getSrcNamespace() {
+		return namespaces.get(0);
+	}
+
+	@Override
+	public List<String> getDstNamespaces() {
+		return namespaces.subList(1, namespaces.size());
+	}
+
+	/**
+	 * @return the namespace id, using the same ids as {@link MappingTreeView}
+	 */
+	@Override
+	public int getNamespaceId(String namespace) {
+		final int index = namespaces.indexOf(namespace);
+		return index < 0 ? MappingTreeView.NULL_NAMESPACE_ID : index - 1;
+	}
+
+	@Override
+	public List<ClassEntry> getClasses() {
+		return new RecordList<>(0, classCount, ClassEntry::new);
+	}
+
+	@Nullable
+	public ClassEntry getClass(String srcName) {
+		int low = 0;
+		int high = classCount - 1;
+
+		while (low <= high) {
+			final int mid = (low + high) >>> 1;
+			final int index = buffer.getInt(classIndexOffset + mid * 4);
+			final int cmp = new ClassEntry(index).getSrcName().compareTo(srcName);
+
+			if (cmp < 0) {
+				low = mid + 1;
+			} else if (cmp > 0) {
+				high = mid - 1;
+			} else {
+				return new ClassEntry(index);
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Map the class names of a descriptor in the source namespace to the given namespace.
+	 */
+	public String mapDesc(String desc, int namespace) {
+		if (namespace == MappingTreeView.SRC_NAMESPACE_ID) {
+			return desc;
+		}
+
+		final StringBuilder sb = new StringBuilder(desc.length());
+		int start = 0;
+		int pos;
+
+		while ((pos = desc.indexOf('L', start)) >= 0) {
+			final int end = desc.indexOf(';', pos);
+
+			if (end < 0) {
+				break;
+			}
+
+			sb.append(desc, start, pos + 1);
+			final String className = desc.substring(pos + 1, end);
+			final ClassEntry entry = getClass(className);
+			final String mapped = entry != null ? entry.getName(namespace) : null;
+			sb.append(mapped != null ? mapped : className);
+			start = end;
+		}
+
+		return sb.append(desc, start, desc.length()).toString();
+	}
+
+	/**
+	 * Replay the mappings into a visitor, for example to create a {@link net.fabricmc.mappingio.tree.MemoryMappingTree}.
+	 */
+	public void accept(MappingVisitor visitor) throws IOException {
+		do {
+			if (visitor.visitHeader()) {
+				visitor.visitNamespaces(getSrcNamespace(), getDstNamespaces());
+
+				for (int i = 0; i < metadataCount; i++) {
+					final int offset = metadataOffset + i * 2 * 4;
+					visitor.visitMetadata(getString(buffer.getInt(offset)), getString(buffer.getInt(offset + 4)));
+				}
+			}
+
+			if (visitor.visitContent()) {
+				for (ClassEntry classEntry : getClasses()) {
+					if (!visitor.visitClass(classEntry.getSrcName()) || !visitElement(visitor, classEntry, MappedElementKind.CLASS)) {
+						continue;
+					}
+
+					for (FieldEntry field : classEntry.getFields()) {
+						if (visitor.visitField(field.getSrcName(), field.getSrcDesc())) {
+							visitElement(visitor, field, MappedElementKind.FIELD);
+						}
+					}
+
+					for (MethodEntry method : classEntry.getMethods()) {
+						if (!visitor.visitMethod(method.getSrcName(), method.getSrcDesc()) || !visitElement(visitor, method, MappedElementKind.METHOD)) {
+							continue;
+						}
+
+						for (ArgEntry arg : method.getArgs()) {
+							if (visitor.visitMethodArg(arg.getArgPosition(), arg.getLvIndex(), arg.getSrcName())) {
+								visitElement(visitor, arg, MappedElementKind.METHOD_ARG);
+							}
+						}
+
+						for (VarEntry var : method.getVars()) {
+							if (visitor.visitMethodVar(var.getLvtRowIndex(), var.getLvIndex(), var.getStartOpIdx(), var.getEndOpIdx(), var.getSrcName())) {
+								visitElement(visitor, var, MappedElementKind.METHOD_VAR);
+							}
+						}
+					}
+				}
+			}
+		} while (!visitor.visitEnd());
+	}
+
+	private boolean visitElement(MappingVisitor visitor, Entry entry, MappedElementKind kind) throws IOException {
+		for (int ns = 0; ns < namespaceCount - 1; ns++) {
+			final String name = entry.getName(ns);
+
+			if (name != null) {
+				visitor.visitDstName(kind, ns, name);
+			}
+		}
+
+		if (!visitor.visitElementContent(kind)) {
+			return false;
+		}
+
+		final String comment = entry.getComment();
+
+		if (comment != null) {
+			visitor.visitComment(kind, comment);
+		}
+
+		return true;
+	}
+
+	@Nullable
+	private String getString(int id) {
+		if (id == NULL) {
+			return null;
+		}
+
+		String string = strings[id];
+
+		if (string == null) {
+			final int offset = stringDataOffset + buffer.getInt(stringOffsetsOffset + id * 4);
+			final int length = buffer.getInt(offset);
+			final byte[] bytes = new byte[length];
+			buffer.get(offset + 4, bytes);
+			// Strings are immutable, so a racing decode of the same string is harmless
+			string = new String(bytes, StandardCharsets.UTF_8);
+			strings[id] = string;
+		}
+
+		return string;
+	}
+
+	// Record widths, in ints. Every record starts with its names in each namespace.
+	private int classWidth() {
+		return namespaceCount + 5;
+	}
+
+	private int fieldWidth() {
+		return namespaceCount + 2;
+	}
+
+	private int methodWidth() {
+		return namespaceCount + 6;
+	}
+
+	private int argWidth() {
+		return namespaceCount + 3;
+	}
+
+	private int varWidth() {
+		return namespaceCount + 5;
+	}
+
+	public abstract sealed class Entry implements ElementView permits ClassEntry, MemberEntry, ArgEntry, VarEntry {
+		protected final int offset;
+
+		private Entry(int offset) {
+			this.offset = offset;
+		}
+
+		protected int getInt(int field) {
+			return buffer.getInt(offset + field * 4);
+		}
+
+		public String getSrcName() {
+			return getString(getInt(0));
+		}
+
+		/**
+		 * @param namespace the namespace id, as returned by {@link #getNamespaceId(String)}
+		 */
+		@Override
+		@Nullable
+		public String getName(int namespace) {
+			if (namespace < MappingTreeView.SRC_NAMESPACE_ID || namespace >= namespaceCount - 1) {
+				return null;
+			}
+
+			return getString(getInt(namespace + 1));
+		}
+
+		@Nullable
+		public String getComment() {
+			return getString(getInt(namespaceCount));
+		}
+	}
+
+	public final class ClassEntry extends Entry implements ClassView {
+		private ClassEntry(int index) {
+			super(classesOffset + index * classWidth() * 4);
+		}
+
+		@Override
+		public List<FieldEntry> getFields() {
+			return new RecordList<>(getInt(namespaceCount + 1), getInt(namespaceCount + 2), FieldEntry::new);
+		}
+
+		@Override
+		public List<MethodEntry> getMethods() {
+			return new RecordList<>(getInt(namespaceCount + 3), getInt(namespaceCount + 4), MethodEntry::new);
+		}
+	}
+
+	public sealed class MemberEntry extends Entry implements MemberView permits FieldEntry, MethodEntry {
+		private MemberEntry(int offset) {
+			super(offset);
+		}
+
+		@Nullable
+		public String getSrcDesc() {
+			return getString(getInt(namespaceCount + 1));
+		}
+
+		@Override
+		@Nullable
+		public String getDesc(int namespace) {
+			final String srcDesc = getSrcDesc();
+			return srcDesc != null ? mapDesc(srcDesc, namespace) : null;
+		}
+	}
+
+	public final class FieldEntry extends MemberEntry {
+		private FieldEntry(int index) {
+			super(fieldsOffset + index * fieldWidth() * 4);
+		}
+	}
+
+	public final class MethodEntry extends MemberEntry implements MethodView {
+		private MethodEntry(int index) {
+			super(methodsOffset + index * methodWidth() * 4);
+		}
+
+		@Override
+		public List<ArgEntry> getArgs() {
+			return new RecordList<>(getInt(namespaceCount + 2), getInt(namespaceCount + 3), ArgEntry::new);
+		}
+
+		@Override
+		public List<VarEntry> getVars() {
+			return new RecordList<>(getInt(namespaceCount + 4), getInt(namespaceCount + 5), VarEntry::new);
+		}
+	}
+
+	public final class ArgEntry extends Entry implements ArgView {
+		private ArgEntry(int index) {
+			super(argsOffset + index * argWidth() * 4);
+		}
+
+		public int getArgPosition() {
+			return getInt(namespaceCount + 1);
+		}
+
+		@Override
+		public int getLvIndex() {
+			return getInt(namespaceCount + 2);
+		}
+	}
+
+	public final class VarEntry extends Entry implements VarView {
+		private VarEntry(int index) {
+			super(varsOffset + index * varWidth() * 4);
+		}
+
+		@Override
+		public int getLvtRowIndex() {
+			return getInt(namespaceCount + 1);
+		}
+
+		@Override
+		public int getLvIndex() {
+			return getInt(namespaceCount + 2);
+		}
+
+		@Override
+		public int getStartOpIdx() {
+			return getInt(namespaceCount + 3);
+		}
+
+		public int getEndOpIdx() {
+			return getInt(namespaceCount + 4);
+		}
+	}
+
+	private interface EntryFactory<T> {
+		T create(int index);
+	}
+
+	private static final class RecordList<T> extends AbstractList<T> {
+		private final int start;
+		private final int size;
+		private final EntryFactory<T> factory;
+
+		private RecordList(int start, int size, EntryFactory<T> factory) {
+			this.start = start;
+			this.size = size;
+			this.factory = factory;
+		}
+
+		@Override
+		public T get(int index) {
+			if (index < 0 || index >= size) {
+				throw new IndexOutOfBoundsException(index);
+			}
+
+			return factory.create(start + index);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+
+	private static final class Writer {
+		private final MappingTreeView tree;
+		private final int namespaceCount;
+		private final Map<String, Integer> stringIds = new HashMap<>();
+		private final ByteArrayOutputStream stringData = new ByteArrayOutputStream();
+		private final List<Integer> stringOffsets = new ArrayList<>();
+
+		private final IntList classes = new IntList();
+		private final IntList fields = new IntList();
+		private final IntList methods = new IntList();
+		private final IntList args = new IntList();
+		private final IntList vars = new IntList();
+
+		private Writer(MappingTreeView tree) {
+			this.tree = tree;
+			this.namespaceCount = tree.getDstNamespaces().size() + 1;
+		}
+
+		private void write(Path tinyFile, Path binaryFile) throws IOException {
+			final IntList namespaces = new IntList();
+			namespaces.add(intern(tree.getSrcNamespace()));
+
+			for (String namespace : tree.getDstNamespaces()) {
+				namespaces.add(intern(namespace));
+			}
+
+			final IntList metadata = new IntList();
+
+			for (MappingTreeView.MetadataEntryView entry : tree.getMetadata()) {
+				metadata.add(intern(entry.getKey()));
+				metadata.add(intern(entry.getValue()));
+			}
+
+			final List<String> classNames = new ArrayList<>();
+
+			for (MappingTreeView.ClassMappingView classView : tree.getClasses()) {
+				classNames.add(classView.getSrcName());
+				addNames(classes, classView);
+				classes.add(intern(classView.getComment()));
+
+				classes.add(fields.size() / (namespaceCount + 2));
+				classes.add(classView.getFields().size());
+
+				for (MappingTreeView.FieldMappingView field : classView.getFields()) {
+					addNames(fields, field);
+					fields.add(intern(field.getComment()));
+					fields.add(intern(field.getSrcDesc()));
+				}
+
+				classes.add(methods.size() / (namespaceCount + 6));
+				classes.add(classView.getMethods().size());
+
+				for (MappingTreeView.MethodMappingView method : classView.getMethods()) {
+					addNames(methods, method);
+					methods.add(intern(method.getComment()));
+					methods.add(intern(method.getSrcDesc()));
+
+					methods.add(args.size() / (namespaceCount + 3));
+					methods.add(method.getArgs().size());
+
+					for (MappingTreeView.MethodArgMappingView arg : method.getArgs()) {
+						addNames(args, arg);
+						args.add(intern(arg.getComment()));
+						args.add(arg.getArgPosition());
+						args.add(arg.getLvIndex());
+					}
+
+					methods.add(vars.size() / (namespaceCount + 5));
+					methods.add(method.getVars().size());
+
+					for (MappingTreeView.MethodVarMappingView var : method.getVars()) {
+						addNames(vars, var);
+						vars.add(intern(var.getComment()));
+						vars.add(var.getLvtRowIndex());
+						vars.add(var.getLvIndex());
+						vars.add(var.getStartOpIdx());
+						vars.add(var.getEndOpIdx());
+					}
+				}
+			}
+
+			// Class indices sorted by source name, for lookups
+			final List<Integer> classIndex = new ArrayList<>(classNames.size());
+
+			for (int i = 0; i < classNames.size(); i++) {
+				classIndex.add(i);
+			}
+
+			classIndex.sort(Comparator.comparing(classNames::get));
+
+			Files.createDirectories(binaryFile.toAbsolutePath().getParent());
+			final Path tempFile = Files.createTempFile(binaryFile.toAbsolutePath().getParent(), "mappings", ".bin.tmp");
+
+			try {
+				try (var dos = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+					dos.writeInt(MAGIC);
+					dos.writeInt(VERSION);
+					dos.writeLong(Files.size(tinyFile));
+					dos.writeLong(Files.getLastModifiedTime(tinyFile).toMillis());
+					dos.writeInt(namespaceCount);
+					dos.writeInt(metadata.size() / 2);
+					dos.writeInt(stringOffsets.size());
+					dos.writeInt(classNames.size());
+					dos.writeInt(fields.size() / (namespaceCount + 2));
+					dos.writeInt(methods.size() / (namespaceCount + 6));
+					dos.writeInt(args.size() / (namespaceCount + 3));
+					dos.writeInt(vars.size() / (namespaceCount + 5));
+
+					namespaces.writeTo(dos);
+					metadata.writeTo(dos);
+					classes.writeTo(dos);
+
+					for (int index : classIndex) {
+						dos.writeInt(index);
+					}
+
+					fields.writeTo(dos);
+					methods.writeTo(dos);
+					args.writeTo(dos);
+					vars.writeTo(dos);
+
+					for (int offset : stringOffsets) {
+						dos.writeInt(offset);
+					}
+
+					stringData.writeTo(dos);
+				}
+
+				Files.move(tempFile, binaryFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(tempFile);
+			}
+		}
+
+		private void addNames(IntList list, MappingTreeView.ElementMappingView element) {
+			list.add(intern(element.getSrcName()));
+
+			for (int ns = 0; ns < namespaceCount - 1; ns++) {
+				list.add(intern(element.getDstName(ns)));
+			}
+		}
+
+		private int intern(@Nullable String string) {
+			if (string == null) {
+				return NULL;
+			}
+
+			return stringIds.computeIfAbsent(string, s -> {
+				final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+				stringOffsets.add(stringData.size());
+				stringData.writeBytes(ByteBuffer.allocate(4).putInt(bytes.length).array());
+				stringData.writeBytes(bytes);
+				return stringOffsets.size() - 1;
+			});
+		}
+	}
+
+	private static final class IntList {
+		private int[] values = new int[1024];
+		private int size;
+
+		private void add(int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+
+			values[size++] = value;
+		}
+
+		private int size() {
+			return size;
+		}
+
+		private void writeTo(DataOutputStream dos) throws IOException {
+			for (int i = 0; i < size; i++) {
+				dos.writeInt(values[i]);
+			}
+		}
+	}
+}
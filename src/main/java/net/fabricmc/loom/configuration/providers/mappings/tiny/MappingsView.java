@@ -0,0 +1,80 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.configuration.providers.mappings.tiny;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.jetbrains.annotations.Nullable;
+
+import net.fabricmc.mappingio.tree.MappingTreeView;
+
+/**
+ * The parts of a mapping tree that are shared by {@link MappingTreeView} and {@link BinaryMappingTree}, so that code
+ * reading mappings can be written once for both. Namespace ids are the same as in {@link MappingTreeView}.
+ */
+public interface MappingsView {
+	String getSrcNamespace();
+
+	List<String> getDstNamespaces();
+
+	int getNamespaceId(String namespace);
+
+	Collection<? extends ClassView> getClasses();
+
+	interface ElementView {
+		@Nullable
+		String getName(int namespace);
+	}
+
+	interface ClassView extends ElementView {
+		Collection<? extends MemberView> getFields();
+
+		Collection<? extends MethodView> getMethods();
+	}
+
+	interface MemberView extends ElementView {
+		@Nullable
+		String getDesc(int namespace);
+	}
+
+	interface MethodView extends MemberView {
+		Collection<? extends ArgView> getArgs();
+
+		Collection<? extends VarView> getVars();
+	}
+
+	interface ArgView extends ElementView {
+		int getLvIndex();
+	}
+
+	interface VarView extends ElementView {
+		int getLvIndex();
+
+		int getStartOpIdx();
+
+		int getLvtRowIndex();
+	}
+}
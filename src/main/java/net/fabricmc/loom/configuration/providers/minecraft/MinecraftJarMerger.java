@@ -26,52 +26,37 @@ package net.fabricmc.loom.configuration.providers.minecraft;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.SimpleFileVisitor;
-import java.nio.file.StandardOpenOption;
-import java.nio.file.attribute.BasicFileAttributeView;
-import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Objects;
+import java.util.Enumeration;
 import java.util.Set;
 import java.util.TreeSet;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
+import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
 
 import net.fabricmc.loom.util.Constants;
-import net.fabricmc.loom.util.FileSystemUtil;
+import net.fabricmc.loom.util.ParallelJarWriter;
 import net.fabricmc.loom.util.SnowmanClassVisitor;
 import net.fabricmc.loom.util.SyntheticParameterClassVisitor;
 
+/**
+ * Merges the client and server jars into a single jar, adding side annotations to anything that is only on one side.
+ *
+ * <p>Only the central directories of the input jars are read up front. The entries are then read, merged and
+ * compressed in parallel, a bounded number at a time, and written in sorted order.
+ */
 public class MinecraftJarMerger implements AutoCloseable {
-	public static class Entry {
-		public final Path path;
-		public final BasicFileAttributes metadata;
-		public final byte[] data;
-
-		public Entry(Path path, BasicFileAttributes metadata, byte[] data) {
-			this.path = path;
-			this.metadata = metadata;
-			this.data = data;
-		}
-	}
-
 	private static final MinecraftClassMerger CLASS_MERGER = new MinecraftClassMerger();
-	private final FileSystemUtil.Delegate inputClientFs, inputServerFs, outputFs;
-	private final Path inputClient, inputServer;
-	private final Map<String, Entry> entriesClient, entriesServer;
-	private final Set<String> entriesAll;
+	private static final byte[] MANIFEST = "Manifest-Version: 1.0\nMain-Class: net.minecraft.client.Main\n".getBytes(StandardCharsets.UTF_8);
+	private final ZipFile inputClient, inputServer;
+	private final File output;
 	private boolean removeSnowmen = false;
 	private boolean offsetSyntheticsParams = false;
 
@@ -84,13 +69,16 @@ public class MinecraftJarMerger implements AutoCloseable {
 
 		Files.createDirectories(output.toPath().getParent());
 
-		this.inputClient = (inputClientFs = FileSystemUtil.getJarFileSystem(inputClient, false)).get().getPath("/");
-		this.inputServer = (inputServerFs = FileSystemUtil.getJarFileSystem(inputServer, false)).get().getPath("/");
-		this.outputFs = FileSystemUtil.getJarFileSystem(output, true);
+		this.inputClient = new ZipFile(inputClient);
 
-		this.entriesClient = new HashMap<>();
-		this.entriesServer = new HashMap<>();
-		this.entriesAll = new TreeSet<>();
+		try {
+			this.inputServer = new ZipFile(inputServer);
+		} catch (IOException e) {
+			this.inputClient.close();
+			throw e;
+		}
+
+		this.output = output;
 	}
 
 	public void enableSnowmanRemoval() {
@@ -103,148 +91,125 @@ public class MinecraftJarMerger implements AutoCloseable {
 
 	@Override
 	public void close() throws IOException {
-		inputClientFs.close();
-		inputServerFs.close();
-		outputFs.close();
-	}
-
-	private void readToMap(Map<String, Entry> map, Path input) {
 		try {
-			Files.walkFileTree(input, new SimpleFileVisitor<>() {
-				@Override
-				public FileVisitResult visitFile(Path path, BasicFileAttributes attr) throws IOException {
-					if (attr.isDirectory()) {
-						return FileVisitResult.CONTINUE;
-					}
-
-					if (!path.getFileName().toString().endsWith(".class")) {
-						if (path.toString().equals("/META-INF/MANIFEST.MF")) {
-							map.put("META-INF/MANIFEST.MF", new Entry(path, attr,
-									"Manifest-Version: 1.0\nMain-Class: net.minecraft.client.Main\n".getBytes(StandardCharsets.UTF_8)));
-						} else {
-							if (path.toString().startsWith("/META-INF/")) {
-								if (path.toString().endsWith(".SF") || path.toString().endsWith(".RSA")) {
-									return FileVisitResult.CONTINUE;
-								}
-							}
-
-							map.put(path.toString().substring(1), new Entry(path, attr, null));
-						}
-
-						return FileVisitResult.CONTINUE;
-					}
-
-					byte[] output = Files.readAllBytes(path);
-					map.put(path.toString().substring(1), new Entry(path, attr, output));
-					return FileVisitResult.CONTINUE;
-				}
-			});
-		} catch (IOException e) {
-			e.printStackTrace();
+			inputClient.close();
+		} finally {
+			inputServer.close();
 		}
 	}
 
-	private void add(Entry entry) throws IOException {
-		Path outPath = outputFs.get().getPath(entry.path.toString());
+	private static void collectNames(ZipFile zipFile, Set<String> names) {
+		final Enumeration<? extends ZipEntry> entries = zipFile.entries();
 
-		if (outPath.getParent() != null) {
-			Files.createDirectories(outPath.getParent());
-		}
+		while (entries.hasMoreElements()) {
+			final ZipEntry entry = entries.nextElement();
+			final String name = entry.getName();
 
-		if (entry.data != null) {
-			Files.write(outPath, entry.data, StandardOpenOption.CREATE_NEW);
-		} else {
-			Files.copy(entry.path, outPath);
+			if (entry.isDirectory()) {
+				continue;
+			}
+
+			if (name.startsWith("META-INF/") && (name.endsWith(".SF") || name.endsWith(".RSA"))) {
+				continue;
+			}
+
+			names.add(name);
 		}
+	}
+
+	@Nullable
+	private static ZipEntry getEntry(ZipFile zipFile, String name) {
+		final ZipEntry entry = zipFile.getEntry(name);
+		return entry != null && !entry.isDirectory() ? entry : null;
+	}
 
-		Files.getFileAttributeView(outPath, BasicFileAttributeView.class)
-				.setTimes(
-						entry.metadata.creationTime(),
-						entry.metadata.lastAccessTime(),
-						entry.metadata.lastModifiedTime()
-				);
+	private static byte[] read(ZipFile zipFile, ZipEntry entry) throws IOException {
+		try (InputStream is = zipFile.getInputStream(entry)) {
+			return is.readAllBytes();
+		}
 	}
 
 	public void merge() throws IOException {
-		ExecutorService service = Executors.newFixedThreadPool(2);
-		service.submit(() -> readToMap(entriesClient, inputClient));
-		service.submit(() -> readToMap(entriesServer, inputServer));
-		service.shutdown();
+		final Set<String> entriesAll = new TreeSet<>();
+		collectNames(inputClient, entriesAll);
+		collectNames(inputServer, entriesAll);
+
+		try (ParallelJarWriter writer = ParallelJarWriter.create(output.toPath())) {
+			for (String name : entriesAll) {
+				final ZipEntry entryClient = getEntry(inputClient, name);
+				final ZipEntry entryServer = getEntry(inputServer, name);
+				final boolean isClass = name.endsWith(".class");
+				final boolean isMinecraft = entryClient != null || name.startsWith("net/minecraft") || !name.contains("/");
+
+				if (isClass && !isMinecraft && entryClient == null) {
+					// Server bundles libraries, client doesn't - skip them
+					continue;
+				}
 
-		try {
-			service.awaitTermination(1, TimeUnit.HOURS);
-		} catch (InterruptedException e) {
-			e.printStackTrace();
+				writer.putParentDirectories(name);
+
+				final long lastModified = (entryClient != null ? entryClient : entryServer).getTime();
+
+				if (name.equals("META-INF/MANIFEST.MF")) {
+					writer.put(name, lastModified, MANIFEST);
+					continue;
+				}
+
+				writer.put(name, lastModified, () -> mergeEntry(entryClient, entryServer, isClass, isMinecraft));
+			}
+		} catch (IOException | RuntimeException e) {
+			Files.deleteIfExists(output.toPath());
+			throw e;
 		}
+	}
+
+	private byte[] mergeEntry(@Nullable ZipEntry entryClient, @Nullable ZipEntry entryServer, boolean isClass, boolean isMinecraft) throws IOException {
+		byte[] data;
+		String side = null;
 
-		entriesAll.addAll(entriesClient.keySet());
-		entriesAll.addAll(entriesServer.keySet());
-
-		List<Entry> entries = entriesAll.parallelStream().map((entry) -> {
-			boolean isClass = entry.endsWith(".class");
-			boolean isMinecraft = entriesClient.containsKey(entry) || entry.startsWith("net/minecraft") || !entry.contains("/");
-			Entry result;
-			String side = null;
-
-			Entry entry1 = entriesClient.get(entry);
-			Entry entry2 = entriesServer.get(entry);
-
-			if (entry1 != null && entry2 != null) {
-				if (Arrays.equals(entry1.data, entry2.data)) {
-					result = entry1;
-				} else {
-					if (isClass) {
-						result = new Entry(entry1.path, entry1.metadata, CLASS_MERGER.merge(entry1.data, entry2.data));
-					} else {
-						// FIXME: More heuristics?
-						result = entry1;
-					}
+		if (entryClient != null && entryServer != null) {
+			data = read(inputClient, entryClient);
+
+			if (isClass) {
+				final byte[] dataServer = read(inputServer, entryServer);
+
+				if (!Arrays.equals(data, dataServer)) {
+					data = CLASS_MERGER.merge(data, dataServer);
 				}
-			} else if ((result = entry1) != null) {
-				side = "CLIENT";
-			} else if ((result = entry2) != null) {
-				side = "SERVER";
 			}
 
-			if (isClass && !isMinecraft && "SERVER".equals(side)) {
-				// Server bundles libraries, client doesn't - skip them
-				return null;
+			// FIXME: More heuristics for resources?
+		} else if (entryClient != null) {
+			data = read(inputClient, entryClient);
+			side = "CLIENT";
+		} else {
+			data = read(inputServer, entryServer);
+			side = "SERVER";
+		}
+
+		if (isMinecraft && isClass) {
+			ClassReader reader = new ClassReader(data);
+			ClassWriter writer = new ClassWriter(0);
+			ClassVisitor visitor = writer;
+
+			if (side != null) {
+				visitor = new MinecraftClassMerger.SidedClassVisitor(Constants.ASM_VERSION, visitor, side);
 			}
 
-			if (result != null) {
-				if (isMinecraft && isClass) {
-					byte[] data = result.data;
-					ClassReader reader = new ClassReader(data);
-					ClassWriter writer = new ClassWriter(0);
-					ClassVisitor visitor = writer;
-
-					if (side != null) {
-						visitor = new MinecraftClassMerger.SidedClassVisitor(Constants.ASM_VERSION, visitor, side);
-					}
-
-					if (removeSnowmen) {
-						visitor = new SnowmanClassVisitor(Constants.ASM_VERSION, visitor);
-					}
-
-					if (offsetSyntheticsParams) {
-						visitor = new SyntheticParameterClassVisitor(Constants.ASM_VERSION, visitor);
-					}
-
-					if (visitor != writer) {
-						reader.accept(visitor, 0);
-						data = writer.toByteArray();
-						result = new Entry(result.path, result.metadata, data);
-					}
-				}
+			if (removeSnowmen) {
+				visitor = new SnowmanClassVisitor(Constants.ASM_VERSION, visitor);
+			}
 
-				return result;
-			} else {
-				return null;
+			if (offsetSyntheticsParams) {
+				visitor = new SyntheticParameterClassVisitor(Constants.ASM_VERSION, visitor);
 			}
-		}).filter(Objects::nonNull).toList();
 
-		for (Entry e : entries) {
-			add(e);
+			if (visitor != writer) {
+				reader.accept(visitor, 0);
+				data = writer.toByteArray();
+			}
 		}
+
+		return data;
 	}
 }
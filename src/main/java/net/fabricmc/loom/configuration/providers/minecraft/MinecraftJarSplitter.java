@@ -26,21 +26,25 @@ package net.fabricmc.loom.configuration.providers.minecraft;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Objects;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
 import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import com.google.common.collect.Sets;
 
 import net.fabricmc.loom.util.Constants;
 import net.fabricmc.loom.util.FileSystemUtil;
+import net.fabricmc.loom.util.ParallelJarWriter;
 
 public class MinecraftJarSplitter implements AutoCloseable {
 	private final Path clientInputJar;
@@ -108,35 +112,35 @@ public class MinecraftJarSplitter implements AutoCloseable {
 	private void copyEntriesToJar(Set<String> entries, Path inputJar, Path outputJar, String env) throws IOException {
 		Files.deleteIfExists(outputJar);
 
-		try (FileSystemUtil.Delegate inputFs = FileSystemUtil.getJarFileSystem(inputJar);
-				FileSystemUtil.Delegate outputFs = FileSystemUtil.getJarFileSystem(outputJar, true)) {
-			for (String entry : entries) {
-				Path inputPath = inputFs.get().getPath(entry);
-				Path outputPath = outputFs.get().getPath(entry);
-
-				assert Files.isRegularFile(inputPath);
-
-				Path outputPathParent = outputPath.getParent();
-
-				if (outputPathParent != null) {
-					Files.createDirectories(outputPathParent);
-				}
-
-				Files.copy(inputPath, outputPath, StandardCopyOption.COPY_ATTRIBUTES);
+		try (ZipFile zipFile = new ZipFile(inputJar.toFile());
+				ParallelJarWriter writer = ParallelJarWriter.create(outputJar)) {
+			// Sorted so that the output does not depend on the iteration order of the set
+			for (String name : new TreeSet<>(entries)) {
+				final ZipEntry entry = Objects.requireNonNull(zipFile.getEntry(name), () -> "Missing entry " + name + " in " + inputJar);
+
+				writer.putParentDirectories(name);
+				writer.put(name, entry.getTime(), () -> {
+					try (InputStream is = zipFile.getInputStream(entry)) {
+						return is.readAllBytes();
+					}
+				});
 			}
 
-			writeManifest(outputFs, env);
+			writeManifest(writer, env);
+
+			// Wait for the pending entries before the zip file is closed
+			writer.flush();
 		}
 	}
 
-	private void writeManifest(FileSystemUtil.Delegate outputFs, String env) throws IOException {
+	private void writeManifest(ParallelJarWriter writer, String env) throws IOException {
 		final Manifest manifest = new Manifest();
 		manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
 		manifest.getMainAttributes().putValue(Constants.Manifest.SPLIT_ENV_NAME, env);
 		ByteArrayOutputStream out = new ByteArrayOutputStream();
 		manifest.write(out);
-		Files.createDirectories(outputFs.get().getPath("META-INF"));
-		Files.write(outputFs.get().getPath(Constants.Manifest.PATH), out.toByteArray());
+		writer.putParentDirectories(Constants.Manifest.PATH);
+		writer.put(Constants.Manifest.PATH, -1, out.toByteArray());
 	}
 
 	@Override
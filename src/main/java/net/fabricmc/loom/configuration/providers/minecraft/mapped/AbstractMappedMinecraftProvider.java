@@ -26,19 +26,27 @@ package net.fabricmc.loom.configuration.providers.minecraft.mapped;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 import dev.architectury.loom.util.MappingOption;
 import org.gradle.api.Project;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.VisibleForTesting;
 
 import net.fabricmc.loom.LoomGradleExtension;
 import net.fabricmc.loom.api.mappings.layered.MappingsNamespace;
@@ -48,13 +56,14 @@ import net.fabricmc.loom.configuration.mods.dependency.LocalMavenHelper;
 import net.fabricmc.loom.configuration.providers.forge.minecraft.ForgeMinecraftProvider;
 import net.fabricmc.loom.configuration.providers.mappings.IntermediaryMappingsProvider;
 import net.fabricmc.loom.configuration.providers.mappings.MappingConfiguration;
-import net.fabricmc.loom.configuration.providers.mappings.TinyMappingsService;
 import net.fabricmc.loom.configuration.providers.minecraft.MinecraftJar;
 import net.fabricmc.loom.configuration.providers.minecraft.MinecraftProvider;
 import net.fabricmc.loom.configuration.providers.minecraft.MinecraftSourceSets;
 import net.fabricmc.loom.configuration.providers.minecraft.MinecraftVersionMeta;
 import net.fabricmc.loom.configuration.providers.minecraft.SignatureFixerApplyVisitor;
 import net.fabricmc.loom.extension.LoomFiles;
+import net.fabricmc.loom.util.LoomExecutors;
+import net.fabricmc.loom.util.RemapClasspathIndex;
 import net.fabricmc.loom.util.SidedClassVisitor;
 import net.fabricmc.loom.util.TinyRemapperHelper;
 import net.fabricmc.loom.util.srg.InnerClassRemapper;
@@ -65,6 +74,8 @@ import net.fabricmc.tinyremapper.OutputConsumerPath;
 import net.fabricmc.tinyremapper.TinyRemapper;
 
 public abstract class AbstractMappedMinecraftProvider<M extends MinecraftProvider> implements MappedMinecraftProvider.ProviderImpl {
+	private static final int MAX_CONCURRENT_REMAPS = 2;
+
 	protected final M minecraftProvider;
 	private final Project project;
 	protected final LoomGradleExtension extension;
@@ -96,7 +107,7 @@ public abstract class AbstractMappedMinecraftProvider<M extends MinecraftProvide
 
 		if (!areOutputsValid(remappedJars) || context.refreshOutputs() || !hasBackupJars(minecraftJars)) {
 			try {
-				remapInputs(remappedJars, context.configContext());
+				remapInputs(remappedJars, context);
 				createBackupJars(minecraftJars);
 			} catch (Throwable t) {
 				cleanOutputs(remappedJars);
@@ -106,19 +117,26 @@ public abstract class AbstractMappedMinecraftProvider<M extends MinecraftProvide
 		}
 
 		if (context.applyDependencies()) {
-			final List<MinecraftJar.Type> dependencyTargets = getDependencyTypes();
-
-			if (!dependencyTargets.isEmpty()) {
-				MinecraftSourceSets.get(getProject()).applyDependencies(
-						(configuration, type) -> getProject().getDependencies().add(configuration, getDependencyNotation(type)),
-						dependencyTargets
-				);
-			}
+			applyDependencies();
 		}
 
 		return minecraftJars;
 	}
 
+	/**
+	 * Add the provided jars as dependencies of the project, this must be called on the thread configuring the project.
+	 */
+	public void applyDependencies() {
+		final List<MinecraftJar.Type> dependencyTargets = getDependencyTypes();
+
+		if (!dependencyTargets.isEmpty()) {
+			MinecraftSourceSets.get(getProject()).applyDependencies(
+					(configuration, type) -> getProject().getDependencies().add(configuration, getDependencyNotation(type)),
+					dependencyTargets
+			);
+		}
+	}
+
 	// Create two copies of the remapped jar, the backup jar is used as the input of genSources
 	public static Path getBackupJarPath(MinecraftJar minecraftJar) {
 		final Path outputJarPath = minecraftJar.getPath();
@@ -141,9 +159,17 @@ public abstract class AbstractMappedMinecraftProvider<M extends MinecraftProvide
 		}
 	}
 
-	public record ProvideContext(boolean applyDependencies, boolean refreshOutputs, ConfigContext configContext) {
-		ProvideContext withApplyDependencies(boolean applyDependencies) {
-			return new ProvideContext(applyDependencies, refreshOutputs(), configContext());
+	/**
+	 * @param remapExecutor the executor to remap the jars on concurrently, or null to remap them one after another on the
+	 * calling thread
+	 */
+	public record ProvideContext(boolean applyDependencies, boolean refreshOutputs, ConfigContext configContext, @Nullable Executor remapExecutor) {
+		public ProvideContext(boolean applyDependencies, boolean refreshOutputs, ConfigContext configContext) {
+			this(applyDependencies, refreshOutputs, configContext, null);
+		}
+
+		public ProvideContext withApplyDependencies(boolean applyDependencies) {
+			return new ProvideContext(applyDependencies, refreshOutputs(), configContext(), remapExecutor());
 		}
 	}
 
@@ -217,66 +243,137 @@ public abstract class AbstractMappedMinecraftProvider<M extends MinecraftProvide
 		return true;
 	}
 
-	private void remapInputs(List<RemappedJars> remappedJars, ConfigContext configContext) throws IOException {
+	private void remapInputs(List<RemappedJars> remappedJars, ProvideContext context) throws IOException {
 		cleanOutputs(remappedJars);
 
-		for (RemappedJars remappedJar : remappedJars) {
-			remapJar(remappedJar, configContext);
-		}
+		// Everything that needs the project is resolved here, the jars themselves may be remapped on other threads.
+		final RemapInputs inputs = getRemapInputs(context.configContext());
+		final List<RemapJob> jobs = remappedJars.stream()
+				.map(remappedJar -> new RemapJob(remappedJar, getMavenHelper(remappedJar.type()), builder -> configureRemapper(remappedJar, builder)))
+				.toList();
+
+		remapJars(jobs, inputs, context.remapExecutor());
 	}
 
-	private void remapJar(RemappedJars remappedJars, ConfigContext configContext) throws IOException {
+	private RemapInputs getRemapInputs(ConfigContext configContext) {
 		final MappingConfiguration mappingConfiguration = extension.getMappingConfiguration();
+		final MinecraftVersionMeta.JavaVersion javaVersion = minecraftProvider.getVersionInfo().javaVersion();
+		final MemoryMappingTree mappings = mappingConfiguration.getMappingsService(getProject(), configContext.serviceFactory(), MappingOption.forPlatform(extension)).getMappingTree();
+
+		// The signature fixes only depend on the target namespace, so are shared by all of the jars.
+		final Map<String, String> remappedSignatures = SignatureFixerApplyVisitor.getRemappedSignatures(getTargetNamespace() == MappingsNamespace.INTERMEDIARY, mappingConfiguration, getProject(), configContext.serviceFactory(), getTargetNamespace().toString());
+
+		String objectHolderClass = null;
+
+		if (extension.isForgeLikeAndOfficial()) {
+			if (extension.isNeoForge()) {
+				objectHolderClass = "net.neoforged.neoforge.registries.ObjectHolderRegistry";
+			} else {
+				objectHolderClass = "net.minecraftforge.registries.ObjectHolderRegistry";
+			}
+		}
+
+		return new RemapInputs(
+				mappings,
+				getTargetNamespace().toString(),
+				Map.copyOf(remappedSignatures),
+				Set.copyOf(extension.getKnownIndyBsms().get()),
+				extension.isForgeLike(),
+				extension.isNeoForge(),
+				javaVersion != null && javaVersion.majorVersion() >= 16,
+				objectHolderClass,
+				IntermediaryNamespaces.runtimeIntermediary(getProject()),
+				String.valueOf(mappingConfiguration.tinyMappings)
+		);
+	}
+
+	/**
+	 * Remap the jars one after another on the calling thread, or concurrently on the given executor.
+	 */
+	@VisibleForTesting
+	public static void remapJars(List<RemapJob> jobs, RemapInputs inputs, @Nullable Executor executor) throws IOException {
+		if (executor == null) {
+			for (RemapJob job : jobs) {
+				remapJar(job, inputs);
+			}
+
+			return;
+		}
+
+		final List<CompletableFuture<Void>> futures = new ArrayList<>(jobs.size());
+
+		for (RemapJob job : jobs) {
+			futures.add(CompletableFuture.runAsync(() -> {
+				try {
+					remapJar(job, inputs);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}, executor));
+		}
+
+		try {
+			CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof UncheckedIOException uncheckedIOException) {
+				throw uncheckedIOException.getCause();
+			} else if (e.getCause() instanceof RuntimeException runtimeException) {
+				throw runtimeException;
+			}
+
+			throw e;
+		}
+	}
+
+	/**
+	 * Create the executor that jars are remapped on when the Minecraft setup runs concurrently. Each tiny remapper
+	 * already uses all of the cores, so a single executor is shared by all of the remap steps to limit the number of
+	 * jars held in memory at once.
+	 */
+	public static Executor createRemapExecutor() {
+		// Allow roughly 1GB of heap for each jar being remapped
+		final long maxMemory = Runtime.getRuntime().maxMemory();
+		final int maxConcurrentRemaps = (int) Math.max(1, Math.min(MAX_CONCURRENT_REMAPS, maxMemory / (1024L * 1024L * 1024L)));
+		return LoomExecutors.bounded(LoomExecutors.io(), maxConcurrentRemaps);
+	}
+
+	private static void remapJar(RemapJob job, RemapInputs inputs) throws IOException {
+		final RemappedJars remappedJars = job.remappedJars();
 		final String fromM = remappedJars.sourceNamespace().toString();
-		final String toM = getTargetNamespace().toString();
 
 		Files.deleteIfExists(remappedJars.outputJarPath());
 
-		final Set<String> classNames = extension.isForgeLike() ? InnerClassRemapper.readClassNames(remappedJars.inputJar()) : Set.of();
-		final Map<String, String> remappedSignatures = SignatureFixerApplyVisitor.getRemappedSignatures(getTargetNamespace() == MappingsNamespace.INTERMEDIARY, mappingConfiguration, getProject(), configContext.serviceFactory(), toM);
-		final MinecraftVersionMeta.JavaVersion javaVersion = minecraftProvider.getVersionInfo().javaVersion();
-		final boolean fixRecords = javaVersion != null && javaVersion.majorVersion() >= 16;
+		final Set<String> classNames = inputs.forgeLike() ? InnerClassRemapper.readClassNames(remappedJars.inputJar()) : Set.of();
 
-		TinyRemapper remapper = TinyRemapperHelper.getTinyRemapper(getProject(), configContext.serviceFactory(), fromM, toM, fixRecords, (builder) -> {
-			builder.extraPostApplyVisitor(new SignatureFixerApplyVisitor(remappedSignatures));
-			if (extension.isNeoForge()) builder.extension(new MixinExtension(inputTag -> true));
-			configureRemapper(remappedJars, builder);
+		TinyRemapper remapper = TinyRemapperHelper.getTinyRemapper(inputs.mappings(), inputs.forgeLike(), inputs.knownIndyBsms(), fromM, inputs.targetNamespace(), inputs.fixRecords(), (builder) -> {
+			builder.extraPostApplyVisitor(new SignatureFixerApplyVisitor(inputs.remappedSignatures()));
+			if (inputs.neoForge()) builder.extension(new MixinExtension(inputTag -> true));
+			job.configurer().accept(builder);
 		}, classNames);
 
 		try (OutputConsumerPath outputConsumer = new OutputConsumerPath.Builder(remappedJars.outputJarPath()).build()) {
 			outputConsumer.addNonClassFiles(remappedJars.inputJar());
 
-			for (Path path : remappedJars.remapClasspath()) {
-				remapper.readClassPath(path);
-			}
+			remapper.readClassPath(RemapClasspathIndex.resolve(List.of(remappedJars.remapClasspath())));
 
 			remapper.readInputs(remappedJars.inputJar());
 			remapper.apply(outputConsumer);
 		} catch (Exception e) {
-			throw new RuntimeException("Failed to remap JAR " + remappedJars.inputJar() + " with mappings from " + mappingConfiguration.tinyMappings, e);
+			throw new RuntimeException("Failed to remap JAR " + remappedJars.inputJar() + " with mappings from " + inputs.mappingsDescription(), e);
 		} finally {
 			remapper.finish();
 		}
 
-		getMavenHelper(remappedJars.type()).savePom();
-
-		if (extension.isForgeLikeAndOfficial()) {
-			final MappingOption mappingOption = MappingOption.forPlatform(extension);
-			final TinyMappingsService mappingsService = extension.getMappingConfiguration().getMappingsService(project, configContext.serviceFactory(), mappingOption);
-			final String className;
-
-			if (extension.isNeoForge()) {
-				className = "net.neoforged.neoforge.registries.ObjectHolderRegistry";
-			} else {
-				className = "net.minecraftforge.registries.ObjectHolderRegistry";
-			}
+		job.mavenHelper().savePom();
 
-			final String sourceNamespace = IntermediaryNamespaces.runtimeIntermediary(project);
-			final MemoryMappingTree mappings = mappingsService.getMappingTree();
-			RemapObjectHolderVisitor.remapObjectHolder(remappedJars.outputJar().getPath(), className, mappings, sourceNamespace, "named");
+		if (inputs.objectHolderClass() != null) {
+			RemapObjectHolderVisitor.remapObjectHolder(remappedJars.outputJarPath(), inputs.objectHolderClass(), inputs.mappings(), inputs.objectHolderNamespace(), "named");
 		}
 	}
 
+	/**
+	 * Called for each jar while it is being remapped, possibly on another thread so must not access the project.
+	 */
 	protected void configureRemapper(RemappedJars remappedJars, TinyRemapper.Builder tinyRemapperBuilder) {
 	}
 
@@ -306,6 +403,29 @@ public abstract class AbstractMappedMinecraftProvider<M extends MinecraftProvide
 		return minecraftProvider;
 	}
 
+	/**
+	 * A jar to remap, along with everything needed to do so that is specific to the jar.
+	 */
+	public record RemapJob(RemappedJars remappedJars, LocalMavenHelper mavenHelper, Consumer<TinyRemapper.Builder> configurer) {
+	}
+
+	/**
+	 * The inputs shared by all of the jars of a provider, resolved from the project before remapping.
+	 */
+	public record RemapInputs(
+			MemoryMappingTree mappings,
+			String targetNamespace,
+			Map<String, String> remappedSignatures,
+			Set<String> knownIndyBsms,
+			boolean forgeLike,
+			boolean neoForge,
+			boolean fixRecords,
+			@Nullable String objectHolderClass,
+			String objectHolderNamespace,
+			String mappingsDescription
+	) {
+	}
+
 	public record RemappedJars(Path inputJar, MinecraftJar outputJar, MappingsNamespace sourceNamespace, Path... remapClasspath) {
 		public Path outputJarPath() {
 			return outputJar().getPath();
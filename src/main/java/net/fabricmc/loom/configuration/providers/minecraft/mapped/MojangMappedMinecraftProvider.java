@@ -31,6 +31,7 @@ import org.gradle.api.Project;
 import net.fabricmc.loom.api.mappings.layered.MappingsNamespace;
 import net.fabricmc.loom.configuration.providers.minecraft.LegacyMergedMinecraftProvider;
 import net.fabricmc.loom.configuration.providers.minecraft.MergedMinecraftProvider;
+import net.fabricmc.loom.configuration.providers.minecraft.MinecraftJar;
 import net.fabricmc.loom.configuration.providers.minecraft.MinecraftProvider;
 import net.fabricmc.loom.configuration.providers.minecraft.SingleJarEnvType;
 import net.fabricmc.loom.configuration.providers.minecraft.SingleJarMinecraftProvider;
@@ -93,7 +94,7 @@ public abstract sealed class MojangMappedMinecraftProvider<M extends MinecraftPr
 
 		@Override
 		protected void configureRemapper(RemappedJars remappedJars, TinyRemapper.Builder tinyRemapperBuilder) {
-			if (remappedJars.outputJar().equals(getClientOnlyJar())) {
+			if (remappedJars.type() == MinecraftJar.Type.CLIENT_ONLY) {
 				tinyRemapperBuilder.extraPostApplyVisitor(SidedClassVisitor.CLIENT);
 			}
 		}
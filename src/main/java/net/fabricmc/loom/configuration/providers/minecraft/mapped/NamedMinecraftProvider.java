@@ -33,7 +33,6 @@ import net.fabricmc.loom.configuration.providers.minecraft.LegacyMergedMinecraft
 import net.fabricmc.loom.configuration.providers.minecraft.MergedMinecraftProvider;
 import net.fabricmc.loom.configuration.providers.minecraft.MinecraftJar;
 import net.fabricmc.loom.configuration.providers.minecraft.MinecraftProvider;
-import net.fabricmc.loom.configuration.providers.minecraft.MinecraftSourceSets;
 import net.fabricmc.loom.configuration.providers.minecraft.SingleJarEnvType;
 import net.fabricmc.loom.configuration.providers.minecraft.SingleJarMinecraftProvider;
 import net.fabricmc.loom.configuration.providers.minecraft.SplitMinecraftProvider;
@@ -100,10 +99,7 @@ public abstract class NamedMinecraftProvider<M extends MinecraftProvider> extend
 			getMavenHelper(MinecraftJar.Type.MERGED).savePom();
 
 			if (context.applyDependencies()) {
-				MinecraftSourceSets.get(getProject()).applyDependencies(
-						(configuration, type) -> getProject().getDependencies().add(configuration, getDependencyNotation(type)),
-						getDependencyTypes()
-				);
+				applyDependencies();
 			}
 
 			return List.of(getMergedJar());
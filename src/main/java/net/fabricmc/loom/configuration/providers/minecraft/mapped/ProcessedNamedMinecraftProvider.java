@@ -33,18 +33,21 @@ import java.util.Objects;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import net.fabricmc.loom.LoomGradlePlugin;
 import net.fabricmc.loom.configuration.ConfigContext;
 import net.fabricmc.loom.configuration.mods.dependency.LocalMavenHelper;
 import net.fabricmc.loom.configuration.processors.MinecraftJarProcessorManager;
+import net.fabricmc.loom.configuration.processors.ProcessedJarCache;
 import net.fabricmc.loom.configuration.processors.ProcessorContextImpl;
 import net.fabricmc.loom.configuration.providers.minecraft.LegacyMergedMinecraftProvider;
 import net.fabricmc.loom.configuration.providers.minecraft.MergedMinecraftProvider;
 import net.fabricmc.loom.configuration.providers.minecraft.MinecraftJar;
 import net.fabricmc.loom.configuration.providers.minecraft.MinecraftProvider;
-import net.fabricmc.loom.configuration.providers.minecraft.MinecraftSourceSets;
 import net.fabricmc.loom.configuration.providers.minecraft.SingleJarEnvType;
 import net.fabricmc.loom.configuration.providers.minecraft.SingleJarMinecraftProvider;
 import net.fabricmc.loom.configuration.providers.minecraft.SplitMinecraftProvider;
+import net.fabricmc.loom.util.Constants;
+import net.fabricmc.loom.util.gradle.GradleUtils;
 
 public abstract class ProcessedNamedMinecraftProvider<M extends MinecraftProvider, P extends NamedMinecraftProvider<M>> extends NamedMinecraftProvider<M> {
 	private final P parentMinecraftProvider;
@@ -87,38 +90,53 @@ public abstract class ProcessedNamedMinecraftProvider<M extends MinecraftProvide
 	}
 
 	private void processJars(Map<MinecraftJar, MinecraftJar> minecraftJarMap, ConfigContext configContext) throws IOException {
+		final String sharedCacheKey = jarProcessorManager.getSharedCacheKey();
+
 		for (Map.Entry<MinecraftJar, MinecraftJar> entry : minecraftJarMap.entrySet()) {
 			final MinecraftJar minecraftJar = entry.getKey();
 			final MinecraftJar outputJar = entry.getValue();
 			deleteSimilarJars(outputJar.getPath());
 
 			final LocalMavenHelper mavenHelper = getMavenHelper(minecraftJar.getType());
-			final Path outputPath = mavenHelper.copyToMaven(minecraftJar.getPath(), null);
+			final ProcessorContextImpl processorContext = new ProcessorContextImpl(configContext, minecraftJar);
+
+			if (sharedCacheKey == null) {
+				final Path outputPath = mavenHelper.copyToMaven(minecraftJar.getPath(), null);
+
+				assert outputJar.getPath().equals(outputPath);
+
+				jarProcessorManager.processJar(outputPath, processorContext);
+				continue;
+			}
+
+			final ProcessedJarCache cache = getProcessedJarCache();
+			final String key = cache.getKey(
+					minecraftJar.getPath(),
+					LoomGradlePlugin.LOOM_VERSION,
+					sharedCacheKey,
+					minecraftJar.getType().toString(),
+					extension.getMappingConfiguration().mappingsIdentifier()
+			);
+			final Path cachedJar = cache.getOrCreate(key, extension.refreshDeps(), output -> {
+				Files.copy(minecraftJar.getPath(), output);
+				jarProcessorManager.processJar(output, processorContext);
+			});
+			final Path outputPath = mavenHelper.linkToMaven(cachedJar, null);
 
 			assert outputJar.getPath().equals(outputPath);
-
-			jarProcessorManager.processJar(outputPath, new ProcessorContextImpl(configContext, minecraftJar));
 		}
 	}
 
+	private ProcessedJarCache getProcessedJarCache() {
+		final int maxSize = GradleUtils.getIntegerPropertyProvider(getProject(), Constants.Properties.PROCESSED_JAR_CACHE_MAX_SIZE).getOrElse(2048);
+		return ProcessedJarCache.create(extension.getFiles().getUserCache().toPath().resolve("processed_minecraft"), maxSize * 1024L * 1024L);
+	}
+
 	@Override
 	public List<MinecraftJar.Type> getDependencyTypes() {
 		return parentMinecraftProvider.getDependencyTypes();
 	}
 
-	private void applyDependencies() {
-		final List<MinecraftJar.Type> dependencyTargets = getDependencyTypes();
-
-		if (dependencyTargets.isEmpty()) {
-			return;
-		}
-
-		MinecraftSourceSets.get(getProject()).applyDependencies(
-				(configuration, name) -> getProject().getDependencies().add(configuration, getDependencyNotation(name)),
-				dependencyTargets
-		);
-	}
-
 	private void deleteSimilarJars(Path jar) throws IOException {
 		Files.deleteIfExists(jar);
 		final Path parent = jar.getParent();
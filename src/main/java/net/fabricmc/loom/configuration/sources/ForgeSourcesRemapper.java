@@ -26,39 +26,57 @@ package net.fabricmc.loom.configuration.sources;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.PrintStream;
+import java.io.InputStream;
 import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiConsumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
-
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import dev.architectury.loom.forge.tool.ForgeToolExecutor;
+import dev.architectury.loom.forge.tool.ToolOutputRouter;
 import dev.architectury.loom.util.MappingOption;
 import org.apache.commons.io.output.NullOutputStream;
 import org.cadixdev.lorenz.MappingSet;
 import org.cadixdev.mercury.Mercury;
 import org.cadixdev.mercury.remapper.MercuryRemapper;
 import org.gradle.api.Project;
+import org.gradle.api.logging.Logger;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.VisibleForTesting;
 
 import net.fabricmc.loom.LoomGradleExtension;
 import net.fabricmc.loom.api.mappings.layered.MappingsNamespace;
 import net.fabricmc.loom.build.IntermediaryNamespaces;
 import net.fabricmc.loom.configuration.providers.mappings.TinyMappingsService;
 import net.fabricmc.loom.task.GenerateSourcesTask;
+import net.fabricmc.loom.util.Checksum;
 import net.fabricmc.loom.util.DeletingFileVisitor;
 import net.fabricmc.loom.util.DependencyDownloader;
 import net.fabricmc.loom.util.FileSystemUtil;
@@ -66,11 +84,17 @@ import net.fabricmc.loom.util.LoomVersions;
 import net.fabricmc.loom.util.SourceRemapper;
 import net.fabricmc.loom.util.ThreadingUtils;
 import net.fabricmc.loom.util.TinyRemapperHelper;
-import net.fabricmc.loom.util.ZipUtils;
 import net.fabricmc.loom.util.service.ServiceFactory;
 import net.fabricmc.lorenztiny.TinyMappingsReader;
+import net.fabricmc.mappingio.tree.MemoryMappingTree;
 
 public class ForgeSourcesRemapper {
+	// Bump when the remapping changes, to invalidate the cached sources
+	private static final int CACHE_VERSION = 1;
+	private static final Duration CACHE_MAX_AGE = Duration.ofDays(14);
+	// Sources smaller than this are not split into more partitions
+	private static final int MIN_PARTITION_SIZE = 500;
+
 	public static void addBaseForgeSources(Project project, ServiceFactory serviceFactory) throws IOException {
 		List<Path> minecraftJars = LoomGradleExtension.get(project).getMinecraftJars(MappingsNamespace.NAMED);
 		Path minecraftJar;
@@ -129,185 +153,317 @@ public class ForgeSourcesRemapper {
 
 	public static void provideForgeSources(Project project, ServiceFactory serviceFactory, Predicate<String> classFilter, BiConsumer<String, byte[]> consumer) throws IOException {
 		LoomGradleExtension extension = LoomGradleExtension.get(project);
-		List<Path> forgeInstallerSources = new ArrayList<>();
-		Path legacySources = null;
+		// Sorted so that the cache key is stable
+		Map<String, byte[]> forgeSources = new TreeMap<>();
+		int sourceJars = 0;
 
 		if (extension.getForgeUserdevProvider().isFG3()) {
 			String sourceDependency = extension.getForgeUserdevProvider().getJson().getAsJsonPrimitive("sources").getAsString();
 
 			for (File file : DependencyDownloader.download(project, sourceDependency, false, true)) {
-				forgeInstallerSources.add(file.toPath());
 				project.getLogger().info("Found forge source jar: {}", file);
+				sourceJars++;
+
+				try (InputStream is = Files.newInputStream(file.toPath())) {
+					extractSources(is, forgeSources);
+				}
 			}
 		} else {
-			Path userdevJar = extension.getForgeUserdevProvider().getUserdevJar().toPath();
-
-			if (ZipUtils.contains(userdevJar, "sources.zip")) {
-				byte[] sourcesZip = ZipUtils.unpack(userdevJar, "sources.zip");
-				legacySources = Files.createTempFile("sources", ".jar");
-				Files.deleteIfExists(legacySources);
-				legacySources.toFile().deleteOnExit();
-				Files.write(legacySources, sourcesZip);
-				forgeInstallerSources.add(legacySources);
+			try (ZipFile userdevJar = new ZipFile(extension.getForgeUserdevProvider().getUserdevJar())) {
+				ZipEntry sourcesZip = userdevJar.getEntry("sources.zip");
+
+				if (sourcesZip != null) {
+					sourceJars++;
+
+					try (InputStream is = userdevJar.getInputStream(sourcesZip)) {
+						extractSources(is, forgeSources);
+					}
+				}
 			}
 		}
 
-		project.getLogger().lifecycle(":found {} forge source jars", forgeInstallerSources.size());
-		Map<String, byte[]> forgeSources = extractSources(forgeInstallerSources);
+		project.getLogger().lifecycle(":found {} forge source jars", sourceJars);
 		forgeSources.keySet().removeIf(classFilter.negate());
 		project.getLogger().lifecycle(":extracted {} forge source classes", forgeSources.size());
 		remapSources(project, serviceFactory, forgeSources);
 		forgeSources.forEach(consumer);
-
-		if (legacySources != null) {
-			Files.deleteIfExists(legacySources);
-		}
 	}
 
 	private static void remapSources(Project project, ServiceFactory serviceFactory, Map<String, byte[]> sources) throws IOException {
-		File tmpInput = File.createTempFile("tmpInputForgeSources", null);
-		tmpInput.delete();
-		tmpInput.deleteOnExit();
-		File tmpOutput = File.createTempFile("tmpOutputForgeSources", null);
-		tmpOutput.delete();
-		tmpOutput.deleteOnExit();
-
-		try (FileSystemUtil.Delegate delegate = FileSystemUtil.getJarFileSystem(tmpInput, true)) {
-			ThreadingUtils.TaskCompleter taskCompleter = ThreadingUtils.taskCompleter();
+		LoomGradleExtension extension = LoomGradleExtension.get(project);
+		final MappingOption mappingOption = MappingOption.forPlatform(extension);
+		final String sourceNamespace = IntermediaryNamespaces.intermediary(project);
+		final Path mappings = extension.getMappingConfiguration().getMappingsPath(mappingOption);
+		final Path cacheFile = getCacheFile(extension, sourceNamespace, mappings, sources);
 
-			for (Map.Entry<String, byte[]> entry : sources.entrySet()) {
-				Path path = delegate.get().getPath(entry.getKey());
+		if (readCache(project.getLogger(), cacheFile, sources)) {
+			project.getLogger().lifecycle(":restored {} remapped forge sources from cache", sources.size());
+			return;
+		}
 
-				if (path.getParent() != null) {
-					Files.createDirectories(path.getParent());
-				}
+		Map<String, byte[]> remapped = remapForgeSourcesInner(project, serviceFactory, mappingOption, sourceNamespace, sources);
+		int failedToRemap = 0;
 
-				taskCompleter.add(() -> {
-					Files.write(path, entry.getValue(), StandardOpenOption.CREATE);
-				});
-			}
+		for (Iterator<Map.Entry<String, byte[]>> it = sources.entrySet().iterator(); it.hasNext(); ) {
+			Map.Entry<String, byte[]> entry = it.next();
+			byte[] bytes = remapped.get(entry.getKey());
 
-			taskCompleter.complete();
+			if (bytes != null) {
+				entry.setValue(bytes);
+			} else {
+				it.remove();
+				project.getLogger().error("Failed to remap sources for " + entry.getKey());
+				failedToRemap++;
+			}
 		}
 
-		PrintStream out = System.out;
-		PrintStream err = System.err;
-
-		if (!ForgeToolExecutor.shouldShowVerboseStderr(project)) {
-			System.setOut(new PrintStream(NullOutputStream.NULL_OUTPUT_STREAM));
-			System.setErr(new PrintStream(NullOutputStream.NULL_OUTPUT_STREAM));
+		if (failedToRemap > 0) {
+			project.getLogger().error("Failed to remap {} forge sources", failedToRemap);
+		} else {
+			// Only complete remaps are cached, so that failures are retried
+			writeCache(project.getLogger(), cacheFile, sources);
 		}
+	}
 
-		remapForgeSourcesInner(project, serviceFactory, tmpInput.toPath(), tmpOutput.toPath());
+	/**
+	 * Remaps the sources with a Mercury instance for each partition of packages, the classes of the other partitions
+	 * are resolved from the Forge classes merged into the Minecraft jar.
+	 */
+	private static Map<String, byte[]> remapForgeSourcesInner(Project project, ServiceFactory serviceFactory, MappingOption mappingOption, String sourceNamespace, Map<String, byte[]> sources) throws IOException {
+		LoomGradleExtension extension = LoomGradleExtension.get(project);
+		final Logger logger = project.getLogger();
+		final boolean quiet = !ForgeToolExecutor.shouldShowVerboseStderr(project);
+		TinyMappingsService mappingsService = extension.getMappingConfiguration().getMappingsService(project, serviceFactory, mappingOption);
+		final MemoryMappingTree mappingTree = mappingsService.getMappingTree();
+		final List<Path> classPath = getClassPath(project, extension);
+		final List<Map<String, byte[]>> partitions = partition(sources, Math.min(SourceRemapper.getMaxWorkers(), sources.size() / MIN_PARTITION_SIZE));
+		final Map<String, byte[]> remapped = new ConcurrentHashMap<>();
+		final Path tmpDir = Files.createTempDirectory("fabric-loom-forge-src");
+
+		project.getLogger().info(":remapping {} forge sources in {} partitions", sources.size(), partitions.size());
+
+		try {
+			ThreadingUtils.run(IntStream.range(0, partitions.size()).boxed().toList(), index -> {
+				final Map<String, byte[]> partition = partitions.get(index);
+				final Path input = tmpDir.resolve("input-" + index);
+				final Path output = tmpDir.resolve("output-" + index);
+
+				for (Map.Entry<String, byte[]> entry : partition.entrySet()) {
+					Path path = input.resolve(entry.getKey().substring(1));
+					Files.createDirectories(path.getParent());
+					Files.write(path, entry.getValue());
+				}
 
-		if (!ForgeToolExecutor.shouldShowVerboseStderr(project)) {
-			System.setOut(out);
-			System.setErr(err);
-		}
+				// Mercury and the lorenz mappings are not thread safe, each partition uses its own instance
+				Mercury mercury = new Mercury();
+				mercury.setGracefulClasspathChecks(true);
+				mercury.getClassPath().addAll(classPath);
+				mercury.getProcessors().add(MercuryRemapper.create(createMappings(mappingTree, sourceNamespace)));
 
-		tmpInput.delete();
-		int[] failedToRemap = {0};
+				if (quiet) {
+					ToolOutputRouter.begin(NullOutputStream.NULL_OUTPUT_STREAM, NullOutputStream.NULL_OUTPUT_STREAM);
+				}
 
-		try (FileSystemUtil.Delegate delegate = FileSystemUtil.getJarFileSystem(tmpOutput, false)) {
-			ThreadingUtils.TaskCompleter taskCompleter = ThreadingUtils.taskCompleter();
+				try {
+					Files.createDirectories(output);
+					mercury.rewrite(input, output);
+					fixupLineNumbers(input, output);
+				} catch (Exception e) {
+					logger.warn("Could not remap forge sources partition " + index + " fully!", e);
+				} finally {
+					if (quiet) {
+						ToolOutputRouter.end();
+					}
+				}
 
-			for (Map.Entry<String, byte[]> entry : new HashSet<>(sources.entrySet())) {
-				taskCompleter.add(() -> {
-					Path path = delegate.get().getPath(entry.getKey());
+				for (String name : partition.keySet()) {
+					Path path = output.resolve(name.substring(1));
 
 					if (Files.exists(path)) {
-						sources.put(entry.getKey(), Files.readAllBytes(path));
-					} else {
-						sources.remove(entry.getKey());
-						project.getLogger().error("Failed to remap sources for " + entry.getKey());
-						failedToRemap[0]++;
+						remapped.put(name, Files.readAllBytes(path));
 					}
-				});
-			}
-
-			taskCompleter.complete();
+				}
+			});
+		} finally {
+			Files.walkFileTree(tmpDir, new DeletingFileVisitor());
 		}
 
-		tmpOutput.delete();
-
-		if (failedToRemap[0] > 0) {
-			project.getLogger().error("Failed to remap {} forge sources", failedToRemap[0]);
-		}
+		return remapped;
 	}
 
-	private static void remapForgeSourcesInner(Project project, ServiceFactory serviceFactory, Path tmpInput, Path tmpOutput) throws IOException {
-		LoomGradleExtension extension = LoomGradleExtension.get(project);
-		Mercury mercury = SourceRemapper.createMercuryWithClassPath(project, false);
-
-		final MappingOption mappingOption = MappingOption.forPlatform(extension);
-		final String sourceNamespace = IntermediaryNamespaces.intermediary(project);
-		TinyMappingsService mappingsService = extension.getMappingConfiguration().getMappingsService(project, serviceFactory, mappingOption);
-		MappingSet mappings = new TinyMappingsReader(mappingsService.getMappingTree(), sourceNamespace, "named").read();
+	private static MappingSet createMappings(MemoryMappingTree mappingTree, String sourceNamespace) throws IOException {
+		MappingSet mappings = new TinyMappingsReader(mappingTree, sourceNamespace, "named").read();
 
 		for (Map.Entry<String, String> entry : TinyRemapperHelper.JSR_TO_JETBRAINS.entrySet()) {
 			mappings.getOrCreateClassMapping(entry.getKey()).setDeobfuscatedName(entry.getValue());
 		}
 
+		return mappings;
+	}
+
+	private static List<Path> getClassPath(Project project, LoomGradleExtension extension) {
+		List<Path> classPath = new ArrayList<>();
+		// Add the srg/mojang jar at the top, so it gets prioritized
+		MappingsNamespace sourceNs = extension.isNeoForge() ? MappingsNamespace.MOJANG : MappingsNamespace.SRG;
+		classPath.addAll(extension.getMinecraftJars(sourceNs));
+		classPath.addAll(SourceRemapper.createMercuryWithClassPath(project, false).getClassPath());
+
 		Set<File> files = project.getConfigurations()
 				.detachedConfiguration(project.getDependencies().create(LoomVersions.JETBRAINS_ANNOTATIONS.mavenNotation()))
 				.resolve();
 
 		for (File file : files) {
-			mercury.getClassPath().add(file.toPath());
+			classPath.add(file.toPath());
 		}
 
-		// Distinct and add the srg/mojang jar at the top, so it gets prioritized
-		MappingsNamespace sourceNs = extension.isNeoForge() ? MappingsNamespace.MOJANG : MappingsNamespace.SRG;
-		mercury.getClassPath().addAll(0, extension.getMinecraftJars(sourceNs));
-
-		List<Path> newClassPath = mercury.getClassPath().stream()
+		return classPath.stream()
 				.distinct()
 				.filter(Files::isRegularFile)
 				.collect(Collectors.toList());
-		mercury.getClassPath().clear();
-		mercury.getClassPath().addAll(newClassPath);
-
-		mercury.getProcessors().add(MercuryRemapper.create(mappings));
-		boolean isSrcTmp = false;
-
-		if (!Files.isDirectory(tmpInput)) {
-			Path tmpInput1 = tmpInput;
-			// create tmp directory
-			isSrcTmp = true;
-			tmpInput = Files.createTempDirectory("fabric-loom-src");
-			ZipUtils.unpackAll(tmpInput1, tmpInput);
+	}
+
+	/**
+	 * Splits the sources into partitions of whole packages with roughly the same size.
+	 */
+	@VisibleForTesting
+	public static List<Map<String, byte[]>> partition(Map<String, byte[]> sources, int count) {
+		Map<String, Map<String, byte[]>> packages = new TreeMap<>();
+
+		for (Map.Entry<String, byte[]> entry : sources.entrySet()) {
+			String name = entry.getKey();
+			packages.computeIfAbsent(name.substring(0, name.lastIndexOf('/') + 1), k -> new TreeMap<>()).put(name, entry.getValue());
 		}
 
-		try (FileSystemUtil.Delegate outputFs = FileSystemUtil.getJarFileSystem(tmpOutput, true)) {
-			Path outputFsRoot = outputFs.get().getPath("/");
-			mercury.rewrite(tmpInput, outputFsRoot);
-			fixupLineNumbers(tmpInput, outputFsRoot);
-		} catch (Exception e) {
-			project.getLogger().warn("Could not remap " + tmpInput + " fully!", e);
+		List<Map<String, byte[]>> partitions = new ArrayList<>();
+		long[] sizes = new long[Math.max(1, Math.min(count, packages.size()))];
+
+		for (int i = 0; i < sizes.length; i++) {
+			partitions.add(new TreeMap<>());
 		}
 
-		if (isSrcTmp) {
-			Files.walkFileTree(tmpInput, new DeletingFileVisitor());
+		// Largest packages first, each into the smallest partition
+		List<Map<String, byte[]>> bySize = new ArrayList<>(packages.values());
+		bySize.sort(Comparator.comparingLong(ForgeSourcesRemapper::size).reversed());
+
+		for (Map<String, byte[]> pkg : bySize) {
+			int smallest = 0;
+
+			for (int i = 1; i < sizes.length; i++) {
+				if (sizes[i] < sizes[smallest]) {
+					smallest = i;
+				}
+			}
+
+			partitions.get(smallest).putAll(pkg);
+			sizes[smallest] += size(pkg);
 		}
+
+		return partitions;
 	}
 
-	private static Map<String, byte[]> extractSources(List<Path> forgeInstallerSources) throws IOException {
-		Map<String, byte[]> sources = new ConcurrentHashMap<>();
-		ThreadingUtils.TaskCompleter taskCompleter = ThreadingUtils.taskCompleter();
+	private static long size(Map<String, byte[]> sources) {
+		return sources.values().stream().mapToLong(bytes -> bytes.length).sum();
+	}
+
+	private static void extractSources(InputStream sourcesJar, Map<String, byte[]> sources) throws IOException {
+		ZipInputStream zis = new ZipInputStream(sourcesJar);
+		ZipEntry entry;
 
-		for (Path path : forgeInstallerSources) {
-			FileSystemUtil.Delegate system = FileSystemUtil.getJarFileSystem(path, false);
-			taskCompleter.onComplete(stopwatch -> system.close());
+		while ((entry = zis.getNextEntry()) != null) {
+			if (!entry.isDirectory() && entry.getName().endsWith(".java")) {
+				sources.put("/" + entry.getName(), zis.readAllBytes());
+			}
+		}
+	}
 
-			for (Path filePath : (Iterable<? extends Path>) Files.walk(system.get().getPath("/"))::iterator) {
-				if (Files.isRegularFile(filePath) && filePath.getFileName().toString().endsWith(".java")) {
-					taskCompleter.add(() -> sources.put(filePath.toString(), Files.readAllBytes(filePath)));
+	/**
+	 * The remapped sources are cached by the Forge version, the mappings and the sources being remapped.
+	 */
+	private static Path getCacheFile(LoomGradleExtension extension, String sourceNamespace, Path mappings, Map<String, byte[]> sources) {
+		Hasher hasher = Hashing.sha256().newHasher()
+				.putString(extension.getForgeProvider().getVersion().getCombined(), StandardCharsets.UTF_8)
+				.putByte((byte) 0)
+				.putString(sourceNamespace, StandardCharsets.UTF_8)
+				.putByte((byte) 0)
+				.putBytes(Checksum.sha256(mappings.toFile()));
+
+		for (Map.Entry<String, byte[]> entry : sources.entrySet()) {
+			hasher.putString(entry.getKey(), StandardCharsets.UTF_8)
+					.putByte((byte) 0)
+					.putInt(entry.getValue().length)
+					.putBytes(entry.getValue());
+		}
+
+		String key = hasher.hash().toString();
+		return getCacheDirectory(extension).resolve(key.substring(0, 2)).resolve(key + ".jar");
+	}
+
+	private static Path getCacheDirectory(LoomGradleExtension extension) {
+		return extension.getFiles().getUserCache().toPath().resolve("forge_sources").resolve("v" + CACHE_VERSION);
+	}
+
+	@VisibleForTesting
+	public static boolean readCache(Logger logger, Path cacheFile, Map<String, byte[]> sources) {
+		if (Files.notExists(cacheFile)) {
+			return false;
+		}
+
+		Map<String, byte[]> cached = new TreeMap<>();
+
+		try (InputStream is = Files.newInputStream(cacheFile)) {
+			extractSources(is, cached);
+			// Mark as used so that it is not cleaned up
+			Files.setLastModifiedTime(cacheFile, FileTime.from(Instant.now()));
+		} catch (IOException e) {
+			logger.warn("Failed to read the cached forge sources from {}", cacheFile, e);
+			return false;
+		}
+
+		if (!cached.keySet().equals(sources.keySet())) {
+			logger.warn("Ignoring the cached forge sources in {} as they do not match the sources", cacheFile);
+			return false;
+		}
+
+		sources.putAll(cached);
+		return true;
+	}
+
+	@VisibleForTesting
+	public static void writeCache(Logger logger, Path cacheFile, Map<String, byte[]> sources) {
+		try {
+			Files.createDirectories(cacheFile.getParent());
+			Path tmpFile = Files.createTempFile(cacheFile.getParent(), cacheFile.getFileName().toString(), ".tmp");
+
+			try {
+				try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(tmpFile))) {
+					for (Map.Entry<String, byte[]> entry : sources.entrySet()) {
+						zos.putNextEntry(new ZipEntry(entry.getKey().substring(1)));
+						zos.write(entry.getValue());
+						zos.closeEntry();
+					}
 				}
+
+				Files.move(tmpFile, cacheFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} finally {
+				Files.deleteIfExists(tmpFile);
 			}
+
+			deleteUnusedCacheFiles(cacheFile.getParent().getParent());
+		} catch (IOException e) {
+			logger.warn("Failed to cache the remapped forge sources", e);
 		}
+	}
+
+	private static void deleteUnusedCacheFiles(Path cacheDirectory) throws IOException {
+		final Instant expiry = Instant.now().minus(CACHE_MAX_AGE);
 
-		taskCompleter.complete();
-		return sources;
+		try (Stream<Path> files = Files.walk(cacheDirectory, 2)) {
+			for (Path file : (Iterable<Path>) files::iterator) {
+				if (Files.isRegularFile(file) && Files.getLastModifiedTime(file).toInstant().isBefore(expiry)) {
+					Files.deleteIfExists(file);
+				}
+			}
+		}
 	}
 
 	/**
@@ -0,0 +1,190 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.decompilers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import net.fabricmc.loom.util.ParallelJarWriter;
+
+/**
+ * Splits a jar into a number of smaller jars for decompiling in parallel, and merges the decompiled outputs.
+ */
+public final class JarSharder {
+	private JarSharder() {
+	}
+
+	/**
+	 * Split the classes of a jar into shards, keeping each outer class together with all of its inner classes.
+	 * Classes are grouped by their top level class name, and the groups are balanced across the shards by size.
+	 * Any non class entries are placed into the first shard.
+	 *
+	 * @param inputJar The jar to split
+	 * @param shards The maximum number of shards to create
+	 * @return The shard jars, there will be fewer than requested if there are not enough classes
+	 */
+	public static List<Path> split(Path inputJar, int shards) throws IOException {
+		if (shards < 1) {
+			throw new IllegalArgumentException("Shard count must be at least 1");
+		}
+
+		// Top level class name -> entries, in jar order
+		final Map<String, List<ZipEntry>> groups = new LinkedHashMap<>();
+		final List<ZipEntry> resources = new ArrayList<>();
+
+		try (ZipFile zipFile = new ZipFile(inputJar.toFile())) {
+			Enumeration<? extends ZipEntry> entries = zipFile.entries();
+
+			while (entries.hasMoreElements()) {
+				final ZipEntry entry = entries.nextElement();
+
+				if (entry.isDirectory()) {
+					continue;
+				}
+
+				if (!entry.getName().endsWith(".class")) {
+					resources.add(entry);
+					continue;
+				}
+
+				groups.computeIfAbsent(getTopLevelClass(entry.getName()), k -> new ArrayList<>()).add(entry);
+			}
+
+			final List<List<ZipEntry>> sorted = new ArrayList<>(groups.values());
+			// Largest first, so that the shards end up roughly equal in size
+			sorted.sort(Collections.reverseOrder((a, b) -> Long.compare(groupSize(a), groupSize(b))));
+
+			final int shardCount = Math.max(1, Math.min(shards, sorted.size()));
+			final List<List<ZipEntry>> shardEntries = new ArrayList<>(shardCount);
+			final long[] shardSizes = new long[shardCount];
+
+			for (int i = 0; i < shardCount; i++) {
+				shardEntries.add(new ArrayList<>());
+			}
+
+			shardEntries.get(0).addAll(resources);
+
+			for (List<ZipEntry> group : sorted) {
+				int smallest = 0;
+
+				for (int i = 1; i < shardCount; i++) {
+					if (shardSizes[i] < shardSizes[smallest]) {
+						smallest = i;
+					}
+				}
+
+				shardEntries.get(smallest).addAll(group);
+				shardSizes[smallest] += groupSize(group);
+			}
+
+			final List<Path> shardJars = new ArrayList<>(shardCount);
+
+			for (List<ZipEntry> entryList : shardEntries) {
+				final Path shardJar = Files.createTempFile("loom-decompile-shard", ".jar");
+				shardJars.add(shardJar);
+
+				// The shards are short-lived, so they are stored rather than compressed
+				try (var writer = ParallelJarWriter.create(shardJar).setCompressionMethod(ZipEntry.STORED)) {
+					for (ZipEntry entry : entryList) {
+						writer.put(entry.getName(), -1, () -> readEntry(zipFile, entry));
+					}
+				}
+			}
+
+			return shardJars;
+		}
+	}
+
+	/**
+	 * Merge the entries of the given jars into a single jar, the first jar to contain an entry wins.
+	 */
+	public static void merge(List<Path> jars, Path outputJar) throws IOException {
+		final Set<String> written = new HashSet<>();
+
+		try (var writer = ParallelJarWriter.create(outputJar)) {
+			for (Path jar : jars) {
+				if (Files.notExists(jar)) {
+					continue;
+				}
+
+				try (ZipFile zipFile = new ZipFile(jar.toFile())) {
+					Enumeration<? extends ZipEntry> entries = zipFile.entries();
+
+					while (entries.hasMoreElements()) {
+						final ZipEntry entry = entries.nextElement();
+
+						if (entry.isDirectory() || !written.add(entry.getName())) {
+							continue;
+						}
+
+						writer.put(entry.getName(), -1, () -> readEntry(zipFile, entry));
+					}
+
+					// Wait for the pending entries before the zip file is closed
+					writer.flush();
+				}
+			}
+		}
+	}
+
+	private static byte[] readEntry(ZipFile zipFile, ZipEntry entry) throws IOException {
+		try (InputStream is = zipFile.getInputStream(entry)) {
+			return is.readAllBytes();
+		}
+	}
+
+	private static String getTopLevelClass(String fileName) {
+		final int lastSlash = fileName.lastIndexOf('/');
+		final int dollar = fileName.indexOf('$', lastSlash + 1);
+
+		if (dollar < 0) {
+			return fileName.substring(0, fileName.length() - ".class".length());
+		}
+
+		return fileName.substring(0, dollar);
+	}
+
+	private static long groupSize(List<ZipEntry> group) {
+		long size = 0;
+
+		for (ZipEntry entry : group) {
+			size += Math.max(0, entry.getSize());
+		}
+
+		return size;
+	}
+}
@@ -49,7 +49,7 @@ import net.fabricmc.loom.decompilers.ClassLineNumbers;
 // Uses the RIFF format, allows for appending the line numbers to the end of the file
 // Stores the source code and line numbers for the class
 public record CachedData(String className, String sources, @Nullable ClassLineNumbers.Entry lineNumbers) {
-	public static final CachedFileStore.EntrySerializer<CachedData> SERIALIZER = new EntrySerializer();
+	public static final CachedFileStore.ChannelEntrySerializer<CachedData> SERIALIZER = new EntrySerializer();
 
 	private static final String HEADER_ID = "LOOM";
 	private static final String NAME_ID = "NAME";
@@ -191,7 +191,7 @@ public record CachedData(String className, String sources, @Nullable ClassLineNu
 		return bytes;
 	}
 
-	static class EntrySerializer implements CachedFileStore.EntrySerializer<CachedData> {
+	static class EntrySerializer implements CachedFileStore.ChannelEntrySerializer<CachedData> {
 		@Override
 		public CachedData read(Path path) throws IOException {
 			try (var inputStream = new BufferedInputStream(Files.newInputStream(path))) {
@@ -199,6 +199,16 @@ public record CachedData(String className, String sources, @Nullable ClassLineNu
 			}
 		}
 
+		@Override
+		public CachedData read(InputStream inputStream) throws IOException {
+			return CachedData.read(inputStream);
+		}
+
+		@Override
+		public void write(CachedData entry, FileChannel fileChannel) {
+			entry.write(fileChannel);
+		}
+
 		@Override
 		public void write(CachedData entry, Path path) throws IOException {
 			try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
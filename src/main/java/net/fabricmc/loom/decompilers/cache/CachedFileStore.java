@@ -24,19 +24,46 @@
 
 package net.fabricmc.loom.decompilers.cache;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 
 import org.jetbrains.annotations.Nullable;
 
-public interface CachedFileStore<T> {
+public interface CachedFileStore<T> extends Closeable {
 	@Nullable T getEntry(String key) throws IOException;
 
 	void putEntry(String key, T entry) throws IOException;
 
+	/**
+	 * Remove entries that are no longer wanted by the cache rules.
+	 */
+	void prune() throws IOException;
+
+	@Override
+	default void close() throws IOException {
+	}
+
 	interface EntrySerializer<T> {
 		T read(Path path) throws IOException;
 
 		void write(T entry, Path path) throws IOException;
 	}
+
+	/**
+	 * An {@link EntrySerializer} that can also read and write entries in place, used by {@link PackedCachedFileStore}.
+	 */
+	interface ChannelEntrySerializer<T> extends EntrySerializer<T> {
+		/**
+		 * @param inputStream A stream containing exactly one entry
+		 */
+		T read(InputStream inputStream) throws IOException;
+
+		/**
+		 * Write the entry starting at the current position of the channel, leaving the position at the end of the entry.
+		 */
+		void write(T entry, FileChannel fileChannel) throws IOException;
+	}
 }
@@ -69,6 +69,7 @@ public record CachedFileStoreImpl<T>(Path root, EntrySerializer<T> entrySerializ
 		return root.resolve(key);
 	}
 
+	@Override
 	public void prune() throws IOException {
 		// Sorted oldest -> newest
 		List<PathEntry> entries = new ArrayList<>();
@@ -24,15 +24,20 @@
 
 package net.fabricmc.loom.decompilers.cache;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
@@ -40,57 +45,57 @@ import org.slf4j.LoggerFactory;
 
 import net.fabricmc.loom.decompilers.ClassLineNumbers;
 import net.fabricmc.loom.util.FileSystemUtil;
+import net.fabricmc.loom.util.ParallelJarWriter;
 
-public record CachedJarProcessor(CachedFileStore<CachedData> fileStore, String baseHash) {
+/**
+ * @param fileStore The cache to read and write processed classes
+ * @param baseHash The hash prefixed to every cache key
+ * @param fingerprintIndex An optional index used to avoid reading classes that have not changed since the last run
+ */
+public record CachedJarProcessor(CachedFileStore<CachedData> fileStore, String baseHash, @Nullable ClassFingerprintIndex fingerprintIndex) {
 	private static final Logger LOGGER = LoggerFactory.getLogger(CachedJarProcessor.class);
 
-	public WorkRequest prepareJob(Path inputJar) throws IOException {
-		boolean isIncomplete = false;
-		boolean hasSomeExisting = false;
-
-		Path incompleteJar = Files.createTempFile("loom-cache-incomplete", ".jar");
-		Path existingClassesJar = Files.createTempFile("loom-cache-existingClasses", ".jar");
-		Path existingSourcesJar = Files.createTempFile("loom-cache-existingSources", ".jar");
+	public CachedJarProcessor(CachedFileStore<CachedData> fileStore, String baseHash) {
+		this(fileStore, baseHash, null);
+	}
 
-		// We must delete the empty files, so they can be created as a zip
-		Files.delete(incompleteJar);
-		Files.delete(existingClassesJar);
-		Files.delete(existingSourcesJar);
+	public WorkRequest prepareJob(Path inputJar) throws IOException {
+		// Read, hash and parse every class in a single pass over the input jar
+		final JarWalker.WalkResult walkResult = fingerprintIndex != null ? fingerprintIndex.walk(inputJar) : JarWalker.walk(inputJar);
+		final Map<String, String> hierarchyHashes = walkResult.hierarchyHashes() != null ? walkResult.hierarchyHashes() : getHierarchyHashes(walkResult);
 
 		// Sources name -> hash
 		Map<String, String> outputNameMap = new HashMap<>();
 		Map<String, ClassLineNumbers.Entry> lineNumbersMap = new HashMap<>();
 
-		int hits = 0;
-		int misses = 0;
+		List<ClassEntry> missing = new ArrayList<>();
+		List<ClassEntry> existing = new ArrayList<>();
 
-		try (FileSystemUtil.Delegate inputFs = FileSystemUtil.getJarFileSystem(inputJar, false);
-				FileSystemUtil.Delegate incompleteFs = FileSystemUtil.getJarFileSystem(incompleteJar, true);
-				FileSystemUtil.Delegate existingSourcesFs = FileSystemUtil.getJarFileSystem(existingSourcesJar, true);
-				FileSystemUtil.Delegate existingClassesFs = FileSystemUtil.getJarFileSystem(existingClassesJar, true)) {
-			final List<ClassEntry> inputClasses = JarWalker.findClasses(inputFs);
-			final Map<String, String> rawEntryHashes = getEntryHashes(inputClasses, inputFs.getRoot());
+		Path existingSourcesJar = null;
+		ParallelJarWriter existingSourcesWriter = null;
 
-			for (ClassEntry entry : inputClasses) {
+		try {
+			for (ClassEntry entry : walkResult.classes()) {
 				String outputFileName = entry.sourcesFileName();
-				String fullHash = baseHash + "/" + entry.hashSuperHierarchy(rawEntryHashes);
+				String fullHash = baseHash + "/" + hierarchyHashes.get(entry.name());
 
 				final CachedData entryData = fileStore.getEntry(fullHash);
 
 				if (entryData == null) {
-					// Cached entry was not found, so copy the input to the incomplete jar to be processed
-					entry.copyTo(inputFs.getRoot(), incompleteFs.getRoot());
-					isIncomplete = true;
+					// Cached entry was not found, so the input must be processed
+					missing.add(entry);
 					outputNameMap.put(outputFileName, fullHash);
 
 					LOGGER.debug("Cached entry ({}) not found, going to process {}", fullHash, outputFileName);
-					misses++;
 				} else {
-					final Path outputPath = existingSourcesFs.getPath(outputFileName);
-					createParentDirectories(outputPath);
-					Files.writeString(outputPath, entryData.sources());
+					if (existingSourcesWriter == null) {
+						existingSourcesJar = createTempJar("loom-cache-existingSources");
+						existingSourcesWriter = createTempJarWriter(existingSourcesJar);
+					}
+
+					existingSourcesWriter.put(outputFileName, -1, () -> entryData.sources().getBytes(StandardCharsets.UTF_8));
 
-					entry.copyTo(inputFs.getRoot(), existingClassesFs.getRoot());
+					existing.add(entry);
 
 					if (entryData.lineNumbers() != null) {
 						lineNumbersMap.put(entryData.className(), entryData.lineNumbers());
@@ -98,50 +103,107 @@ public record CachedJarProcessor(CachedFileStore<CachedData> fileStore, String b
 						LOGGER.info("Cached entry ({}) does not have line numbers", outputFileName);
 					}
 
-					hasSomeExisting = true;
-
 					LOGGER.debug("Cached entry ({}) found: {}", fullHash, outputFileName);
-					hits++;
 				}
 			}
+		} finally {
+			if (existingSourcesWriter != null) {
+				existingSourcesWriter.close();
+			}
 		}
 
+		final boolean isIncomplete = !missing.isEmpty();
+		final boolean hasSomeExisting = !existing.isEmpty();
+
 		// A jar file that will be created by the work action, containing the newly processed items.
-		Path outputJar = Files.createTempFile("loom-cache-output", ".jar");
-		Files.delete(outputJar);
+		Path outputJar = createTempJar("loom-cache-output");
 
 		final ClassLineNumbers lineNumbers = lineNumbersMap.isEmpty() ? null : new ClassLineNumbers(Collections.unmodifiableMap(lineNumbersMap));
-		final var stats = new CacheStats(hits, misses);
+		final var stats = new CacheStats(existing.size(), missing.size());
 
 		if (isIncomplete && !hasSomeExisting) {
 			// The cache contained nothing of use, fully process the input jar
-			Files.delete(incompleteJar);
-			Files.delete(existingClassesJar);
-			Files.delete(existingSourcesJar);
-
 			LOGGER.info("No cached entries found, going to process the whole jar");
 			return new FullWorkJob(inputJar, outputJar, outputNameMap)
 					.asRequest(stats, lineNumbers);
 		} else if (isIncomplete) {
 			// The cache did not contain everything so we have some work to do
 			LOGGER.info("Some cached entries found, using partial work job");
+			final Map<String, byte[]> classBytes = walkResult.classBytes() != null ? walkResult.classBytes() : readClassBytes(inputJar);
+			Path incompleteJar = writeClasses("loom-cache-incomplete", missing, classBytes);
+			Path existingClassesJar = writeClasses("loom-cache-existingClasses", existing, classBytes);
 			return new PartialWorkJob(incompleteJar, existingSourcesJar, existingClassesJar, outputJar, outputNameMap)
 					.asRequest(stats, lineNumbers);
-		} else {
+		} else if (hasSomeExisting) {
 			// The cached contained everything we need, so the existing jar is the output
 			LOGGER.info("All cached entries found, using completed work job");
-			Files.delete(incompleteJar);
-			Files.delete(existingClassesJar);
 			return new CompletedWorkJob(existingSourcesJar)
 					.asRequest(stats, lineNumbers);
+		} else {
+			// There are no classes in the input jar
+			LOGGER.info("No classes found, using completed work job");
+			return new CompletedWorkJob(writeClasses("loom-cache-existingSources", List.of(), Map.of()))
+					.asRequest(stats, lineNumbers);
+		}
+	}
+
+	private static Path writeClasses(String prefix, List<ClassEntry> entries, Map<String, byte[]> classBytes) throws IOException {
+		final Path jar = createTempJar(prefix);
+
+		try (ParallelJarWriter writer = createTempJarWriter(jar)) {
+			for (ClassEntry entry : entries) {
+				entry.writeTo(writer, classBytes);
+			}
 		}
+
+		return jar;
+	}
+
+	// These jars only live for the duration of the job, so are not worth compressing
+	private static ParallelJarWriter createTempJarWriter(Path jar) throws IOException {
+		return ParallelJarWriter.create(jar).setCompressionMethod(ZipEntry.STORED);
+	}
+
+	// Only used when the classes were not read while walking the jar
+	private static Map<String, byte[]> readClassBytes(Path jar) throws IOException {
+		final Map<String, byte[]> classBytes = new HashMap<>();
+
+		try (var zis = new ZipInputStream(new BufferedInputStream(Files.newInputStream(jar)))) {
+			ZipEntry entry;
+
+			while ((entry = zis.getNextEntry()) != null) {
+				if (!entry.isDirectory() && entry.getName().endsWith(".class")) {
+					classBytes.put(entry.getName(), zis.readAllBytes());
+				}
+			}
+		}
+
+		return classBytes;
+	}
+
+	// Returns a path to a temp jar that does not exist yet
+	private static Path createTempJar(String prefix) throws IOException {
+		Path jar = Files.createTempFile(prefix, ".jar");
+		Files.delete(jar);
+		return jar;
+	}
+
+	private static Map<String, String> getHierarchyHashes(JarWalker.WalkResult walkResult) throws IOException {
+		final Map<String, String> rawEntryHashes = getEntryHashes(walkResult);
+		final Map<String, String> hierarchyHashes = new HashMap<>();
+
+		for (ClassEntry entry : walkResult.classes()) {
+			hierarchyHashes.put(entry.name(), entry.hashSuperHierarchy(rawEntryHashes));
+		}
+
+		return hierarchyHashes;
 	}
 
-	private static Map<String, String> getEntryHashes(List<ClassEntry> entries, Path root) throws IOException {
+	private static Map<String, String> getEntryHashes(JarWalker.WalkResult walkResult) throws IOException {
 		final Map<String, String> rawEntryHashes = new HashMap<>();
 
-		for (ClassEntry entry : entries) {
-			String hash = entry.hash(root);
+		for (ClassEntry entry : walkResult.classes()) {
+			String hash = entry.hash(walkResult.fileHashes());
 			rawEntryHashes.put(entry.name(), hash);
 
 			for (String s : entry.innerClasses()) {
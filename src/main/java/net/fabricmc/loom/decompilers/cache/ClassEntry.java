@@ -36,6 +36,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import net.fabricmc.loom.util.Checksum;
+import net.fabricmc.loom.util.ParallelJarWriter;
 
 /**
  * @param name The class name
@@ -62,6 +63,44 @@ public record ClassEntry(String name, List<String> innerClasses, List<String> su
 		}
 	}
 
+	/**
+	 * Write the class and its inner classes to the output jar.
+	 * @param writer The output jar writer
+	 * @param classBytes A map of class file name to the raw class bytes
+	 *
+	 * @throws IOException If an error occurs while writing the entries
+	 */
+	public void writeTo(ParallelJarWriter writer, Map<String, byte[]> classBytes) throws IOException {
+		writeEntry(writer, name, classBytes);
+
+		for (String innerClass : innerClasses) {
+			writeEntry(writer, innerClass, classBytes);
+		}
+	}
+
+	private static void writeEntry(ParallelJarWriter writer, String fileName, Map<String, byte[]> classBytes) throws IOException {
+		final byte[] bytes = Objects.requireNonNull(classBytes.get(fileName), () -> "Class bytes not found for " + fileName);
+		writer.put(fileName, -1, bytes);
+	}
+
+	/**
+	 * Hash the class and its inner classes using sha256, from the already computed hashes of each class file.
+	 * Produces the same hash as {@link #hash(Path)}.
+	 * @param fileHashes A map of class file name to the sha256 hash of the class file
+	 * @return The hash of the class and its inner classes
+	 */
+	public String hash(Map<String, String> fileHashes) throws IOException {
+		StringJoiner joiner = new StringJoiner(",");
+
+		joiner.add(Objects.requireNonNull(fileHashes.get(name), "Hash for own class not found"));
+
+		for (String innerClass : innerClasses) {
+			joiner.add(Objects.requireNonNull(fileHashes.get(innerClass), () -> "Hash for inner class not found " + innerClass));
+		}
+
+		return Checksum.sha256Hex(joiner.toString().getBytes());
+	}
+
 	/**
 	 * Hash the class and its inner classes using sha256.
 	 * @param root The root of the jar
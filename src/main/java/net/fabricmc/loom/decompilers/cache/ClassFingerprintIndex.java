@@ -0,0 +1,379 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.decompilers.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.VisibleForTesting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.fabricmc.loom.util.CompletableFutureCollector;
+
+/**
+ * A persistent index of class fingerprints (content hash, outer class and direct parents) for a single input jar,
+ * along with the hashes of each class entry and its super hierarchy.
+ *
+ * <p>The CRC and size in the central directory of the jar decide if a class has changed since the last walk. Only the
+ * changed classes are read, hashed and parsed again, and only the entries that contain a changed class, or extend
+ * one, have their hashes recomputed.
+ */
+public final class ClassFingerprintIndex {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ClassFingerprintIndex.class);
+	private static final int VERSION = 2;
+
+	private final Path path;
+	private Map<String, Fingerprint> fingerprints;
+	private Map<String, EntryHashes> entryHashes;
+	private Set<String> readClasses = Set.of();
+	private Set<String> rehashedEntries = Set.of();
+
+	private ClassFingerprintIndex(Path path, Map<String, Fingerprint> fingerprints, Map<String, EntryHashes> entryHashes) {
+		this.path = path;
+		this.fingerprints = fingerprints;
+		this.entryHashes = entryHashes;
+	}
+
+	/**
+	 * Read the index from disk, an empty index is returned if the file does not exist or cannot be read.
+	 */
+	public static ClassFingerprintIndex read(Path path) {
+		if (Files.notExists(path)) {
+			return new ClassFingerprintIndex(path, Map.of(), Map.of());
+		}
+
+		try (var dis = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+			if (dis.readInt() != VERSION) {
+				LOGGER.info("Discarding class fingerprint index with an old version: {}", path);
+				return new ClassFingerprintIndex(path, Map.of(), Map.of());
+			}
+
+			final int count = dis.readInt();
+			final Map<String, Fingerprint> fingerprints = new HashMap<>(count);
+
+			for (int i = 0; i < count; i++) {
+				final String fileName = dis.readUTF();
+				final long crc = dis.readLong();
+				final long size = dis.readLong();
+				final String hash = dis.readUTF();
+				final String outerClass = dis.readBoolean() ? dis.readUTF() : null;
+				final int superCount = dis.readInt();
+				final List<String> superClasses = new ArrayList<>(superCount);
+
+				for (int j = 0; j < superCount; j++) {
+					superClasses.add(dis.readUTF());
+				}
+
+				fingerprints.put(fileName, new Fingerprint(crc, size, new JarWalker.ClassInfo(fileName, hash, outerClass, List.copyOf(superClasses))));
+			}
+
+			final int entryCount = dis.readInt();
+			final Map<String, EntryHashes> entryHashes = new HashMap<>(entryCount);
+
+			for (int i = 0; i < entryCount; i++) {
+				entryHashes.put(dis.readUTF(), new EntryHashes(dis.readUTF(), dis.readUTF()));
+			}
+
+			return new ClassFingerprintIndex(path, fingerprints, entryHashes);
+		} catch (IOException e) {
+			LOGGER.warn("Discarding invalid class fingerprint index: {}", path, e);
+			return new ClassFingerprintIndex(path, Map.of(), Map.of());
+		}
+	}
+
+	/**
+	 * Walk the jar, using the index to skip reading classes that have not changed. The index is saved afterwards.
+	 *
+	 * @return the walk result with the super hierarchy hashes, the class bytes are only present when every class had to be read
+	 */
+	public JarWalker.WalkResult walk(Path jar) throws IOException {
+		final Executor executor = JarWalker.getExecutor();
+		final Map<String, Fingerprint> newFingerprints = new HashMap<>();
+		final Map<String, byte[]> classBytes = new HashMap<>();
+		final List<CompletableFuture<Fingerprint>> futures = new ArrayList<>();
+
+		try (ZipFile zipFile = new ZipFile(jar.toFile())) {
+			Enumeration<? extends ZipEntry> entries = zipFile.entries();
+
+			while (entries.hasMoreElements()) {
+				final ZipEntry entry = entries.nextElement();
+				final String fileName = entry.getName();
+
+				if (entry.isDirectory() || !fileName.endsWith(".class")) {
+					continue;
+				}
+
+				final @Nullable Fingerprint existing = fingerprints.get(fileName);
+
+				if (existing != null && existing.crc() == entry.getCrc() && existing.size() == entry.getSize()) {
+					newFingerprints.put(fileName, existing);
+					continue;
+				}
+
+				futures.add(CompletableFuture.supplyAsync(() -> {
+					try (InputStream is = zipFile.getInputStream(entry)) {
+						final byte[] bytes = is.readAllBytes();
+
+						synchronized (classBytes) {
+							classBytes.put(fileName, bytes);
+						}
+
+						return new Fingerprint(entry.getCrc(), entry.getSize(), JarWalker.readClassInfo(fileName, bytes));
+					} catch (IOException e) {
+						throw new UncheckedIOException("Failed to read class file: " + fileName, e);
+					}
+				}, executor));
+			}
+
+			try {
+				for (Fingerprint fingerprint : futures.stream().collect(CompletableFutureCollector.allOf()).get(10, TimeUnit.MINUTES)) {
+					newFingerprints.put(fingerprint.info().fileName(), fingerprint);
+				}
+			} catch (InterruptedException | ExecutionException | TimeoutException e) {
+				throw new RuntimeException("Failed to read classes", e);
+			}
+		}
+
+		// The classes that have been added, changed or removed since the last walk
+		final Set<String> changedClasses = new HashSet<>(classBytes.keySet());
+		fingerprints.keySet().stream().filter(fileName -> !newFingerprints.containsKey(fileName)).forEach(changedClasses::add);
+
+		final boolean allRead = changedClasses.size() == newFingerprints.size();
+		final JarWalker.WalkResult grouped = JarWalker.group(newFingerprints.values().stream().map(Fingerprint::info).toList(), allRead ? classBytes : null);
+
+		final Map<String, EntryHashes> newEntryHashes = hashEntries(grouped, newFingerprints, changedClasses);
+		final Map<String, String> hierarchyHashes = new HashMap<>(newEntryHashes.size());
+		newEntryHashes.forEach((name, hashes) -> hierarchyHashes.put(name, hashes.hierarchyHash()));
+
+		this.readClasses = Collections.unmodifiableSet(classBytes.keySet());
+
+		if (changedClasses.isEmpty() && rehashedEntries.isEmpty() && Files.exists(path)) {
+			LOGGER.info("Input jar is unchanged, using {} class fingerprints", fingerprints.size());
+			// Mark as used so that it is not cleaned up
+			Files.setLastModifiedTime(path, FileTime.from(Instant.now()));
+		} else {
+			LOGGER.info("Class fingerprints: {} reused, {} updated, {} of {} entries rehashed", newFingerprints.size() - classBytes.size(), changedClasses.size(), rehashedEntries.size(), newEntryHashes.size());
+
+			this.fingerprints = newFingerprints;
+			this.entryHashes = newEntryHashes;
+			write();
+		}
+
+		return new JarWalker.WalkResult(grouped.classes(), grouped.fileHashes(), grouped.classBytes(), Collections.unmodifiableMap(hierarchyHashes));
+	}
+
+	/**
+	 * Compute the hashes of the entries, reusing the previous hashes of entries that are not affected by the changed classes.
+	 *
+	 * <p>An entry is affected when it contains (or contained) a changed class, or when one of its parents is in an affected entry.
+	 */
+	private Map<String, EntryHashes> hashEntries(JarWalker.WalkResult grouped, Map<String, Fingerprint> newFingerprints, Set<String> changedClasses) throws IOException {
+		final Set<String> changedEntries = new HashSet<>();
+
+		for (String fileName : changedClasses) {
+			final @Nullable Fingerprint previous = fingerprints.get(fileName);
+			final @Nullable Fingerprint current = newFingerprints.get(fileName);
+
+			if (previous != null) {
+				changedEntries.add(entryName(previous.info()));
+			}
+
+			if (current != null) {
+				changedEntries.add(entryName(current.info()));
+			}
+		}
+
+		final Map<String, String> rawEntryHashes = new HashMap<>();
+		final Map<String, String> fileEntries = new HashMap<>();
+
+		for (ClassEntry entry : grouped.classes()) {
+			final @Nullable EntryHashes previous = entryHashes.get(entry.name());
+
+			if (previous == null) {
+				changedEntries.add(entry.name());
+			}
+
+			final String hash = changedEntries.contains(entry.name()) ? entry.hash(grouped.fileHashes()) : previous.entryHash();
+			rawEntryHashes.put(entry.name(), hash);
+			fileEntries.put(entry.name(), entry.name());
+
+			for (String innerClass : entry.innerClasses()) {
+				rawEntryHashes.put(innerClass, hash);
+				fileEntries.put(innerClass, entry.name());
+			}
+		}
+
+		final Map<String, EntryHashes> newEntryHashes = new HashMap<>(grouped.classes().size());
+		final Set<String> rehashed = new HashSet<>();
+
+		for (ClassEntry entry : grouped.classes()) {
+			boolean changed = changedEntries.contains(entry.name());
+
+			for (String superClass : entry.superClasses()) {
+				final String superFile = superClass + ".class";
+				changed |= changedClasses.contains(superFile) || changedEntries.contains(fileEntries.get(superFile));
+			}
+
+			if (changed) {
+				rehashed.add(entry.name());
+				newEntryHashes.put(entry.name(), new EntryHashes(rawEntryHashes.get(entry.name()), entry.hashSuperHierarchy(rawEntryHashes)));
+			} else {
+				newEntryHashes.put(entry.name(), entryHashes.get(entry.name()));
+			}
+		}
+
+		this.rehashedEntries = Collections.unmodifiableSet(rehashed);
+		return newEntryHashes;
+	}
+
+	// Matches how the classes are grouped by JarWalker
+	private static String entryName(JarWalker.ClassInfo info) {
+		return info.outerClass() == null ? info.fileName() : info.outerClass() + ".class";
+	}
+
+	/**
+	 * @return the class files that were read by the last walk
+	 */
+	@VisibleForTesting
+	public Set<String> getReadClasses() {
+		return readClasses;
+	}
+
+	/**
+	 * @return the entries that had their hashes recomputed by the last walk
+	 */
+	@VisibleForTesting
+	public Set<String> getRehashedEntries() {
+		return rehashedEntries;
+	}
+
+	private void write() throws IOException {
+		Files.createDirectories(path.getParent());
+		// Unique, so that builds sharing the cache do not write to the same file
+		final Path tempPath = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+
+		try {
+			writeTo(tempPath);
+			Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tempPath);
+		}
+	}
+
+	private void writeTo(Path tempPath) throws IOException {
+		try (var dos = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+			dos.writeInt(VERSION);
+			dos.writeInt(fingerprints.size());
+
+			for (Fingerprint fingerprint : fingerprints.values()) {
+				final JarWalker.ClassInfo info = fingerprint.info();
+				dos.writeUTF(info.fileName());
+				dos.writeLong(fingerprint.crc());
+				dos.writeLong(fingerprint.size());
+				dos.writeUTF(info.hash());
+				dos.writeBoolean(info.outerClass() != null);
+
+				if (info.outerClass() != null) {
+					dos.writeUTF(info.outerClass());
+				}
+
+				dos.writeInt(info.superClasses().size());
+
+				for (String superClass : info.superClasses()) {
+					dos.writeUTF(superClass);
+				}
+			}
+
+			dos.writeInt(entryHashes.size());
+
+			for (Map.Entry<String, EntryHashes> entry : entryHashes.entrySet()) {
+				dos.writeUTF(entry.getKey());
+				dos.writeUTF(entry.getValue().entryHash());
+				dos.writeUTF(entry.getValue().hierarchyHash());
+			}
+		}
+	}
+
+	/**
+	 * Delete the indexes in the directory that have not been used for longer than the max age.
+	 */
+	public static void deleteUnused(Path directory, Duration maxAge) throws IOException {
+		if (Files.notExists(directory)) {
+			return;
+		}
+
+		final Instant cutoff = Instant.now().minus(maxAge);
+		final List<Path> files;
+
+		try (Stream<Path> stream = Files.list(directory)) {
+			files = stream.filter(Files::isRegularFile).toList();
+		}
+
+		for (Path file : files) {
+			if (Files.getLastModifiedTime(file).toInstant().isBefore(cutoff)) {
+				Files.deleteIfExists(file);
+			}
+		}
+	}
+
+	private record Fingerprint(long crc, long size, JarWalker.ClassInfo info) {
+	}
+
+	/**
+	 * @param entryHash The hash of the class and its inner classes
+	 * @param hierarchyHash The hash of the entry and its super classes
+	 */
+	private record EntryHashes(String entryHash, String hierarchyHash) {
+	}
+}
@@ -24,6 +24,7 @@
 
 package net.fabricmc.loom.decompilers.cache;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
@@ -32,6 +33,7 @@ import java.lang.reflect.Method;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -46,14 +48,18 @@ import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import org.gradle.api.JavaVersion;
+import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.tree.ClassNode;
 import org.objectweb.asm.tree.InnerClassNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import net.fabricmc.loom.util.Checksum;
 import net.fabricmc.loom.util.CompletableFutureCollector;
 import net.fabricmc.loom.util.FileSystemUtil;
 
@@ -128,6 +134,121 @@ public final class JarWalker {
 		}
 	}
 
+	/**
+	 * Read all the classes of the jar in a single streaming pass, hashing and parsing each class once.
+	 *
+	 * <p>The returned classes are grouped and ordered in the same way as {@link #findClasses(FileSystemUtil.Delegate)}.
+	 */
+	public static WalkResult walk(Path jar) throws IOException {
+		final Executor executor = getExecutor();
+		final Map<String, byte[]> classBytes = new HashMap<>();
+		final List<CompletableFuture<ClassInfo>> infoFutures = new ArrayList<>();
+
+		try (ZipInputStream zis = new ZipInputStream(new BufferedInputStream(Files.newInputStream(jar)))) {
+			ZipEntry entry;
+
+			while ((entry = zis.getNextEntry()) != null) {
+				final String fileName = entry.getName();
+
+				if (entry.isDirectory() || !fileName.endsWith(".class")) {
+					continue;
+				}
+
+				final byte[] bytes = zis.readAllBytes();
+
+				if (classBytes.put(fileName, bytes) != null) {
+					throw new IOException("Duplicate class file in jar: " + fileName);
+				}
+
+				infoFutures.add(CompletableFuture.supplyAsync(() -> readClassInfo(fileName, bytes), executor));
+			}
+		}
+
+		final List<ClassInfo> infos;
+
+		try {
+			infos = infoFutures.stream()
+					.collect(CompletableFutureCollector.allOf())
+					.get(10, TimeUnit.MINUTES);
+		} catch (InterruptedException | ExecutionException | TimeoutException e) {
+			throw new RuntimeException("Failed to read classes", e);
+		}
+
+		return group(infos, classBytes);
+	}
+
+	/**
+	 * Group the classes by their outer class, in the same way as {@link #findClasses(FileSystemUtil.Delegate)}.
+	 */
+	static WalkResult group(Collection<ClassInfo> infos, @Nullable Map<String, byte[]> classBytes) {
+		List<String> outerClasses = new ArrayList<>();
+		Map<String, List<String>> innerClasses = new HashMap<>();
+		Map<String, ClassInfo> infoMap = new HashMap<>();
+		Map<String, String> fileHashes = new HashMap<>();
+
+		for (ClassInfo info : infos) {
+			infoMap.put(info.fileName(), info);
+			fileHashes.put(info.fileName(), info.hash());
+
+			if (info.outerClass() == null) {
+				outerClasses.add(info.fileName());
+			} else {
+				innerClasses.computeIfAbsent(info.outerClass() + ".class", k -> new ArrayList<>()).add(info.fileName());
+			}
+		}
+
+		LOGGER.info("Found {} outer classes and {} inner classes", outerClasses.size(), innerClasses.size());
+
+		Collections.sort(outerClasses);
+
+		List<ClassEntry> classEntries = new ArrayList<>(outerClasses.size());
+
+		for (String outerClass : outerClasses) {
+			List<String> innerClassList = innerClasses.get(outerClass);
+
+			if (innerClassList == null) {
+				innerClassList = Collections.emptyList();
+			} else {
+				Collections.sort(innerClassList);
+			}
+
+			List<String> parentClasses = Stream.concat(Stream.of(outerClass), innerClassList.stream())
+					.map(infoMap::get)
+					.flatMap(info -> info.superClasses().stream())
+					.filter(JarWalker::isNotReservedClass)
+					.distinct()
+					.toList();
+
+			classEntries.add(new ClassEntry(outerClass, innerClassList, parentClasses));
+		}
+
+		return new WalkResult(Collections.unmodifiableList(classEntries), Collections.unmodifiableMap(fileHashes), classBytes == null ? null : Collections.unmodifiableMap(classBytes), null);
+	}
+
+	static ClassInfo readClassInfo(String fileName, byte[] bytes) {
+		final String hash;
+
+		try {
+			hash = Checksum.sha256Hex(bytes);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to hash class file: " + fileName, e);
+		}
+
+		final ClassReader reader = new ClassReader(bytes);
+
+		List<String> parentClasses = new ArrayList<>();
+		String superName = reader.getSuperName();
+
+		if (superName != null) {
+			parentClasses.add(superName);
+		}
+
+		Collections.addAll(parentClasses, reader.getInterfaces());
+
+		final String outerClass = fileName.indexOf('$') < 0 ? null : findOuterClass(reader);
+		return new ClassInfo(fileName, hash, outerClass, Collections.unmodifiableList(parentClasses));
+	}
+
 	/**
 	 * Check if the given class file denotes and inner class and find the corresponding outer class name.
 	 */
@@ -138,29 +259,32 @@ public final class JarWalker {
 		}
 
 		try (InputStream is = Files.newInputStream(fs.getPath(classFile))) {
-			final ClassReader reader = new ClassReader(is);
-			final ClassNode classNode = new ClassNode();
-
-			reader.accept(classNode, ClassReader.SKIP_CODE | ClassReader.SKIP_FRAMES);
-
-			for (InnerClassNode innerClass : classNode.innerClasses) {
-				// a class file also contains references to enclosed inner classes
-				if (innerClass.name.equals(classNode.name)) {
-					// only regular inner classes have the outer class in the inner class attribute
-					if (innerClass.outerName != null) {
-						return innerClass.outerName;
-					}
-
-					// local and anonymous classes have the outer class in the enclosing method attribute
-					// we check for both attributes because both should be present for decompilers to
-					// recognize a class as an inner class
-					if (classNode.outerClass != null) {
-						return classNode.outerClass;
-					}
-
-					// there are some Minecraft versions with one attribute stripped but not the other
-					LOGGER.debug("inner class attribute is present for " + classNode.name + " but no outer class could be found, weird!");
+			return findOuterClass(new ClassReader(is));
+		}
+	}
+
+	private static String findOuterClass(ClassReader reader) {
+		final ClassNode classNode = new ClassNode();
+
+		reader.accept(classNode, ClassReader.SKIP_CODE | ClassReader.SKIP_FRAMES);
+
+		for (InnerClassNode innerClass : classNode.innerClasses) {
+			// a class file also contains references to enclosed inner classes
+			if (innerClass.name.equals(classNode.name)) {
+				// only regular inner classes have the outer class in the inner class attribute
+				if (innerClass.outerName != null) {
+					return innerClass.outerName;
+				}
+
+				// local and anonymous classes have the outer class in the enclosing method attribute
+				// we check for both attributes because both should be present for decompilers to
+				// recognize a class as an inner class
+				if (classNode.outerClass != null) {
+					return classNode.outerClass;
 				}
+
+				// there are some Minecraft versions with one attribute stripped but not the other
+				LOGGER.debug("inner class attribute is present for " + classNode.name + " but no outer class could be found, weird!");
 			}
 		}
 
@@ -205,7 +329,7 @@ public final class JarWalker {
 		}
 	}
 
-	private static Executor getExecutor() {
+	static Executor getExecutor() {
 		if (JavaVersion.current().isCompatibleWith(JavaVersion.VERSION_21)) {
 			try {
 				Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
@@ -222,4 +346,22 @@ public final class JarWalker {
 	private static boolean isNotReservedClass(String name) {
 		return !"java/lang/Object".equals(name);
 	}
+
+	/**
+	 * @param classes The classes found in the jar
+	 * @param fileHashes A map of class file name to the sha256 hash of the class file
+	 * @param classBytes A map of class file name to the raw class bytes, null when the classes were not read
+	 * @param hierarchyHashes A map of class file name to the {@link ClassEntry#hashSuperHierarchy(Map)} of its entry, null when not already computed
+	 */
+	public record WalkResult(List<ClassEntry> classes, Map<String, String> fileHashes, @Nullable Map<String, byte[]> classBytes, @Nullable Map<String, String> hierarchyHashes) {
+	}
+
+	/**
+	 * @param fileName The class file name
+	 * @param hash The sha256 hash of the class file
+	 * @param outerClass The outer class name, or null when this is not an inner class
+	 * @param superClasses The super class and interfaces of this class
+	 */
+	record ClassInfo(String fileName, String hash, @Nullable String outerClass, List<String> superClasses) {
+	}
 }
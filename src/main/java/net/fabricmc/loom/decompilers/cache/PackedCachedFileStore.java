@@ -0,0 +1,623 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.decompilers.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link CachedFileStore} that stores all of its entries in a small number of append-only pack files.
+ *
+ * <p>Entries are located using a memory-mapped open addressing hash table, the index also tracks when each entry was
+ * last used so that looking up an entry does not require touching the file system. Unused entries are removed
+ * and the pack files are compacted when {@link #prune()} is called.
+ *
+ * <p>The store holds an exclusive lock on its directory until it is closed, against both other processes and other
+ * threads of this process. It must be closed by the thread that opened it.
+ */
+public final class PackedCachedFileStore<T> implements CachedFileStore<T> {
+	private static final Logger LOGGER = LoggerFactory.getLogger(PackedCachedFileStore.class);
+
+	private static final int MAGIC = 0x4C504B49; // LPKI
+	private static final int VERSION = 1;
+	private static final int INITIAL_CAPACITY = 1 << 14;
+	private static final long MAX_PACK_SIZE = 128L * 1024 * 1024;
+	private static final Pattern PACK_NAME = Pattern.compile("pack-(\\d+)-(\\d+)\\.dat");
+	// File locks are held by the whole process, so threads opening the same store must be excluded separately
+	private static final Map<Path, ReentrantLock> LOCKS = new ConcurrentHashMap<>();
+
+	// Header layout
+	private static final int HEADER_SIZE = 64;
+	private static final int HEADER_MAGIC = 0;
+	private static final int HEADER_VERSION = 4;
+	private static final int HEADER_GENERATION = 8;
+	private static final int HEADER_CAPACITY = 12;
+	private static final int HEADER_SIZE_FIELD = 16;
+	private static final int HEADER_CURRENT_PACK = 20;
+	private static final int HEADER_DIRTY = 24;
+	private static final int HEADER_DEAD_BYTES = 32;
+
+	// Slot layout, a slot with a length of 0 is empty
+	private static final int SLOT_SIZE = 32;
+	private static final int SLOT_KEY_HASH = 0;
+	private static final int SLOT_OFFSET = 8;
+	private static final int SLOT_LAST_ACCESS = 16;
+	private static final int SLOT_LENGTH = 24;
+	private static final int SLOT_PACK = 28;
+
+	private final Path root;
+	private final ChannelEntrySerializer<T> entrySerializer;
+	private final CachedFileStoreImpl.CacheRules cacheRules;
+	private final long now = Instant.now().toEpochMilli();
+
+	private final ReentrantLock threadLock;
+	private final FileChannel lockChannel;
+	private final FileLock lock;
+	private final FileChannel indexChannel;
+	private final Map<Integer, FileChannel> packs = new HashMap<>();
+	private MappedByteBuffer index;
+
+	private PackedCachedFileStore(Path root, ChannelEntrySerializer<T> entrySerializer, CachedFileStoreImpl.CacheRules cacheRules) throws IOException {
+		this.root = root;
+		this.entrySerializer = entrySerializer;
+		this.cacheRules = cacheRules;
+
+		Files.createDirectories(root);
+		this.threadLock = LOCKS.computeIfAbsent(root.toAbsolutePath().normalize(), p -> new ReentrantLock());
+
+		if (threadLock.isHeldByCurrentThread()) {
+			throw new IllegalStateException("Decompile cache is already open on this thread: " + root);
+		}
+
+		threadLock.lock();
+		FileChannel lockChannel = null;
+		FileChannel indexChannel = null;
+
+		try {
+			lockChannel = FileChannel.open(root.resolve("lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+			this.lock = lockChannel.lock();
+
+			try {
+				indexChannel = FileChannel.open(root.resolve("index.bin"), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			} catch (IOException | RuntimeException e) {
+				lock.release();
+				throw e;
+			}
+		} catch (IOException | RuntimeException e) {
+			if (lockChannel != null) {
+				lockChannel.close();
+			}
+
+			threadLock.unlock();
+			throw e;
+		}
+
+		this.lockChannel = lockChannel;
+		this.indexChannel = indexChannel;
+	}
+
+	public static <T> PackedCachedFileStore<T> open(Path root, ChannelEntrySerializer<T> entrySerializer, CachedFileStoreImpl.CacheRules cacheRules) throws IOException {
+		Objects.requireNonNull(root, "root");
+		final var store = new PackedCachedFileStore<>(root, entrySerializer, cacheRules);
+
+		try {
+			store.load();
+		} catch (IOException | RuntimeException e) {
+			store.close();
+			throw e;
+		}
+
+		return store;
+	}
+
+	private void load() throws IOException {
+		if (indexChannel.size() >= HEADER_SIZE) {
+			index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, indexChannel.size());
+
+			if (isValidIndex()) {
+				deleteUnusedPacks();
+				return;
+			}
+
+			LOGGER.warn("Discarding invalid decompile cache index: {}", root);
+		}
+
+		reset(INITIAL_CAPACITY);
+	}
+
+	private boolean isValidIndex() {
+		if (index.getInt(HEADER_MAGIC) != MAGIC || index.getInt(HEADER_VERSION) != VERSION || index.getInt(HEADER_DIRTY) != 0) {
+			return false;
+		}
+
+		final int capacity = index.getInt(HEADER_CAPACITY);
+		return Integer.bitCount(capacity) == 1 && index.capacity() >= indexSize(capacity);
+	}
+
+	// Throws away all existing entries
+	private void reset(int capacity) throws IOException {
+		closePacks();
+		index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, indexSize(capacity));
+		clearSlots(capacity);
+
+		index.putInt(HEADER_MAGIC, MAGIC);
+		index.putInt(HEADER_VERSION, VERSION);
+		index.putInt(HEADER_GENERATION, 0);
+		index.putInt(HEADER_CAPACITY, capacity);
+		index.putInt(HEADER_SIZE_FIELD, 0);
+		index.putInt(HEADER_CURRENT_PACK, 0);
+		index.putInt(HEADER_DIRTY, 0);
+		index.putLong(HEADER_DEAD_BYTES, 0);
+		index.force();
+
+		deleteUnusedPacks();
+	}
+
+	@Override
+	public synchronized @Nullable T getEntry(String key) throws IOException {
+		final int slot = findSlot(hashKey(key));
+
+		if (isEmpty(slot)) {
+			return null;
+		}
+
+		final int pos = slotPosition(slot);
+		final byte[] record = readRecord(index.getInt(pos + SLOT_PACK), index.getLong(pos + SLOT_OFFSET), index.getInt(pos + SLOT_LENGTH));
+
+		if (record == null) {
+			return null;
+		}
+
+		final ByteBuffer buffer = ByteBuffer.wrap(record);
+		final int keyLength = buffer.getInt();
+
+		if (keyLength < 0 || keyLength > buffer.remaining() || !key.equals(new String(record, Integer.BYTES, keyLength, StandardCharsets.UTF_8))) {
+			// Either a hash collision, or the pack was damaged
+			return null;
+		}
+
+		// Keep recently used entries in the cache, this is only a write to the mapped index.
+		index.putLong(pos + SLOT_LAST_ACCESS, now);
+
+		final int dataStart = Integer.BYTES + keyLength;
+		return entrySerializer.read(new ByteArrayInputStream(record, dataStart, record.length - dataStart));
+	}
+
+	@Override
+	public synchronized void putEntry(String key, T entry) throws IOException {
+		putEntry(key, entry, now);
+	}
+
+	private void putEntry(String key, T entry, long lastAccess) throws IOException {
+		final int packId = currentPack();
+		final FileChannel pack = getPack(packId);
+		final long offset = pack.size();
+		final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+
+		pack.position(offset);
+		writeFully(pack, ByteBuffer.allocate(Integer.BYTES + keyBytes.length).putInt(keyBytes.length).put(keyBytes).flip());
+		entrySerializer.write(entry, pack);
+
+		final long length = pack.position() - offset;
+
+		if (length > Integer.MAX_VALUE) {
+			throw new IOException("Cache entry is too large: " + key);
+		}
+
+		putSlot(hashKey(key), packId, offset, (int) length, lastAccess);
+
+		if (pack.size() >= MAX_PACK_SIZE) {
+			index.putInt(HEADER_CURRENT_PACK, packId + 1);
+		}
+	}
+
+	private void putSlot(long keyHash, int packId, long offset, int length, long lastAccess) throws IOException {
+		int slot = findSlot(keyHash);
+
+		if (isEmpty(slot)) {
+			final int size = index.getInt(HEADER_SIZE_FIELD) + 1;
+
+			if (size > capacity() / 4 * 3) {
+				grow();
+				slot = findSlot(keyHash);
+			}
+
+			index.putInt(HEADER_SIZE_FIELD, size);
+		} else {
+			// Replacing an existing entry, the old record is now garbage
+			addDeadBytes(index.getInt(slotPosition(slot) + SLOT_LENGTH));
+		}
+
+		writeSlot(slot, keyHash, packId, offset, length, lastAccess);
+	}
+
+	private void writeSlot(int slot, long keyHash, int packId, long offset, int length, long lastAccess) {
+		final int pos = slotPosition(slot);
+		index.putLong(pos + SLOT_KEY_HASH, keyHash);
+		index.putLong(pos + SLOT_OFFSET, offset);
+		index.putLong(pos + SLOT_LAST_ACCESS, lastAccess);
+		index.putInt(pos + SLOT_PACK, packId);
+		// Written last as a non-zero length marks the slot as used
+		index.putInt(pos + SLOT_LENGTH, length);
+	}
+
+	/**
+	 * Import all the entries from a {@link CachedFileStoreImpl}, keeping the last modified time of each file.
+	 *
+	 * @param legacyRoot The root of the existing file store
+	 * @return the number of imported entries
+	 */
+	public synchronized int migrateFrom(Path legacyRoot) throws IOException {
+		int count = 0;
+
+		try (Stream<Path> walk = Files.walk(legacyRoot)) {
+			Iterator<Path> iterator = walk.iterator();
+
+			while (iterator.hasNext()) {
+				final Path path = iterator.next();
+
+				if (!Files.isRegularFile(path)) {
+					continue;
+				}
+
+				final String key = legacyRoot.relativize(path).toString();
+				final T entry;
+
+				try {
+					entry = entrySerializer.read(path);
+				} catch (IOException e) {
+					LOGGER.warn("Skipping unreadable cache entry: {}", path, e);
+					continue;
+				}
+
+				putEntry(key, entry, Files.getLastModifiedTime(path).toMillis());
+				count++;
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Removes entries older than the max age, and then the least recently used entries over the max file count.
+	 * The remaining entries are copied into a fresh set of pack files if any space can be reclaimed.
+	 */
+	@Override
+	public synchronized void prune() throws IOException {
+		final List<Slot> slots = readSlots();
+		final long minAccess = now - cacheRules.maxAge().toMillis();
+
+		// Sorted newest -> oldest
+		slots.sort(Comparator.comparingLong(Slot::lastAccess).reversed());
+		final List<Slot> keep = slots.stream()
+				.filter(slot -> slot.lastAccess() >= minAccess)
+				.limit(cacheRules.maxFiles())
+				.toList();
+
+		final long deadBytes = index.getLong(HEADER_DEAD_BYTES);
+		long liveBytes = 0;
+
+		for (Slot slot : keep) {
+			liveBytes += slot.length();
+		}
+
+		if (keep.size() == slots.size() && deadBytes <= liveBytes / 4) {
+			// Nothing worth reclaiming
+			index.force();
+			return;
+		}
+
+		LOGGER.info("Compacting decompile cache, keeping {} of {} entries", keep.size(), slots.size());
+		compact(keep);
+	}
+
+	private void compact(List<Slot> keep) throws IOException {
+		final int oldGeneration = index.getInt(HEADER_GENERATION);
+		final int newGeneration = oldGeneration + 1;
+		final List<Slot> moved = new ArrayList<>(keep.size());
+
+		// Copy the records in pack order to keep the reads sequential
+		final List<Slot> sorted = new ArrayList<>(keep);
+		sorted.sort(Comparator.comparingInt(Slot::pack).thenComparingLong(Slot::offset));
+
+		int newPackId = 0;
+		FileChannel newPack = FileChannel.open(packPath(newGeneration, newPackId), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+		try {
+			for (Slot slot : sorted) {
+				if (newPack.size() >= MAX_PACK_SIZE) {
+					newPack.close();
+					newPack = FileChannel.open(packPath(newGeneration, ++newPackId), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+				}
+
+				final FileChannel oldPack = getPack(slot.pack());
+				final long newOffset = newPack.size();
+				long transferred = 0;
+
+				while (transferred < slot.length()) {
+					long count = oldPack.transferTo(slot.offset() + transferred, slot.length() - transferred, newPack.position(newOffset + transferred));
+
+					if (count <= 0) {
+						throw new IOException("Failed to copy cache entry from pack " + slot.pack());
+					}
+
+					transferred += count;
+				}
+
+				moved.add(new Slot(slot.keyHash(), newPackId, newOffset, slot.length(), slot.lastAccess()));
+			}
+
+			newPack.force(false);
+		} finally {
+			newPack.close();
+		}
+
+		closePacks();
+
+		// Mark the index as dirty while it is being rewritten, a crash at this point will discard the whole cache.
+		index.putInt(HEADER_DIRTY, 1);
+		index.force();
+
+		final int capacity = capacityFor(moved.size());
+
+		if (indexSize(capacity) > index.capacity()) {
+			index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, indexSize(capacity));
+		}
+
+		clearSlots(capacity);
+		index.putInt(HEADER_CAPACITY, capacity);
+
+		for (Slot slot : moved) {
+			writeSlot(findSlot(slot.keyHash()), slot.keyHash(), slot.pack(), slot.offset(), slot.length(), slot.lastAccess());
+		}
+
+		index.putInt(HEADER_SIZE_FIELD, moved.size());
+		index.putInt(HEADER_CURRENT_PACK, newPackId);
+		index.putLong(HEADER_DEAD_BYTES, 0);
+		index.putInt(HEADER_GENERATION, newGeneration);
+		index.putInt(HEADER_DIRTY, 0);
+		index.force();
+
+		deleteUnusedPacks();
+	}
+
+	private void grow() throws IOException {
+		final List<Slot> slots = readSlots();
+		final int capacity = capacity() * 2;
+
+		index.putInt(HEADER_DIRTY, 1);
+		index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, indexSize(capacity));
+		clearSlots(capacity);
+		index.putInt(HEADER_CAPACITY, capacity);
+
+		for (Slot slot : slots) {
+			writeSlot(findSlot(slot.keyHash()), slot.keyHash(), slot.pack(), slot.offset(), slot.length(), slot.lastAccess());
+		}
+
+		index.putInt(HEADER_DIRTY, 0);
+	}
+
+	private List<Slot> readSlots() {
+		final int capacity = capacity();
+		final List<Slot> slots = new ArrayList<>(index.getInt(HEADER_SIZE_FIELD));
+
+		for (int i = 0; i < capacity; i++) {
+			if (isEmpty(i)) {
+				continue;
+			}
+
+			final int pos = slotPosition(i);
+			slots.add(new Slot(
+					index.getLong(pos + SLOT_KEY_HASH),
+					index.getInt(pos + SLOT_PACK),
+					index.getLong(pos + SLOT_OFFSET),
+					index.getInt(pos + SLOT_LENGTH),
+					index.getLong(pos + SLOT_LAST_ACCESS)
+			));
+		}
+
+		return slots;
+	}
+
+	// Returns the slot containing the key, or the empty slot where it should be inserted
+	private int findSlot(long keyHash) {
+		final int mask = capacity() - 1;
+		int slot = (int) (keyHash ^ (keyHash >>> 32)) & mask;
+
+		while (!isEmpty(slot) && index.getLong(slotPosition(slot) + SLOT_KEY_HASH) != keyHash) {
+			slot = (slot + 1) & mask;
+		}
+
+		return slot;
+	}
+
+	private boolean isEmpty(int slot) {
+		return index.getInt(slotPosition(slot) + SLOT_LENGTH) == 0;
+	}
+
+	private void clearSlots(int capacity) {
+		final byte[] zeros = new byte[SLOT_SIZE * 1024];
+
+		for (int pos = HEADER_SIZE; pos < indexSize(capacity); pos += zeros.length) {
+			index.put(pos, zeros, 0, Math.min(zeros.length, indexSize(capacity) - pos));
+		}
+	}
+
+	private int capacity() {
+		return index.getInt(HEADER_CAPACITY);
+	}
+
+	private int currentPack() {
+		return index.getInt(HEADER_CURRENT_PACK);
+	}
+
+	private void addDeadBytes(long bytes) {
+		index.putLong(HEADER_DEAD_BYTES, index.getLong(HEADER_DEAD_BYTES) + bytes);
+	}
+
+	private byte[] readRecord(int packId, long offset, int length) throws IOException {
+		final FileChannel pack = getPack(packId);
+
+		if (offset + length > pack.size()) {
+			LOGGER.warn("Decompile cache entry points past the end of pack {}", packId);
+			return null;
+		}
+
+		final ByteBuffer buffer = ByteBuffer.allocate(length);
+
+		while (buffer.hasRemaining()) {
+			if (pack.read(buffer, offset + buffer.position()) < 0) {
+				return null;
+			}
+		}
+
+		return buffer.array();
+	}
+
+	private FileChannel getPack(int packId) throws IOException {
+		FileChannel pack = packs.get(packId);
+
+		if (pack == null) {
+			pack = FileChannel.open(packPath(index.getInt(HEADER_GENERATION), packId), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			packs.put(packId, pack);
+		}
+
+		return pack;
+	}
+
+	private Path packPath(int generation, int packId) {
+		return root.resolve("pack-%d-%d.dat".formatted(generation, packId));
+	}
+
+	// Removes packs left over from an older generation, or a compaction that did not complete.
+	private void deleteUnusedPacks() throws IOException {
+		final int generation = index.getInt(HEADER_GENERATION);
+
+		try (Stream<Path> list = Files.list(root)) {
+			for (Path path : list.toList()) {
+				final Matcher matcher = PACK_NAME.matcher(path.getFileName().toString());
+
+				if (matcher.matches() && Integer.parseInt(matcher.group(1)) != generation) {
+					Files.delete(path);
+				}
+			}
+		}
+	}
+
+	private void closePacks() throws IOException {
+		for (FileChannel pack : packs.values()) {
+			pack.close();
+		}
+
+		packs.clear();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		try {
+			if (index != null) {
+				index.force();
+			}
+
+			closePacks();
+			indexChannel.close();
+		} finally {
+			try (lockChannel) {
+				lock.release();
+			} finally {
+				threadLock.unlock();
+			}
+		}
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	private static int indexSize(int capacity) {
+		return HEADER_SIZE + capacity * SLOT_SIZE;
+	}
+
+	private static int capacityFor(int size) {
+		int capacity = INITIAL_CAPACITY;
+
+		while (size > capacity / 4 * 3) {
+			capacity *= 2;
+		}
+
+		return capacity;
+	}
+
+	private static int slotPosition(int slot) {
+		return HEADER_SIZE + slot * SLOT_SIZE;
+	}
+
+	// 64-bit FNV-1a with a murmur3 finalizer
+	static long hashKey(String key) {
+		long hash = 0xcbf29ce484222325L;
+
+		for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+			hash ^= b & 0xFF;
+			hash *= 0x100000001b3L;
+		}
+
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+	private record Slot(long keyHash, int pack, long offset, int length, long lastAccess) {
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.decompilers.daemon;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.Gson;
+
+/**
+ * A single decompile job sent to the {@link DecompilerDaemon}, serialised as one line of json.
+ * Paths are stored as strings as the daemon is not shared between file systems.
+ */
+public record DecompileRequest(
+		String decompilerClassName,
+		Map<String, String> options,
+		int maxThreads,
+		String inputJar,
+		String outputJar,
+		String linemapFile,
+		String mappingsFile,
+		List<String> libraries) {
+	private static final Gson GSON = new Gson();
+
+	public static DecompileRequest create(String decompilerClassName, Map<String, String> options, int maxThreads, Path inputJar, Path outputJar, Path linemapFile, Path mappingsFile, Collection<Path> libraries) {
+		return new DecompileRequest(
+				decompilerClassName,
+				Map.copyOf(options),
+				maxThreads,
+				inputJar.toAbsolutePath().toString(),
+				outputJar.toAbsolutePath().toString(),
+				linemapFile.toAbsolutePath().toString(),
+				mappingsFile.toAbsolutePath().toString(),
+				libraries.stream().map(path -> path.toAbsolutePath().toString()).toList()
+		);
+	}
+
+	public static DecompileRequest fromJson(String json) {
+		return GSON.fromJson(json, DecompileRequest.class);
+	}
+
+	public String toJson() {
+		return GSON.toJson(this);
+	}
+}
@@ -0,0 +1,237 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.decompilers.daemon;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.Constructor;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.jetbrains.annotations.Nullable;
+
+import net.fabricmc.loom.api.decompilers.DecompilationMetadata;
+import net.fabricmc.loom.api.decompilers.LoomDecompiler;
+import net.fabricmc.loom.util.IOStringConsumer;
+import net.fabricmc.loom.util.gradle.ThreadedProgressLoggerConsumer;
+import net.fabricmc.loom.util.gradle.ThreadedSimpleProgressLogger;
+
+/**
+ * A long-lived JVM that decompiles jars on request, so that the decompiler stays class loaded and JIT warmed
+ * between builds. One daemon is started per decompiler classpath, see {@link DecompilerDaemonClient}.
+ *
+ * <p>Requests are handled one at a time over a unix domain socket. Each connection sends a single
+ * {@link DecompileRequest} line, the daemon replies with {@link #LOG_PREFIX} lines while decompiling followed by
+ * either {@link #DONE} or a {@link #FAIL_PREFIX} line. The daemon exits after being idle for the given timeout.
+ */
+public final class DecompilerDaemon {
+	public static final String LOG_PREFIX = "LOG ";
+	public static final String FAIL_PREFIX = "FAIL ";
+	public static final String DONE = "DONE";
+
+	private final Path socketPath;
+	private final Duration idleTimeout;
+	// Guards the idle state, so that a request can't be accepted while the idle check decides to stop
+	private final Object lock = new Object();
+	private Instant lastActivity = Instant.now();
+	private boolean busy = false;
+	private @Nullable ServerSocketChannel serverChannel;
+
+	private DecompilerDaemon(Path socketPath, Duration idleTimeout) {
+		this.socketPath = socketPath;
+		this.idleTimeout = idleTimeout;
+	}
+
+	/**
+	 * @param args The socket path, and the idle timeout in seconds
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			throw new IllegalArgumentException("Usage: DecompilerDaemon <socket path> <idle timeout seconds>");
+		}
+
+		new DecompilerDaemon(Paths.get(args[0]), Duration.ofSeconds(Long.parseLong(args[1]))).run();
+		// Stop any threads left behind by the decompilers
+		System.exit(0);
+	}
+
+	private void run() throws IOException {
+		if (Files.exists(socketPath)) {
+			if (isAlive(socketPath)) {
+				System.out.println("Another decompiler daemon is already listening on " + socketPath);
+				return;
+			}
+
+			// Left over from a daemon that did not shut down cleanly
+			Files.delete(socketPath);
+		}
+
+		try (ServerSocketChannel serverChannel = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+			serverChannel.bind(UnixDomainSocketAddress.of(socketPath));
+			System.out.println("Decompiler daemon listening on " + socketPath);
+
+			synchronized (lock) {
+				this.serverChannel = serverChannel;
+			}
+
+			ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread thread = new Thread(r, "Decompiler daemon watchdog");
+				thread.setDaemon(true);
+				return thread;
+			});
+			final long checkInterval = Math.max(1, Math.min(10, idleTimeout.toSeconds()));
+			watchdog.scheduleAtFixedRate(this::checkIdle, checkInterval, checkInterval, TimeUnit.SECONDS);
+
+			while (true) {
+				final SocketChannel connection;
+
+				try {
+					connection = serverChannel.accept();
+				} catch (ClosedChannelException e) {
+					// Closed by the idle check
+					break;
+				}
+
+				// A connection accepted just before the idle check closed the channel is still handled
+				synchronized (lock) {
+					busy = true;
+				}
+
+				try (connection) {
+					handle(connection);
+				} catch (IOException e) {
+					System.err.println("Failed to handle decompile request");
+					e.printStackTrace();
+				} finally {
+					synchronized (lock) {
+						busy = false;
+						lastActivity = Instant.now();
+					}
+				}
+			}
+
+			watchdog.shutdownNow();
+		}
+	}
+
+	private void checkIdle() {
+		synchronized (lock) {
+			if (busy || serverChannel == null || !serverChannel.isOpen() || Instant.now().isBefore(lastActivity.plus(idleTimeout))) {
+				return;
+			}
+
+			System.out.println("Decompiler daemon has been idle for " + idleTimeout + ", stopping");
+
+			try {
+				// Delete the socket first so that new clients start a new daemon instead of connecting to this one
+				Files.deleteIfExists(socketPath);
+				serverChannel.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private void handle(SocketChannel connection) throws IOException {
+		final BufferedReader reader = new BufferedReader(Channels.newReader(connection, StandardCharsets.UTF_8));
+		final String line = reader.readLine();
+
+		if (line == null) {
+			// A connection used to check if the daemon is alive
+			return;
+		}
+
+		final IOStringConsumer connectionWriter = data -> write(connection, data);
+
+		try {
+			decompile(DecompileRequest.fromJson(line), new ThreadedSimpleProgressLogger(data -> connectionWriter.accept(LOG_PREFIX + data)));
+			connectionWriter.accept(DONE);
+		} catch (Throwable t) {
+			t.printStackTrace();
+
+			final StringWriter stackTrace = new StringWriter();
+			t.printStackTrace(new PrintWriter(stackTrace));
+			// Keep the reply on a single line
+			connectionWriter.accept(FAIL_PREFIX + stackTrace.toString().replace("\r", "").replace("\n", "\\n"));
+		}
+	}
+
+	private static void decompile(DecompileRequest request, IOStringConsumer logger) throws Exception {
+		//noinspection unchecked
+		final Constructor<LoomDecompiler> constructor = (Constructor<LoomDecompiler>) Class.forName(request.decompilerClassName()).getConstructor();
+		final LoomDecompiler decompiler = constructor.newInstance();
+
+		final var metadata = new DecompilationMetadata(
+				request.maxThreads(),
+				Paths.get(request.mappingsFile()),
+				request.libraries().stream().map(Paths::get).toList(),
+				logger,
+				request.options()
+		);
+
+		decompiler.decompile(
+				Paths.get(request.inputJar()),
+				Paths.get(request.outputJar()),
+				Paths.get(request.linemapFile()),
+				metadata
+		);
+
+		metadata.logger().accept(ThreadedProgressLoggerConsumer.CLOSE_LOGGERS);
+	}
+
+	private static void write(SocketChannel connection, String data) throws IOException {
+		synchronized (connection) {
+			ByteBuffer buf = ByteBuffer.wrap((data + "\n").getBytes(StandardCharsets.UTF_8));
+
+			while (buf.hasRemaining()) {
+				connection.write(buf);
+			}
+		}
+	}
+
+	static boolean isAlive(Path socketPath) {
+		try (SocketChannel ignored = SocketChannel.open(UnixDomainSocketAddress.of(socketPath))) {
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+}
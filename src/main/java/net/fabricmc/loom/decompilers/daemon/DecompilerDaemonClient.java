@@ -0,0 +1,322 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.decompilers.daemon;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.function.Consumer;
+
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.slf4j.LoggerFactory;
+
+import net.fabricmc.loom.util.Checksum;
+import net.fabricmc.loom.util.Platform;
+import net.fabricmc.loom.util.ipc.IPCClient;
+
+/**
+ * Sends decompile requests to a {@link DecompilerDaemon}, starting one if needed.
+ *
+ * <p>Daemons are keyed by a hash of their classpath, java executable and memory, so builds using the same
+ * decompiler share a single warm JVM.
+ */
+public final class DecompilerDaemonClient {
+	private static final Logger LOGGER = Logging.getLogger(DecompilerDaemonClient.class);
+	private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(1);
+	// The shortest limit, on macOS, including the terminating null byte
+	private static final int MAX_SOCKET_PATH_LENGTH = 103;
+	private static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rwx------");
+
+	private final List<Path> classpath;
+	private final long memory;
+	private final Duration idleTimeout;
+	private final Path javaExecutable;
+	private final Path socketPath;
+	private final Path logFile;
+
+	/**
+	 * @param decompilerClasspath The classpath of the decompiler, Loom's own classpath is added to this
+	 * @param memory The max heap size of the daemon in megabytes
+	 * @param idleTimeout How long the daemon should wait for a new request before exiting
+	 * @param daemonDirectory The directory for the daemon's socket and log, only accessible by the current user
+	 */
+	public DecompilerDaemonClient(Set<File> decompilerClasspath, long memory, Duration idleTimeout, Path daemonDirectory) throws IOException {
+		final Set<Path> classpath = new LinkedHashSet<>();
+		decompilerClasspath.stream().map(File::toPath).forEach(classpath::add);
+		classpath.addAll(getLoomClasspath());
+
+		this.classpath = List.copyOf(classpath);
+		this.memory = memory;
+		this.idleTimeout = idleTimeout;
+		this.javaExecutable = Paths.get(System.getProperty("java.home"), "bin", Platform.CURRENT.getOperatingSystem().isWindows() ? "java.exe" : "java");
+
+		// Anyone that can connect to the socket can make the daemon read and write files as the current user
+		final String key = getKey().substring(0, 16);
+		final Path directory = createPrivateDirectory(daemonDirectory);
+		final Path socketPath = directory.resolve(key + ".sock");
+
+		if (socketPath.toAbsolutePath().toString().getBytes(StandardCharsets.UTF_8).length > MAX_SOCKET_PATH_LENGTH) {
+			// Unix domain socket paths are limited in length, fall back to a per-user directory in the temp dir
+			this.socketPath = getTempDirectory().resolve(key + ".sock");
+		} else {
+			this.socketPath = socketPath;
+		}
+
+		this.logFile = directory.resolve(key + ".log");
+	}
+
+	/**
+	 * Run a decompile request, blocking until the daemon has finished.
+	 *
+	 * @param request The request to send
+	 * @param logConsumer Receives the decompiler's log output
+	 */
+	public void decompile(DecompileRequest request, Consumer<String> logConsumer) throws IOException {
+		try {
+			if (!tryDecompile(request, logConsumer)) {
+				// The daemon stopped before it replied, most likely as it was going idle. Try again with a new daemon.
+				LOGGER.info("Decompiler daemon closed the connection before replying, retrying");
+
+				if (!tryDecompile(request, logConsumer)) {
+					throw new IOException("Decompiler daemon closed the connection unexpectedly, see " + logFile);
+				}
+			}
+		} catch (IOException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException("Failed to communicate with the decompiler daemon", e);
+		}
+	}
+
+	/**
+	 * @return false if the connection was closed before the daemon replied, in which case the request can be sent again
+	 */
+	private boolean tryDecompile(DecompileRequest request, Consumer<String> logConsumer) throws Exception {
+		try (IPCClient client = connect()) {
+			boolean replied = false;
+			String line;
+
+			try {
+				client.accept(request.toJson());
+			} catch (IOException e) {
+				LOGGER.debug("Failed to send the request to the decompiler daemon", e);
+				return false;
+			}
+
+			while ((line = client.readLine()) != null) {
+				replied = true;
+
+				if (line.startsWith(DecompilerDaemon.LOG_PREFIX)) {
+					logConsumer.accept(line.substring(DecompilerDaemon.LOG_PREFIX.length()));
+				} else if (line.equals(DecompilerDaemon.DONE)) {
+					return true;
+				} else if (line.startsWith(DecompilerDaemon.FAIL_PREFIX)) {
+					throw new IOException("Decompiler daemon failed:\n" + line.substring(DecompilerDaemon.FAIL_PREFIX.length()).replace("\\n", "\n"));
+				} else {
+					LOGGER.warn("Unexpected message from the decompiler daemon: {}", line);
+				}
+			}
+
+			if (replied) {
+				throw new IOException("Decompiler daemon closed the connection unexpectedly, see " + logFile);
+			}
+
+			return false;
+		}
+	}
+
+	private IPCClient connect() throws IOException {
+		if (DecompilerDaemon.isAlive(socketPath)) {
+			try {
+				final IPCClient client = new IPCClient(socketPath);
+				LOGGER.info("Using existing decompiler daemon: {}", socketPath);
+				return client;
+			} catch (IOException e) {
+				// The daemon has stopped since the check, start a new one
+				LOGGER.info("Failed to connect to the existing decompiler daemon, starting a new one", e);
+			}
+		}
+
+		LOGGER.lifecycle("Starting decompiler daemon, log: {}", logFile);
+		final Process process = start();
+		final long deadline = System.nanoTime() + STARTUP_TIMEOUT.toNanos();
+
+		while (System.nanoTime() < deadline) {
+			try {
+				return new IPCClient(socketPath);
+			} catch (IOException e) {
+				// Not listening yet
+			}
+
+			if (!process.isAlive() && !DecompilerDaemon.isAlive(socketPath)) {
+				throw new IOException("Decompiler daemon exited with code %d, see %s".formatted(process.exitValue(), logFile));
+			}
+
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while waiting for the decompiler daemon to start", e);
+			}
+		}
+
+		process.destroy();
+		throw new IOException("Timed out waiting for the decompiler daemon to start, see " + logFile);
+	}
+
+	private Process start() throws IOException {
+		final StringJoiner classpathString = new StringJoiner(File.pathSeparator);
+		classpath.forEach(path -> classpathString.add(path.toString()));
+
+		final List<String> command = new ArrayList<>();
+		command.add(javaExecutable.toString());
+		command.add(String.format(Locale.ENGLISH, "-Xms%dm", Math.min(512, memory)));
+		command.add(String.format(Locale.ENGLISH, "-Xmx%dm", memory));
+		command.add("-cp");
+		command.add(classpathString.toString());
+		command.add(DecompilerDaemon.class.getName());
+		command.add(socketPath.toString());
+		command.add(Long.toString(idleTimeout.toSeconds()));
+
+		return new ProcessBuilder(command)
+				.redirectErrorStream(true)
+				.redirectOutput(ProcessBuilder.Redirect.appendTo(logFile.toFile()))
+				.redirectInput(ProcessBuilder.Redirect.PIPE)
+				.start();
+	}
+
+	private String getKey() {
+		final StringJoiner joiner = new StringJoiner(",");
+		joiner.add(javaExecutable.toString());
+		joiner.add(Long.toString(memory));
+		joiner.add(Long.toString(idleTimeout.toSeconds()));
+
+		for (Path path : classpath) {
+			joiner.add(path.toAbsolutePath().toString());
+
+			try {
+				joiner.add(Long.toString(Files.size(path)));
+				joiner.add(Long.toString(Files.getLastModifiedTime(path).toMillis()));
+			} catch (IOException e) {
+				// Directories or missing files, the path alone is enough
+			}
+		}
+
+		return Checksum.toHex(Checksum.sha256(joiner.toString()));
+	}
+
+	private static Path createPrivateDirectory(Path directory) throws IOException {
+		Files.createDirectories(directory);
+
+		if (isPosix(directory)) {
+			Files.setPosixFilePermissions(directory, OWNER_ONLY);
+		}
+
+		return directory;
+	}
+
+	/**
+	 * The temp dir is shared with other users, so the directory is created with owner-only permissions and rejected
+	 * if someone else has created it first.
+	 */
+	private static Path getTempDirectory() throws IOException {
+		final String user = System.getProperty("user.name");
+		final Path directory = Paths.get(System.getProperty("java.io.tmpdir"), "loom-decompiler-" + Checksum.toHex(Checksum.sha256(user)).substring(0, 8));
+
+		if (!isPosix(directory)) {
+			// The temp dir is per-user on Windows
+			return Files.createDirectories(directory);
+		}
+
+		try {
+			Files.createDirectory(directory, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+		} catch (FileAlreadyExistsException e) {
+			// Checked below
+		}
+
+		final PosixFileAttributes attributes = Files.readAttributes(directory, PosixFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+		final UserPrincipal currentUser = directory.getFileSystem().getUserPrincipalLookupService().lookupPrincipalByName(user);
+
+		if (!attributes.isDirectory() || !attributes.owner().equals(currentUser) || !attributes.permissions().equals(OWNER_ONLY)) {
+			throw new IOException("Unsafe decompiler daemon directory, it must be a directory that is only accessible by %s: %s".formatted(user, directory));
+		}
+
+		return directory;
+	}
+
+	private static boolean isPosix(Path path) {
+		return path.getFileSystem().supportedFileAttributeViews().contains("posix");
+	}
+
+	// The daemon needs Loom and its dependencies to run the built-in decompilers.
+	private static Set<Path> getLoomClasspath() {
+		final Set<Path> classpath = new LinkedHashSet<>();
+
+		if (DecompilerDaemon.class.getClassLoader() instanceof URLClassLoader urlClassLoader) {
+			for (URL url : urlClassLoader.getURLs()) {
+				if ("file".equals(url.getProtocol())) {
+					classpath.add(toPath(url));
+				}
+			}
+		}
+
+		// Make sure Loom itself, and the logging api are always present.
+		classpath.add(getCodeSource(DecompilerDaemon.class));
+		classpath.add(getCodeSource(LoggerFactory.class));
+		return classpath;
+	}
+
+	private static Path getCodeSource(Class<?> clazz) {
+		return toPath(clazz.getProtectionDomain().getCodeSource().getLocation());
+	}
+
+	private static Path toPath(URL url) {
+		try {
+			return Paths.get(url.toURI());
+		} catch (URISyntaxException e) {
+			throw new IllegalStateException("Invalid classpath url: " + url, e);
+		}
+	}
+}
@@ -51,5 +51,6 @@ public interface LoomFiles {
 	File getGlobalMinecraftRepo();
 	File getLocalMinecraftRepo();
 	File getDecompileCache(String version);
+	File getPackedDecompileCache(String version);
 	File getForgeDependencyRepo();
 }
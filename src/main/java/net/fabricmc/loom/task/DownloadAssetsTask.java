@@ -26,29 +26,37 @@ package net.fabricmc.loom.task;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.URISyntaxException;
 import java.nio.file.Path;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 
+import com.google.common.base.Stopwatch;
 import org.gradle.api.file.RegularFileProperty;
 import org.gradle.api.provider.Property;
 import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.Nested;
 import org.gradle.api.tasks.OutputDirectory;
 import org.gradle.api.tasks.TaskAction;
+import org.gradle.internal.logging.progress.ProgressLogger;
 import org.gradle.internal.logging.progress.ProgressLoggerFactory;
 
 import net.fabricmc.loom.LoomGradlePlugin;
 import net.fabricmc.loom.configuration.ide.RunConfigSettings;
 import net.fabricmc.loom.configuration.providers.minecraft.MinecraftVersionMeta;
 import net.fabricmc.loom.configuration.providers.minecraft.assets.AssetIndex;
+import net.fabricmc.loom.util.Constants;
 import net.fabricmc.loom.util.MirrorUtil;
+import net.fabricmc.loom.util.download.BulkDownloader;
 import net.fabricmc.loom.util.download.DownloadExecutor;
 import net.fabricmc.loom.util.download.DownloadFactory;
 import net.fabricmc.loom.util.download.GradleDownloadProgressListener;
+import net.fabricmc.loom.util.gradle.GradleUtils;
 import net.fabricmc.loom.util.gradle.ProgressGroup;
 
-// TODO: Reintroduce the progress bar.
 public abstract class DownloadAssetsTask extends AbstractLoomTask {
 	@Input
 	public abstract Property<String> getAssetsHash();
@@ -65,6 +73,10 @@ public abstract class DownloadAssetsTask extends AbstractLoomTask {
 	@Input
 	protected abstract Property<String> getAssetsIndexJson();
 
+	// Only changes how the assets are downloaded, not the output
+	@Internal
+	protected abstract Property<Boolean> getUseBulkDownload();
+
 	@OutputDirectory
 	public abstract RegularFileProperty getAssetsDirectory();
 
@@ -101,6 +113,7 @@ public abstract class DownloadAssetsTask extends AbstractLoomTask {
 		getResourcesBaseUrl().finalizeValue();
 
 		getAssetsIndexJson().set(LoomGradlePlugin.GSON.toJson(getExtension().getMinecraftProvider().getVersionInfo().assetIndex()));
+		getUseBulkDownload().convention(GradleUtils.getBooleanPropertyProvider(getProject(), Constants.Properties.BULK_ASSET_DOWNLOAD).orElse(false));
 
 		getAssetsHash().finalizeValue();
 		getAssetsDirectory().finalizeValueOnRead();
@@ -111,19 +124,68 @@ public abstract class DownloadAssetsTask extends AbstractLoomTask {
 	public void downloadAssets() throws IOException {
 		final AssetIndex assetIndex = getAssetIndex();
 
-		try (ProgressGroup progressGroup = new ProgressGroup("Download Assets", getProgressLoggerFactory());
-				DownloadExecutor executor = new DownloadExecutor(getDownloadThreads().get())) {
-			for (AssetIndex.Object object : assetIndex.getObjects()) {
-				final String sha1 = object.hash();
-				final String url = getResourcesBaseUrl().get() + sha1.substring(0, 2) + "/" + sha1;
-
-				getDownloadFactory()
-						.download(url)
-						.sha1(sha1)
-						.progress(new GradleDownloadProgressListener(object.name(), progressGroup::createProgressLogger))
-						.downloadPathAsync(getAssetsPath(object, assetIndex), executor);
+		if (getUseBulkDownload().get()) {
+			downloadAssetsBulk(assetIndex);
+			return;
+		}
+
+		final Collection<AssetIndex.Object> objects = assetIndex.getObjects();
+		final Stopwatch stopwatch = Stopwatch.createStarted();
+
+		try (ProgressGroup progressGroup = new ProgressGroup("Download Assets", getProgressLoggerFactory())) {
+			final ProgressLogger progressLogger = progressGroup.createProgressLogger("Downloading assets");
+
+			try (DownloadExecutor executor = new DownloadExecutor(getDownloadThreads().get(), completed -> progressLogger.progress(formatProgress(completed, objects.size(), stopwatch)))) {
+				for (AssetIndex.Object object : objects) {
+					final String sha1 = object.hash();
+					final String url = getResourcesBaseUrl().get() + sha1.substring(0, 2) + "/" + sha1;
+
+					getDownloadFactory()
+							.download(url)
+							.sha1(sha1)
+							.progress(new GradleDownloadProgressListener(object.name(), progressGroup::createProgressLogger))
+							.downloadPathAsync(getAssetsPath(object, assetIndex), executor);
+				}
+			} finally {
+				progressLogger.completed();
+			}
+		}
+
+		getLogger().info("Downloaded assets: {}", formatProgress(objects.size(), objects.size(), stopwatch));
+	}
+
+	private static String formatProgress(int completed, int total, Stopwatch stopwatch) {
+		final long millis = Math.max(1, stopwatch.elapsed(TimeUnit.MILLISECONDS));
+		return "%d / %d files (%d files/s)".formatted(completed, total, completed * 1000L / millis);
+	}
+
+	private void downloadAssetsBulk(AssetIndex assetIndex) throws IOException {
+		final BulkDownloader downloader = getDownloadFactory().bulkDownload()
+				.objectStore(new File(getAssetsDirectory().get().getAsFile(), "objects").toPath());
+
+		for (AssetIndex.Object object : assetIndex.getObjects()) {
+			final String sha1 = object.hash();
+
+			try {
+				downloader.add(getResourcesBaseUrl().get() + sha1.substring(0, 2) + "/" + sha1, sha1, getAssetsPath(object, assetIndex));
+			} catch (URISyntaxException e) {
+				throw new RuntimeException("Failed to create download for asset: " + object.name(), e);
 			}
 		}
+
+		final BulkDownloader.Progress result;
+
+		try (ProgressGroup progressGroup = new ProgressGroup("Download Assets", getProgressLoggerFactory())) {
+			final ProgressLogger progressLogger = progressGroup.createProgressLogger("Downloading assets");
+
+			try {
+				result = downloader.download(progress -> progressLogger.progress(progress.toString()));
+			} finally {
+				progressLogger.completed();
+			}
+		}
+
+		getLogger().info("Downloaded assets: {}", result);
 	}
 
 	private AssetIndex getAssetIndex() throws IOException {
@@ -29,8 +29,11 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 
 import codechicken.diffpatch.cli.CliOperation;
 import codechicken.diffpatch.cli.PatchOperation;
@@ -38,19 +41,26 @@ import codechicken.diffpatch.util.LoggingOutputStream;
 import codechicken.diffpatch.util.PatchMode;
 import com.google.common.base.Stopwatch;
 import dev.architectury.loom.forge.tool.ForgeToolValueSource;
+import dev.architectury.loom.util.MappingOption;
 import dev.architectury.loom.util.TempFiles;
+import org.apache.commons.io.FileUtils;
 import org.gradle.api.file.FileCollection;
 import org.gradle.api.file.RegularFileProperty;
 import org.gradle.api.logging.LogLevel;
+import org.gradle.api.logging.Logger;
 import org.gradle.api.tasks.InputFile;
 import org.gradle.api.tasks.OutputFile;
 import org.gradle.api.tasks.TaskAction;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.VisibleForTesting;
 
+import net.fabricmc.loom.LoomGradlePlugin;
+import net.fabricmc.loom.configuration.accesstransformer.AccessTransformerJarProcessor;
 import net.fabricmc.loom.configuration.processors.MinecraftJarProcessorManager;
 import net.fabricmc.loom.configuration.providers.forge.ForgeUserdevProvider;
 import net.fabricmc.loom.configuration.providers.forge.MinecraftPatchedProvider;
 import net.fabricmc.loom.configuration.providers.forge.mcpconfig.McpExecutor;
+import net.fabricmc.loom.configuration.providers.forge.mcpconfig.McpStepCache;
 import net.fabricmc.loom.configuration.providers.forge.mcpconfig.steplogic.ConstantLogic;
 import net.fabricmc.loom.configuration.sources.ForgeSourcesRemapper;
 import net.fabricmc.loom.util.DependencyDownloader;
@@ -75,6 +85,24 @@ public abstract class GenerateForgePatchedSourcesTask extends AbstractLoomTask {
 	@InputFile
 	public abstract RegularFileProperty getRuntimeJar();
 
+	/**
+	 * The Forge userdev jar, containing the access transformers, side annotation strippers and patches.
+	 */
+	@InputFile
+	public abstract RegularFileProperty getUserdevJar();
+
+	/**
+	 * The MCPConfig zip, used to decompile and patch Minecraft.
+	 */
+	@InputFile
+	public abstract RegularFileProperty getMcpConfig();
+
+	/**
+	 * The mappings used to remap the sources from SRG to named.
+	 */
+	@InputFile
+	public abstract RegularFileProperty getMappings();
+
 	/**
 	 * The source jar.
 	 */
@@ -82,8 +110,10 @@ public abstract class GenerateForgePatchedSourcesTask extends AbstractLoomTask {
 	public abstract RegularFileProperty getOutputJar();
 
 	public GenerateForgePatchedSourcesTask() {
-		getOutputs().upToDateWhen((o) -> false);
 		getOutputJar().fileProvider(getProject().provider(() -> GenerateSourcesTask.getJarFileWithSuffix(getRuntimeJar(), "-sources.jar")));
+		getUserdevJar().fileProvider(getProject().provider(() -> getExtension().getForgeUserdevProvider().getUserdevJar()));
+		getMcpConfig().fileProvider(getProject().provider(() -> getExtension().getMcpConfigProvider().getMcp().toFile()));
+		getMappings().fileProvider(getProject().provider(() -> getExtension().getMappingConfiguration().getMappingsPath(MappingOption.WITH_SRG).toFile()));
 	}
 
 	@TaskAction
@@ -97,18 +127,27 @@ public abstract class GenerateForgePatchedSourcesTask extends AbstractLoomTask {
 
 		try (var tempFiles = new TempFiles(); var serviceFactory = new ScopedServiceFactory()) {
 			Path cache = tempFiles.directory("loom-decompilation");
+			// The stages before remapping do not depend on the mappings, so they are cached by their inputs
+			McpStepCache stepCache = MinecraftPatchedProvider.get(getProject()).createMcpStepCache();
 
 			// Transform game jar before decompiling
-			Path accessTransformed = cache.resolve("access-transformed.jar");
-			MinecraftPatchedProvider.accessTransform(getProject(), getInputJar().get().getAsFile().toPath(), accessTransformed);
-			Path sideAnnotationStripped = cache.resolve("side-annotation-stripped.jar");
-			stripSideAnnotations(accessTransformed, sideAnnotationStripped);
+			Path accessTransformed = runCached(stepCache, "accessTransform", Map.of(
+					"input", stepCache.hashInput(getInputJar().get().getAsFile().toPath()),
+					"atTool", AccessTransformerJarProcessor.getToolNotation(getProject()),
+					"ats", MinecraftPatchedProvider.hashAccessTransformers(getProject())
+			), dir -> {
+				Path output = dir.resolve("access-transformed.jar");
+				MinecraftPatchedProvider.accessTransform(getProject(), getInputJar().get().getAsFile().toPath(), output);
+				return output;
+			});
+			Path sideAnnotationStripped = stripSideAnnotations(stepCache, accessTransformed);
 
 			// Step 1: decompile and patch with MCP patches
-			Path rawDecompiled = decompileAndPatch(cache, sideAnnotationStripped);
+			Path rawDecompiled = decompileAndPatch(cache, stepCache, sideAnnotationStripped);
 			// Step 2: patch with Forge patches
-			getLogger().lifecycle(":applying Forge patches");
-			Path patched = sourcePatch(cache, rawDecompiled);
+			Path patched = runCached(stepCache, "sourcePatch", Map.of(
+					"input", stepCache.hashInput(rawDecompiled)
+			), dir -> sourcePatch(dir, rawDecompiled));
 			// Step 3: remap
 			remap(patched, serviceFactory);
 			// Step 4: add Forge's own sources
@@ -116,12 +155,41 @@ public abstract class GenerateForgePatchedSourcesTask extends AbstractLoomTask {
 		}
 	}
 
-	private Path decompileAndPatch(Path cache, Path gameJar) throws IOException {
+	/**
+	 * Runs a stage of the task, or restores its output from the cache if it has already run with the same inputs.
+	 * The userdev jar is always part of the inputs.
+	 */
+	private Path runCached(McpStepCache stepCache, String stage, Map<String, String> inputs, McpStepCache.StepExecutor executor) throws IOException {
+		final Map<String, String> config = new HashMap<>(inputs);
+		config.put("userdev", stepCache.hashInput(getUserdevJar().get().getAsFile().toPath()));
+		return runCached(stepCache, stage, config, getLogger(), executor);
+	}
+
+	/**
+	 * Runs a stage of the task, or restores its output from the cache if it has already run with the same inputs.
+	 * The Loom version, which determines the versions of the tools, is always part of the key.
+	 */
+	@VisibleForTesting
+	public static Path runCached(McpStepCache stepCache, String stage, Map<String, String> inputs, Logger logger, McpStepCache.StepExecutor executor) throws IOException {
+		final String key = stepCache.getKey("genForgePatchedSources:" + stage, LoomGradlePlugin.LOOM_VERSION, new TreeMap<>(inputs));
+		final @Nullable Path cached = stepCache.get(key);
+
+		if (cached != null) {
+			logger.lifecycle(":{} restored from cache", stage);
+			return cached;
+		}
+
+		return stepCache.put(key, executor);
+	}
+
+	private Path decompileAndPatch(Path cache, McpStepCache stepCache, Path gameJar) throws IOException {
 		Path mcpCache = cache.resolve("mcp");
 		Files.createDirectory(mcpCache);
 
 		MinecraftPatchedProvider patchedProvider = MinecraftPatchedProvider.get(getProject());
 		McpExecutor mcp = patchedProvider.createMcpExecutor(mcpCache);
+		// Share the cache, so that the cached game jar is recognised by its key rather than hashed again
+		mcp.setStepCache(stepCache);
 		mcp.setStepLogicProvider((name, type) -> {
 			if (name.equals("rename")) {
 				return Optional.of(new ConstantLogic(() -> gameJar));
@@ -134,11 +202,14 @@ public abstract class GenerateForgePatchedSourcesTask extends AbstractLoomTask {
 		return mcp.execute();
 	}
 
-	private Path sourcePatch(Path cache, Path rawDecompiled) throws IOException {
+	private Path sourcePatch(Path dir, Path rawDecompiled) throws IOException {
+		getLogger().lifecycle(":applying Forge patches");
 		ForgeUserdevProvider userdev = getExtension().getForgeUserdevProvider();
 		String patchPathInZip = userdev.getConfig().patches();
-		Path output = cache.resolve("patched.jar");
-		Path rejects = cache.resolve("rejects");
+		Path output = dir.resolve("patched.jar");
+		// Outside of the cached directory, so that they are kept when patching fails
+		Path rejects = getTemporaryDir().toPath().resolve("rejects");
+		FileUtils.deleteDirectory(rejects.toFile());
 
 		CliOperation.Result<PatchOperation.PatchesSummary> result = PatchOperation.builder()
 				.logTo(new LoggingOutputStream(getLogger(), LogLevel.INFO))
@@ -167,15 +238,26 @@ public abstract class GenerateForgePatchedSourcesTask extends AbstractLoomTask {
 		remapper.remapAll();
 	}
 
-	private void stripSideAnnotations(Path input, Path output) throws IOException {
+	private Path stripSideAnnotations(McpStepCache stepCache, Path input) throws IOException {
 		final ForgeUserdevProvider userdevProvider = getExtension().getForgeUserdevProvider();
 		final List<String> sass = userdevProvider.getConfig().sass();
 
 		if (sass.isEmpty()) {
-			Files.copy(input, output, StandardCopyOption.REPLACE_EXISTING);
-			return;
+			return input;
 		}
 
+		return runCached(stepCache, "stripSideAnnotations", Map.of(
+				"input", stepCache.hashInput(input),
+				"sass", String.join(",", sass)
+		), dir -> {
+			Path output = dir.resolve("side-annotation-stripped.jar");
+			stripSideAnnotations(sass, input, output);
+			return output;
+		});
+	}
+
+	private void stripSideAnnotations(List<String> sass, Path input, Path output) throws IOException {
+		final ForgeUserdevProvider userdevProvider = getExtension().getForgeUserdevProvider();
 		final Stopwatch stopwatch = Stopwatch.createStarted();
 		getLogger().lifecycle(":stripping side annotations");
 
@@ -54,6 +54,7 @@ import java.util.stream.Stream;
 import javax.inject.Inject;
 
 import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.file.FileCollection;
 import org.gradle.api.file.RegularFileProperty;
 import org.gradle.api.provider.Property;
@@ -86,10 +87,16 @@ import net.fabricmc.loom.configuration.providers.minecraft.MinecraftJar;
 import net.fabricmc.loom.configuration.providers.minecraft.mapped.AbstractMappedMinecraftProvider;
 import net.fabricmc.loom.configuration.sources.ForgeSourcesRemapper;
 import net.fabricmc.loom.decompilers.ClassLineNumbers;
+import net.fabricmc.loom.decompilers.JarSharder;
 import net.fabricmc.loom.decompilers.LineNumberRemapper;
 import net.fabricmc.loom.decompilers.cache.CachedData;
+import net.fabricmc.loom.decompilers.cache.CachedFileStore;
 import net.fabricmc.loom.decompilers.cache.CachedFileStoreImpl;
 import net.fabricmc.loom.decompilers.cache.CachedJarProcessor;
+import net.fabricmc.loom.decompilers.cache.ClassFingerprintIndex;
+import net.fabricmc.loom.decompilers.cache.PackedCachedFileStore;
+import net.fabricmc.loom.decompilers.daemon.DecompileRequest;
+import net.fabricmc.loom.decompilers.daemon.DecompilerDaemonClient;
 import net.fabricmc.loom.task.service.SourceMappingsService;
 import net.fabricmc.loom.util.Checksum;
 import net.fabricmc.loom.util.Constants;
@@ -170,6 +177,24 @@ public abstract class GenerateSourcesTask extends AbstractLoomTask {
 	@ApiStatus.Experimental
 	public abstract Property<Boolean> getResetCache();
 
+	@Input
+	@Option(option = "packed-cache", description = "Store the decompile cache in indexed pack files")
+	@ApiStatus.Experimental
+	public abstract Property<Boolean> getUsePackedCache();
+
+	@Internal
+	@Option(option = "decompiler-daemon", description = "Decompile using a long-lived daemon that is reused between builds")
+	@ApiStatus.Experimental
+	public abstract Property<Boolean> getUseDecompilerDaemon();
+
+	@ApiStatus.Internal
+	@Internal
+	protected abstract Property<Integer> getDecompilerDaemonIdleTimeout();
+
+	@ApiStatus.Internal
+	@Internal
+	protected abstract DirectoryProperty getDecompilerDaemonDirectory();
+
 	// Internal inputs
 	@ApiStatus.Internal
 	@Nested
@@ -180,6 +205,10 @@ public abstract class GenerateSourcesTask extends AbstractLoomTask {
 	@Internal
 	protected abstract RegularFileProperty getDecompileCacheFile();
 
+	@ApiStatus.Internal
+	@Internal
+	protected abstract DirectoryProperty getPackedDecompileCacheDirectory();
+
 	@ApiStatus.Internal
 	@Input
 	protected abstract Property<Integer> getMaxCachedFiles();
@@ -247,11 +276,16 @@ public abstract class GenerateSourcesTask extends AbstractLoomTask {
 
 		getMinecraftCompileLibraries().from(getProject().getConfigurations().getByName(Constants.Configurations.MINECRAFT_COMPILE_LIBRARIES));
 		getDecompileCacheFile().set(getExtension().getFiles().getDecompileCache(CACHE_VERSION));
+		getPackedDecompileCacheDirectory().set(getExtension().getFiles().getPackedDecompileCache(CACHE_VERSION));
 		getUnpickRuntimeClasspath().from(getProject().getConfigurations().getByName(Constants.Configurations.UNPICK_CLASSPATH));
 		getUnpickLogConfig().set(getExtension().getFiles().getUnpickLoggingConfigFile());
 
 		getUseCache().convention(true);
 		getResetCache().convention(getExtension().refreshDeps());
+		getUsePackedCache().convention(GradleUtils.getBooleanPropertyProvider(getProject(), Constants.Properties.DECOMPILE_CACHE_PACKED).orElse(false));
+		getUseDecompilerDaemon().convention(GradleUtils.getBooleanPropertyProvider(getProject(), Constants.Properties.DECOMPILER_DAEMON).orElse(false));
+		getDecompilerDaemonIdleTimeout().set(GradleUtils.getIntegerPropertyProvider(getProject(), Constants.Properties.DECOMPILER_DAEMON_IDLE_TIMEOUT).orElse(30));
+		getDecompilerDaemonDirectory().set(new File(getExtension().getFiles().getUserCache(), "decompiler-daemon"));
 
 		getMappings().set(SourceMappingsService.create(getProject()));
 
@@ -286,6 +320,17 @@ public abstract class GenerateSourcesTask extends AbstractLoomTask {
 
 		getLogger().info("Using decompile cache.");
 
+		if (getUsePackedCache().get()) {
+			try (var timer = new Timer("Decompiled sources with packed cache")) {
+				runWithPackedCache();
+			} catch (Exception e) {
+				ExceptionUtil.processException(e, getDaemonUtilsContext().get());
+				throw ExceptionUtil.createDescriptiveWrapper(RuntimeException::new, "Failed to decompile", e);
+			}
+
+			return;
+		}
+
 		try (var timer = new Timer("Decompiled sources with cache")) {
 			final Path cacheFile = getDecompileCacheFile().getAsFile().get().toPath();
 
@@ -307,7 +352,7 @@ public abstract class GenerateSourcesTask extends AbstractLoomTask {
 			}
 
 			try (FileSystemUtil.Delegate fs = FileSystemUtil.getJarFileSystem(cacheFile, true)) {
-				runWithCache(fs.getRoot());
+				runWithCache(new CachedFileStoreImpl<>(fs.getRoot(), CachedData.SERIALIZER, getCacheRules()));
 			}
 		} catch (Exception e) {
 			ExceptionUtil.processException(e, getDaemonUtilsContext().get());
@@ -315,18 +360,68 @@ public abstract class GenerateSourcesTask extends AbstractLoomTask {
 		}
 	}
 
-	private void runWithCache(Path cacheRoot) throws IOException {
+	private void runWithPackedCache() throws IOException {
+		final Path cacheDir = getPackedDecompileCacheDirectory().get().getAsFile().toPath();
+		final Path legacyCacheFile = getDecompileCacheFile().getAsFile().get().toPath();
+
+		if (getResetCache().get()) {
+			getLogger().warn("Resetting decompile cache");
+
+			if (Files.exists(cacheDir)) {
+				try (Stream<Path> walk = Files.walk(cacheDir)) {
+					for (Path path : walk.sorted(Comparator.reverseOrder()).toList()) {
+						Files.delete(path);
+					}
+				}
+			}
+		}
+
+		final boolean isNew = Files.notExists(cacheDir);
+
+		try (var decompileCache = PackedCachedFileStore.open(cacheDir, CachedData.SERIALIZER, getCacheRules())) {
+			if (isNew && Files.exists(legacyCacheFile)) {
+				try (var timer = new Timer("Migrate decompile cache");
+						FileSystemUtil.Delegate fs = FileSystemUtil.getJarFileSystem(legacyCacheFile, false)) {
+					int migrated = decompileCache.migrateFrom(fs.getRoot());
+					getLogger().lifecycle("Migrated {} entries from the existing decompile cache", migrated);
+				} catch (IOException e) {
+					getLogger().warn("Failed to migrate existing decompile cache: {}", legacyCacheFile, e);
+				}
+			}
+
+			runWithCache(decompileCache);
+		}
+	}
+
+	// Stored next to the decompile cache, one index per input jar
+	private Path getFingerprintIndexFile(Path classesInputJar) {
+		final String jarKey = Checksum.sha1Hex(classesInputJar.toAbsolutePath().toString().getBytes(StandardCharsets.UTF_8));
+		return getDecompileCacheFile().getAsFile().get().toPath().resolveSibling(CACHE_VERSION + "-fingerprints").resolve(jarKey + ".bin");
+	}
+
+	private CachedFileStoreImpl.CacheRules getCacheRules() {
+		return new CachedFileStoreImpl.CacheRules(getMaxCachedFiles().get(), Duration.ofDays(getMaxCacheFileAge().get()));
+	}
+
+	private void runWithCache(CachedFileStore<CachedData> decompileCache) throws IOException {
 		final Path classesInputJar = getClassesInputJar().getSingleFile().toPath();
 		final Path sourcesOutputJar = getSourcesOutputJar().get().getAsFile().toPath();
 		final Path classesOutputJar = getClassesOutputJar().getSingleFile().toPath();
-		final var cacheRules = new CachedFileStoreImpl.CacheRules(getMaxCachedFiles().get(), Duration.ofDays(getMaxCacheFileAge().get()));
-		final var decompileCache = new CachedFileStoreImpl<>(cacheRoot, CachedData.SERIALIZER, cacheRules);
 		final String cacheKey = getCacheKey();
-		final CachedJarProcessor cachedJarProcessor = new CachedJarProcessor(decompileCache, cacheKey);
+		final Path fingerprintIndexFile = getFingerprintIndexFile(classesInputJar);
+
+		try {
+			// Indexes of jars that are no longer decompiled are removed along with the old cache entries
+			ClassFingerprintIndex.deleteUnused(fingerprintIndexFile.getParent(), getCacheRules().maxAge());
+		} catch (IOException e) {
+			getLogger().warn("Failed to clean up the class fingerprint indexes", e);
+		}
+
+		final CachedJarProcessor cachedJarProcessor = new CachedJarProcessor(decompileCache, cacheKey, ClassFingerprintIndex.read(fingerprintIndexFile));
 		final CachedJarProcessor.WorkRequest workRequest;
 
 		getLogger().info("Decompile cache key: {}", cacheKey);
-		getLogger().debug("Decompile cache rules: {}", cacheRules);
+		getLogger().debug("Decompile cache rules: {}", getCacheRules());
 
 		try (var timer = new Timer("Prepare job")) {
 			workRequest = cachedJarProcessor.prepareJob(classesInputJar);
@@ -469,10 +564,23 @@ public abstract class GenerateSourcesTask extends AbstractLoomTask {
 
 	@Nullable
 	private ClassLineNumbers runDecompileJob(Path inputJar, Path outputJar, @Nullable Path existingJar) throws IOException {
+		if (decompilerOptions.getShards().get() > 1 && useProcessIsolation()) {
+			return runShardedDecompileJob(inputJar, outputJar, existingJar);
+		}
+
 		final Platform platform = Platform.CURRENT;
 		final Path lineMapFile = File.createTempFile("loom", "linemap").toPath();
 		Files.delete(lineMapFile);
 
+		if (getUseDecompilerDaemon().get() && useProcessIsolation()) {
+			if (platform.supportsUnixDomainSockets()) {
+				runDaemonDecompileJob(inputJar, outputJar, lineMapFile, existingJar);
+				return readLineNumbers(lineMapFile);
+			}
+
+			getLogger().warn("The decompiler daemon requires Unix Domain Sockets which is not supported on your operating system, using a worker instead.");
+		}
+
 		if (!platform.supportsUnixDomainSockets()) {
 			getLogger().warn("Decompile worker logging disabled as Unix Domain Sockets is not supported on your operating system.");
 
@@ -511,6 +619,153 @@ public abstract class GenerateSourcesTask extends AbstractLoomTask {
 		return readLineNumbers(lineMapFile);
 	}
 
+	private void runDaemonDecompileJob(Path inputJar, Path outputJar, Path lineMapFile, @Nullable Path existingJar) throws IOException {
+		final var client = new DecompilerDaemonClient(
+				getClasspath().getFiles(),
+				decompilerOptions.getMemory().get(),
+				Duration.ofMinutes(getDecompilerDaemonIdleTimeout().get()),
+				getDecompilerDaemonDirectory().get().getAsFile().toPath()
+		);
+		final List<Path> libraries = new ArrayList<>(DecompileAction.toPaths(getMinecraftCompileLibraries()));
+
+		if (existingJar != null) {
+			libraries.add(existingJar);
+		}
+
+		final DecompilerOptions.Dto dto = decompilerOptions.toDto();
+		final Path mappingsFile = getMappings().get().getMappings().getSingleFile().toPath();
+		final var request = DecompileRequest.create(dto.className(), dto.options(), dto.maxThreads(), inputJar, outputJar, lineMapFile, mappingsFile, libraries);
+
+		try (ThreadedProgressLoggerConsumer loggerConsumer = new ThreadedProgressLoggerConsumer(getLogger(), getProgressLoggerFactory(), decompilerOptions.getName(), "Decompiling minecraft sources")) {
+			client.decompile(request, loggerConsumer);
+		}
+
+		// Inject Forge's own sources
+		if (getModPlatform().get().isForgeLike()) {
+			try (var serviceFactory = new ScopedServiceFactory()) {
+				ForgeSourcesRemapper.addForgeSources(getProject(), serviceFactory, inputJar, outputJar);
+			}
+		}
+	}
+
+	/**
+	 * Split the input jar along outer class boundaries and decompile each shard in its own worker JVM.
+	 * Every shard has the full input jar on its classpath so that the decompiler can still resolve all types.
+	 */
+	@Nullable
+	private ClassLineNumbers runShardedDecompileJob(Path inputJar, Path outputJar, @Nullable Path existingJar) throws IOException {
+		final List<Path> shardJars = JarSharder.split(inputJar, decompilerOptions.getShards().get());
+		final int shardCount = shardJars.size();
+		final boolean useIpc = Platform.CURRENT.supportsUnixDomainSockets();
+		final List<Shard> shards = new ArrayList<>(shardCount);
+		final List<AutoCloseable> closeables = new ArrayList<>();
+
+		getLogger().info("Decompiling in {} shards", shardCount);
+
+		if (!useIpc) {
+			getLogger().warn("Decompile worker logging disabled as Unix Domain Sockets is not supported on your operating system.");
+		}
+
+		try {
+			for (int i = 0; i < shardCount; i++) {
+				final Path shardOutput = Files.createTempFile("loom-decompile-shard-output", ".jar");
+				final Path shardLineMap = Files.createTempFile("loom", "linemap");
+				Files.delete(shardOutput);
+				Files.delete(shardLineMap);
+
+				IPCServer ipcServer = null;
+
+				if (useIpc) {
+					final Path ipcPath = Files.createTempFile("loom", "ipc");
+					Files.deleteIfExists(ipcPath);
+
+					var loggerConsumer = new ThreadedProgressLoggerConsumer(getLogger(), getProgressLoggerFactory(), decompilerOptions.getName(), "Decompiling minecraft sources (shard %d/%d)".formatted(i + 1, shardCount));
+					closeables.add(loggerConsumer);
+					ipcServer = new IPCServer(ipcPath, loggerConsumer);
+					closeables.add(ipcServer);
+				}
+
+				shards.add(new Shard(shardJars.get(i), shardOutput, shardLineMap, ipcServer, UUID.randomUUID().toString()));
+			}
+
+			final int threadsPerShard = Math.max(1, decompilerOptions.getMaxThreads().get() / shardCount);
+			final List<WorkQueue> workQueues = new ArrayList<>(shardCount);
+
+			for (Shard shard : shards) {
+				final WorkQueue workQueue = createWorkQueue(shard.jvmMarker(), decompilerOptions.getShardMemory().get());
+				final List<Path> extraClasspath = new ArrayList<>();
+				extraClasspath.add(inputJar);
+
+				if (existingJar != null) {
+					extraClasspath.add(existingJar);
+				}
+
+				submitDecompileAction(workQueue, shard.ipcServer(), shard.input(), shard.output(), shard.lineMap(), extraClasspath, threadsPerShard);
+				workQueues.add(workQueue);
+			}
+
+			try {
+				for (WorkQueue workQueue : workQueues) {
+					workQueue.await();
+				}
+			} finally {
+				for (Shard shard : shards) {
+					if (shard.ipcServer() != null) {
+						WorkerDaemonClientsManagerHelper.stopIdleJVM(getWorkerDaemonClientsManager(), shard.jvmMarker());
+					}
+				}
+			}
+		} finally {
+			// Close the IPC servers before their loggers
+			for (int i = closeables.size() - 1; i >= 0; i--) {
+				try {
+					closeables.get(i).close();
+				} catch (Exception e) {
+					getLogger().info("Failed to close decompile shard logger", e);
+				}
+			}
+
+			for (Shard shard : shards) {
+				if (shard.ipcServer() != null) {
+					Files.deleteIfExists(shard.ipcServer().getPath());
+				}
+			}
+
+			for (Path shardJar : shardJars) {
+				Files.deleteIfExists(shardJar);
+			}
+		}
+
+		ClassLineNumbers lineNumbers = null;
+
+		for (Shard shard : shards) {
+			if (Files.notExists(shard.output())) {
+				throw new RuntimeException("Failed to decompile sources for shard: " + shard.input());
+			}
+
+			lineNumbers = ClassLineNumbers.merge(lineNumbers, readLineNumbers(shard.lineMap()));
+			Files.deleteIfExists(shard.lineMap());
+		}
+
+		JarSharder.merge(shards.stream().map(Shard::output).toList(), outputJar);
+
+		for (Shard shard : shards) {
+			Files.delete(shard.output());
+		}
+
+		// Inject Forge's own sources
+		if (getModPlatform().get().isForgeLike()) {
+			try (var serviceFactory = new ScopedServiceFactory()) {
+				ForgeSourcesRemapper.addForgeSources(getProject(), serviceFactory, inputJar, outputJar);
+			}
+		}
+
+		return lineNumbers;
+	}
+
+	private record Shard(Path input, Path output, Path lineMap, @Nullable IPCServer ipcServer, String jvmMarker) {
+	}
+
 	@Nullable
 	private ClassLineNumbers filterForgeLineNumbers(@Nullable ClassLineNumbers lineNumbers) {
 		if (lineNumbers == null) {
@@ -631,10 +886,26 @@ public abstract class GenerateSourcesTask extends AbstractLoomTask {
 
 	private void doWork(@Nullable IPCServer ipcServer, Path inputJar, Path outputJar, Path linemapFile, @Nullable Path existingClasses) {
 		final String jvmMarkerValue = UUID.randomUUID().toString();
-		final WorkQueue workQueue = createWorkQueue(jvmMarkerValue);
+		final WorkQueue workQueue = createWorkQueue(jvmMarkerValue, decompilerOptions.getMemory().get());
+
+		submitDecompileAction(workQueue, ipcServer, inputJar, outputJar, linemapFile, existingClasses != null ? List.of(existingClasses) : List.of(), decompilerOptions.getMaxThreads().get());
+
+		try {
+			workQueue.await();
+		} finally {
+			if (ipcServer != null) {
+				boolean stopped = WorkerDaemonClientsManagerHelper.stopIdleJVM(getWorkerDaemonClientsManager(), jvmMarkerValue);
+
+				if (!stopped && ipcServer.hasReceivedMessage()) {
+					getLogger().info("Failed to stop decompile worker JVM, it may have already been stopped?");
+				}
+			}
+		}
+	}
 
+	private void submitDecompileAction(WorkQueue workQueue, @Nullable IPCServer ipcServer, Path inputJar, Path outputJar, Path linemapFile, List<Path> extraClasspath, int maxThreads) {
 		workQueue.submit(DecompileAction.class, params -> {
-			params.getDecompilerOptions().set(decompilerOptions.toDto());
+			params.getDecompilerOptions().set(decompilerOptions.toDto().withMaxThreads(maxThreads));
 
 			params.getInputJar().set(inputJar.toFile());
 			params.getOutputJar().set(outputJar.toFile());
@@ -647,28 +918,16 @@ public abstract class GenerateSourcesTask extends AbstractLoomTask {
 
 			params.getClassPath().setFrom(getMinecraftCompileLibraries());
 
-			if (existingClasses != null) {
-				params.getClassPath().from(existingClasses);
+			for (Path path : extraClasspath) {
+				params.getClassPath().from(path);
 			}
 
 			// Architectury
 			params.getForge().set(getModPlatform().get().isForgeLike());
 		});
-
-		try {
-			workQueue.await();
-		} finally {
-			if (ipcServer != null) {
-				boolean stopped = WorkerDaemonClientsManagerHelper.stopIdleJVM(getWorkerDaemonClientsManager(), jvmMarkerValue);
-
-				if (!stopped && ipcServer.hasReceivedMessage()) {
-					getLogger().info("Failed to stop decompile worker JVM, it may have already been stopped?");
-				}
-			}
-		}
 	}
 
-	private WorkQueue createWorkQueue(String jvmMarkerValue) {
+	private WorkQueue createWorkQueue(String jvmMarkerValue, long memory) {
 		if (!useProcessIsolation()) {
 			return getWorkerExecutor().classLoaderIsolation(spec -> {
 				spec.getClasspath().from(getClasspath());
@@ -677,8 +936,8 @@ public abstract class GenerateSourcesTask extends AbstractLoomTask {
 
 		return getWorkerExecutor().processIsolation(spec -> {
 			spec.forkOptions(forkOptions -> {
-				forkOptions.setMinHeapSize(String.format(Locale.ENGLISH, "%dm", Math.min(512, decompilerOptions.getMemory().get())));
-				forkOptions.setMaxHeapSize(String.format(Locale.ENGLISH, "%dm", decompilerOptions.getMemory().get()));
+				forkOptions.setMinHeapSize(String.format(Locale.ENGLISH, "%dm", Math.min(512, memory)));
+				forkOptions.setMaxHeapSize(String.format(Locale.ENGLISH, "%dm", memory));
 				forkOptions.systemProperty(WorkerDaemonClientsManagerHelper.MARKER_PROP, jvmMarkerValue);
 			});
 			spec.getClasspath().from(getClasspath());
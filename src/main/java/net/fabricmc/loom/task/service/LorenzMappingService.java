@@ -24,11 +24,10 @@
 
 package net.fabricmc.loom.task.service;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.UncheckedIOException;
-import java.util.function.Supplier;
 
-import com.google.common.base.Suppliers;
 import dev.architectury.loom.util.MappingOption;
 import org.cadixdev.lorenz.MappingSet;
 import org.gradle.api.Project;
@@ -41,9 +40,10 @@ import net.fabricmc.loom.configuration.providers.mappings.MappingConfiguration;
 import net.fabricmc.loom.util.service.Service;
 import net.fabricmc.loom.util.service.ServiceFactory;
 import net.fabricmc.loom.util.service.ServiceType;
+import net.fabricmc.loom.util.service.SharedServiceCache;
 import net.fabricmc.lorenztiny.TinyMappingsReader;
 
-public final class LorenzMappingService extends Service<LorenzMappingService.Options> {
+public final class LorenzMappingService extends Service<LorenzMappingService.Options> implements Closeable {
 	public static final ServiceType<Options, LorenzMappingService> TYPE = new ServiceType<>(Options.class, LorenzMappingService.class);
 
 	public interface Options extends Service.Options {
@@ -65,7 +65,7 @@ public final class LorenzMappingService extends Service<LorenzMappingService.Opt
 		));
 	}
 
-	private final Supplier<MappingSet> mappings = Suppliers.memoize(this::readMappings);
+	private SharedServiceCache.Handle<MappingSet> mappings;
 
 	public LorenzMappingService(Options options, ServiceFactory serviceFactory) {
 		super(options, serviceFactory);
@@ -83,7 +83,31 @@ public final class LorenzMappingService extends Service<LorenzMappingService.Opt
 		}
 	}
 
-	public MappingSet getMappings() {
+	/**
+	 * @return the mappings, these are shared with other services reading the same mappings so must not be modified
+	 */
+	public synchronized MappingSet getMappings() {
+		if (mappings == null) {
+			final MappingsService mappingsService = getServiceFactory().get(getOptions().getMappings().get());
+			final String key = mappingsService.getMappingsKey() + ":" + mappingsService.getFrom() + ":" + mappingsService.getTo();
+			mappings = SharedServiceCache.acquire("lorenz mappings", key, this::readMappings);
+		}
+
 		return mappings.get();
 	}
+
+	/**
+	 * @return a new copy of the mappings, lorenz mapping sets are not thread safe so each thread needs its own copy
+	 */
+	public MappingSet createMappings() {
+		return readMappings();
+	}
+
+	@Override
+	public synchronized void close() {
+		if (mappings != null) {
+			mappings.close();
+			mappings = null;
+		}
+	}
 }
@@ -38,11 +38,13 @@ import org.gradle.api.tasks.InputFile;
 
 import net.fabricmc.loom.LoomGradleExtension;
 import net.fabricmc.loom.configuration.providers.mappings.MappingConfiguration;
+import net.fabricmc.loom.configuration.providers.mappings.TinyMappingsService;
+import net.fabricmc.loom.configuration.providers.mappings.tiny.BinaryMappingTree;
 import net.fabricmc.loom.util.TinyRemapperHelper;
 import net.fabricmc.loom.util.service.Service;
 import net.fabricmc.loom.util.service.ServiceFactory;
 import net.fabricmc.loom.util.service.ServiceType;
-import net.fabricmc.mappingio.MappingReader;
+import net.fabricmc.loom.util.service.SharedServiceCache;
 import net.fabricmc.mappingio.tree.MemoryMappingTree;
 import net.fabricmc.tinyremapper.IMappingProvider;
 
@@ -95,38 +97,60 @@ public final class MappingsService extends Service<MappingsService.Options> impl
 		super(options, serviceFactory);
 	}
 
-	private IMappingProvider mappingProvider = null;
-	private MemoryMappingTree memoryMappingTree = null;
+	private SharedServiceCache.Handle<IMappingProvider> mappingProvider = null;
+	private SharedServiceCache.Handle<MemoryMappingTree> memoryMappingTree = null;
 
-	public IMappingProvider getMappingsProvider() {
+	public synchronized IMappingProvider getMappingsProvider() {
 		if (mappingProvider == null) {
-			try {
-				mappingProvider = TinyRemapperHelper.create(
-						getMappingsPath(),
-						getFrom(),
-						getTo(),
-						getOptions().getRemapLocals().get()
-				);
-			} catch (IOException e) {
-				throw new UncheckedIOException("Failed to read mappings from: " + getMappingsPath(), e);
-			}
+			final String key = getMappingsKey() + ":" + getFrom() + ":" + getTo() + ":" + getOptions().getRemapLocals().get();
+
+			mappingProvider = SharedServiceCache.acquire("mapping providers", key, () -> {
+				try {
+					return TinyRemapperHelper.create(
+							getMappingsPath(),
+							getFrom(),
+							getTo(),
+							getOptions().getRemapLocals().get()
+					);
+				} catch (IOException e) {
+					throw new UncheckedIOException("Failed to read mappings from: " + getMappingsPath(), e);
+				}
+			});
 		}
 
-		return mappingProvider;
+		return mappingProvider.get();
 	}
 
-	public MemoryMappingTree getMemoryMappingTree() {
+	/**
+	 * @return the mapping tree, this is shared with other services reading the same mappings so must not be modified
+	 */
+	public synchronized MemoryMappingTree getMemoryMappingTree() {
 		if (memoryMappingTree == null) {
-			memoryMappingTree = new MemoryMappingTree();
+			memoryMappingTree = SharedServiceCache.acquire(TinyMappingsService.MAPPING_TREE_KIND, getMappingsKey(), () -> {
+				final MemoryMappingTree mappingTree = new MemoryMappingTree();
+
+				try {
+					BinaryMappingTree.read(getMappingsPath(), mappingTree);
+				} catch (IOException e) {
+					throw new UncheckedIOException("Failed to read mappings from: " + getMappingsPath(), e);
+				}
 
-			try {
-				MappingReader.read(getMappingsPath(), memoryMappingTree);
-			} catch (IOException e) {
-				throw new UncheckedIOException("Failed to read mappings from: " + getMappingsPath(), e);
-			}
+				return mappingTree;
+			});
 		}
 
-		return memoryMappingTree;
+		return memoryMappingTree.get();
+	}
+
+	/**
+	 * @return a key for the content of the mappings file, shared with {@link TinyMappingsService}
+	 */
+	public String getMappingsKey() {
+		try {
+			return SharedServiceCache.fileKey(getMappingsPath());
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to hash mappings: " + getMappingsPath(), e);
+		}
 	}
 
 	public String getFrom() {
@@ -142,7 +166,15 @@ public final class MappingsService extends Service<MappingsService.Options> impl
 	}
 
 	@Override
-	public void close() {
-		mappingProvider = null;
+	public synchronized void close() {
+		if (mappingProvider != null) {
+			mappingProvider.close();
+			mappingProvider = null;
+		}
+
+		if (memoryMappingTree != null) {
+			memoryMappingTree.close();
+			memoryMappingTree = null;
+		}
 	}
 }
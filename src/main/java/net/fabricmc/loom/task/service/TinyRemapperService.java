@@ -55,6 +55,7 @@ import net.fabricmc.loom.build.IntermediaryNamespaces;
 import net.fabricmc.loom.extension.RemapperExtensionHolder;
 import net.fabricmc.loom.task.AbstractRemapJarTask;
 import net.fabricmc.loom.util.Constants;
+import net.fabricmc.loom.util.RemapClasspathIndex;
 import net.fabricmc.loom.util.kotlin.KotlinClasspathService;
 import net.fabricmc.loom.util.kotlin.KotlinRemapperClassloader;
 import net.fabricmc.loom.util.service.Service;
@@ -215,7 +216,7 @@ public class TinyRemapperService extends Service<TinyRemapperService.Options> im
 			return;
 		}
 
-		tinyRemapper.readClassPath(toRead.toArray(Path[]::new));
+		tinyRemapper.readClassPath(RemapClasspathIndex.resolve(toRead));
 	}
 
 	@Override
@@ -34,8 +34,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
 
 public interface AsyncZipProcessor {
 	static void processEntries(Path inputZip, Path outputZip, AsyncZipProcessor processor) throws IOException {
@@ -45,7 +44,7 @@ public interface AsyncZipProcessor {
 			final Path outRoot = outFs.get().getPath("/");
 
 			List<CompletableFuture<Void>> futures = new ArrayList<>();
-			final ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+			final Executor executor = LoomExecutors.cpu();
 
 			Files.walkFileTree(inRoot, new SimpleFileVisitor<>() {
 				@Override
@@ -79,8 +78,6 @@ public interface AsyncZipProcessor {
 					throw new RuntimeException("Failed to process zip", e.getCause());
 				}
 			}
-
-			executor.shutdown();
 		}
 	}
 
@@ -170,6 +170,40 @@ public class Constants {
 		public static final String RUNTIME_JAVA_COMPATIBILITY_VERSION = "fabric.loom.runtimeJavaCompatibilityVersion";
 		public static final String DECOMPILE_CACHE_MAX_FILES = "fabric.loom.decompileCacheMaxFiles";
 		public static final String DECOMPILE_CACHE_MAX_AGE = "fabric.loom.decompileCacheMaxAge";
+		/**
+		 * The maximum size in megabytes of the processed Minecraft jars shared between projects, defaults to 2048.
+		 */
+		public static final String PROCESSED_JAR_CACHE_MAX_SIZE = "fabric.loom.processedJarCacheMaxSize";
+		/**
+		 * When set to true the decompile cache is stored in indexed pack files instead of a zip file.
+		 */
+		@ApiStatus.Experimental
+		public static final String DECOMPILE_CACHE_PACKED = "fabric.loom.experimental.decompileCachePacked";
+		/**
+		 * When set to true sources are decompiled by a long-lived daemon JVM that is reused between builds.
+		 */
+		@ApiStatus.Experimental
+		public static final String DECOMPILER_DAEMON = "fabric.loom.experimental.decompilerDaemon";
+		/**
+		 * The number of minutes the decompiler daemon waits for a new request before exiting, defaults to 30.
+		 */
+		public static final String DECOMPILER_DAEMON_IDLE_TIMEOUT = "fabric.loom.decompilerDaemonIdleTimeout";
+		/**
+		 * When set to true assets are downloaded with many concurrent requests multiplexed over a shared HTTP/2 connection.
+		 */
+		@ApiStatus.Experimental
+		public static final String BULK_ASSET_DOWNLOAD = "fabric.loom.experimental.bulkAssetDownload";
+		/**
+		 * When set to true the independent Minecraft remapping steps, and the jars of each step, are remapped concurrently during
+		 * project setup.
+		 */
+		@ApiStatus.Experimental
+		public static final String PARALLEL_MINECRAFT_SETUP = "fabric.loom.experimental.parallelMinecraftSetup";
+		/**
+		 * When set to true Forge tools are run inside the Gradle daemon with reusable class loaders, instead of forking a JVM for each tool.
+		 */
+		@ApiStatus.Experimental
+		public static final String IN_PROCESS_FORGE_TOOLS = "fabric.loom.experimental.inProcessForgeTools";
 		public static final String ALLOW_MISMATCHED_PLATFORM_VERSION = "loom.allowMismatchedPlatformVersion";
 		public static final String IGNORE_DEPENDENCY_LOOM_VERSION_VALIDATION = "loom.ignoreDependencyLoomVersionValidation";
 	}
@@ -0,0 +1,259 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.util;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.gradle.api.JavaVersion;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The executors shared by all of Loom's parallel work within a build.
+ *
+ * <p>CPU bound work runs on a single {@link ForkJoinPool} sized to the build's parallelism budget, I/O bound work
+ * runs on virtual threads when available. The executors are created lazily and shut down at the end of each build by
+ * {@link net.fabricmc.loom.util.gradle.LoomExecutorBuildService}.
+ */
+public final class LoomExecutors {
+	private static final Logger LOGGER = LoggerFactory.getLogger(LoomExecutors.class);
+	private static final Object LOCK = new Object();
+
+	private static int parallelism = Runtime.getRuntime().availableProcessors();
+	private static @Nullable ForkJoinPool cpuPool;
+	private static @Nullable ExecutorService ioExecutor;
+
+	private static final AtomicInteger ioActive = new AtomicInteger();
+	private static final AtomicLong ioCompleted = new AtomicLong();
+
+	private LoomExecutors() {
+	}
+
+	/**
+	 * Set the parallelism budget for the CPU executor, this applies the next time the executor is created.
+	 */
+	public static void configure(int parallelism) {
+		synchronized (LOCK) {
+			LoomExecutors.parallelism = Math.max(1, parallelism);
+		}
+	}
+
+	/**
+	 * @return the shared executor for CPU bound work
+	 */
+	public static ForkJoinPool cpu() {
+		synchronized (LOCK) {
+			if (cpuPool == null) {
+				cpuPool = new ForkJoinPool(parallelism, LoomExecutors::newWorkerThread, null, false);
+			}
+
+			return cpuPool;
+		}
+	}
+
+	/**
+	 * @return the shared executor for I/O bound work, tasks are not limited by the parallelism budget
+	 */
+	public static Executor io() {
+		final ExecutorService executor;
+
+		synchronized (LOCK) {
+			if (ioExecutor == null) {
+				ioExecutor = createIoExecutor();
+			}
+
+			executor = ioExecutor;
+		}
+
+		return command -> executor.execute(() -> {
+			ioActive.incrementAndGet();
+
+			try {
+				command.run();
+			} finally {
+				ioActive.decrementAndGet();
+				ioCompleted.incrementAndGet();
+			}
+		});
+	}
+
+	/**
+	 * Create an executor that runs at most {@code limit} tasks at a time on the given executor, queueing the rest.
+	 */
+	public static Executor bounded(Executor executor, int limit) {
+		return new BoundedExecutor(executor, Math.max(1, limit));
+	}
+
+	public static Metrics metrics() {
+		synchronized (LOCK) {
+			final ForkJoinPool pool = cpuPool;
+
+			if (pool == null) {
+				return new Metrics(parallelism, 0, 0, 0, ioActive.get(), ioCompleted.get());
+			}
+
+			return new Metrics(
+					pool.getParallelism(),
+					pool.getActiveThreadCount(),
+					pool.getPoolSize(),
+					pool.getQueuedTaskCount() + pool.getQueuedSubmissionCount(),
+					ioActive.get(),
+					ioCompleted.get()
+			);
+		}
+	}
+
+	/**
+	 * Shut down the executors, already submitted tasks are still completed.
+	 */
+	public static void shutdown() {
+		synchronized (LOCK) {
+			if (cpuPool != null || ioExecutor != null) {
+				LOGGER.info("Shutting down Loom executors: {}", metrics());
+			}
+
+			if (cpuPool != null) {
+				cpuPool.shutdown();
+				cpuPool = null;
+			}
+
+			if (ioExecutor != null) {
+				ioExecutor.shutdown();
+				ioExecutor = null;
+			}
+
+			ioCompleted.set(0);
+		}
+	}
+
+	private static ForkJoinWorkerThread newWorkerThread(ForkJoinPool pool) {
+		final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+		thread.setName("Loom Worker " + thread.getPoolIndex());
+		thread.setContextClassLoader(LoomExecutors.class.getClassLoader());
+		return thread;
+	}
+
+	private static ExecutorService createIoExecutor() {
+		if (JavaVersion.current().isCompatibleWith(JavaVersion.VERSION_21)) {
+			try {
+				Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+				return (ExecutorService) m.invoke(null);
+			} catch (NoSuchMethodException | InvocationTargetException | IllegalAccessException e) {
+				throw new RuntimeException("Failed to create virtual thread executor", e);
+			}
+		}
+
+		final AtomicInteger count = new AtomicInteger();
+		final ThreadFactory threadFactory = runnable -> {
+			final Thread thread = new Thread(runnable, "Loom IO Worker " + count.incrementAndGet());
+			thread.setDaemon(true);
+			thread.setContextClassLoader(LoomExecutors.class.getClassLoader());
+			return thread;
+		};
+
+		return Executors.newCachedThreadPool(threadFactory);
+	}
+
+	/**
+	 * @param parallelism The parallelism budget of the CPU executor
+	 * @param activeThreads The number of CPU threads currently running tasks
+	 * @param poolSize The number of CPU threads that have been started
+	 * @param queuedTasks The number of CPU tasks waiting to run
+	 * @param ioActive The number of I/O tasks currently running
+	 * @param ioCompleted The number of I/O tasks completed during this build
+	 */
+	public record Metrics(int parallelism, int activeThreads, int poolSize, long queuedTasks, int ioActive, long ioCompleted) {
+		public double utilization() {
+			return (double) activeThreads / parallelism;
+		}
+	}
+
+	private static final class BoundedExecutor implements Executor {
+		private final Executor delegate;
+		private final int limit;
+		private final Queue<Runnable> queue = new ArrayDeque<>();
+		private int running;
+
+		private BoundedExecutor(Executor delegate, int limit) {
+			this.delegate = delegate;
+			this.limit = limit;
+		}
+
+		@Override
+		public void execute(Runnable command) {
+			synchronized (this) {
+				queue.add(command);
+			}
+
+			drain();
+		}
+
+		private void drain() {
+			while (true) {
+				final Runnable next;
+
+				synchronized (this) {
+					if (running >= limit || (next = queue.poll()) == null) {
+						return;
+					}
+
+					running++;
+				}
+
+				try {
+					delegate.execute(() -> {
+						try {
+							next.run();
+						} finally {
+							synchronized (this) {
+								running--;
+							}
+
+							drain();
+						}
+					});
+				} catch (RuntimeException e) {
+					synchronized (this) {
+						running--;
+					}
+
+					throw e;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,481 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * Writes a jar, compressing the entries in parallel while writing them in the order that they were added.
+ *
+ * <p>The contents of each entry are produced and compressed on the executor. At most a fixed number of entries are in
+ * flight at once, adding an entry waits for the oldest one to be written once the limit is reached. When the writer is
+ * used from one of the executor's own workers the entries are compressed on the calling thread instead, so that the
+ * worker is never blocked waiting for other tasks on its pool. Peak memory is proportional to the parallelism rather
+ * than the size of the jar. Large entries are also split into chunks that are deflated in parallel, see
+ * {@link #deflate(byte[])}.
+ *
+ * <p>Jars that are only used as intermediate caches and are never published can be written without compression, see
+ * {@link #setCompressionMethod(int)}.
+ *
+ * <p>Entries must be added from a single thread.
+ */
+public final class ParallelJarWriter implements Closeable {
+	private static final int LOCAL_HEADER = 0x04034b50;
+	private static final int CENTRAL_HEADER = 0x02014b50;
+	private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+	private static final int ZIP64_END_OF_CENTRAL_DIRECTORY = 0x06064b50;
+	private static final int ZIP64_LOCATOR = 0x07064b50;
+
+	private static final int LOCAL_HEADER_SIZE = 30;
+	private static final int CENTRAL_HEADER_SIZE = 46;
+	private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+	private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE = 56;
+	private static final int ZIP64_LOCATOR_SIZE = 20;
+
+	private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+	private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+	private static final int ZIP64_EXTRA = 0x0001;
+	private static final int FLAG_UTF8 = 0x0800;
+
+	// 1980-01-01 00:00:00, the earliest time that can be represented
+	private static final int CONSTANT_DOS_TIME = 0;
+	private static final int CONSTANT_DOS_DATE = (1 << 5) | 1;
+
+	// Entries of at least two chunks are deflated in parallel, each chunk uses the end of the previous one as its dictionary
+	private static final int CHUNK_SIZE = 256 * 1024;
+	private static final int DICTIONARY_SIZE = 32 * 1024;
+
+	private final FileChannel channel;
+	private final Executor executor;
+	private final int maxInFlight;
+	private final Deque<PendingEntry> pending = new ArrayDeque<>();
+	private final Set<String> directories = new HashSet<>();
+	private final ByteArrayOutputStream centralDirectory = new ByteArrayOutputStream();
+	private int compressionMethod = ZipEntry.DEFLATED;
+	private long entryCount = 0;
+	private boolean closed = false;
+
+	private ParallelJarWriter(FileChannel channel, Executor executor, int maxInFlight) {
+		this.channel = channel;
+		this.executor = executor;
+		this.maxInFlight = maxInFlight;
+	}
+
+	/**
+	 * Create a writer that compresses on the shared CPU executor, replacing any existing file.
+	 */
+	public static ParallelJarWriter create(Path output) throws IOException {
+		final int parallelism = LoomExecutors.cpu().getParallelism();
+		return create(output, LoomExecutors.cpu(), parallelism * 2);
+	}
+
+	/**
+	 * @param maxInFlight the maximum number of entries that are being produced, compressed or waiting to be written
+	 */
+	public static ParallelJarWriter create(Path output, Executor executor, int maxInFlight) throws IOException {
+		if (output.getParent() != null) {
+			Files.createDirectories(output.getParent());
+		}
+
+		final FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		return new ParallelJarWriter(channel, executor, Math.max(1, maxInFlight));
+	}
+
+	/**
+	 * Write the entries added from now on with the given compression method, one of {@link ZipEntry#STORED} or
+	 * {@link ZipEntry#DEFLATED}. Storing is much faster, and should be used for jars that are never published.
+	 */
+	public ParallelJarWriter setCompressionMethod(int method) {
+		if (method != ZipEntry.STORED && method != ZipEntry.DEFLATED) {
+			throw new IllegalArgumentException("Unsupported compression method: " + method);
+		}
+
+		compressionMethod = method;
+		return this;
+	}
+
+	/**
+	 * Add an empty directory entry, the name must end with a slash.
+	 */
+	public void putDirectory(String name, long lastModified) throws IOException {
+		if (!name.endsWith("/")) {
+			throw new IllegalArgumentException("Directory name must end with a slash: " + name);
+		}
+
+		directories.add(name);
+		enqueue(name, lastModified, CompletableFuture.completedFuture(new CompressedData(ZipEntry.STORED, 0, 0, new byte[0])));
+	}
+
+	/**
+	 * Add a directory entry for each parent directory of the given entry that has not already been added.
+	 */
+	public void putParentDirectories(String name) throws IOException {
+		for (int i = name.indexOf('/'); i >= 0 && i < name.length() - 1; i = name.indexOf('/', i + 1)) {
+			final String directory = name.substring(0, i + 1);
+
+			if (!directories.contains(directory)) {
+				putDirectory(directory, -1);
+			}
+		}
+	}
+
+	public void put(String name, long lastModified, byte[] data) throws IOException {
+		put(name, lastModified, () -> data);
+	}
+
+	/**
+	 * Add an entry whose contents are produced on the executor, or on the calling thread when it is one of the executor's
+	 * workers.
+	 *
+	 * @param lastModified the modification time in milliseconds, or -1 for a constant time stamp
+	 */
+	public void put(String name, long lastModified, EntryData data) throws IOException {
+		final int method = compressionMethod;
+
+		if (ForkJoinTask.getPool() == executor) {
+			enqueue(name, lastModified, CompletableFuture.completedFuture(compress(data.get(), method)));
+			return;
+		}
+
+		enqueue(name, lastModified, CompletableFuture.supplyAsync(() -> {
+			try {
+				return compress(data.get(), method);
+			} catch (IOException e) {
+				throw new UncheckedIOException("Failed to create jar entry: " + name, e);
+			}
+		}, executor));
+	}
+
+	private void enqueue(String name, long lastModified, CompletableFuture<CompressedData> future) throws IOException {
+		if (closed) {
+			throw new IllegalStateException("Jar writer has been closed");
+		}
+
+		while (pending.size() >= maxInFlight) {
+			writeEntry(pending.removeFirst());
+		}
+
+		pending.addLast(new PendingEntry(name, lastModified, future));
+	}
+
+	/**
+	 * Wait for all pending entries to be written, for example before closing the source they are read from.
+	 */
+	public void flush() throws IOException {
+		while (!pending.isEmpty()) {
+			writeEntry(pending.removeFirst());
+		}
+	}
+
+	/**
+	 * Write the remaining entries and the central directory.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+
+		closed = true;
+
+		try (channel) {
+			flush();
+
+			final long centralDirectoryOffset = channel.position();
+			writeFully(ByteBuffer.wrap(centralDirectory.toByteArray()));
+			writeEndOfCentralDirectory(centralDirectory.size(), centralDirectoryOffset);
+		} finally {
+			// Do not leave compression running after a failure
+			pending.forEach(entry -> entry.data().cancel(false));
+			pending.clear();
+		}
+	}
+
+	private void writeEntry(PendingEntry entry) throws IOException {
+		final CompressedData data;
+
+		try {
+			data = entry.data().join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof UncheckedIOException uncheckedIOException) {
+				throw uncheckedIOException.getCause();
+			}
+
+			throw e.getCause() instanceof RuntimeException runtimeException ? runtimeException : e;
+		}
+
+		final byte[] nameBytes = entry.name().getBytes(StandardCharsets.UTF_8);
+		final int flags = nameBytes.length != entry.name().length() ? FLAG_UTF8 : 0;
+		final int dosTime;
+		final int dosDate;
+
+		if (entry.lastModified() < 0) {
+			dosTime = CONSTANT_DOS_TIME;
+			dosDate = CONSTANT_DOS_DATE;
+		} else {
+			final LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(entry.lastModified()), ZoneId.systemDefault());
+
+			if (time.getYear() < 1980) {
+				dosTime = CONSTANT_DOS_TIME;
+				dosDate = CONSTANT_DOS_DATE;
+			} else {
+				dosTime = time.getHour() << 11 | time.getMinute() << 5 | time.getSecond() / 2;
+				dosDate = (time.getYear() - 1980) << 9 | time.getMonthValue() << 5 | time.getDayOfMonth();
+			}
+		}
+
+		final long localHeaderOffset = channel.position();
+		final boolean zip64 = data.size() >= ZIP64_MAGIC || data.payload().length >= ZIP64_MAGIC;
+		final int versionNeeded = zip64 ? 45 : data.method() == ZipEntry.DEFLATED ? 20 : 10;
+
+		final ByteBuffer header = ByteBuffer.allocate(LOCAL_HEADER_SIZE + nameBytes.length + (zip64 ? 20 : 0)).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(LOCAL_HEADER);
+		header.putShort((short) versionNeeded);
+		header.putShort((short) flags);
+		header.putShort((short) data.method());
+		header.putShort((short) dosTime);
+		header.putShort((short) dosDate);
+		header.putInt((int) data.crc());
+		header.putInt((int) (zip64 ? ZIP64_MAGIC : data.payload().length));
+		header.putInt((int) (zip64 ? ZIP64_MAGIC : data.size()));
+		header.putShort((short) nameBytes.length);
+		header.putShort((short) (zip64 ? 20 : 0));
+		header.put(nameBytes);
+
+		if (zip64) {
+			header.putShort((short) ZIP64_EXTRA);
+			header.putShort((short) 16);
+			header.putLong(data.size());
+			header.putLong(data.payload().length);
+		}
+
+		writeFully(header.flip());
+		writeFully(ByteBuffer.wrap(data.payload()));
+
+		// Central directory header, the zip64 extra field only holds the values that overflow
+		final boolean sizeOverflow = data.size() >= ZIP64_MAGIC;
+		final boolean compressedSizeOverflow = data.payload().length >= ZIP64_MAGIC;
+		final boolean offsetOverflow = localHeaderOffset >= ZIP64_MAGIC;
+		final int zip64Length = (sizeOverflow ? 8 : 0) + (compressedSizeOverflow ? 8 : 0) + (offsetOverflow ? 8 : 0);
+		final int extraLength = zip64Length > 0 ? zip64Length + 4 : 0;
+
+		final ByteBuffer central = ByteBuffer.allocate(CENTRAL_HEADER_SIZE + nameBytes.length + extraLength).order(ByteOrder.LITTLE_ENDIAN);
+		central.putInt(CENTRAL_HEADER);
+		central.putShort((short) 20);
+		central.putShort((short) (zip64Length > 0 ? 45 : versionNeeded));
+		central.putShort((short) flags);
+		central.putShort((short) data.method());
+		central.putShort((short) dosTime);
+		central.putShort((short) dosDate);
+		central.putInt((int) data.crc());
+		central.putInt((int) (compressedSizeOverflow ? ZIP64_MAGIC : data.payload().length));
+		central.putInt((int) (sizeOverflow ? ZIP64_MAGIC : data.size()));
+		central.putShort((short) nameBytes.length);
+		central.putShort((short) extraLength);
+		central.putShort((short) 0);
+		central.putShort((short) 0);
+		central.putShort((short) 0);
+		central.putInt(0);
+		central.putInt((int) (offsetOverflow ? ZIP64_MAGIC : localHeaderOffset));
+		central.put(nameBytes);
+
+		if (zip64Length > 0) {
+			central.putShort((short) ZIP64_EXTRA);
+			central.putShort((short) zip64Length);
+			if (sizeOverflow) central.putLong(data.size());
+			if (compressedSizeOverflow) central.putLong(data.payload().length);
+			if (offsetOverflow) central.putLong(localHeaderOffset);
+		}
+
+		centralDirectory.write(central.array());
+		entryCount++;
+	}
+
+	private void writeEndOfCentralDirectory(long centralDirectorySize, long centralDirectoryOffset) throws IOException {
+		final boolean zip64 = entryCount >= ZIP64_MAGIC_COUNT || centralDirectorySize >= ZIP64_MAGIC || centralDirectoryOffset >= ZIP64_MAGIC;
+
+		if (zip64) {
+			final long zip64Offset = channel.position();
+			final ByteBuffer record = ByteBuffer.allocate(ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE + ZIP64_LOCATOR_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			record.putInt(ZIP64_END_OF_CENTRAL_DIRECTORY);
+			record.putLong(ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE - 12);
+			record.putShort((short) 45);
+			record.putShort((short) 45);
+			record.putInt(0);
+			record.putInt(0);
+			record.putLong(entryCount);
+			record.putLong(entryCount);
+			record.putLong(centralDirectorySize);
+			record.putLong(centralDirectoryOffset);
+
+			record.putInt(ZIP64_LOCATOR);
+			record.putInt(0);
+			record.putLong(zip64Offset);
+			record.putInt(1);
+			writeFully(record.flip());
+		}
+
+		final ByteBuffer record = ByteBuffer.allocate(END_OF_CENTRAL_DIRECTORY_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		record.putInt(END_OF_CENTRAL_DIRECTORY);
+		record.putShort((short) 0);
+		record.putShort((short) 0);
+		record.putShort((short) Math.min(entryCount, ZIP64_MAGIC_COUNT));
+		record.putShort((short) Math.min(entryCount, ZIP64_MAGIC_COUNT));
+		record.putInt((int) Math.min(centralDirectorySize, ZIP64_MAGIC));
+		record.putInt((int) Math.min(centralDirectoryOffset, ZIP64_MAGIC));
+		record.putShort((short) 0);
+		writeFully(record.flip());
+	}
+
+	private void writeFully(ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	private static CompressedData compress(byte[] data, int method) {
+		final CRC32 crc = new CRC32();
+		crc.update(data);
+
+		return new CompressedData(method, crc.getValue(), data.length, method == ZipEntry.STORED ? data : deflate(data));
+	}
+
+	/**
+	 * Deflate the data without a zlib header, as stored in a zip.
+	 *
+	 * <p>Data of at least two chunks is split into chunks that are deflated in parallel on the shared CPU executor. Each
+	 * chunk is primed with the end of the chunk before it as a dictionary, and all but the last end with a sync flush so
+	 * that the chunks can be joined into a single stream. The result is only slightly larger than deflating in one go.
+	 *
+	 * <p>When called from one of the CPU executor's workers the chunks are deflated one after the other on the calling
+	 * thread, waiting for them on the pool would block the worker. The output is the same either way.
+	 */
+	public static byte[] deflate(byte[] data) {
+		final int chunks = (data.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+
+		if (chunks < 2) {
+			return deflateChunk(data, 0, data.length, true);
+		}
+
+		final ForkJoinPool pool = LoomExecutors.cpu();
+		final boolean inline = ForkJoinTask.getPool() == pool;
+		final List<CompletableFuture<byte[]>> futures = new ArrayList<>(chunks);
+
+		for (int i = 0; i < chunks; i++) {
+			final int offset = i * CHUNK_SIZE;
+			final int length = Math.min(CHUNK_SIZE, data.length - offset);
+			final boolean last = i == chunks - 1;
+
+			if (inline) {
+				futures.add(CompletableFuture.completedFuture(deflateChunk(data, offset, length, last)));
+			} else {
+				futures.add(CompletableFuture.supplyAsync(() -> deflateChunk(data, offset, length, last), pool));
+			}
+		}
+
+		final ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 2));
+
+		for (CompletableFuture<byte[]> future : futures) {
+			out.writeBytes(future.join());
+		}
+
+		return out.toByteArray();
+	}
+
+	private static byte[] deflateChunk(byte[] data, int offset, int length, boolean last) {
+		final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+
+		try {
+			if (offset > 0) {
+				final int dictionaryLength = Math.min(offset, DICTIONARY_SIZE);
+				deflater.setDictionary(data, offset - dictionaryLength, dictionaryLength);
+			}
+
+			deflater.setInput(data, offset, length);
+
+			final ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, length / 2));
+			final byte[] buffer = new byte[8192];
+
+			if (last) {
+				deflater.finish();
+
+				while (!deflater.finished()) {
+					final int count = deflater.deflate(buffer);
+					out.write(buffer, 0, count);
+				}
+			} else {
+				int count;
+
+				// A full buffer means that there may be more output, see Deflater#deflate(byte[], int, int, int)
+				do {
+					count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+					out.write(buffer, 0, count);
+				} while (count == buffer.length);
+			}
+
+			return out.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	@FunctionalInterface
+	public interface EntryData {
+		byte[] get() throws IOException;
+	}
+
+	private record PendingEntry(String name, long lastModified, CompletableFuture<CompressedData> data) {
+	}
+
+	private record CompressedData(int method, long crc, long size, byte[] payload) {
+	}
+}
@@ -0,0 +1,318 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A content addressed index of the classpath jars read by tiny remapper.
+ *
+ * <p>Tiny remapper only needs the class hierarchy and member signatures of classpath jars, so each jar is reduced to
+ * its class headers, fields and method signatures (without any code). These skeleton jars are stored on disk keyed by
+ * the hash of the original jar, and are much quicker to parse than the original. Every {@code TinyRemapper} in the
+ * build, and later builds, share the same skeleton jars.
+ *
+ * <p>The index is scoped to a build by {@link net.fabricmc.loom.util.gradle.RemapClasspathIndexBuildService}, when it
+ * has not been configured the original jars are used.
+ */
+public final class RemapClasspathIndex {
+	private static final Logger LOGGER = LoggerFactory.getLogger(RemapClasspathIndex.class);
+	private static final int VERSION = 1;
+	private static final Duration MAX_AGE = Duration.ofDays(7);
+	private static final Duration CLEANUP_INTERVAL = Duration.ofDays(1);
+	private static final String CLEANUP_MARKER = ".last-cleanup";
+
+	private static @Nullable Path cacheDirectory;
+	// Jar path, size and last modified time -> skeleton jar
+	private static final Map<JarKey, CompletableFuture<Path>> SKELETONS = new ConcurrentHashMap<>();
+	// Jar path, size and last modified time -> ABI hash
+	private static final Map<JarKey, CompletableFuture<String>> ABI_HASHES = new ConcurrentHashMap<>();
+
+	private RemapClasspathIndex() {
+	}
+
+	/**
+	 * Enable the index for this build.
+	 */
+	public static synchronized void configure(Path cacheDirectory) {
+		RemapClasspathIndex.cacheDirectory = cacheDirectory.resolve("v" + VERSION);
+	}
+
+	/**
+	 * Disable the index once the build has finished, skeleton jars that have not been used recently are deleted at
+	 * most once a day.
+	 */
+	public static synchronized void reset() {
+		if (cacheDirectory != null) {
+			try {
+				deleteUnused(cacheDirectory);
+			} catch (IOException e) {
+				LOGGER.warn("Failed to clean up remap classpath index", e);
+			}
+		}
+
+		cacheDirectory = null;
+		SKELETONS.clear();
+		ABI_HASHES.clear();
+	}
+
+	/**
+	 * @return the paths to read onto the tiny remapper classpath in place of the given paths
+	 */
+	public static Path[] resolve(Collection<Path> paths) {
+		final List<CompletableFuture<Path>> futures = paths.stream().map(RemapClasspathIndex::resolveAsync).toList();
+		return futures.stream().map(CompletableFuture::join).toArray(Path[]::new);
+	}
+
+	/**
+	 * Hash the parts of a jar that can affect how other jars are remapped against it: the class names, hierarchy and
+	 * member signatures. Changes to method bodies or resources do not change the hash.
+	 *
+	 * <p>When the index is configured the hash is stored next to the skeleton jars, keyed by the hash of the jar.
+	 */
+	public static String abiHash(Path jar) throws IOException {
+		final JarKey key = new JarKey(jar.toAbsolutePath(), Files.size(jar), Files.getLastModifiedTime(jar).toMillis());
+
+		try {
+			return ABI_HASHES.computeIfAbsent(key, k -> CompletableFuture.supplyAsync(() -> {
+				try {
+					return getOrCreateAbiHash(jar);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}, LoomExecutors.cpu())).join();
+		} catch (CompletionException e) {
+			ABI_HASHES.remove(key);
+			throw new IOException("Failed to hash the ABI of " + jar, e.getCause());
+		}
+	}
+
+	private static String getOrCreateAbiHash(Path jar) throws IOException {
+		final Path directory;
+
+		synchronized (RemapClasspathIndex.class) {
+			directory = cacheDirectory;
+		}
+
+		if (directory == null) {
+			return computeAbiHash(jar);
+		}
+
+		final String hash = Checksum.toHex(Checksum.sha256(jar.toFile()));
+		final Path abiFile = directory.resolve(hash.substring(0, 2)).resolve(hash + ".abi");
+
+		if (Files.exists(abiFile)) {
+			Files.setLastModifiedTime(abiFile, FileTime.from(Instant.now()));
+			return Files.readString(abiFile, StandardCharsets.UTF_8);
+		}
+
+		final String abiHash = computeAbiHash(jar);
+		Files.createDirectories(abiFile.getParent());
+		final Path tempFile = Files.createTempFile(abiFile.getParent(), hash, ".tmp");
+
+		try {
+			Files.writeString(tempFile, abiHash, StandardCharsets.UTF_8);
+			Files.move(tempFile, abiFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tempFile);
+		}
+
+		return abiHash;
+	}
+
+	static String computeAbiHash(Path jar) throws IOException {
+		// Sorted so that the order of the entries in the jar does not matter
+		final Map<String, byte[]> classes = new TreeMap<>();
+
+		try (ZipFile zipFile = new ZipFile(jar.toFile())) {
+			Enumeration<? extends ZipEntry> entries = zipFile.entries();
+
+			while (entries.hasMoreElements()) {
+				final ZipEntry entry = entries.nextElement();
+
+				if (entry.isDirectory() || !entry.getName().endsWith(".class")) {
+					continue;
+				}
+
+				try (InputStream is = zipFile.getInputStream(entry)) {
+					classes.put(entry.getName(), stripCode(is.readAllBytes()));
+				}
+			}
+		}
+
+		final Hasher hasher = Hashing.sha256().newHasher();
+		hasher.putInt(VERSION);
+
+		for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+			hasher.putString(entry.getKey(), StandardCharsets.UTF_8);
+			hasher.putInt(entry.getValue().length);
+			hasher.putBytes(entry.getValue());
+		}
+
+		return hasher.hash().toString();
+	}
+
+	private static CompletableFuture<Path> resolveAsync(Path path) {
+		final Path directory;
+
+		synchronized (RemapClasspathIndex.class) {
+			directory = cacheDirectory;
+		}
+
+		if (directory == null || !Files.isRegularFile(path)) {
+			return CompletableFuture.completedFuture(path);
+		}
+
+		final JarKey key;
+
+		try {
+			key = new JarKey(path.toAbsolutePath(), Files.size(path), Files.getLastModifiedTime(path).toMillis());
+		} catch (IOException e) {
+			return CompletableFuture.completedFuture(path);
+		}
+
+		return SKELETONS.computeIfAbsent(key, k -> CompletableFuture.supplyAsync(() -> {
+			try {
+				return getOrCreateSkeleton(directory, path);
+			} catch (IOException e) {
+				LOGGER.warn("Failed to index classpath jar {}, using it directly", path, e);
+				return path;
+			}
+		}, LoomExecutors.cpu()));
+	}
+
+	private static Path getOrCreateSkeleton(Path directory, Path jar) throws IOException {
+		final String hash = Checksum.toHex(Checksum.sha256(jar.toFile()));
+		final Path skeleton = directory.resolve(hash.substring(0, 2)).resolve(hash + ".jar");
+
+		if (Files.exists(skeleton)) {
+			// Mark as used so that it is not cleaned up
+			Files.setLastModifiedTime(skeleton, FileTime.from(Instant.now()));
+			return skeleton;
+		}
+
+		Files.createDirectories(skeleton.getParent());
+		final Path tempFile = Files.createTempFile(skeleton.getParent(), hash, ".tmp");
+
+		try {
+			writeSkeleton(jar, tempFile);
+			Files.move(tempFile, skeleton, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tempFile);
+		}
+
+		LOGGER.debug("Indexed classpath jar {} as {}", jar, skeleton);
+		return skeleton;
+	}
+
+	private static void writeSkeleton(Path jar, Path output) throws IOException {
+		// Skeletons are only read by tiny remapper, storing them avoids inflating them again on every read
+		try (ZipFile zipFile = new ZipFile(jar.toFile());
+				ParallelJarWriter writer = ParallelJarWriter.create(output).setCompressionMethod(ZipEntry.STORED)) {
+			Enumeration<? extends ZipEntry> entries = zipFile.entries();
+
+			while (entries.hasMoreElements()) {
+				final ZipEntry entry = entries.nextElement();
+
+				if (entry.isDirectory() || !entry.getName().endsWith(".class")) {
+					continue;
+				}
+
+				writer.put(entry.getName(), -1, () -> {
+					try (InputStream is = zipFile.getInputStream(entry)) {
+						return stripCode(is.readAllBytes());
+					}
+				});
+			}
+
+			// Wait for the pending entries before the zip file is closed
+			writer.flush();
+		}
+	}
+
+	static byte[] stripCode(byte[] bytes) {
+		try {
+			final ClassReader reader = new ClassReader(bytes);
+			final ClassWriter writer = new ClassWriter(0);
+			reader.accept(writer, ClassReader.SKIP_CODE | ClassReader.SKIP_FRAMES);
+			return writer.toByteArray();
+		} catch (RuntimeException e) {
+			// Leave anything that ASM cannot read as it is, tiny remapper will report it if it matters.
+			return bytes;
+		}
+	}
+
+	private static void deleteUnused(Path directory) throws IOException {
+		final Path marker = directory.resolve(CLEANUP_MARKER);
+		final Instant now = Instant.now();
+
+		if (Files.notExists(directory) || (Files.exists(marker) && Files.getLastModifiedTime(marker).toInstant().isAfter(now.minus(CLEANUP_INTERVAL)))) {
+			return;
+		}
+
+		final Instant cutoff = now.minus(MAX_AGE);
+
+		try (Stream<Path> stream = Files.walk(directory)) {
+			for (Path path : stream.filter(Files::isRegularFile).toList()) {
+				if (Files.getLastModifiedTime(path).toInstant().isBefore(cutoff)) {
+					Files.deleteIfExists(path);
+				}
+			}
+		}
+
+		Files.writeString(marker, now.toString(), StandardCharsets.UTF_8);
+	}
+
+	private record JarKey(Path path, long size, long lastModified) {
+	}
+}
@@ -0,0 +1,152 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A cache of remapped source files, keyed by the hash of the original source file and of everything else that the
+ * remapped output depends on (the namespaces, mappings, java release and the classpath).
+ *
+ * <p>Only the ABI of the mods on the classpath is part of the key, so that the unchanged files of a mod are reused when
+ * the mod or one of its dependencies is updated without changing its ABI.
+ *
+ * <p>Entries that have not been used for {@value #MAX_AGE_DAYS} days are deleted, the cache is checked for them at most
+ * once a day.
+ */
+public final class SourceRemapCache {
+	private static final Logger LOGGER = LoggerFactory.getLogger(SourceRemapCache.class);
+	private static final int VERSION = 1;
+	private static final int MAX_AGE_DAYS = 14;
+	private static final Duration CLEANUP_INTERVAL = Duration.ofDays(1);
+	private static final String CLEANUP_MARKER = ".last-cleanup";
+
+	private final Path directory;
+	private final String contextHash;
+
+	private SourceRemapCache(Path directory, String contextHash) {
+		this.directory = directory;
+		this.contextHash = contextHash;
+	}
+
+	/**
+	 * @param context strings describing everything (other than the source file itself) that affects the remapped output
+	 */
+	public static SourceRemapCache create(Path directory, Iterable<String> context) {
+		final Hasher hasher = Hashing.sha256().newHasher();
+		hasher.putInt(VERSION);
+
+		for (String s : context) {
+			hasher.putString(s, StandardCharsets.UTF_8);
+			hasher.putByte((byte) 0);
+		}
+
+		try {
+			deleteUnused(directory);
+		} catch (IOException e) {
+			LOGGER.warn("Failed to clean up the source remap cache", e);
+		}
+
+		return new SourceRemapCache(directory, hasher.hash().toString());
+	}
+
+	public String getKey(byte[] source) {
+		return Hashing.sha256().newHasher()
+				.putString(contextHash, StandardCharsets.UTF_8)
+				.putBytes(source)
+				.hash()
+				.toString();
+	}
+
+	public byte @Nullable [] get(String key) throws IOException {
+		final Path path = getPath(key);
+
+		if (Files.notExists(path)) {
+			return null;
+		}
+
+		final byte[] bytes = Files.readAllBytes(path);
+		// Mark as used so that it is not cleaned up
+		Files.setLastModifiedTime(path, FileTime.from(Instant.now()));
+		return bytes;
+	}
+
+	public void put(String key, byte[] remapped) throws IOException {
+		final Path path = getPath(key);
+		Files.createDirectories(path.getParent());
+
+		final Path tempFile = Files.createTempFile(path.getParent(), key, ".tmp");
+
+		try {
+			Files.write(tempFile, remapped);
+			Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tempFile);
+		}
+	}
+
+	private Path getPath(String key) {
+		return directory.resolve(key.substring(0, 2)).resolve(key);
+	}
+
+	private static void deleteUnused(Path directory) throws IOException {
+		final Path marker = directory.resolve(CLEANUP_MARKER);
+		final Instant now = Instant.now();
+
+		if (Files.notExists(directory) || (Files.exists(marker) && Files.getLastModifiedTime(marker).toInstant().isAfter(now.minus(CLEANUP_INTERVAL)))) {
+			return;
+		}
+
+		final Instant cutoff = now.minus(Duration.ofDays(MAX_AGE_DAYS));
+		final List<Path> files;
+
+		try (Stream<Path> stream = Files.walk(directory, 2)) {
+			files = stream.filter(path -> directory.relativize(path).getNameCount() == 2 && Files.isRegularFile(path)).toList();
+		}
+
+		for (Path file : files) {
+			if (Files.getLastModifiedTime(file).toInstant().isBefore(cutoff)) {
+				Files.deleteIfExists(file);
+			}
+		}
+
+		Files.writeString(marker, now.toString(), StandardCharsets.UTF_8);
+	}
+}
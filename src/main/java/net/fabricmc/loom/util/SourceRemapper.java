@@ -26,16 +26,31 @@ package net.fabricmc.loom.util;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
-import org.cadixdev.lorenz.MappingSet;
 import org.cadixdev.mercury.Mercury;
 import org.cadixdev.mercury.remapper.MercuryRemapper;
 import org.gradle.api.JavaVersion;
@@ -45,6 +60,7 @@ import org.gradle.api.provider.Property;
 import org.gradle.api.tasks.compile.JavaCompile;
 import org.gradle.internal.logging.progress.ProgressLogger;
 import org.gradle.internal.logging.progress.ProgressLoggerFactory;
+import org.jetbrains.annotations.VisibleForTesting;
 import org.slf4j.Logger;
 
 import net.fabricmc.loom.LoomGradleExtension;
@@ -56,13 +72,13 @@ import net.fabricmc.loom.task.service.LorenzMappingService;
 import net.fabricmc.loom.util.service.ServiceFactory;
 
 public class SourceRemapper {
+	private static final long MEMORY_PER_WORKER = 1024L * 1024L * 1024L;
+
 	private final Project project;
 	private final ServiceFactory serviceFactory;
 	private String from;
 	private String to;
-	private final List<Consumer<ProgressLogger>> remapTasks = new ArrayList<>();
-
-	private Mercury mercury;
+	private final List<RemapJob> remapJobs = new ArrayList<>();
 
 	public SourceRemapper(Project project, ServiceFactory serviceFactory, boolean toNamed) {
 		this(project, serviceFactory, toNamed ? IntermediaryNamespaces.runtimeIntermediary(project) : "named", !toNamed ? IntermediaryNamespaces.runtimeIntermediary(project) : "named");
@@ -76,25 +92,11 @@ public class SourceRemapper {
 	}
 
 	public void scheduleRemapSources(File source, File destination, boolean reproducibleFileOrder, boolean preserveFileTimestamps, Runnable completionCallback) {
-		remapTasks.add((logger) -> {
-			try {
-				logger.progress("remapping sources - " + source.getName());
-				remapSourcesInner(source, destination);
-				ZipReprocessorUtil.reprocessZip(destination.toPath(), reproducibleFileOrder, preserveFileTimestamps);
-
-				// Set the remapped sources creation date to match the sources if we're likely succeeded in making it
-				destination.setLastModified(source.lastModified());
-				completionCallback.run();
-			} catch (Exception e) {
-				// Failed to remap, lets clean up to ensure we try again next time
-				destination.delete();
-				throw new RuntimeException("Failed to remap sources for " + source, e);
-			}
-		});
+		remapJobs.add(new RemapJob(source, destination, reproducibleFileOrder, preserveFileTimestamps, completionCallback));
 	}
 
 	public void remapAll() {
-		if (remapTasks.isEmpty()) {
+		if (remapJobs.isEmpty()) {
 			return;
 		}
 
@@ -104,17 +106,70 @@ public class SourceRemapper {
 		ProgressLogger progressLogger = progressLoggerFactory.newOperation(SourceRemapper.class.getName());
 		progressLogger.start("Remapping dependency sources", "sources");
 
-		remapTasks.forEach(consumer -> consumer.accept(progressLogger));
+		// The project is only accessed on this thread, the workers share the resolved classpath and mappings service.
+		final RemapContext context = createContext();
+		final int workers = Math.min(remapJobs.size(), getMaxWorkers());
+		final MercuryPool mercuryPool = new MercuryPool(context::createMercury, workers);
+		final Executor executor = LoomExecutors.bounded(LoomExecutors.io(), workers);
+		final List<CompletableFuture<Void>> futures = new ArrayList<>(remapJobs.size());
+
+		for (RemapJob job : remapJobs) {
+			futures.add(CompletableFuture.runAsync(() -> {
+				synchronized (progressLogger) {
+					progressLogger.progress("remapping sources - " + job.source().getName());
+				}
+
+				final Mercury mercury = mercuryPool.acquire();
+
+				try {
+					remapSources(job, mercury, context);
+				} catch (Exception e) {
+					// Failed to remap, lets clean up to ensure we try again next time
+					job.destination().delete();
+					throw new RuntimeException("Failed to remap sources for " + job.source(), e);
+				} finally {
+					mercuryPool.release(mercury);
+				}
+			}, executor));
+		}
+
+		RuntimeException failure = null;
+
+		// The callbacks update the project, so are run back on this thread
+		for (int i = 0; i < remapJobs.size(); i++) {
+			try {
+				futures.get(i).join();
+			} catch (CompletionException e) {
+				if (failure == null) {
+					failure = e.getCause() instanceof RuntimeException runtimeException ? runtimeException : e;
+				}
+
+				continue;
+			}
+
+			remapJobs.get(i).completionCallback().run();
+		}
 
 		progressLogger.completed();
 
-		// TODO: FIXME - WORKAROUND https://github.com/FabricMC/fabric-loom/issues/45
-		System.gc();
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * @return the number of Mercury instances that can remap at the same time
+	 */
+	public static int getMaxWorkers() {
+		// Parsing with JDT is memory hungry, allow roughly 1GB of heap for each worker
+		final long maxMemory = Runtime.getRuntime().maxMemory();
+		final int processors = Runtime.getRuntime().availableProcessors();
+		return (int) Math.max(1, Math.min(processors, maxMemory / MEMORY_PER_WORKER));
 	}
 
-	private void remapSourcesInner(File source, File destination) throws Exception {
-		project.getLogger().info(":remapping source jar");
-		Mercury mercury = getMercuryInstance();
+	private void remapSources(RemapJob job, Mercury mercury, RemapContext context) throws Exception {
+		File source = job.source();
+		final File destination = job.destination();
 
 		if (source.equals(destination)) {
 			if (source.isDirectory()) {
@@ -130,80 +185,193 @@ public class SourceRemapper {
 			}
 		}
 
-		Path srcPath = source.toPath();
-		boolean isSrcTmp = false;
-
-		if (!source.isDirectory()) {
-			// create tmp directory
-			isSrcTmp = true;
-			srcPath = Files.createTempDirectory("fabric-loom-src");
-			ZipUtils.unpackAll(source.toPath(), srcPath);
-		}
-
 		if (!destination.isDirectory() && destination.exists()) {
 			if (!destination.delete()) {
 				throw new RuntimeException("Could not delete " + destination.getName() + "!");
 			}
 		}
 
+		if (source.isDirectory()) {
+			remapDirectory(source, destination, mercury);
+
+			if (!destination.isDirectory()) {
+				ZipReprocessorUtil.reprocessZip(destination.toPath(), job.reproducibleFileOrder(), job.preserveFileTimestamps());
+			}
+		} else {
+			remapJar(source, destination, mercury, context.cache(), job.reproducibleFileOrder(), job.preserveFileTimestamps());
+		}
+
+		// Set the remapped sources creation date to match the sources if we're likely succeeded in making it
+		destination.setLastModified(source.lastModified());
+	}
+
+	private void remapDirectory(File source, File destination, Mercury mercury) throws Exception {
 		FileSystemUtil.Delegate dstFs = destination.isDirectory() ? null : FileSystemUtil.getJarFileSystem(destination, true);
 		Path dstPath = dstFs != null ? dstFs.get().getPath("/") : destination.toPath();
 
 		try {
-			mercury.rewrite(srcPath, dstPath);
+			mercury.rewrite(source.toPath(), dstPath);
 		} catch (Exception e) {
 			project.getLogger().warn("Could not remap " + source.getName() + " fully!", e);
 		}
 
-		copyNonJavaFiles(srcPath, dstPath, project.getLogger(), source.toPath());
+		copyNonJavaFiles(source.toPath(), dstPath, project.getLogger(), source.toPath());
 
 		if (dstFs != null) {
 			dstFs.close();
 		}
+	}
+
+	/**
+	 * Remap a source jar, reading it directly from the zip. Only the java files missing from the cache are extracted
+	 * and parsed by Mercury. The output jar is written in a single pass, in the requested order and with the requested
+	 * time stamps.
+	 */
+	private void remapJar(File source, File destination, Mercury mercury, SourceRemapCache cache, boolean reproducibleFileOrder, boolean preserveFileTimestamps) throws Exception {
+		// Entry name -> output, in the order of the input jar
+		final Map<String, byte[]> output = new LinkedHashMap<>();
+		final Map<String, Long> lastModified = new HashMap<>();
+		// Entry name -> cache key, of the java files that need remapping
+		final Map<String, String> misses = new LinkedHashMap<>();
+		final Map<String, byte[]> missSources = new HashMap<>();
+		int javaFiles = 0;
+
+		try (ZipFile zipFile = new ZipFile(source)) {
+			Enumeration<? extends ZipEntry> entries = zipFile.entries();
+
+			while (entries.hasMoreElements()) {
+				final ZipEntry entry = entries.nextElement();
+
+				if (entry.isDirectory()) {
+					continue;
+				}
+
+				final byte[] bytes;
+
+				try (InputStream is = zipFile.getInputStream(entry)) {
+					bytes = is.readAllBytes();
+				}
+
+				lastModified.put(entry.getName(), entry.getTime());
+
+				if (!isJavaFile(entry.getName())) {
+					output.put(entry.getName(), bytes);
+					continue;
+				}
+
+				javaFiles++;
+				final String key = cache.getKey(bytes);
+				final byte[] cached = cache.get(key);
+				output.put(entry.getName(), cached);
+
+				if (cached == null) {
+					misses.put(entry.getName(), key);
+					missSources.put(entry.getName(), bytes);
+				}
+			}
+		}
+
+		if (!misses.isEmpty()) {
+			project.getLogger().info(":remapping {} of {} source files in {}", misses.size(), javaFiles, source.getName());
+			final Path srcPath = Files.createTempDirectory("fabric-loom-src");
+			final Path dstPath = Files.createTempDirectory("fabric-loom-src-remapped");
+
+			try {
+				for (Map.Entry<String, byte[]> entry : missSources.entrySet()) {
+					final Path path = srcPath.resolve(entry.getKey());
+					Files.createDirectories(path.getParent());
+					Files.write(path, entry.getValue());
+				}
 
-		if (isSrcTmp) {
-			Files.walkFileTree(srcPath, new DeletingFileVisitor());
+				boolean complete = true;
+
+				try {
+					mercury.rewrite(srcPath, dstPath);
+				} catch (Exception e) {
+					complete = false;
+					project.getLogger().warn("Could not remap " + source.getName() + " fully!", e);
+				}
+
+				final Map<String, byte[]> remappedFiles = new HashMap<>();
+
+				for (String name : misses.keySet()) {
+					final Path remapped = dstPath.resolve(name);
+
+					if (Files.notExists(remapped)) {
+						complete = false;
+						output.remove(name);
+						continue;
+					}
+
+					final byte[] bytes = Files.readAllBytes(remapped);
+					output.put(name, bytes);
+					remappedFiles.put(name, bytes);
+				}
+
+				// Only cache once every file is known to have been remapped, a partial pass may have remapped files incorrectly
+				if (complete) {
+					for (Map.Entry<String, String> entry : misses.entrySet()) {
+						cache.put(entry.getValue(), remappedFiles.get(entry.getKey()));
+					}
+				}
+			} finally {
+				Files.walkFileTree(srcPath, new DeletingFileVisitor());
+				Files.walkFileTree(dstPath, new DeletingFileVisitor());
+			}
 		}
-	}
 
-	private Mercury getMercuryInstance() {
-		if (this.mercury != null) {
-			return this.mercury;
+		if (destination.isDirectory()) {
+			for (Map.Entry<String, byte[]> entry : output.entrySet()) {
+				final Path path = destination.toPath().resolve(entry.getKey());
+				Files.createDirectories(path.getParent());
+				Files.write(path, entry.getValue());
+			}
+
+			return;
 		}
 
+		final List<String> names = new ArrayList<>(output.keySet());
+
+		if (reproducibleFileOrder) {
+			names.sort(ZipReprocessorUtil::specialOrdering);
+		}
+
+		try (ParallelJarWriter writer = ParallelJarWriter.create(destination.toPath())) {
+			for (String name : names) {
+				writer.put(name, preserveFileTimestamps ? lastModified.get(name) : -1, output.get(name));
+			}
+		}
+	}
+
+	private RemapContext createContext() {
 		LoomGradleExtension extension = LoomGradleExtension.get(project);
 		MappingConfiguration mappingConfiguration = extension.getMappingConfiguration();
 
 		LorenzMappingService lorenzMappingService = serviceFactory.get(LorenzMappingService.createOptions(
 				project,
 				mappingConfiguration,
-															Objects.requireNonNull(MappingsNamespace.of(from)),
-															Objects.requireNonNull(MappingsNamespace.of(to))));
-		MappingSet mappings = lorenzMappingService.getMappings();
+				Objects.requireNonNull(MappingsNamespace.of(from)),
+				Objects.requireNonNull(MappingsNamespace.of(to))));
 
-		Mercury mercury = createMercuryWithClassPath(project, MappingsNamespace.of(to) == MappingsNamespace.NAMED);
-		mercury.setSourceCompatibilityFromRelease(getJavaCompileRelease(project));
+		final boolean toNamed = MappingsNamespace.of(to) == MappingsNamespace.NAMED;
+		final int release = getJavaCompileRelease(project);
+		final List<Path> classPath = new ArrayList<>(getClassPath(project, toNamed));
+		// Minecraft and the libraries, these are fingerprinted rather than hashed in the cache key
+		final List<Path> platformClassPath = new ArrayList<>();
 
 		for (File file : extension.getUnmappedModCollection()) {
 			Path path = file.toPath();
 
 			if (Files.isRegularFile(path)) {
-				mercury.getClassPath().add(path);
+				classPath.add(path);
 			}
 		}
 
-		for (Path intermediaryJar : extension.getMinecraftJars(MappingsNamespace.INTERMEDIARY)) {
-			mercury.getClassPath().add(intermediaryJar);
-		}
-
-		for (Path intermediaryJar : extension.getMinecraftJars(MappingsNamespace.NAMED)) {
-			mercury.getClassPath().add(intermediaryJar);
-		}
+		platformClassPath.addAll(extension.getMinecraftJars(MappingsNamespace.INTERMEDIARY));
+		platformClassPath.addAll(extension.getMinecraftJars(MappingsNamespace.NAMED));
 
 		if (extension.isForgeLike()) {
-			for (Path jar : extension.getMinecraftJars(IntermediaryNamespaces.runtimeIntermediaryNamespace(project))) {
-				mercury.getClassPath().add(jar);
-			}
+			platformClassPath.addAll(extension.getMinecraftJars(IntermediaryNamespaces.runtimeIntermediaryNamespace(project)));
 		}
 
 		Set<File> files = project.getConfigurations()
@@ -214,13 +382,57 @@ public class SourceRemapper {
 				.resolve();
 
 		for (File file : files) {
-			mercury.getClassPath().add(file.toPath());
+			platformClassPath.add(file.toPath());
 		}
 
-		mercury.getProcessors().add(MercuryRemapper.create(mappings));
+		for (File file : project.getConfigurations().getByName(Constants.Configurations.MINECRAFT_COMPILE_LIBRARIES).getFiles()) {
+			platformClassPath.add(file.toPath());
+		}
 
-		this.mercury = mercury;
-		return this.mercury;
+		// The other mods, only their ABI is part of the cache key
+		final Set<Path> platformPaths = new HashSet<>(platformClassPath);
+		final List<Path> modClassPath = classPath.stream().filter(path -> !platformPaths.contains(path) && Files.exists(path)).distinct().toList();
+		classPath.addAll(platformClassPath);
+
+		final List<String> cacheContext = new ArrayList<>();
+		cacheContext.add(from);
+		cacheContext.add(to);
+		cacheContext.add(Integer.toString(release));
+		cacheContext.add(extension.getMinecraftProvider().minecraftVersion());
+		cacheContext.add(mappingConfiguration.mappingsIdentifier());
+		// A changed jar with the same name must not reuse the remapped sources, the size and modification time are
+		// used rather than a hash of the contents, as hashing the Minecraft jars on every remap would be too slow
+		platformClassPath.stream().filter(Files::isRegularFile).map(SourceRemapper::fingerprint).sorted().forEach(cacheContext::add);
+		modClassPath.stream().map(SourceRemapper::abiHash).sorted().forEach(cacheContext::add);
+
+		final SourceRemapCache cache = SourceRemapCache.create(extension.getFiles().getUserCache().toPath().resolve("source_remap_cache"), cacheContext);
+		return new RemapContext(lorenzMappingService, classPath.stream().filter(Files::exists).distinct().toList(), release, cache);
+	}
+
+	private static String abiHash(Path path) {
+		if (Files.isDirectory(path)) {
+			// Class directories are not indexed, any change to their files changes the key
+			try (Stream<Path> stream = Files.walk(path)) {
+				return stream.filter(Files::isRegularFile).map(SourceRemapper::fingerprint).sorted().collect(Collectors.joining(","));
+			} catch (IOException e) {
+				throw new UncheckedIOException("Failed to list the files of " + path, e);
+			}
+		}
+
+		try {
+			return RemapClasspathIndex.abiHash(path);
+		} catch (IOException e) {
+			// Not a readable jar, fall back to the file attributes
+			return fingerprint(path);
+		}
+	}
+
+	private static String fingerprint(Path path) {
+		try {
+			return "%s:%d:%d".formatted(path.getFileName(), Files.size(path), Files.getLastModifiedTime(path).toMillis());
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to read the attributes of " + path, e);
+		}
 	}
 
 	public static int getJavaCompileRelease(Project project) {
@@ -265,6 +477,16 @@ public class SourceRemapper {
 		Mercury m = new Mercury();
 		m.setGracefulClasspathChecks(true);
 
+		for (Path path : getClassPath(project, toNamed)) {
+			if (Files.exists(path)) {
+				m.getClassPath().add(path);
+			}
+		}
+
+		return m;
+	}
+
+	private static List<Path> getClassPath(Project project, boolean toNamed) {
 		final List<Path> classPath = new ArrayList<>();
 
 		for (File file : project.getConfigurations().getByName(Constants.Configurations.MINECRAFT_COMPILE_LIBRARIES).getFiles()) {
@@ -285,18 +507,87 @@ public class SourceRemapper {
 			}
 		}
 
-		for (Path path : classPath) {
-			if (Files.exists(path)) {
-				m.getClassPath().add(path);
-			}
-		}
-
-		return m;
+		return classPath;
 	}
 
 	private static boolean isJavaFile(Path path) {
-		String name = path.getFileName().toString();
+		return isJavaFile(path.getFileName().toString());
+	}
+
+	private static boolean isJavaFile(String name) {
+		final String fileName = name.substring(name.lastIndexOf('/') + 1);
 		// ".java" is not a valid java file
-		return name.endsWith(".java") && name.length() != 5;
+		return fileName.endsWith(".java") && fileName.length() != 5;
+	}
+
+	private record RemapJob(File source, File destination, boolean reproducibleFileOrder, boolean preserveFileTimestamps, Runnable completionCallback) {
+	}
+
+	private record RemapContext(LorenzMappingService mappingService, List<Path> classPath, int release, SourceRemapCache cache) {
+		Mercury createMercury() {
+			final Mercury mercury = new Mercury();
+			mercury.setGracefulClasspathChecks(true);
+			mercury.setSourceCompatibilityFromRelease(release);
+			mercury.getClassPath().addAll(classPath);
+			mercury.getProcessors().add(MercuryRemapper.create(mappingService.createMappings()));
+			return mercury;
+		}
+	}
+
+	/**
+	 * Mercury and the lorenz mappings are not thread safe, each worker uses its own instance.
+	 */
+	@VisibleForTesting
+	public static final class MercuryPool {
+		private final Supplier<Mercury> factory;
+		private final BlockingQueue<Mercury> available = new LinkedBlockingQueue<>();
+		private final int maxSize;
+		private int size = 0;
+
+		public MercuryPool(Supplier<Mercury> factory, int maxSize) {
+			this.factory = factory;
+			this.maxSize = maxSize;
+		}
+
+		public Mercury acquire() {
+			final Mercury mercury = available.poll();
+
+			if (mercury != null) {
+				return mercury;
+			}
+
+			boolean create = false;
+
+			synchronized (this) {
+				if (size < maxSize) {
+					size++;
+					create = true;
+				}
+			}
+
+			if (create) {
+				try {
+					return factory.get();
+				} catch (RuntimeException | Error e) {
+					// Give up the slot, so that the next job tries again rather than waiting for an instance that never comes
+					synchronized (this) {
+						size--;
+					}
+
+					throw e;
+				}
+			}
+
+			try {
+				return available.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			}
+		}
+
+		public void release(Mercury mercury) {
+			available.add(mercury);
+		}
 	}
 }
@@ -27,13 +27,9 @@ package net.fabricmc.loom.util;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -57,25 +53,22 @@ public class ThreadingUtils {
 	}
 
 	public static void run(Collection<UnsafeRunnable> jobs) {
-		try {
-			ExecutorService service = Executors.newFixedThreadPool(Math.max(1, Math.min(jobs.size(), Runtime.getRuntime().availableProcessors())));
-			List<Future<?>> futures = new LinkedList<>();
-
-			for (UnsafeRunnable runnable : jobs) {
-				futures.add(service.submit(() -> {
-					try {
-						runnable.run();
-					} catch (Throwable throwable) {
-						throw new RuntimeException(throwable);
-					}
-				}));
-			}
+		List<CompletableFuture<Void>> futures = new ArrayList<>(jobs.size());
+
+		for (UnsafeRunnable runnable : jobs) {
+			futures.add(CompletableFuture.runAsync(() -> {
+				try {
+					runnable.run();
+				} catch (Throwable throwable) {
+					throw new RuntimeException(throwable);
+				}
+			}, LoomExecutors.cpu()));
+		}
 
-			for (Future<?> future : futures) {
+		try {
+			for (CompletableFuture<Void> future : futures) {
 				future.get();
 			}
-
-			service.shutdownNow();
 		} catch (InterruptedException | ExecutionException e) {
 			throw new RuntimeException(e);
 		}
@@ -93,30 +86,28 @@ public class ThreadingUtils {
 	}
 
 	public static <T> List<T> get(Collection<UnsafeCallable<T>> jobs) {
-		try {
-			ExecutorService service = Executors.newFixedThreadPool(Math.max(1, Math.min(jobs.size(), Runtime.getRuntime().availableProcessors())));
-			List<Future<T>> futures = new LinkedList<>();
-			List<T> result = new ArrayList<>();
-
-			for (UnsafeCallable<T> runnable : jobs) {
-				futures.add(service.submit(() -> {
-					try {
-						return runnable.call();
-					} catch (Throwable throwable) {
-						throw new RuntimeException(throwable);
-					}
-				}));
-			}
+		List<CompletableFuture<T>> futures = new ArrayList<>(jobs.size());
+		List<T> result = new ArrayList<>(jobs.size());
 
-			for (Future<T> future : futures) {
+		for (UnsafeCallable<T> callable : jobs) {
+			futures.add(CompletableFuture.supplyAsync(() -> {
+				try {
+					return callable.call();
+				} catch (Throwable throwable) {
+					throw new RuntimeException(throwable);
+				}
+			}, LoomExecutors.cpu()));
+		}
+
+		try {
+			for (CompletableFuture<T> future : futures) {
 				result.add(future.get());
 			}
-
-			service.shutdownNow();
-			return result;
 		} catch (InterruptedException | ExecutionException e) {
 			throw new RuntimeException(e);
 		}
+
+		return result;
 	}
 
 	public interface UnsafeRunnable {
@@ -138,7 +129,6 @@ public class ThreadingUtils {
 	public static class TaskCompleter implements Function<Throwable, Void> {
 		Stopwatch stopwatch = Stopwatch.createUnstarted();
 		List<CompletableFuture<?>> tasks = new ArrayList<>();
-		ExecutorService service = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors()));
 		List<UnsafeConsumer<Stopwatch>> completionListener = new ArrayList<>();
 
 		public TaskCompleter add(UnsafeRunnable job) {
@@ -152,7 +142,7 @@ public class ThreadingUtils {
 				} catch (Throwable throwable) {
 					throw new RuntimeException(throwable);
 				}
-			}, service).exceptionally(this));
+			}, LoomExecutors.cpu()).exceptionally(this));
 
 			return this;
 		}
@@ -165,7 +155,6 @@ public class ThreadingUtils {
 		public void complete() {
 			try {
 				CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0])).exceptionally(this).get();
-				service.shutdownNow();
 
 				if (stopwatch.isRunning()) {
 					stopwatch.stop();
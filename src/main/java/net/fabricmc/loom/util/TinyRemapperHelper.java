@@ -26,17 +26,23 @@ package net.fabricmc.loom.util;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.Consumer;
 import java.util.regex.Pattern;
 
+import com.google.common.collect.Collections2;
 import com.google.common.collect.ImmutableMap;
 import dev.architectury.loom.util.MappingOption;
 import org.gradle.api.Project;
+import org.jetbrains.annotations.Nullable;
 
 import net.fabricmc.loom.LoomGradleExtension;
 import net.fabricmc.loom.api.mappings.layered.MappingsNamespace;
+import net.fabricmc.loom.configuration.providers.mappings.tiny.BinaryMappingTree;
+import net.fabricmc.loom.configuration.providers.mappings.tiny.MappingsView;
 import net.fabricmc.loom.util.service.ServiceFactory;
 import net.fabricmc.loom.util.srg.InnerClassRemapper;
 import net.fabricmc.mappingio.MappingReader;
@@ -72,7 +78,13 @@ public final class TinyRemapperHelper {
 		LoomGradleExtension extension = LoomGradleExtension.get(project);
 		final MappingOption mappingOption = MappingOption.forPlatform(extension);
 		MemoryMappingTree mappingTree = extension.getMappingConfiguration().getMappingsService(project, serviceFactory, mappingOption).getMappingTree();
+		return getTinyRemapper(mappingTree, extension.isForgeLike(), extension.getKnownIndyBsms().get(), fromM, toM, fixRecords, builderConsumer, fromClassNames);
+	}
 
+	/**
+	 * Create a tiny remapper from inputs that have already been resolved from the project, this may be called from any thread.
+	 */
+	public static TinyRemapper getTinyRemapper(MemoryMappingTree mappingTree, boolean forgeLike, Set<String> knownIndyBsms, String fromM, String toM, boolean fixRecords, Consumer<TinyRemapper.Builder> builderConsumer, Set<String> fromClassNames) throws IOException {
 		if (fixRecords && !mappingTree.getSrcNamespace().equals(fromM)) {
 			throw new IllegalStateException("Mappings src namespace must match remap src namespace, expected " + fromM + " but got " + mappingTree.getSrcNamespace());
 		}
@@ -80,14 +92,14 @@ public final class TinyRemapperHelper {
 		int intermediaryNsId = mappingTree.getNamespaceId(MappingsNamespace.INTERMEDIARY.toString());
 
 		TinyRemapper.Builder builder = TinyRemapper.newRemapper()
-				.ignoreConflicts(extension.isForgeLike())
+				.ignoreConflicts(forgeLike)
 				.threads(Runtime.getRuntime().availableProcessors())
 				.withMappings(create(mappingTree, fromM, toM, true))
 				.renameInvalidLocals(true)
 				.rebuildSourceFilenames(true)
 				.invalidLvNamePattern(MC_LV_PATTERN)
 				.inferNameFromSameLvIndex(true)
-				.withKnownIndyBsm(extension.getKnownIndyBsms().get())
+				.withKnownIndyBsm(knownIndyBsms)
 				.extraPreApplyVisitor((cls, next) -> {
 					if (fixRecords && !cls.isRecord() && "java/lang/Record".equals(cls.getSuperName())) {
 						return new RecordComponentFixVisitor(next, mappingTree, intermediaryNsId);
@@ -96,7 +108,7 @@ public final class TinyRemapperHelper {
 					return next;
 				});
 
-		if (extension.isForgeLike()) {
+		if (forgeLike) {
 			if (!fromClassNames.isEmpty()) {
 				builder.withMappings(InnerClassRemapper.of(fromClassNames, mappingTree, fromM, toM));
 			}
@@ -113,12 +125,29 @@ public final class TinyRemapperHelper {
 	}
 
 	public static IMappingProvider create(Path mappings, String from, String to, boolean remapLocalVariables) throws IOException {
+		final BinaryMappingTree binaryMappings = BinaryMappingTree.open(mappings);
+
+		if (binaryMappings != null) {
+			return create(binaryMappings, from, to, remapLocalVariables);
+		}
+
 		MemoryMappingTree mappingTree = new MemoryMappingTree();
 		MappingReader.read(mappings, mappingTree);
 		return create(mappingTree, from, to, remapLocalVariables);
 	}
 
+	/**
+	 * Creates a mapping provider that reads straight from the binary mappings, without building a mapping tree.
+	 */
+	public static IMappingProvider create(BinaryMappingTree mappings, String from, String to, boolean remapLocalVariables) {
+		return create((MappingsView) mappings, from, to, remapLocalVariables);
+	}
+
 	public static IMappingProvider create(MappingTree mappings, String from, String to, boolean remapLocalVariables) {
+		return create(new TreeAdapter(mappings), from, to, remapLocalVariables);
+	}
+
+	private static IMappingProvider create(MappingsView mappings, String from, String to, boolean remapLocalVariables) {
 		return (acceptor) -> {
 			final int fromId = mappings.getNamespaceId(from);
 			final int toId = mappings.getNamespaceId(to);
@@ -130,7 +159,7 @@ public final class TinyRemapperHelper {
 				);
 			}
 
-			for (MappingTree.ClassMapping classDef : mappings.getClasses()) {
+			for (MappingsView.ClassView classDef : mappings.getClasses()) {
 				String className = classDef.getName(fromId);
 
 				if (className == null) {
@@ -146,7 +175,7 @@ public final class TinyRemapperHelper {
 
 				acceptor.acceptClass(className, dstClassName);
 
-				for (MappingTree.FieldMapping field : classDef.getFields()) {
+				for (MappingsView.MemberView field : classDef.getFields()) {
 					String fieldName = field.getName(fromId);
 
 					if (fieldName == null) {
@@ -162,7 +191,7 @@ public final class TinyRemapperHelper {
 					acceptor.acceptField(memberOf(className, fieldName, field.getDesc(fromId)), dstFieldName);
 				}
 
-				for (MappingTree.MethodMapping method : classDef.getMethods()) {
+				for (MappingsView.MethodView method : classDef.getMethods()) {
 					String methodName = method.getName(fromId);
 
 					if (methodName == null) {
@@ -179,7 +208,7 @@ public final class TinyRemapperHelper {
 					acceptor.acceptMethod(methodIdentifier, dstMethodName);
 
 					if (remapLocalVariables) {
-						for (MappingTree.MethodArgMapping parameter : method.getArgs()) {
+						for (MappingsView.ArgView parameter : method.getArgs()) {
 							String name = parameter.getName(toId);
 
 							if (name == null) {
@@ -189,7 +218,7 @@ public final class TinyRemapperHelper {
 							acceptor.acceptMethodArg(methodIdentifier, parameter.getLvIndex(), name);
 						}
 
-						for (MappingTree.MethodVarMapping localVariable : method.getVars()) {
+						for (MappingsView.VarView localVariable : method.getVars()) {
 							acceptor.acceptMethodVar(methodIdentifier, localVariable.getLvIndex(),
 									localVariable.getStartOpIdx(), localVariable.getLvtRowIndex(),
 									localVariable.getName(toId));
@@ -199,4 +228,112 @@ public final class TinyRemapperHelper {
 			}
 		};
 	}
+
+	// Adapts mapping-io's trees to MappingsView, the elements are wrapped as they are read.
+	private record TreeAdapter(MappingTreeView tree) implements MappingsView {
+		@Override
+		public String getSrcNamespace() {
+			return tree.getSrcNamespace();
+		}
+
+		@Override
+		public List<String> getDstNamespaces() {
+			return tree.getDstNamespaces();
+		}
+
+		@Override
+		public int getNamespaceId(String namespace) {
+			return tree.getNamespaceId(namespace);
+		}
+
+		@Override
+		public Collection<ClassAdapter> getClasses() {
+			return Collections2.transform(tree.getClasses(), ClassAdapter::new);
+		}
+	}
+
+	private record ClassAdapter(MappingTreeView.ClassMappingView mapping) implements MappingsView.ClassView {
+		@Override
+		public @Nullable String getName(int namespace) {
+			return mapping.getName(namespace);
+		}
+
+		@Override
+		public Collection<MemberAdapter> getFields() {
+			return Collections2.transform(mapping.getFields(), MemberAdapter::new);
+		}
+
+		@Override
+		public Collection<MethodAdapter> getMethods() {
+			return Collections2.transform(mapping.getMethods(), MethodAdapter::new);
+		}
+	}
+
+	private record MemberAdapter(MappingTreeView.MemberMappingView mapping) implements MappingsView.MemberView {
+		@Override
+		public @Nullable String getName(int namespace) {
+			return mapping.getName(namespace);
+		}
+
+		@Override
+		public @Nullable String getDesc(int namespace) {
+			return mapping.getDesc(namespace);
+		}
+	}
+
+	private record MethodAdapter(MappingTreeView.MethodMappingView mapping) implements MappingsView.MethodView {
+		@Override
+		public @Nullable String getName(int namespace) {
+			return mapping.getName(namespace);
+		}
+
+		@Override
+		public @Nullable String getDesc(int namespace) {
+			return mapping.getDesc(namespace);
+		}
+
+		@Override
+		public Collection<ArgAdapter> getArgs() {
+			return Collections2.transform(mapping.getArgs(), ArgAdapter::new);
+		}
+
+		@Override
+		public Collection<VarAdapter> getVars() {
+			return Collections2.transform(mapping.getVars(), VarAdapter::new);
+		}
+	}
+
+	private record ArgAdapter(MappingTreeView.MethodArgMappingView mapping) implements MappingsView.ArgView {
+		@Override
+		public @Nullable String getName(int namespace) {
+			return mapping.getName(namespace);
+		}
+
+		@Override
+		public int getLvIndex() {
+			return mapping.getLvIndex();
+		}
+	}
+
+	private record VarAdapter(MappingTreeView.MethodVarMappingView mapping) implements MappingsView.VarView {
+		@Override
+		public @Nullable String getName(int namespace) {
+			return mapping.getName(namespace);
+		}
+
+		@Override
+		public int getLvIndex() {
+			return mapping.getLvIndex();
+		}
+
+		@Override
+		public int getStartOpIdx() {
+			return mapping.getStartOpIdx();
+		}
+
+		@Override
+		public int getLvtRowIndex() {
+			return mapping.getLvtRowIndex();
+		}
+	}
 }
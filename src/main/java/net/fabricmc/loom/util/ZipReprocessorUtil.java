@@ -64,7 +64,7 @@ public class ZipReprocessorUtil {
 				|| parts[1].endsWith(".EC");
 	}
 
-	private static int specialOrdering(String name1, String name2) {
+	static int specialOrdering(String name1, String name2) {
 		if (name1.equals(name2)) {
 			return 0;
 		} else if (name1.equals(Constants.Manifest.PATH)) {
@@ -0,0 +1,729 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Rewrites a zip file in a single pass over its central directory.
+ *
+ * <p>The compressed data of unchanged entries is copied directly from the input file with
+ * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}, only the entries that are added
+ * or replaced are compressed again, in parallel. All changes are staged in memory and written by {@link #commit()}, closing the
+ * rewriter without committing leaves the zip untouched.
+ */
+public final class ZipRewriter implements Closeable {
+	private static final int LOCAL_HEADER = 0x04034b50;
+	private static final int CENTRAL_HEADER = 0x02014b50;
+	private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+	private static final int ZIP64_END_OF_CENTRAL_DIRECTORY = 0x06064b50;
+	private static final int ZIP64_LOCATOR = 0x07064b50;
+
+	private static final int LOCAL_HEADER_SIZE = 30;
+	private static final int CENTRAL_HEADER_SIZE = 46;
+	private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+	private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE = 56;
+	private static final int ZIP64_LOCATOR_SIZE = 20;
+
+	private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+	private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+	private static final int ZIP64_EXTRA = 0x0001;
+
+	private static final int FLAG_DATA_DESCRIPTOR = 0x0008;
+	private static final int FLAG_UTF8 = 0x0800;
+
+	private final Path path;
+	private final FileChannel channel;
+	private final Map<String, Entry> entries;
+	private final byte[] comment;
+
+	private boolean modified = false;
+	private boolean committed = false;
+
+	private ZipRewriter(Path path, FileChannel channel, Map<String, Entry> entries, byte[] comment) {
+		this.path = path;
+		this.channel = channel;
+		this.entries = entries;
+		this.comment = comment;
+	}
+
+	public static ZipRewriter open(Path path) throws IOException {
+		final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+
+		try {
+			return read(path, channel);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	private static ZipRewriter read(Path path, FileChannel channel) throws IOException {
+		final long fileSize = channel.size();
+
+		if (fileSize < END_OF_CENTRAL_DIRECTORY_SIZE) {
+			throw new ZipException("Not a zip file: " + path);
+		}
+
+		// The end of central directory record is followed by a comment of up to 64k
+		final int tailSize = (int) Math.min(fileSize, END_OF_CENTRAL_DIRECTORY_SIZE + 0xFFFF);
+		final long tailOffset = fileSize - tailSize;
+		final ByteBuffer tail = readFully(channel, tailOffset, tailSize);
+		int eocd = -1;
+
+		for (int i = tailSize - END_OF_CENTRAL_DIRECTORY_SIZE; i >= 0; i--) {
+			if (tail.getInt(i) == END_OF_CENTRAL_DIRECTORY) {
+				eocd = i;
+				break;
+			}
+		}
+
+		if (eocd < 0) {
+			throw new ZipException("Not a zip file: " + path);
+		}
+
+		long entryCount = u16(tail, eocd + 10);
+		long centralDirectorySize = u32(tail, eocd + 12);
+		long centralDirectoryOffset = u32(tail, eocd + 16);
+		final int commentLength = Math.min(u16(tail, eocd + 20), tailSize - eocd - END_OF_CENTRAL_DIRECTORY_SIZE);
+		final byte[] comment = bytes(tail, eocd + END_OF_CENTRAL_DIRECTORY_SIZE, commentLength);
+
+		final long eocdOffset = tailOffset + eocd;
+
+		if ((entryCount == ZIP64_MAGIC_COUNT || centralDirectorySize == ZIP64_MAGIC || centralDirectoryOffset == ZIP64_MAGIC) && eocdOffset >= ZIP64_LOCATOR_SIZE) {
+			final ByteBuffer locator = readFully(channel, eocdOffset - ZIP64_LOCATOR_SIZE, ZIP64_LOCATOR_SIZE);
+
+			if (locator.getInt(0) == ZIP64_LOCATOR) {
+				final ByteBuffer zip64 = readFully(channel, locator.getLong(8), ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE);
+
+				if (zip64.getInt(0) != ZIP64_END_OF_CENTRAL_DIRECTORY) {
+					throw new ZipException("Invalid zip64 end of central directory in " + path);
+				}
+
+				entryCount = zip64.getLong(32);
+				centralDirectorySize = zip64.getLong(40);
+				centralDirectoryOffset = zip64.getLong(48);
+			}
+		}
+
+		final ByteBuffer centralDirectory = readFully(channel, centralDirectoryOffset, Math.toIntExact(centralDirectorySize));
+		final Map<String, Entry> entries = new LinkedHashMap<>();
+		int pos = 0;
+
+		for (long i = 0; i < entryCount; i++) {
+			if (centralDirectory.getInt(pos) != CENTRAL_HEADER) {
+				throw new ZipException("Invalid central directory header in " + path);
+			}
+
+			final int nameLength = u16(centralDirectory, pos + 28);
+			final int extraLength = u16(centralDirectory, pos + 30);
+			final int entryCommentLength = u16(centralDirectory, pos + 32);
+			final byte[] nameBytes = bytes(centralDirectory, pos + CENTRAL_HEADER_SIZE, nameLength);
+
+			final Entry entry = new Entry(new String(nameBytes, StandardCharsets.UTF_8), nameBytes);
+			entry.versionMadeBy = u16(centralDirectory, pos + 4);
+			entry.versionNeeded = u16(centralDirectory, pos + 6);
+			entry.flags = u16(centralDirectory, pos + 8);
+			entry.method = u16(centralDirectory, pos + 10);
+			entry.dosTime = u16(centralDirectory, pos + 12);
+			entry.dosDate = u16(centralDirectory, pos + 14);
+			entry.crc = u32(centralDirectory, pos + 16);
+			entry.compressedSize = u32(centralDirectory, pos + 20);
+			entry.size = u32(centralDirectory, pos + 24);
+			entry.internalAttributes = u16(centralDirectory, pos + 36);
+			entry.externalAttributes = u32(centralDirectory, pos + 38);
+			entry.localHeaderOffset = u32(centralDirectory, pos + 42);
+			entry.extra = bytes(centralDirectory, pos + CENTRAL_HEADER_SIZE + nameLength, extraLength);
+			entry.comment = bytes(centralDirectory, pos + CENTRAL_HEADER_SIZE + nameLength + extraLength, entryCommentLength);
+			readZip64Extra(entry);
+
+			entries.put(entry.name, entry);
+			pos += CENTRAL_HEADER_SIZE + nameLength + extraLength + entryCommentLength;
+		}
+
+		return new ZipRewriter(path, channel, entries, comment);
+	}
+
+	public Set<String> getEntryNames() {
+		return Collections.unmodifiableSet(entries.keySet());
+	}
+
+	public boolean contains(String name) {
+		return entries.containsKey(name);
+	}
+
+	/**
+	 * Entries may be read from multiple threads at once, as long as the rewriter is not modified at the same time.
+	 *
+	 * @return the uncompressed contents of the entry, including any staged changes
+	 */
+	public byte[] read(String name) throws IOException {
+		final Entry entry = entries.get(name);
+
+		if (entry == null) {
+			throw new NoSuchFileException(name);
+		}
+
+		return read(entry);
+	}
+
+	/**
+	 * Replace the contents of an entry, or add it to the end of the zip if it does not exist.
+	 */
+	public void put(String name, byte[] data) {
+		Entry entry = entries.get(name);
+
+		if (entry == null) {
+			entry = Entry.create(name);
+			entries.put(name, entry);
+		}
+
+		entry.data = data;
+		modified = true;
+	}
+
+	/**
+	 * @return true if the entry existed and was transformed
+	 */
+	public boolean transform(String name, ZipUtils.UnsafeUnaryOperator<byte[]> transformer) throws IOException {
+		final Entry entry = entries.get(name);
+
+		if (entry == null) {
+			return false;
+		}
+
+		entry.data = transformer.apply(read(entry));
+		modified = true;
+		return true;
+	}
+
+	/**
+	 * @return true if the entry existed and was removed
+	 */
+	public boolean remove(String name) {
+		if (entries.remove(name) == null) {
+			return false;
+		}
+
+		modified = true;
+		return true;
+	}
+
+	public boolean isModified() {
+		return modified;
+	}
+
+	/**
+	 * Write the changes to a temporary file, and then replace the zip with it. Does nothing when there are no changes.
+	 */
+	public void commit() throws IOException {
+		if (committed) {
+			throw new IllegalStateException("Zip rewriter has already been committed");
+		}
+
+		committed = true;
+
+		if (!modified) {
+			return;
+		}
+
+		final Path tempFile = path.resolveSibling(path.getFileName() + ".tmp");
+
+		try {
+			write(tempFile);
+		} catch (IOException | RuntimeException e) {
+			Files.deleteIfExists(tempFile);
+			throw e;
+		}
+
+		channel.close();
+
+		try {
+			Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			Files.deleteIfExists(tempFile);
+			throw e;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	private void write(Path output) throws IOException {
+		final List<Entry> ordered = new ArrayList<>(entries.values());
+
+		try (FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			final ByteArrayOutputStream centralDirectory = new ByteArrayOutputStream();
+
+			// Entries that need compressing are compressed in parallel, a bounded number of entries ahead of the writer.
+			// On one of the CPU executor's workers they are compressed on this thread rather than blocking it on the pool.
+			final ForkJoinPool pool = LoomExecutors.cpu();
+			final Executor executor = ForkJoinTask.getPool() == pool ? Runnable::run : pool;
+			final int window = pool.getParallelism() * 2;
+			final Map<Entry, CompletableFuture<CompressedData>> compressed = new HashMap<>();
+			int submitted = 0;
+
+			for (int i = 0; i < ordered.size(); i++) {
+				for (; submitted < ordered.size() && submitted <= i + window; submitted++) {
+					final Entry next = ordered.get(submitted);
+
+					if (next.data != null) {
+						compressed.put(next, CompletableFuture.supplyAsync(() -> compress(next), executor));
+					}
+				}
+
+				final Entry entry = ordered.get(i);
+				final CompletableFuture<CompressedData> future = compressed.remove(entry);
+				writeEntry(out, entry, future != null ? join(future) : null);
+				centralDirectory.write(centralHeader(entry));
+			}
+
+			final long centralDirectoryOffset = out.position();
+			writeFully(out, ByteBuffer.wrap(centralDirectory.toByteArray()));
+			writeEndOfCentralDirectory(out, ordered.size(), centralDirectory.size(), centralDirectoryOffset);
+		}
+	}
+
+	private CompressedData compress(Entry entry) {
+		final int targetMethod = entry.method == ZipEntry.STORED ? ZipEntry.STORED : ZipEntry.DEFLATED;
+		final byte[] data;
+
+		try {
+			data = read(entry);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		final CRC32 crc = new CRC32();
+		crc.update(data);
+
+		return new CompressedData(targetMethod, crc.getValue(), data.length, targetMethod == ZipEntry.STORED ? data : ParallelJarWriter.deflate(data));
+	}
+
+	private static CompressedData join(CompletableFuture<CompressedData> future) throws IOException {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof UncheckedIOException uncheckedIOException) {
+				throw uncheckedIOException.getCause();
+			}
+
+			throw e.getCause() instanceof RuntimeException runtimeException ? runtimeException : e;
+		}
+	}
+
+	private void writeEntry(FileChannel out, Entry entry, @Nullable CompressedData compressed) throws IOException {
+		final long dataOffset;
+		byte[] localExtra;
+		byte @Nullable [] payload = null;
+
+		if (compressed == null) {
+			// Copy the compressed bytes as is, dropping the data descriptor as the sizes are written up front
+			final ByteBuffer localHeader = readFully(channel, entry.localHeaderOffset, LOCAL_HEADER_SIZE);
+
+			if (localHeader.getInt(0) != LOCAL_HEADER) {
+				throw new ZipException("Invalid local header for %s in %s".formatted(entry.name, path));
+			}
+
+			final int nameLength = u16(localHeader, 26);
+			final int extraLength = u16(localHeader, 28);
+			final long extraOffset = entry.localHeaderOffset + LOCAL_HEADER_SIZE + nameLength;
+			localExtra = bytes(readFully(channel, extraOffset, extraLength), 0, extraLength);
+			dataOffset = extraOffset + extraLength;
+			entry.flags &= ~FLAG_DATA_DESCRIPTOR;
+		} else {
+			payload = compressed.payload();
+			dataOffset = -1;
+			localExtra = entry.extra;
+			entry.method = compressed.method();
+			entry.flags &= FLAG_UTF8;
+			entry.crc = compressed.crc();
+			entry.size = compressed.size();
+			entry.compressedSize = payload.length;
+		}
+
+		localExtra = stripExtra(localExtra);
+		entry.extra = stripExtra(entry.extra);
+
+		final long localHeaderOffset = out.position();
+		final boolean zip64 = entry.size >= ZIP64_MAGIC || entry.compressedSize >= ZIP64_MAGIC;
+		final byte[] zip64Extra = zip64 ? zip64Extra(entry.size, entry.compressedSize) : new byte[0];
+
+		entry.versionNeeded = Math.max(entry.versionNeeded, zip64 ? 45 : entry.method == ZipEntry.DEFLATED ? 20 : 10);
+
+		final ByteBuffer header = ByteBuffer.allocate(LOCAL_HEADER_SIZE + entry.nameBytes.length + zip64Extra.length + localExtra.length)
+				.order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(LOCAL_HEADER);
+		header.putShort((short) entry.versionNeeded);
+		header.putShort((short) entry.flags);
+		header.putShort((short) entry.method);
+		header.putShort((short) entry.dosTime);
+		header.putShort((short) entry.dosDate);
+		header.putInt((int) entry.crc);
+		header.putInt((int) (zip64 ? ZIP64_MAGIC : entry.compressedSize));
+		header.putInt((int) (zip64 ? ZIP64_MAGIC : entry.size));
+		header.putShort((short) entry.nameBytes.length);
+		header.putShort((short) (zip64Extra.length + localExtra.length));
+		header.put(entry.nameBytes);
+		header.put(zip64Extra);
+		header.put(localExtra);
+		writeFully(out, header.flip());
+
+		if (payload != null) {
+			writeFully(out, ByteBuffer.wrap(payload));
+		} else {
+			transferFully(channel, dataOffset, entry.compressedSize, out);
+		}
+
+		entry.localHeaderOffset = localHeaderOffset;
+		entry.data = null;
+		entry.written = true;
+	}
+
+	private byte[] centralHeader(Entry entry) {
+		final boolean sizeOverflow = entry.size >= ZIP64_MAGIC;
+		final boolean compressedSizeOverflow = entry.compressedSize >= ZIP64_MAGIC;
+		final boolean offsetOverflow = entry.localHeaderOffset >= ZIP64_MAGIC;
+
+		final int zip64Length = (sizeOverflow ? 8 : 0) + (compressedSizeOverflow ? 8 : 0) + (offsetOverflow ? 8 : 0);
+		final ByteBuffer extra = ByteBuffer.allocate(zip64Length > 0 ? zip64Length + 4 : 0).order(ByteOrder.LITTLE_ENDIAN);
+
+		if (zip64Length > 0) {
+			extra.putShort((short) ZIP64_EXTRA);
+			extra.putShort((short) zip64Length);
+			if (sizeOverflow) extra.putLong(entry.size);
+			if (compressedSizeOverflow) extra.putLong(entry.compressedSize);
+			if (offsetOverflow) extra.putLong(entry.localHeaderOffset);
+		}
+
+		final int extraLength = extra.capacity() + entry.extra.length;
+		final ByteBuffer header = ByteBuffer.allocate(CENTRAL_HEADER_SIZE + entry.nameBytes.length + extraLength + entry.comment.length)
+				.order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(CENTRAL_HEADER);
+		header.putShort((short) entry.versionMadeBy);
+		header.putShort((short) (zip64Length > 0 ? Math.max(entry.versionNeeded, 45) : entry.versionNeeded));
+		header.putShort((short) entry.flags);
+		header.putShort((short) entry.method);
+		header.putShort((short) entry.dosTime);
+		header.putShort((short) entry.dosDate);
+		header.putInt((int) entry.crc);
+		header.putInt((int) (compressedSizeOverflow ? ZIP64_MAGIC : entry.compressedSize));
+		header.putInt((int) (sizeOverflow ? ZIP64_MAGIC : entry.size));
+		header.putShort((short) entry.nameBytes.length);
+		header.putShort((short) extraLength);
+		header.putShort((short) entry.comment.length);
+		header.putShort((short) 0);
+		header.putShort((short) entry.internalAttributes);
+		header.putInt((int) entry.externalAttributes);
+		header.putInt((int) (offsetOverflow ? ZIP64_MAGIC : entry.localHeaderOffset));
+		header.put(entry.nameBytes);
+		header.put(extra.array());
+		header.put(entry.extra);
+		header.put(entry.comment);
+		return header.array();
+	}
+
+	private void writeEndOfCentralDirectory(FileChannel out, long entryCount, long centralDirectorySize, long centralDirectoryOffset) throws IOException {
+		final boolean zip64 = entryCount >= ZIP64_MAGIC_COUNT || centralDirectorySize >= ZIP64_MAGIC || centralDirectoryOffset >= ZIP64_MAGIC;
+
+		if (zip64) {
+			final long zip64Offset = out.position();
+			final ByteBuffer record = ByteBuffer.allocate(ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE + ZIP64_LOCATOR_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			record.putInt(ZIP64_END_OF_CENTRAL_DIRECTORY);
+			record.putLong(ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE - 12);
+			record.putShort((short) 45);
+			record.putShort((short) 45);
+			record.putInt(0);
+			record.putInt(0);
+			record.putLong(entryCount);
+			record.putLong(entryCount);
+			record.putLong(centralDirectorySize);
+			record.putLong(centralDirectoryOffset);
+
+			record.putInt(ZIP64_LOCATOR);
+			record.putInt(0);
+			record.putLong(zip64Offset);
+			record.putInt(1);
+			writeFully(out, record.flip());
+		}
+
+		final ByteBuffer record = ByteBuffer.allocate(END_OF_CENTRAL_DIRECTORY_SIZE + comment.length).order(ByteOrder.LITTLE_ENDIAN);
+		record.putInt(END_OF_CENTRAL_DIRECTORY);
+		record.putShort((short) 0);
+		record.putShort((short) 0);
+		record.putShort((short) Math.min(entryCount, ZIP64_MAGIC_COUNT));
+		record.putShort((short) Math.min(entryCount, ZIP64_MAGIC_COUNT));
+		record.putInt((int) Math.min(centralDirectorySize, ZIP64_MAGIC));
+		record.putInt((int) Math.min(centralDirectoryOffset, ZIP64_MAGIC));
+		record.putShort((short) comment.length);
+		record.put(comment);
+		writeFully(out, record.flip());
+	}
+
+	private byte[] read(Entry entry) throws IOException {
+		if (entry.data != null) {
+			return entry.data;
+		}
+
+		if (entry.written) {
+			throw new IllegalStateException("Entry has already been written: " + entry.name);
+		}
+
+		final ByteBuffer localHeader = readFully(channel, entry.localHeaderOffset, LOCAL_HEADER_SIZE);
+
+		if (localHeader.getInt(0) != LOCAL_HEADER) {
+			throw new ZipException("Invalid local header for %s in %s".formatted(entry.name, path));
+		}
+
+		final long dataOffset = entry.localHeaderOffset + LOCAL_HEADER_SIZE + u16(localHeader, 26) + u16(localHeader, 28);
+		final int compressedSize = Math.toIntExact(entry.compressedSize);
+
+		return switch (entry.method) {
+		case ZipEntry.STORED -> bytes(readFully(channel, dataOffset, compressedSize), 0, compressedSize);
+		case ZipEntry.DEFLATED -> inflate(readFully(channel, dataOffset, compressedSize), Math.toIntExact(entry.size));
+		default -> throw new ZipException("Unsupported compression method %d for %s in %s".formatted(entry.method, entry.name, path));
+		};
+	}
+
+	private static byte[] inflate(ByteBuffer compressed, int size) throws ZipException {
+		final Inflater inflater = new Inflater(true);
+
+		try {
+			inflater.setInput(compressed);
+			final byte[] data = new byte[size];
+			boolean padded = false;
+			int read = 0;
+
+			while (read < size) {
+				final int count = inflater.inflate(data, read, size - read);
+
+				if (count == 0) {
+					if (inflater.needsInput() && !padded) {
+						// Raw inflate may need an extra dummy byte to complete, see Inflater(boolean)
+						inflater.setInput(new byte[1]);
+						padded = true;
+						continue;
+					}
+
+					break;
+				}
+
+				read += count;
+			}
+
+			if (read != size) {
+				throw new ZipException("Unexpected end of compressed data");
+			}
+
+			return data;
+		} catch (DataFormatException e) {
+			throw new ZipException("Invalid compressed data: " + e.getMessage());
+		} finally {
+			inflater.end();
+		}
+	}
+
+	private static void readZip64Extra(Entry entry) throws ZipException {
+		if (entry.size != ZIP64_MAGIC && entry.compressedSize != ZIP64_MAGIC && entry.localHeaderOffset != ZIP64_MAGIC) {
+			return;
+		}
+
+		final ByteBuffer extra = ByteBuffer.wrap(entry.extra).order(ByteOrder.LITTLE_ENDIAN);
+
+		while (extra.remaining() >= 4) {
+			final int id = extra.getShort() & 0xFFFF;
+			final int length = extra.getShort() & 0xFFFF;
+
+			if (id != ZIP64_EXTRA) {
+				extra.position(Math.min(extra.limit(), extra.position() + length));
+				continue;
+			}
+
+			if (entry.size == ZIP64_MAGIC) entry.size = extra.getLong();
+			if (entry.compressedSize == ZIP64_MAGIC) entry.compressedSize = extra.getLong();
+			if (entry.localHeaderOffset == ZIP64_MAGIC) entry.localHeaderOffset = extra.getLong();
+			return;
+		}
+
+		throw new ZipException("Missing zip64 extra field for " + entry.name);
+	}
+
+	private static byte[] zip64Extra(long size, long compressedSize) {
+		final ByteBuffer extra = ByteBuffer.allocate(20).order(ByteOrder.LITTLE_ENDIAN);
+		extra.putShort((short) ZIP64_EXTRA);
+		extra.putShort((short) 16);
+		extra.putLong(size);
+		extra.putLong(compressedSize);
+		return extra.array();
+	}
+
+	/**
+	 * Remove the zip64 extra field, which is written again as needed.
+	 */
+	private static byte[] stripExtra(byte[] extra) {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream(extra.length);
+		int pos = 0;
+
+		while (pos + 4 <= extra.length) {
+			final int id = (extra[pos] & 0xFF) | (extra[pos + 1] & 0xFF) << 8;
+			final int length = (extra[pos + 2] & 0xFF) | (extra[pos + 3] & 0xFF) << 8;
+			final int end = Math.min(extra.length, pos + 4 + length);
+
+			if (id != ZIP64_EXTRA) {
+				out.write(extra, pos, end - pos);
+			}
+
+			pos = end;
+		}
+
+		return out.toByteArray();
+	}
+
+	private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new EOFException();
+			}
+		}
+
+		return buffer.flip();
+	}
+
+	private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			out.write(buffer);
+		}
+	}
+
+	private static void transferFully(FileChannel in, long position, long count, FileChannel out) throws IOException {
+		long transferred = 0;
+
+		while (transferred < count) {
+			final long written = in.transferTo(position + transferred, count - transferred, out);
+
+			if (written <= 0) {
+				throw new EOFException();
+			}
+
+			transferred += written;
+		}
+	}
+
+	private static int u16(ByteBuffer buffer, int index) {
+		return buffer.getShort(index) & 0xFFFF;
+	}
+
+	private static long u32(ByteBuffer buffer, int index) {
+		return buffer.getInt(index) & 0xFFFFFFFFL;
+	}
+
+	private static byte[] bytes(ByteBuffer buffer, int index, int length) {
+		final byte[] bytes = new byte[length];
+		buffer.get(index, bytes);
+		return bytes;
+	}
+
+	private record CompressedData(int method, long crc, long size, byte[] payload) {
+	}
+
+	private static final class Entry {
+		final String name;
+		final byte[] nameBytes;
+		int versionMadeBy;
+		int versionNeeded;
+		int flags;
+		int method;
+		int dosTime;
+		int dosDate;
+		long crc;
+		long compressedSize;
+		long size;
+		int internalAttributes;
+		long externalAttributes;
+		long localHeaderOffset;
+		byte[] extra = new byte[0];
+		byte[] comment = new byte[0];
+		// The new uncompressed contents of the entry, or null when unchanged
+		byte @Nullable [] data;
+		boolean written;
+
+		private Entry(String name, byte[] nameBytes) {
+			this.name = name;
+			this.nameBytes = nameBytes;
+		}
+
+		static Entry create(String name) {
+			final byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+			final Entry entry = new Entry(name, nameBytes);
+			entry.versionMadeBy = 20;
+			entry.versionNeeded = 20;
+			entry.flags = nameBytes.length != name.length() ? FLAG_UTF8 : 0;
+			entry.method = name.endsWith("/") ? ZipEntry.STORED : ZipEntry.DEFLATED;
+
+			final LocalDateTime now = LocalDateTime.now();
+			entry.dosTime = now.getHour() << 11 | now.getMinute() << 5 | now.getSecond() / 2;
+			entry.dosDate = (now.getYear() - 1980) << 9 | now.getMonthValue() << 5 | now.getDayOfMonth();
+
+			return entry;
+		}
+	}
+}
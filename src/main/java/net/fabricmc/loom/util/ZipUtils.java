@@ -184,6 +184,14 @@ public class ZipUtils {
 		}
 	}
 
+	public static void replace(ZipRewriter zip, String path, byte[] bytes) throws IOException {
+		if (!zip.contains(path)) {
+			throw new NoSuchFileException(path);
+		}
+
+		zip.put(path, bytes);
+	}
+
 	public static void deleteIfExists(Path zip, String path) throws IOException {
 		try (FileSystemUtil.Delegate fs = FileSystemUtil.getJarFileSystem(zip, false)) {
 			Files.deleteIfExists(fs.getPath(path));
@@ -202,6 +210,10 @@ public class ZipUtils {
 		return transformMapped(zip, transforms, bytes -> new String(bytes, StandardCharsets.UTF_8), s -> s.getBytes(StandardCharsets.UTF_8));
 	}
 
+	public static int transformString(ZipRewriter zip, Map<String, UnsafeUnaryOperator<String>> transforms) throws IOException {
+		return transformMapped(zip, transforms, bytes -> new String(bytes, StandardCharsets.UTF_8), s -> s.getBytes(StandardCharsets.UTF_8));
+	}
+
 	public static <T> int transformJson(Class<T> typeOfT, Path zip, Collection<Pair<String, UnsafeUnaryOperator<T>>> transforms) throws IOException {
 		return transformJson(typeOfT, zip, transforms.stream());
 	}
@@ -215,6 +227,11 @@ public class ZipUtils {
 				s -> LoomGradlePlugin.GSON.toJson(s, typeOfT).getBytes(StandardCharsets.UTF_8));
 	}
 
+	public static <T> int transformJson(Class<T> typeOfT, ZipRewriter zip, Map<String, UnsafeUnaryOperator<T>> transforms) throws IOException {
+		return transformMapped(zip, transforms, bytes -> LoomGradlePlugin.GSON.fromJson(new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8), typeOfT),
+				s -> LoomGradlePlugin.GSON.toJson(s, typeOfT).getBytes(StandardCharsets.UTF_8));
+	}
+
 	public static <T> void transformJson(Class<T> typeOfT, Path zip, String path, UnsafeUnaryOperator<T> transformer) throws IOException {
 		int transformed = transformJson(typeOfT, zip, Map.of(path, transformer));
 
@@ -245,6 +262,20 @@ public class ZipUtils {
 		return transform(zip, newTransforms);
 	}
 
+	public static <T> int transformMapped(ZipRewriter zip, Map<String, UnsafeUnaryOperator<T>> transforms, Function<byte[], T> deserializer, Function<T, byte[]> serializer) throws IOException {
+		Map<String, UnsafeUnaryOperator<byte[]>> newTransforms = new HashMap<>();
+
+		for (Map.Entry<String, UnsafeUnaryOperator<T>> entry : transforms.entrySet()) {
+			if (entry.getValue() != null) {
+				newTransforms.put(entry.getKey(), bytes -> {
+					return serializer.apply(entry.getValue().apply(deserializer.apply(bytes)));
+				});
+			}
+		}
+
+		return transform(zip, newTransforms);
+	}
+
 	public static int transform(Path zip, Map<String, UnsafeUnaryOperator<byte[]>> transforms) throws IOException {
 		int replacedCount = 0;
 
@@ -262,6 +293,21 @@ public class ZipUtils {
 		return replacedCount;
 	}
 
+	/**
+	 * Stage the transforms on an open {@link ZipRewriter}, allowing several kinds of transform to share a single rewrite of the zip.
+	 */
+	public static int transform(ZipRewriter zip, Map<String, UnsafeUnaryOperator<byte[]>> transforms) throws IOException {
+		int replacedCount = 0;
+
+		for (Map.Entry<String, UnsafeUnaryOperator<byte[]>> entry : transforms.entrySet()) {
+			if (entry.getValue() != null && zip.transform(entry.getKey(), entry.getValue())) {
+				replacedCount++;
+			}
+		}
+
+		return replacedCount;
+	}
+
 	@FunctionalInterface
 	public interface UnsafeUnaryOperator<T> {
 		T apply(T arg) throws IOException;
@@ -0,0 +1,401 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.util.download;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.fabricmc.loom.util.AttributeHelper;
+import net.fabricmc.loom.util.Checksum;
+
+/**
+ * Downloads a large number of small, content addressed files (such as the game assets).
+ *
+ * <p>All requests are sent asynchronously through the shared {@link HttpClient}, which multiplexes them over a single
+ * HTTP/2 connection per host. The number of requests in flight is bounded, files with the same hash are only downloaded
+ * once, and interrupted downloads are resumed from their partial file using a range request.
+ */
+@SuppressWarnings("UnusedReturnValue")
+public final class BulkDownloader {
+	private static final Logger LOGGER = LoggerFactory.getLogger(BulkDownloader.class);
+	private static final String HASH_ATTRIBUTE = "LoomHash";
+
+	// sha1 -> files with that hash
+	private final Map<String, Request> requests = new LinkedHashMap<>();
+	private boolean offline = false;
+	private boolean forceDownload = false;
+	private @Nullable Path objectStore = null;
+	private int maxConcurrentRequests = 32;
+	private int maxRetries = 3;
+
+	BulkDownloader() {
+	}
+
+	public BulkDownloader offline() {
+		offline = true;
+		return this;
+	}
+
+	public BulkDownloader forceDownload() {
+		forceDownload = true;
+		return this;
+	}
+
+	/**
+	 * Set a directory of files stored by hash ({@code xx/xxxxxxxx...}) that are copied from instead of being downloaded.
+	 */
+	public BulkDownloader objectStore(Path objectStore) {
+		this.objectStore = objectStore;
+		return this;
+	}
+
+	public BulkDownloader maxConcurrentRequests(int maxConcurrentRequests) {
+		if (maxConcurrentRequests < 1) {
+			throw new IllegalArgumentException("Max concurrent requests must be at least 1");
+		}
+
+		this.maxConcurrentRequests = maxConcurrentRequests;
+		return this;
+	}
+
+	public BulkDownloader maxRetries(int maxRetries) {
+		this.maxRetries = maxRetries;
+		return this;
+	}
+
+	public BulkDownloader add(String url, String sha1, Path output) throws URISyntaxException {
+		final URI uri = new URI(url);
+
+		if (!DownloadBuilder.isSecureUrl(uri)) {
+			throw new IllegalArgumentException("Cannot create download for url (%s) with insecure protocol".formatted(url));
+		}
+
+		requests.computeIfAbsent(sha1.toLowerCase(), hash -> new Request(uri, hash, new ArrayList<>())).outputs().add(output);
+		return this;
+	}
+
+	/**
+	 * Download all of the added files, blocking until they have all completed.
+	 *
+	 * @param listener called each time a file has completed, may be called from any thread
+	 * @return the final progress
+	 * @throws DownloadException when any of the files failed to download, each failure is added as a suppressed exception
+	 */
+	public Progress download(Consumer<Progress> listener) throws DownloadException {
+		final ProgressTracker tracker = new ProgressTracker(requests.size(), listener);
+		final List<Request> pending = new ArrayList<>();
+
+		for (Request request : requests.values()) {
+			if (!forceDownload && copyExisting(request)) {
+				tracker.complete(false, 0);
+				continue;
+			}
+
+			if (offline) {
+				throw new DownloadException("Unable to download %s in offline mode".formatted(request.url()));
+			}
+
+			pending.add(request);
+		}
+
+		final Semaphore permits = new Semaphore(maxConcurrentRequests);
+		final List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+		final List<CompletableFuture<Long>> futures = new ArrayList<>(pending.size());
+
+		for (Request request : pending) {
+			if (!failures.isEmpty()) {
+				// Don't start any more downloads once one has failed
+				break;
+			}
+
+			try {
+				permits.acquire();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new DownloadException("Interrupted while downloading", e);
+			}
+
+			futures.add(download(request, 0).whenComplete((bytes, throwable) -> {
+				permits.release();
+
+				if (throwable != null) {
+					failures.add(unwrap(throwable));
+				} else {
+					tracker.complete(true, bytes);
+				}
+			}));
+		}
+
+		try {
+			CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).exceptionally(throwable -> null).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DownloadException("Interrupted while downloading", e);
+		} catch (ExecutionException e) {
+			throw new DownloadException(e.getCause());
+		}
+
+		if (!failures.isEmpty()) {
+			final DownloadException exception = new DownloadException("Failed to download %d file(s)".formatted(failures.size()));
+			failures.forEach(exception::addSuppressed);
+			throw exception;
+		}
+
+		return tracker.current();
+	}
+
+	/**
+	 * @return true when every output is now valid without needing to download anything
+	 */
+	private boolean copyExisting(Request request) {
+		Path source = null;
+		final List<Path> missing = new ArrayList<>();
+
+		for (Path output : request.outputs()) {
+			if (isValid(output, request.sha1())) {
+				source = output;
+			} else {
+				missing.add(output);
+			}
+		}
+
+		if (missing.isEmpty()) {
+			return true;
+		}
+
+		if (source == null && objectStore != null) {
+			final Path stored = objectStore.resolve(request.sha1().substring(0, 2)).resolve(request.sha1());
+
+			if (isValid(stored, request.sha1())) {
+				source = stored;
+			}
+		}
+
+		if (source == null) {
+			return false;
+		}
+
+		try {
+			for (Path output : missing) {
+				copy(source, output, request.sha1());
+			}
+		} catch (IOException e) {
+			LOGGER.warn("Failed to copy existing file {}", source, e);
+			return false;
+		}
+
+		return true;
+	}
+
+	private CompletableFuture<Long> download(Request request, int attempt) {
+		final Path partFile = request.partFile();
+		final HttpRequest.Builder builder = HttpRequest.newBuilder(request.url())
+				.timeout(Download.TIMEOUT)
+				// Fall back to HTTP/1.1 for the last attempt, in case the server has a broken HTTP/2 implementation
+				.version(attempt > 0 && attempt == maxRetries ? HttpClient.Version.HTTP_1_1 : HttpClient.Version.HTTP_2)
+				.GET();
+
+		try {
+			Files.createDirectories(partFile.getParent());
+
+			if (Files.exists(partFile) && Files.size(partFile) > 0) {
+				builder.header("Range", "bytes=%d-".formatted(Files.size(partFile)));
+			}
+		} catch (IOException e) {
+			return CompletableFuture.failedFuture(new DownloadException("Failed to prepare download of (%s)".formatted(request.url()), e));
+		}
+
+		return Download.HTTP_CLIENT.sendAsync(builder.build(), responseInfo -> bodySubscriber(responseInfo, partFile))
+				.thenApply(response -> {
+					try {
+						return complete(request, response.statusCode());
+					} catch (IOException e) {
+						throw new CompletionException(e);
+					}
+				})
+				.exceptionallyCompose(throwable -> {
+					final Throwable cause = unwrap(throwable);
+
+					if (attempt >= maxRetries || (cause instanceof DownloadException e && e.getStatusCode() == 404)) {
+						return CompletableFuture.failedFuture(new DownloadException("Failed to download (%s)".formatted(request.url()), cause));
+					}
+
+					LOGGER.debug("Retrying download of {} after failure", request.url(), cause);
+					return download(request, attempt + 1);
+				});
+	}
+
+	private static HttpResponse.BodySubscriber<Void> bodySubscriber(HttpResponse.ResponseInfo responseInfo, Path partFile) {
+		return switch (responseInfo.statusCode()) {
+		case 200 -> HttpResponse.BodySubscribers.mapping(
+				HttpResponse.BodySubscribers.ofFile(partFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING),
+				path -> null);
+		case 206 -> HttpResponse.BodySubscribers.mapping(
+				HttpResponse.BodySubscribers.ofFile(partFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND),
+				path -> null);
+		default -> HttpResponse.BodySubscribers.discarding();
+		};
+	}
+
+	private long complete(Request request, int statusCode) throws IOException {
+		final Path partFile = request.partFile();
+
+		// 416 is returned when the range starts at the end of the file, the partial file may already be complete.
+		if (statusCode != 200 && statusCode != 206 && statusCode != 416) {
+			throw new DownloadException("HTTP request to (%s) returned unsuccessful status (%d)".formatted(request.url(), statusCode), statusCode);
+		}
+
+		final String hash = Files.exists(partFile) ? Checksum.sha1Hex(partFile) : "";
+
+		if (!request.sha1().equalsIgnoreCase(hash)) {
+			Files.deleteIfExists(partFile);
+			throw new DownloadException("Failed to download (%s) with expected hash: %s got %s".formatted(request.url(), request.sha1(), hash));
+		}
+
+		final Path output = request.outputs().get(0);
+		Files.move(partFile, output, StandardCopyOption.REPLACE_EXISTING);
+		writeHash(output, request.sha1());
+
+		for (Path other : request.outputs().subList(1, request.outputs().size())) {
+			copy(output, other, request.sha1());
+		}
+
+		return Files.size(output);
+	}
+
+	private static boolean isValid(Path path, String sha1) {
+		if (!Files.exists(path)) {
+			return false;
+		}
+
+		try {
+			final String expected = "sha1:" + sha1;
+
+			if (expected.equalsIgnoreCase(AttributeHelper.readAttribute(path, HASH_ATTRIBUTE).orElse(""))) {
+				return true;
+			}
+
+			if (sha1.equalsIgnoreCase(Checksum.sha1Hex(path))) {
+				// Store the hash so that the file does not need to be hashed again next time
+				writeHash(path, sha1);
+				return true;
+			}
+		} catch (IOException e) {
+			LOGGER.debug("Failed to validate {}", path, e);
+		}
+
+		return false;
+	}
+
+	private static void copy(Path source, Path output, String sha1) throws IOException {
+		Files.createDirectories(output.getParent());
+		Files.copy(source, output, StandardCopyOption.REPLACE_EXISTING);
+		writeHash(output, sha1);
+	}
+
+	private static void writeHash(Path path, String sha1) throws IOException {
+		AttributeHelper.writeAttribute(path, HASH_ATTRIBUTE, "sha1:" + sha1);
+	}
+
+	private static Throwable unwrap(Throwable throwable) {
+		while ((throwable instanceof CompletionException || throwable instanceof ExecutionException || throwable instanceof UncheckedIOException) && throwable.getCause() != null) {
+			throwable = throwable.getCause();
+		}
+
+		return throwable;
+	}
+
+	private record Request(URI url, String sha1, List<Path> outputs) {
+		Path partFile() {
+			final Path output = outputs.get(0);
+			return output.resolveSibling(output.getFileName() + ".part");
+		}
+	}
+
+	public record Progress(int completed, int downloaded, int total, long bytes, Duration elapsed) {
+		public long bytesPerSecond() {
+			final long millis = Math.max(1, elapsed.toMillis());
+			return bytes * 1000 / millis;
+		}
+
+		@Override
+		public String toString() {
+			return "%d / %d files (%d downloaded, %s at %s/s)".formatted(completed, total, downloaded, GradleDownloadProgressListener.humanBytes(bytes), GradleDownloadProgressListener.humanBytes(bytesPerSecond()));
+		}
+	}
+
+	private static final class ProgressTracker {
+		private final int total;
+		private final Consumer<Progress> listener;
+		private final long start = System.nanoTime();
+		private int completed = 0;
+		private int downloaded = 0;
+		private long bytes = 0;
+
+		private ProgressTracker(int total, Consumer<Progress> listener) {
+			this.total = total;
+			this.listener = listener;
+		}
+
+		synchronized void complete(boolean wasDownloaded, long size) {
+			completed++;
+
+			if (wasDownloaded) {
+				downloaded++;
+				bytes += size;
+			}
+
+			listener.accept(current());
+		}
+
+		synchronized Progress current() {
+			return new Progress(completed, downloaded, total, bytes, Duration.ofNanos(System.nanoTime() - start));
+		}
+	}
+}
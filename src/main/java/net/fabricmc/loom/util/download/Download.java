@@ -61,8 +61,8 @@ import net.fabricmc.loom.util.Checksum;
 public final class Download {
 	private static final String E_TAG = "ETag";
 	private static final Logger LOGGER = LoggerFactory.getLogger(Download.class);
-	private static final Duration TIMEOUT = Duration.ofMinutes(1);
-	private static final HttpClient HTTP_CLIENT = HttpClient.newBuilder()
+	static final Duration TIMEOUT = Duration.ofMinutes(1);
+	static final HttpClient HTTP_CLIENT = HttpClient.newBuilder()
 			.followRedirects(HttpClient.Redirect.ALWAYS)
 			.proxy(ProxySelector.getDefault())
 			.connectTimeout(TIMEOUT)
@@ -72,6 +72,10 @@ public final class Download {
 		return DownloadBuilder.create(url);
 	}
 
+	public static BulkDownloader createBulk() {
+		return new BulkDownloader();
+	}
+
 	private final URI url;
 	private final String expectedHash;
 	private final boolean useEtag;
@@ -173,7 +173,7 @@ public class DownloadBuilder {
 	}
 
 	// See comment on org.gradle.util.internal.GUtil.isSecureUrl
-	private static boolean isSecureUrl(URI url) {
+	static boolean isSecureUrl(URI url) {
 		if ("127.0.0.1".equals(url.getHost())) {
 			return true;
 		}
@@ -28,16 +28,31 @@ import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.function.IntConsumer;
+
+import net.fabricmc.loom.util.LoomExecutors;
 
 public class DownloadExecutor implements AutoCloseable {
-	private final ExecutorService executorService;
+	private final Executor executor;
+	private final List<CompletableFuture<Void>> futures = Collections.synchronizedList(new ArrayList<>());
 	private final List<DownloadException> downloadExceptions = Collections.synchronizedList(new ArrayList<>());
+	private final IntConsumer completionListener;
+	private int completed = 0;
 
 	public DownloadExecutor(int threads) {
-		executorService = Executors.newFixedThreadPool(threads);
+		this(threads, completed -> { });
+	}
+
+	/**
+	 * @param completionListener called with the number of completed downloads each time one has completed,
+	 *                           may be called from any thread but never concurrently
+	 */
+	public DownloadExecutor(int threads, IntConsumer completionListener) {
+		executor = LoomExecutors.bounded(LoomExecutors.io(), threads);
+		this.completionListener = completionListener;
 	}
 
 	void runAsync(DownloadRunner downloadRunner) {
@@ -45,24 +60,38 @@ public class DownloadExecutor implements AutoCloseable {
 			return;
 		}
 
-		executorService.execute(() -> {
+		futures.add(CompletableFuture.runAsync(() -> {
+			// Skip any queued downloads once one has failed
+			if (!downloadExceptions.isEmpty()) {
+				return;
+			}
+
 			try {
 				downloadRunner.run();
 			} catch (DownloadException e) {
-				executorService.shutdownNow();
 				downloadExceptions.add(e);
 				throw new UncheckedIOException(e);
 			}
-		});
+
+			complete();
+		}, executor));
+	}
+
+	private synchronized void complete() {
+		completionListener.accept(++completed);
 	}
 
 	@Override
 	public void close() throws DownloadException {
-		executorService.shutdown();
+		final CompletableFuture<?>[] pending;
+
+		synchronized (futures) {
+			pending = futures.toArray(new CompletableFuture[0]);
+		}
 
 		try {
-			executorService.awaitTermination(1, TimeUnit.DAYS);
-		} catch (InterruptedException e) {
+			CompletableFuture.allOf(pending).handle((unused, throwable) -> null).get();
+		} catch (InterruptedException | ExecutionException e) {
 			throw new RuntimeException(e);
 		}
 
@@ -35,7 +35,7 @@ import org.gradle.api.tasks.Input;
 import net.fabricmc.loom.LoomGradleExtension;
 
 /**
- * Can be used to create a {@link DownloadBuilder} with the correct settings for the project within a task.
+ * Can be used to create a {@link DownloadBuilder} or {@link BulkDownloader} with the correct settings for the project within a task.
  */
 public abstract class DownloadFactory {
 	@Input
@@ -73,4 +73,18 @@ public abstract class DownloadFactory {
 
 		return builder;
 	}
+
+	public BulkDownloader bulkDownload() {
+		final BulkDownloader downloader = Download.createBulk();
+
+		if (getIsOffline().get()) {
+			downloader.offline();
+		}
+
+		if (getIsManualRefreshDependencies().get()) {
+			downloader.forceDownload();
+		}
+
+		return downloader;
+	}
 }
@@ -61,7 +61,7 @@ public class GradleDownloadProgressListener implements DownloadProgressListener
 		}
 	}
 
-	private static String humanBytes(long bytes) {
+	static String humanBytes(long bytes) {
 		if (bytes < 1024) {
 			return bytes + " B";
 		} else if (bytes < 1024 * 1024) {
@@ -0,0 +1,69 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.util.gradle;
+
+import javax.inject.Inject;
+
+import org.gradle.api.Action;
+import org.gradle.api.Project;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+import org.gradle.api.services.BuildServiceRegistry;
+import org.gradle.api.services.BuildServiceSpec;
+import org.gradle.build.event.BuildEventsListenerRegistry;
+import org.gradle.tooling.events.FinishEvent;
+import org.gradle.tooling.events.OperationCompletionListener;
+
+/**
+ * A build service that scopes static state to a single build, closing it once the build has finished.
+ *
+ * <p>The service is registered as a task completion listener, so that Gradle creates and closes it in every build
+ * that runs tasks. This includes builds that reuse the configuration cache, where the plugin is not applied and the
+ * service is not requested during configuration.
+ */
+public abstract class BuildScopedService<P extends BuildServiceParameters> implements BuildService<P>, OperationCompletionListener, AutoCloseable {
+	protected static <S extends BuildScopedService<P>, P extends BuildServiceParameters> Provider<S> register(Project project, String name, Class<S> type, Action<? super BuildServiceSpec<P>> configureAction) {
+		final BuildServiceRegistry sharedServices = project.getGradle().getSharedServices();
+		final boolean registered = sharedServices.getRegistrations().findByName(name) != null;
+		final Provider<S> provider = sharedServices.registerIfAbsent(name, type, configureAction);
+
+		if (!registered) {
+			project.getObjects().newInstance(ListenerRegistry.class).getListenerRegistry().onTaskCompletion(provider);
+		}
+
+		return provider;
+	}
+
+	@Override
+	public void onFinish(FinishEvent event) {
+		// Only a listener so that Gradle creates and closes the service
+	}
+
+	public abstract static class ListenerRegistry {
+		@Inject
+		protected abstract BuildEventsListenerRegistry getListenerRegistry();
+	}
+}
@@ -0,0 +1,68 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.util.gradle;
+
+import org.gradle.api.Project;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.services.BuildServiceParameters;
+
+import net.fabricmc.loom.util.LoomExecutors;
+
+/**
+ * Scopes the {@link LoomExecutors} to a single build, applying the build's parallelism budget and shutting the
+ * executors down once the build has finished.
+ */
+public abstract class LoomExecutorBuildService extends BuildScopedService<LoomExecutorBuildService.Params> {
+	public static final String NAME = "loomExecutors";
+
+	public interface Params extends BuildServiceParameters {
+		Property<Integer> getParallelism();
+	}
+
+	public static Provider<LoomExecutorBuildService> register(Project project) {
+		final int parallelism = Math.min(
+				project.getGradle().getStartParameter().getMaxWorkerCount(),
+				Runtime.getRuntime().availableProcessors()
+		);
+
+		// The executors can be created while configuring, before the service is
+		LoomExecutors.configure(parallelism);
+		return register(project, NAME, LoomExecutorBuildService.class, spec -> spec.getParameters().getParallelism().set(parallelism));
+	}
+
+	public LoomExecutorBuildService() {
+		LoomExecutors.configure(getParameters().getParallelism().get());
+	}
+
+	public LoomExecutors.Metrics getMetrics() {
+		return LoomExecutors.metrics();
+	}
+
+	@Override
+	public void close() {
+		LoomExecutors.shutdown();
+	}
+}
@@ -0,0 +1,61 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.util.gradle;
+
+import java.io.File;
+
+import org.gradle.api.Project;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.services.BuildServiceParameters;
+
+import net.fabricmc.loom.util.RemapClasspathIndex;
+
+/**
+ * Scopes the {@link RemapClasspathIndex} to a single build, so that every project and task in the build shares it.
+ * Unused skeleton jars are cleaned up once the build has finished.
+ */
+public abstract class RemapClasspathIndexBuildService extends BuildScopedService<RemapClasspathIndexBuildService.Params> {
+	public static final String NAME = "loomRemapClasspathIndex";
+
+	public interface Params extends BuildServiceParameters {
+		DirectoryProperty getCacheDirectory();
+	}
+
+	public static Provider<RemapClasspathIndexBuildService> register(Project project, File userCache) {
+		return register(project, NAME, RemapClasspathIndexBuildService.class, spec -> {
+			spec.getParameters().getCacheDirectory().set(new File(userCache, "remap_classpath_index"));
+		});
+	}
+
+	public RemapClasspathIndexBuildService() {
+		RemapClasspathIndex.configure(getParameters().getCacheDirectory().get().getAsFile().toPath());
+	}
+
+	@Override
+	public void close() {
+		RemapClasspathIndex.reset();
+	}
+}
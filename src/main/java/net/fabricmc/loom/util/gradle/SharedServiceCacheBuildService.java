@@ -0,0 +1,52 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.util.gradle;
+
+import org.gradle.api.Project;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.services.BuildServiceParameters;
+
+import net.fabricmc.loom.util.service.SharedServiceCache;
+
+/**
+ * Scopes the {@link SharedServiceCache} to a single build, so that every project and task in the build shares it.
+ * The hit rates are logged once the build has finished.
+ */
+public abstract class SharedServiceCacheBuildService extends BuildScopedService<BuildServiceParameters.None> {
+	public static final String NAME = "loomSharedServiceCache";
+
+	public static Provider<SharedServiceCacheBuildService> register(Project project) {
+		return register(project, NAME, SharedServiceCacheBuildService.class, spec -> { });
+	}
+
+	public SharedServiceCacheBuildService() {
+		SharedServiceCache.configure();
+	}
+
+	@Override
+	public void close() {
+		SharedServiceCache.reset();
+	}
+}
@@ -24,18 +24,23 @@
 
 package net.fabricmc.loom.util.ipc;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.net.UnixDomainSocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 
+import org.jetbrains.annotations.Nullable;
+
 import net.fabricmc.loom.util.IOStringConsumer;
 
 public final class IPCClient implements IOStringConsumer, AutoCloseable {
 	private final Path path;
 	private final SocketChannel socketChannel;
+	private BufferedReader reader;
 
 	public IPCClient(Path path) throws IOException {
 		this.path = path;
@@ -58,6 +63,20 @@ public final class IPCClient implements IOStringConsumer, AutoCloseable {
 		}
 	}
 
+	/**
+	 * Read a line sent back by the server.
+	 *
+	 * @return the line, or null when the server has closed the connection
+	 */
+	@Nullable
+	public String readLine() throws IOException {
+		if (reader == null) {
+			reader = new BufferedReader(Channels.newReader(socketChannel, StandardCharsets.UTF_8));
+		}
+
+		return reader.readLine();
+	}
+
 	@Override
 	public void close() throws Exception {
 		synchronized (socketChannel) {
@@ -36,13 +36,15 @@ import net.fabricmc.loom.util.gradle.GradleTypeAdapter;
 /**
  * An implementation of {@link ServiceFactory} that creates services scoped to the factory instance.
  * When the factory is closed, all services created by it are closed and discarded.
+ *
+ * <p>Services may be requested from multiple threads, each service is only created once.
  */
 public final class ScopedServiceFactory implements ServiceFactory, Closeable {
 	private final Map<Service.Options, Service<?>> servicesIdentityMap = new IdentityHashMap<>();
 	private final Map<String, Service<?>> servicesJsonMap = new HashMap<>();
 
 	@Override
-	public <O extends Service.Options, S extends Service<O>> S get(O options) {
+	public synchronized <O extends Service.Options, S extends Service<O>> S get(O options) {
 		// First check if the service is already created, using the identity map saving the need to serialize the options
 		//noinspection unchecked
 		S service = (S) servicesIdentityMap.get(options);
@@ -105,7 +107,7 @@ public final class ScopedServiceFactory implements ServiceFactory, Closeable {
 	}
 
 	@Override
-	public void close() throws IOException {
+	public synchronized void close() throws IOException {
 		for (Service<?> service : servicesIdentityMap.values()) {
 			if (service instanceof Closeable closeable) {
 				closeable.close();
@@ -0,0 +1,279 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.util.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.jetbrains.annotations.Nullable;
+
+import net.fabricmc.loom.util.Checksum;
+
+/**
+ * A cache of immutable, expensive to create values (such as mapping trees) shared between all of the services in a
+ * build, across every {@link ScopedServiceFactory}.
+ *
+ * <p>Values are keyed by a kind and a content key, usually built from {@link #fileKey(Path)} so that equivalent inputs
+ * share a value. Each {@link Handle} holds a reference, values are only held strongly while referenced. Once released
+ * they are kept softly so that the garbage collector can reclaim them, and are dropped early when the heap is nearly
+ * full.
+ *
+ * <p>The cache is scoped to a build by {@link net.fabricmc.loom.util.gradle.SharedServiceCacheBuildService}, when it
+ * has not been configured every value is created on request and not shared.
+ */
+public final class SharedServiceCache {
+	private static final Logger LOGGER = Logging.getLogger(SharedServiceCache.class);
+	private static final Object LOCK = new Object();
+	// Drop released values when less than this fraction of the max heap is free
+	private static final double MIN_FREE_HEAP = 0.2;
+
+	private static boolean enabled;
+	private static final Map<Key, Entry> ENTRIES = new HashMap<>();
+	private static final Map<String, Stats> STATS = new TreeMap<>();
+	// Path, size and last modified time -> content hash
+	private static final Map<FileKey, String> FILE_HASHES = new ConcurrentHashMap<>();
+
+	private SharedServiceCache() {
+	}
+
+	public static void configure() {
+		synchronized (LOCK) {
+			enabled = true;
+		}
+	}
+
+	/**
+	 * Disable the cache and drop every value, logging the hit rates.
+	 */
+	public static void reset() {
+		synchronized (LOCK) {
+			if (!STATS.isEmpty()) {
+				LOGGER.lifecycle("Loom shared service cache: {}", report());
+			}
+
+			enabled = false;
+			ENTRIES.clear();
+			STATS.clear();
+			FILE_HASHES.clear();
+		}
+	}
+
+	/**
+	 * @return a key for the content of the file, the hash is only computed again when the file changes
+	 */
+	public static String fileKey(Path path) throws IOException {
+		final FileKey key = new FileKey(path.toAbsolutePath(), Files.size(path), Files.getLastModifiedTime(path).toMillis());
+		final String hash = FILE_HASHES.get(key);
+
+		if (hash != null) {
+			return hash;
+		}
+
+		final String newHash = Checksum.toHex(Checksum.sha256(path.toFile()));
+		FILE_HASHES.put(key, newHash);
+		return newHash;
+	}
+
+	/**
+	 * Get or create a value, the returned handle must be closed once the value is no longer used.
+	 *
+	 * @param kind the kind of value, used for reporting
+	 * @param key a key for everything the value is created from
+	 * @param loader creates the value on a miss
+	 */
+	public static <T> Handle<T> acquire(String kind, String key, Supplier<T> loader) {
+		final @Nullable Entry entry;
+		final @Nullable Stats stats;
+
+		synchronized (LOCK) {
+			if (enabled) {
+				evictIfLowOnMemory();
+				entry = ENTRIES.computeIfAbsent(new Key(kind, key), k -> new Entry());
+				entry.references++;
+				stats = STATS.computeIfAbsent(kind, k -> new Stats());
+			} else {
+				entry = null;
+				stats = null;
+			}
+		}
+
+		if (entry == null) {
+			// Not shared, so the value is created outside of the lock
+			return new Handle<>(null, loader.get());
+		}
+
+		try {
+			//noinspection unchecked
+			return new Handle<>(entry, (T) entry.getOrLoad(loader, stats));
+		} catch (RuntimeException e) {
+			release(entry);
+			throw e;
+		}
+	}
+
+	public static String report() {
+		synchronized (LOCK) {
+			final StringJoiner joiner = new StringJoiner(", ");
+			STATS.forEach((kind, stats) -> joiner.add(kind + " " + stats));
+			return joiner.toString();
+		}
+	}
+
+	private static void release(Entry entry) {
+		synchronized (LOCK) {
+			if (--entry.references == 0) {
+				entry.soften();
+			}
+		}
+	}
+
+	private static void evictIfLowOnMemory() {
+		final Runtime runtime = Runtime.getRuntime();
+		final long free = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+		final boolean lowOnMemory = free < runtime.maxMemory() * MIN_FREE_HEAP;
+
+		for (Iterator<Map.Entry<Key, Entry>> iterator = ENTRIES.entrySet().iterator(); iterator.hasNext(); ) {
+			final Map.Entry<Key, Entry> mapEntry = iterator.next();
+			final Entry entry = mapEntry.getValue();
+
+			if (entry.references > 0) {
+				continue;
+			}
+
+			if (lowOnMemory || entry.isCleared()) {
+				iterator.remove();
+				STATS.computeIfAbsent(mapEntry.getKey().kind(), k -> new Stats()).evictions++;
+			}
+		}
+	}
+
+	/**
+	 * A reference to a shared value.
+	 */
+	public static final class Handle<T> implements Closeable {
+		private final @Nullable Entry entry;
+		private final T value;
+		private boolean closed;
+
+		private Handle(@Nullable Entry entry, T value) {
+			this.entry = entry;
+			this.value = value;
+		}
+
+		public T get() {
+			return value;
+		}
+
+		@Override
+		public void close() {
+			synchronized (this) {
+				if (closed) {
+					return;
+				}
+
+				closed = true;
+			}
+
+			if (entry != null) {
+				release(entry);
+			}
+		}
+	}
+
+	private static final class Entry {
+		// Guarded by LOCK
+		private int references;
+		// Guarded by this
+		private @Nullable Object value;
+		private @Nullable SoftReference<Object> softValue;
+
+		private synchronized Object getOrLoad(Supplier<?> loader, Stats stats) {
+			if (value == null && softValue != null) {
+				value = softValue.get();
+				softValue = null;
+			}
+
+			if (value != null) {
+				stats.hit();
+				return value;
+			}
+
+			value = loader.get();
+			stats.miss();
+			return value;
+		}
+
+		private synchronized void soften() {
+			if (value != null) {
+				softValue = new SoftReference<>(value);
+				value = null;
+			}
+		}
+
+		private synchronized boolean isCleared() {
+			return value == null && (softValue == null || softValue.get() == null);
+		}
+	}
+
+	private static final class Stats {
+		private long hits;
+		private long misses;
+		// Guarded by LOCK
+		private long evictions;
+
+		private synchronized void hit() {
+			hits++;
+		}
+
+		private synchronized void miss() {
+			misses++;
+		}
+
+		@Override
+		public synchronized String toString() {
+			final long total = hits + misses;
+			final long hitRate = total == 0 ? 0 : hits * 100 / total;
+			return "%d hits, %d misses (%d%% hit rate), %d evicted".formatted(hits, misses, hitRate, evictions);
+		}
+	}
+
+	private record Key(String kind, String key) {
+	}
+
+	private record FileKey(Path path, long size, long lastModified) {
+	}
+}
@@ -0,0 +1,156 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.test.unit
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import net.fabricmc.loom.configuration.providers.mappings.tiny.BinaryMappingTree
+import net.fabricmc.loom.util.TinyRemapperHelper
+import net.fabricmc.mappingio.MappingReader
+import net.fabricmc.mappingio.format.tiny.Tiny2FileWriter
+import net.fabricmc.mappingio.tree.MemoryMappingTree
+import net.fabricmc.tinyremapper.IMappingProvider
+
+class BinaryMappingTreeTest extends Specification {
+	@TempDir
+	Path tempDir
+
+	def "round trip"() {
+		given:
+		def tiny = tempDir.resolve("mappings.tiny")
+		Files.writeString(tiny, MAPPINGS)
+		def tree = new MemoryMappingTree()
+		MappingReader.read(tiny, tree)
+
+		when:
+		BinaryMappingTree.write(tree, tiny)
+		def binary = BinaryMappingTree.open(tiny)
+		def copy = new MemoryMappingTree()
+		binary.accept(copy)
+
+		then:
+		binary.srcNamespace == "official"
+		binary.dstNamespaces == ["intermediary", "named"]
+		toTiny(copy) == toTiny(tree)
+	}
+
+	def "view"() {
+		given:
+		def tiny = tempDir.resolve("mappings.tiny")
+		Files.writeString(tiny, MAPPINGS)
+		def tree = new MemoryMappingTree()
+		MappingReader.read(tiny, tree)
+		BinaryMappingTree.write(tree, tiny)
+
+		when:
+		def binary = BinaryMappingTree.open(tiny)
+		def named = binary.getNamespaceId("named")
+		def classB = binary.getClass("b")
+		def method = classB.methods[0]
+
+		then:
+		binary.getNamespaceId("missing") == -2
+		binary.getClass("c") == null
+		classB.getName(named) == "net/fabricmc/Other"
+		classB.comment == "class comment"
+		method.getName(named) == "create"
+		method.getDesc(named) == "(Lnet/fabricmc/Example;I)Lnet/fabricmc/Other;"
+		method.args[0].getName(named) == "example"
+		method.args[0].lvIndex == 1
+	}
+
+	def "outdated binary mappings are ignored"() {
+		given:
+		def tiny = tempDir.resolve("mappings.tiny")
+		Files.writeString(tiny, MAPPINGS)
+		def tree = new MemoryMappingTree()
+		MappingReader.read(tiny, tree)
+		BinaryMappingTree.write(tree, tiny)
+
+		when:
+		Files.writeString(tiny, MAPPINGS.replace("create", "build"))
+
+		then:
+		BinaryMappingTree.open(tiny) == null
+	}
+
+	def "mapping providers match"() {
+		given:
+		def tiny = tempDir.resolve("mappings.tiny")
+		Files.writeString(tiny, MAPPINGS)
+		def tree = new MemoryMappingTree()
+		MappingReader.read(tiny, tree)
+		BinaryMappingTree.write(tree, tiny)
+		def binary = BinaryMappingTree.open(tiny)
+
+		when:
+		def fromTree = accept(TinyRemapperHelper.create(tree, from, "named", true))
+		def fromBinary = accept(TinyRemapperHelper.create(binary, from, "named", true))
+
+		then:
+		fromBinary == fromTree
+		fromTree.contains(method)
+		fromTree.contains("arg 1 -> example")
+
+		where:
+		from           | method
+		"official"     | "method b.a(La;I)Lb; -> create"
+		"intermediary" | "method class_2.method_1(Lclass_1;I)Lclass_2; -> create"
+	}
+
+	private static List<String> accept(IMappingProvider provider) {
+		def accepted = []
+		def acceptor = [
+			acceptClass: { String src, String dst -> accepted << "class $src -> $dst" },
+			acceptMethod: { IMappingProvider.Member method, String dst -> accepted << "method ${method.owner}.${method.name}${method.desc} -> $dst" },
+			acceptMethodArg: { IMappingProvider.Member method, int lvIndex, String dst -> accepted << "arg $lvIndex -> $dst" },
+			acceptMethodVar: { IMappingProvider.Member method, int lvIndex, int startOpIdx, int asmIndex, String dst -> accepted << "var $lvIndex -> $dst" },
+			acceptField: { IMappingProvider.Member field, String dst -> accepted << "field ${field.owner}.${field.name}:${field.desc} -> $dst" }
+		] as IMappingProvider.MappingAcceptor
+		provider.load(acceptor)
+		return accepted
+	}
+
+	private static String toTiny(MemoryMappingTree tree) {
+		def sw = new StringWriter()
+		tree.accept(new Tiny2FileWriter(sw, false))
+		return sw.toString()
+	}
+
+	private static final String MAPPINGS = """
+tiny\t2\t0\tofficial\tintermediary\tnamed
+c\ta\tclass_1\tnet/fabricmc/Example
+\tf\tI\ta\tfield_1\tvalue
+c\tb\tclass_2\tnet/fabricmc/Other
+\tc\tclass comment
+\tm\t(La;I)Lb;\ta\tmethod_1\tcreate
+\t\tc\tmethod comment
+\t\tp\t1\t\t\texample
+""".trim()
+}
@@ -0,0 +1,103 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.test.unit
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.Paths
+import java.time.Duration
+
+import com.google.gson.Gson
+import spock.lang.Specification
+import spock.lang.TempDir
+import spock.lang.Timeout
+
+import net.fabricmc.loom.decompilers.daemon.DecompileRequest
+import net.fabricmc.loom.decompilers.daemon.DecompilerDaemonClient
+import net.fabricmc.loom.test.unit.decompiler.DaemonTestDecompiler
+
+@Timeout(120)
+class DecompilerDaemonTest extends Specification {
+	@TempDir
+	Path tempDir
+
+	def "daemon is started, reused and stops when idle"() {
+		given:
+		def daemonDirectory = tempDir.resolve("daemon")
+		def classpath = [codeSource(DaemonTestDecompiler), codeSource(Gson)] as Set
+		def client = new DecompilerDaemonClient(classpath, 128, Duration.ofSeconds(3), daemonDirectory)
+		def logs = []
+
+		when:
+		def first = decompile(client, "first", logs)
+		def second = decompile(client, "second", logs)
+		def stopped = waitForStop(daemonDirectory)
+		def third = decompile(client, "third", logs)
+
+		then:
+		// Reused while running
+		first == second
+		// Started again after stopping when idle
+		stopped
+		third != first
+		// Log lines are prefixed with the thread id
+		logs.findAll { it.contains("::Decompiling in ") }.collect { it.substring(it.indexOf("::") + 2) } == [
+			"Decompiling in " + first,
+			"Decompiling in " + first,
+			"Decompiling in " + third
+		]
+		Files.readString(logFile(daemonDirectory)).count("Decompiler daemon listening on") == 2
+	}
+
+	private String decompile(DecompilerDaemonClient client, String name, List<String> logs) {
+		def output = tempDir.resolve(name + "-sources.jar")
+		def request = DecompileRequest.create(DaemonTestDecompiler.name, [:], 1, tempDir.resolve("input.jar"), output, tempDir.resolve(name + ".linemap"), tempDir.resolve("mappings.tiny"), [])
+		client.decompile(request) { logs << it }
+		return Files.readString(output)
+	}
+
+	// The daemon deletes its socket when it stops
+	private static boolean waitForStop(Path daemonDirectory) {
+		def deadline = System.nanoTime() + Duration.ofSeconds(60).toNanos()
+
+		while (System.nanoTime() < deadline) {
+			if (Files.list(daemonDirectory).withCloseable { files -> files.noneMatch { it.toString().endsWith(".sock") } }) {
+				return true
+			}
+
+			sleep(100)
+		}
+
+		return false
+	}
+
+	private static Path logFile(Path daemonDirectory) {
+		return Files.list(daemonDirectory).withCloseable { files -> files.filter { it.toString().endsWith(".log") }.findFirst().orElseThrow() }
+	}
+
+	private static File codeSource(Class<?> clazz) {
+		return Paths.get(clazz.protectionDomain.codeSource.location.toURI()).toFile()
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.test.unit
+
+import java.nio.file.Files
+import java.util.zip.ZipFile
+
+import spock.lang.Specification
+
+import net.fabricmc.loom.decompilers.JarSharder
+import net.fabricmc.loom.test.util.ZipTestUtils
+import net.fabricmc.loom.util.ZipUtils
+
+class JarSharderTest extends Specification {
+	def "split keeps inner classes together"() {
+		given:
+		def jar = ZipTestUtils.createZip([
+			"net/fabricmc/A.class": "a",
+			"net/fabricmc/A\$Inner.class": "a inner",
+			"net/fabricmc/A\$Inner\$1.class": "a inner 1",
+			"net/fabricmc/B.class": "b",
+			"net/fabricmc/C.class": "c",
+			"net/fabricmc/C\$1.class": "c 1",
+			"resource.txt": "resource",
+		])
+
+		when:
+		def shards = JarSharder.split(jar, 2)
+		def contents = shards.collect { shard ->
+			new ZipFile(shard.toFile()).withCloseable { zip -> zip.entries().collect { it.name } }
+		}
+
+		then:
+		shards.size() == 2
+		contents.flatten().sort() == [
+			"net/fabricmc/A\$Inner\$1.class",
+			"net/fabricmc/A\$Inner.class",
+			"net/fabricmc/A.class",
+			"net/fabricmc/B.class",
+			"net/fabricmc/C\$1.class",
+			"net/fabricmc/C.class",
+			"resource.txt"
+		]
+		contents[0].contains("resource.txt")
+		contents.find { it.contains("net/fabricmc/A.class") }.containsAll(["net/fabricmc/A\$Inner.class", "net/fabricmc/A\$Inner\$1.class"])
+		contents.find { it.contains("net/fabricmc/C.class") }.contains("net/fabricmc/C\$1.class")
+
+		cleanup:
+		shards.each { Files.deleteIfExists(it) }
+	}
+
+	def "split into more shards than classes"() {
+		given:
+		def jar = ZipTestUtils.createZip([
+			"net/fabricmc/A.class": "a",
+		])
+
+		when:
+		def shards = JarSharder.split(jar, 4)
+
+		then:
+		shards.size() == 1
+
+		cleanup:
+		shards.each { Files.deleteIfExists(it) }
+	}
+
+	def "merge"() {
+		given:
+		def jar1 = ZipTestUtils.createZip(["net/fabricmc/A.java": "a"])
+		def jar2 = ZipTestUtils.createZip(["net/fabricmc/B.java": "b"])
+		def output = Files.createTempFile("loom-test-merge", ".jar")
+
+		when:
+		JarSharder.merge([jar1, jar2], output)
+
+		then:
+		ZipUtils.unpackNullable(output, "net/fabricmc/A.java") == "a".bytes
+		ZipUtils.unpackNullable(output, "net/fabricmc/B.java") == "b".bytes
+	}
+}
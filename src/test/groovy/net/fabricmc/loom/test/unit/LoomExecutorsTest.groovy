@@ -0,0 +1,79 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.test.unit
+
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.atomic.AtomicInteger
+
+import spock.lang.Specification
+
+import net.fabricmc.loom.util.LoomExecutors
+import net.fabricmc.loom.util.ThreadingUtils
+
+class LoomExecutorsTest extends Specification {
+	def "bounded executor limits concurrency"() {
+		given:
+		def executor = LoomExecutors.bounded(LoomExecutors.io(), 2)
+		def running = new AtomicInteger()
+		def maxRunning = new AtomicInteger()
+
+		when:
+		def futures = (1..20).collect {
+			CompletableFuture.runAsync({
+				int current = running.incrementAndGet()
+				maxRunning.accumulateAndGet(current, Math::max)
+				Thread.sleep(5)
+				running.decrementAndGet()
+			}, executor)
+		}
+		CompletableFuture.allOf(futures as CompletableFuture[]).join()
+
+		then:
+		maxRunning.get() <= 2
+		running.get() == 0
+	}
+
+	def "threading utils share the cpu executor"() {
+		when:
+		def results = ThreadingUtils.get((1..10).collect { i -> { -> Thread.currentThread().name } as ThreadingUtils.UnsafeCallable<String> })
+
+		then:
+		results.size() == 10
+		results.every { it.startsWith("Loom Worker") }
+		LoomExecutors.metrics().parallelism() >= 1
+	}
+
+	def "executors are recreated after shutdown"() {
+		given:
+		def pool = LoomExecutors.cpu()
+
+		when:
+		LoomExecutors.shutdown()
+
+		then:
+		pool.isShutdown()
+		!LoomExecutors.cpu().isShutdown()
+	}
+}
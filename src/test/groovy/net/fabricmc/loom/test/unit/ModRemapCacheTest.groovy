@@ -0,0 +1,122 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.test.unit
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.attribute.FileTime
+import java.time.Duration
+import java.time.Instant
+
+import spock.lang.Specification
+
+import net.fabricmc.loom.configuration.mods.ModRemapCache
+import net.fabricmc.loom.configuration.mods.dependency.LocalMavenHelper
+
+class ModRemapCacheTest extends Specification {
+	def "remapped jars are restored from the cache"() {
+		given:
+		def directory = Files.createTempDirectory("loom-mod-remap-cache")
+		def cache = ModRemapCache.create(directory, ["context"])
+		def key = cache.getKey("input", "NONE", ["a", "b"])
+		def remapped = createJar("remapped")
+
+		when:
+		def missed = cache.get(key)
+		cache.put(key, remapped)
+		Files.delete(remapped)
+		// A new build with the same context finds the jar
+		def restored = ModRemapCache.create(directory, ["context"]).get(key)
+
+		then:
+		missed == null
+		restored != null
+		Files.readString(restored) == "remapped"
+	}
+
+	def "keys change with the mod, its options, the classpath and the context"() {
+		given:
+		def directory = Files.createTempDirectory("loom-mod-remap-cache")
+		def cache = ModRemapCache.create(directory, ["context"])
+		def key = cache.getKey("input", "NONE", ["a", "b"])
+
+		expect:
+		cache.getKey("input", "NONE", ["b", "a"]) == key
+		cache.getKey("changed", "NONE", ["a", "b"]) != key
+		cache.getKey("input", "STATIC", ["a", "b"]) != key
+		cache.getKey("input", "NONE", ["a", "c"]) != key
+		cache.getKey("input", "NONE", ["a"]) != key
+		ModRemapCache.create(directory, ["changed"]).getKey("input", "NONE", ["a", "b"]) != key
+	}
+
+	def "restored jars are copied out of the cache"() {
+		given:
+		def directory = Files.createTempDirectory("loom-mod-remap-cache")
+		def cache = ModRemapCache.create(directory, ["context"])
+		def key = cache.getKey("input", "NONE", [])
+		def cached = cache.put(key, createJar("remapped"))
+		def maven = new LocalMavenHelper("remapped.test", "mod", "1.0", null, Files.createTempDirectory("loom-maven"))
+
+		when:
+		def restored = maven.copyToMaven(cache.get(key), null)
+		Files.writeString(restored, "modified")
+
+		then:
+		!Files.isSameFile(restored, cached)
+		Files.readString(cache.get(key)) == "remapped"
+	}
+
+	def "unused jars are deleted"() {
+		given:
+		def directory = Files.createTempDirectory("loom-mod-remap-cache")
+		def cache = ModRemapCache.create(directory, ["context"])
+		def usedKey = cache.getKey("used", "NONE", [])
+		def unusedKey = cache.getKey("unused", "NONE", [])
+		def used = cache.put(usedKey, createJar("used"))
+		def unused = cache.put(unusedKey, createJar("unused"))
+		setOld(used)
+		setOld(unused)
+
+		when:
+		// Using a jar marks it as used
+		cache.get(usedKey)
+		def next = ModRemapCache.create(directory, ["context"])
+
+		then:
+		next.get(usedKey) == used
+		next.get(unusedKey) == null
+		Files.notExists(unused)
+	}
+
+	private static Path createJar(String content) {
+		def jar = Files.createTempFile("loom-mod", ".jar")
+		Files.writeString(jar, content)
+		return jar
+	}
+
+	private static void setOld(Path path) {
+		Files.setLastModifiedTime(path, FileTime.from(Instant.now().minus(Duration.ofDays(30))))
+	}
+}
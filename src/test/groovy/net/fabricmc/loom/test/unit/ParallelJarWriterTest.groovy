@@ -0,0 +1,205 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.test.unit
+
+import java.nio.file.Files
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.zip.ZipEntry
+import java.util.zip.ZipFile
+
+import spock.lang.Specification
+
+import net.fabricmc.loom.util.LoomExecutors
+import net.fabricmc.loom.util.ParallelJarWriter
+
+class ParallelJarWriterTest extends Specification {
+	def "entries are written in the order they were added"() {
+		given:
+		def jar = Files.createTempFile("loom-parallel-jar", ".jar")
+		def executor = Executors.newFixedThreadPool(4)
+
+		when:
+		ParallelJarWriter.create(jar, executor, 4).withCloseable { writer ->
+			writer.putDirectory("a/", -1)
+
+			for (int i = 0; i < 100; i++) {
+				def index = i
+				writer.put("a/${index}.txt", -1) {
+					// Finish out of order
+					Thread.sleep(index % 3)
+					return "entry ${index}".bytes
+				}
+			}
+		}
+
+		def entries = new ZipFile(jar.toFile()).withCloseable { zip ->
+			zip.entries().collect { [it.name, new String(zip.getInputStream(it).readAllBytes())] }
+		}
+
+		then:
+		entries.size() == 101
+		entries[0][0] == "a/"
+		entries.drop(1).withIndex().every { entry, i -> entry == ["a/${i}.txt".toString(), "entry ${i}".toString()] }
+
+		cleanup:
+		executor.shutdown()
+		Files.deleteIfExists(jar)
+	}
+
+	def "more entries than a zip can count without zip64"() {
+		given:
+		def jar = Files.createTempFile("loom-parallel-jar", ".jar")
+
+		when:
+		ParallelJarWriter.create(jar).withCloseable { writer ->
+			for (int i = 0; i < 70000; i++) {
+				writer.put("e/${i}", -1, "${i}".bytes)
+			}
+		}
+
+		def zip = new ZipFile(jar.toFile())
+
+		then:
+		zip.size() == 70000
+		new String(zip.getInputStream(zip.getEntry("e/69999")).readAllBytes()) == "69999"
+
+		cleanup:
+		zip?.close()
+		Files.deleteIfExists(jar)
+	}
+
+	def "failures are rethrown"() {
+		given:
+		def jar = Files.createTempFile("loom-parallel-jar", ".jar")
+
+		when:
+		ParallelJarWriter.create(jar).withCloseable { writer ->
+			writer.put("a.txt", -1) {
+				throw new IOException("broken")
+			}
+		}
+
+		then:
+		def e = thrown(IOException)
+		e.message == "broken"
+
+		cleanup:
+		Files.deleteIfExists(jar)
+	}
+
+	def "large entries are deflated in chunks"() {
+		given:
+		def jar = Files.createTempFile("loom-parallel-jar", ".jar")
+		def random = new Random(42)
+		// Compressible, but not trivially so
+		def data = new byte[5 * 1024 * 1024 + 123]
+
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) ('a' + random.nextInt(8))
+		}
+
+		when:
+		ParallelJarWriter.create(jar).withCloseable { writer ->
+			writer.put("large.bin", -1, data)
+		}
+
+		def zip = new ZipFile(jar.toFile())
+		def entry = zip.getEntry("large.bin")
+
+		then:
+		entry.method == ZipEntry.DEFLATED
+		entry.compressedSize < data.length
+		zip.getInputStream(entry).readAllBytes() == data
+
+		cleanup:
+		zip?.close()
+		Files.deleteIfExists(jar)
+	}
+
+	def "entries can be stored without compression"() {
+		given:
+		def jar = Files.createTempFile("loom-parallel-jar", ".jar")
+
+		when:
+		ParallelJarWriter.create(jar).setCompressionMethod(ZipEntry.STORED).withCloseable { writer ->
+			writer.putParentDirectories("a/b/c.txt")
+			writer.put("a/b/c.txt", -1, "stored".bytes)
+		}
+
+		def zip = new ZipFile(jar.toFile())
+
+		then:
+		zip.entries().collect { it.name } == ["a/", "a/b/", "a/b/c.txt"]
+		zip.getEntry("a/b/c.txt").method == ZipEntry.STORED
+		zip.getEntry("a/b/c.txt").compressedSize == 6
+		new String(zip.getInputStream(zip.getEntry("a/b/c.txt")).readAllBytes()) == "stored"
+
+		cleanup:
+		zip?.close()
+		Files.deleteIfExists(jar)
+	}
+
+	def "jars are written from the shared workers without blocking them"() {
+		given:
+		def jar = Files.createTempFile("loom-parallel-jar", ".jar")
+		def random = new Random(42)
+		def data = new byte[1024 * 1024 + 7]
+
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) ('a' + random.nextInt(8))
+		}
+
+		LoomExecutors.shutdown()
+		LoomExecutors.configure(2)
+
+		when:
+		LoomExecutors.cpu().submit({
+			ParallelJarWriter.create(jar).withCloseable { writer ->
+				for (int i = 0; i < 20; i++) {
+					writer.put("e/${i}.bin", -1, data)
+				}
+			}
+
+			return null
+		} as Callable).get()
+
+		// A worker waiting on the pool would have made it start compensating threads
+		def poolSize = LoomExecutors.cpu().poolSize
+		def zip = new ZipFile(jar.toFile())
+
+		then:
+		poolSize <= 2
+		zip.size() == 20
+		zip.getInputStream(zip.getEntry("e/19.bin")).readAllBytes() == data
+		ParallelJarWriter.deflate(data) == LoomExecutors.cpu().submit({ ParallelJarWriter.deflate(data) } as Callable).get()
+
+		cleanup:
+		zip?.close()
+		LoomExecutors.shutdown()
+		LoomExecutors.configure(Runtime.runtime.availableProcessors())
+		Files.deleteIfExists(jar)
+	}
+}
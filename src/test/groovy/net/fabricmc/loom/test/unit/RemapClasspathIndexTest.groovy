@@ -0,0 +1,153 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.test.unit
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardCopyOption
+import java.nio.file.attribute.FileTime
+import java.time.Duration
+import java.time.Instant
+import java.util.zip.ZipFile
+
+import org.objectweb.asm.ClassReader
+import org.objectweb.asm.tree.ClassNode
+import spock.lang.Specification
+
+import net.fabricmc.loom.test.util.ZipTestUtils
+import net.fabricmc.loom.util.Checksum
+import net.fabricmc.loom.util.RemapClasspathIndex
+
+class RemapClasspathIndexTest extends Specification {
+	def cleanup() {
+		RemapClasspathIndex.reset()
+	}
+
+	def "not configured"() {
+		given:
+		def jar = ZipTestUtils.createZip(["resource.txt": "resource"], ".jar")
+
+		when:
+		def resolved = RemapClasspathIndex.resolve([jar])
+
+		then:
+		resolved == [jar] as Path[]
+	}
+
+	def "classes are stripped of code"() {
+		given:
+		def cacheDir = Files.createTempDirectory("loom-remap-index")
+		def classBytes = Checksum.class.getResourceAsStream("Checksum.class").readAllBytes()
+		def jar = ZipTestUtils.createZipFromBytes([
+			"net/fabricmc/loom/util/Checksum.class": classBytes,
+			"resource.txt": "resource".bytes,
+		], ".jar")
+		RemapClasspathIndex.configure(cacheDir)
+
+		when:
+		def skeleton = RemapClasspathIndex.resolve([jar])[0]
+		def entries = new ZipFile(skeleton.toFile()).withCloseable { zip ->
+			zip.entries().collectEntries { [(it.name): zip.getInputStream(it).readAllBytes()] }
+		}
+		def classNode = new ClassNode()
+		new ClassReader(entries["net/fabricmc/loom/util/Checksum.class"]).accept(classNode, 0)
+
+		then:
+		skeleton != jar
+		skeleton.startsWith(cacheDir)
+		entries.keySet() == ["net/fabricmc/loom/util/Checksum.class"] as Set
+		classNode.name == "net/fabricmc/loom/util/Checksum"
+		classNode.methods*.name.contains("sha1Hex")
+		classNode.methods.every { it.instructions.size() == 0 }
+	}
+
+	def "same content shares a skeleton"() {
+		given:
+		def cacheDir = Files.createTempDirectory("loom-remap-index")
+		def classBytes = Checksum.class.getResourceAsStream("Checksum.class").readAllBytes()
+		def jar1 = ZipTestUtils.createZipFromBytes(["net/fabricmc/loom/util/Checksum.class": classBytes], ".jar")
+		def jar2 = Files.createTempFile("loom-test", ".jar")
+		Files.copy(jar1, jar2, StandardCopyOption.REPLACE_EXISTING)
+		RemapClasspathIndex.configure(cacheDir)
+
+		when:
+		def resolved = RemapClasspathIndex.resolve([jar1, jar2])
+
+		then:
+		resolved[0] == resolved[1]
+	}
+
+	def "abi hash ignores resources and entry order"() {
+		given:
+		def checksumBytes = Checksum.class.getResourceAsStream("Checksum.class").readAllBytes()
+		def indexBytes = RemapClasspathIndex.class.getResourceAsStream("RemapClasspathIndex.class").readAllBytes()
+		def jar1 = ZipTestUtils.createZipFromBytes([
+			"net/fabricmc/loom/util/Checksum.class": checksumBytes,
+			"net/fabricmc/loom/util/RemapClasspathIndex.class": indexBytes,
+		], ".jar")
+		def jar2 = ZipTestUtils.createZipFromBytes([
+			"resource.txt": "resource".bytes,
+			"net/fabricmc/loom/util/RemapClasspathIndex.class": indexBytes,
+			"net/fabricmc/loom/util/Checksum.class": checksumBytes,
+		], ".jar")
+		def jar3 = ZipTestUtils.createZipFromBytes(["net/fabricmc/loom/util/Checksum.class": checksumBytes], ".jar")
+
+		when:
+		def hash1 = RemapClasspathIndex.abiHash(jar1)
+		def hash2 = RemapClasspathIndex.abiHash(jar2)
+		def hash3 = RemapClasspathIndex.abiHash(jar3)
+
+		then:
+		hash1 == hash2
+		hash1 != hash3
+	}
+
+	def "unused skeletons are deleted at most once a day when reset"() {
+		given:
+		def cacheDir = Files.createTempDirectory("loom-remap-index")
+		def unused1 = createUnused(cacheDir.resolve("v1/aa/unused1.jar"))
+		RemapClasspathIndex.configure(cacheDir)
+
+		when:
+		def existsAfterConfigure = Files.exists(unused1)
+		RemapClasspathIndex.reset()
+		def unused2 = createUnused(cacheDir.resolve("v1/aa/unused2.jar"))
+		RemapClasspathIndex.configure(cacheDir)
+		RemapClasspathIndex.reset()
+
+		then:
+		existsAfterConfigure
+		Files.notExists(unused1)
+		// Already cleaned up today
+		Files.exists(unused2)
+	}
+
+	private static Path createUnused(Path path) {
+		Files.createDirectories(path.parent)
+		Files.writeString(path, "unused")
+		Files.setLastModifiedTime(path, FileTime.from(Instant.now().minus(Duration.ofDays(30))))
+		return path
+	}
+}
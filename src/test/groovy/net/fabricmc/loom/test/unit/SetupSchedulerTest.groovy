@@ -0,0 +1,115 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.test.unit
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+import spock.lang.Specification
+
+import net.fabricmc.loom.configuration.SetupScheduler
+
+class SetupSchedulerTest extends Specification {
+	def "sequential steps run in order"() {
+		given:
+		def scheduler = new SetupScheduler(false)
+		def order = []
+		scheduler.add("a", { order << "a" })
+		scheduler.addBackground("b", { order << "b" }, "a")
+		scheduler.add("c", { order << "c" }, "a")
+		scheduler.add("d", { order << "d" }, "b", "c")
+
+		when:
+		scheduler.run()
+
+		then:
+		order == ["a", "b", "c", "d"]
+		scheduler.report().contains("d")
+	}
+
+	def "background steps run alongside later steps"() {
+		given:
+		def scheduler = new SetupScheduler(true)
+		def latch = new CountDownLatch(1)
+		def backgroundFinished = false
+		scheduler.add("a", { })
+		// Can only complete once "c" has started, which does not depend on it
+		scheduler.addBackground("b", { backgroundFinished = latch.await(10, TimeUnit.SECONDS) }, "a")
+		scheduler.add("c", { latch.countDown() }, "a")
+
+		when:
+		scheduler.run()
+
+		then:
+		backgroundFinished
+	}
+
+	def "steps wait for background dependencies"() {
+		given:
+		def scheduler = new SetupScheduler(true)
+		def order = Collections.synchronizedList([])
+		scheduler.addBackground("a", {
+			Thread.sleep(100)
+			order << "a"
+		})
+		scheduler.add("b", { order << "b" }, "a")
+
+		when:
+		scheduler.run()
+
+		then:
+		order == ["a", "b"]
+	}
+
+	def "background failure is rethrown"() {
+		given:
+		def scheduler = new SetupScheduler(concurrent)
+		def ran = false
+		scheduler.addBackground("a", { throw new IOException("failed") })
+		scheduler.add("b", { ran = true }, "a")
+
+		when:
+		scheduler.run()
+
+		then:
+		def e = thrown IOException
+		e.message == "failed"
+		!ran
+
+		where:
+		concurrent << [true, false]
+	}
+
+	def "unknown dependency"() {
+		given:
+		def scheduler = new SetupScheduler(false)
+
+		when:
+		scheduler.add("a", { }, "missing")
+
+		then:
+		thrown IllegalArgumentException
+	}
+}
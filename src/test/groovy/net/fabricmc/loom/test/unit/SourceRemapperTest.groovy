@@ -0,0 +1,113 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.test.unit
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.attribute.FileTime
+import java.time.Duration
+import java.time.Instant
+import java.util.concurrent.TimeUnit
+
+import org.cadixdev.mercury.Mercury
+import spock.lang.Specification
+import spock.lang.TempDir
+import spock.lang.Timeout
+
+import net.fabricmc.loom.util.SourceRemapCache
+import net.fabricmc.loom.util.SourceRemapper
+
+class SourceRemapperTest extends Specification {
+	@TempDir
+	Path tempDir
+
+	@Timeout(value = 10, unit = TimeUnit.SECONDS)
+	def "mercury pool recovers from failed creation"() {
+		given:
+		int attempts = 0
+		def pool = new SourceRemapper.MercuryPool({
+			if (attempts++ < 2) {
+				throw new UncheckedIOException(new IOException("Failed to read mappings"))
+			}
+
+			return new Mercury()
+		}, 1)
+
+		when:
+		pool.acquire()
+
+		then:
+		thrown(UncheckedIOException)
+
+		when:
+		pool.acquire()
+
+		then:
+		thrown(UncheckedIOException)
+
+		when:
+		def mercury = pool.acquire()
+		pool.release(mercury)
+
+		then:
+		mercury != null
+		attempts == 3
+		pool.acquire() == mercury
+	}
+
+	def "source remap cache"() {
+		given:
+		def cache = SourceRemapCache.create(tempDir, ["context"])
+		def key = cache.getKey("class A {}".bytes)
+
+		when:
+		cache.put(key, "class B {}".bytes)
+
+		then:
+		new String(cache.get(key)) == "class B {}"
+		cache.get(cache.getKey("class C {}".bytes)) == null
+		SourceRemapCache.create(tempDir, ["other context"]).getKey("class A {}".bytes) != key
+	}
+
+	def "source remap cache deletes unused entries"() {
+		given:
+		def cache = SourceRemapCache.create(tempDir, ["context"])
+		def oldKey = cache.getKey("old".bytes)
+		def newKey = cache.getKey("new".bytes)
+		cache.put(oldKey, "old".bytes)
+		cache.put(newKey, "new".bytes)
+		def old = Files.list(tempDir.resolve(oldKey.substring(0, 2))).find { it.fileName.toString() == oldKey }
+		Files.setLastModifiedTime(old, FileTime.from(Instant.now().minus(Duration.ofDays(30))))
+		// The cache is only checked once a day
+		Files.setLastModifiedTime(tempDir.resolve(".last-cleanup"), FileTime.from(Instant.now().minus(Duration.ofDays(2))))
+
+		when:
+		cache = SourceRemapCache.create(tempDir, ["context"])
+
+		then:
+		cache.get(oldKey) == null
+		cache.get(newKey) != null
+	}
+}
@@ -36,6 +36,7 @@ import net.fabricmc.loom.util.Checksum
 import net.fabricmc.loom.util.FileSystemUtil
 import net.fabricmc.loom.util.Pair
 import net.fabricmc.loom.util.ZipReprocessorUtil
+import net.fabricmc.loom.util.ZipRewriter
 import net.fabricmc.loom.util.ZipUtils
 
 class ZipUtilsTest extends Specification {
@@ -258,4 +259,29 @@ class ZipUtilsTest extends Specification {
 		ZipUtils.unpack(zip, "text.txt") == "hello world".bytes
 		Checksum.sha1Hex(zip) == "e699fa52a520553241aac798f72255ac0a912b05"
 	}
+
+	def "batched rewrite"() {
+		given:
+		def dir = File.createTempDir()
+		def zip = File.createTempFile("loom-zip-test", ".zip").toPath()
+		new File(dir, "keep.txt").text = "This is unchanged"
+		new File(dir, "change.txt").text = "This will change"
+		new File(dir, "delete.txt").text = "This will be deleted"
+		ZipUtils.pack(dir.toPath(), zip)
+
+		when:
+		def rewriter = ZipRewriter.open(zip)
+		rewriter.withCloseable {
+			ZipUtils.transformString(it, ["change.txt": { String s -> s.toUpperCase() } as ZipUtils.UnsafeUnaryOperator<String>])
+			it.remove("delete.txt")
+			it.put("added.txt", "This has been added".bytes)
+			it.commit()
+		}
+
+		then:
+		new String(ZipUtils.unpack(zip, "keep.txt"), StandardCharsets.UTF_8) == "This is unchanged"
+		new String(ZipUtils.unpack(zip, "change.txt"), StandardCharsets.UTF_8) == "THIS WILL CHANGE"
+		new String(ZipUtils.unpack(zip, "added.txt"), StandardCharsets.UTF_8) == "This has been added"
+		!ZipUtils.contains(zip, "delete.txt")
+	}
 }
@@ -0,0 +1,188 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.test.unit.cache
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.attribute.FileTime
+import java.time.Duration
+import java.time.Instant
+
+import org.objectweb.asm.ClassWriter
+import org.objectweb.asm.Opcodes
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import net.fabricmc.loom.decompilers.cache.ClassEntry
+import net.fabricmc.loom.decompilers.cache.ClassFingerprintIndex
+import net.fabricmc.loom.decompilers.cache.JarWalker
+import net.fabricmc.loom.test.util.ZipTestUtils
+
+class ClassFingerprintIndexTest extends Specification {
+	@TempDir
+	Path testPath
+
+	def "unchanged jar"() {
+		given:
+		def jar = ZipTestUtils.createZipFromBytes([
+			"net/fabricmc/Example.class": newClass("net/fabricmc/Example"),
+			"net/fabricmc/other/Test.class": newClass("net/fabricmc/other/Test", ["java/lang/Runnable"] as String[]),
+		])
+		def indexFile = testPath.resolve("index.bin")
+
+		when:
+		def first = ClassFingerprintIndex.read(indexFile).walk(jar)
+		def second = ClassFingerprintIndex.read(indexFile).walk(jar)
+		def expected = JarWalker.walk(jar)
+
+		then:
+		first.classBytes() != null
+		second.classBytes() == null
+		first.classes() == expected.classes()
+		second.classes() == expected.classes()
+		second.fileHashes() == expected.fileHashes()
+		second.hierarchyHashes() == hierarchyHashes(expected)
+	}
+
+	def "changed jar"() {
+		given:
+		def jar1 = ZipTestUtils.createZipFromBytes([
+			"net/fabricmc/Example.class": newClass("net/fabricmc/Example"),
+			"net/fabricmc/other/Test.class": newClass("net/fabricmc/other/Test"),
+		])
+		def jar2 = ZipTestUtils.createZipFromBytes([
+			"net/fabricmc/Example.class": newClass("net/fabricmc/Example", ["java/lang/Runnable"] as String[]),
+			"net/fabricmc/other/Test.class": newClass("net/fabricmc/other/Test"),
+			"net/fabricmc/other/Added.class": newClass("net/fabricmc/other/Added"),
+		])
+		def indexFile = testPath.resolve("index.bin")
+
+		when:
+		ClassFingerprintIndex.read(indexFile).walk(jar1)
+		def result = ClassFingerprintIndex.read(indexFile).walk(jar2)
+		def expected = JarWalker.walk(jar2)
+
+		then:
+		// Only some classes were read again
+		result.classBytes() == null
+		result.classes() == expected.classes()
+		result.fileHashes() == expected.fileHashes()
+		result.hierarchyHashes() == hierarchyHashes(expected)
+	}
+
+	def "only changed classes and their subclasses are rehashed"() {
+		given:
+		def jar1 = ZipTestUtils.createZipFromBytes([
+			"net/fabricmc/Base.class": newClass("net/fabricmc/Base"),
+			"net/fabricmc/Sub.class": newClass("net/fabricmc/Sub", null, "net/fabricmc/Base"),
+			"net/fabricmc/Other.class": newClass("net/fabricmc/Other"),
+		])
+		def jar2 = ZipTestUtils.createZipFromBytes([
+			"net/fabricmc/Base.class": newClass("net/fabricmc/Base", ["java/lang/Runnable"] as String[]),
+			"net/fabricmc/Sub.class": newClass("net/fabricmc/Sub", null, "net/fabricmc/Base"),
+			"net/fabricmc/Other.class": newClass("net/fabricmc/Other"),
+		])
+		def indexFile = testPath.resolve("index.bin")
+
+		when:
+		ClassFingerprintIndex.read(indexFile).walk(jar1)
+		def index = ClassFingerprintIndex.read(indexFile)
+		def result = index.walk(jar2)
+		def expected = JarWalker.walk(jar2)
+
+		then:
+		index.readClasses == ["net/fabricmc/Base.class"] as Set
+		index.rehashedEntries == ["net/fabricmc/Base.class", "net/fabricmc/Sub.class"] as Set
+		result.classes() == expected.classes()
+		result.fileHashes() == expected.fileHashes()
+		result.hierarchyHashes() == hierarchyHashes(expected)
+	}
+
+	def "subclasses are rehashed when a class is removed"() {
+		given:
+		def jar1 = ZipTestUtils.createZipFromBytes([
+			"net/fabricmc/Base.class": newClass("net/fabricmc/Base"),
+			"net/fabricmc/Sub.class": newClass("net/fabricmc/Sub", null, "net/fabricmc/Base"),
+			"net/fabricmc/Other.class": newClass("net/fabricmc/Other"),
+		])
+		def jar2 = ZipTestUtils.createZipFromBytes([
+			"net/fabricmc/Sub.class": newClass("net/fabricmc/Sub", null, "net/fabricmc/Base"),
+			"net/fabricmc/Other.class": newClass("net/fabricmc/Other"),
+		])
+		def indexFile = testPath.resolve("index.bin")
+
+		when:
+		ClassFingerprintIndex.read(indexFile).walk(jar1)
+		def index = ClassFingerprintIndex.read(indexFile)
+		def result = index.walk(jar2)
+		def expected = JarWalker.walk(jar2)
+
+		then:
+		index.readClasses.isEmpty()
+		index.rehashedEntries == ["net/fabricmc/Sub.class"] as Set
+		result.classes() == expected.classes()
+		result.hierarchyHashes() == hierarchyHashes(expected)
+	}
+
+	def "unused indexes are deleted"() {
+		given:
+		def indexDir = testPath.resolve("indexes")
+		def jar = ZipTestUtils.createZipFromBytes(["net/fabricmc/Example.class": newClass("net/fabricmc/Example")])
+		def used = indexDir.resolve("used.bin")
+		def unused = indexDir.resolve("unused.bin")
+		ClassFingerprintIndex.read(used).walk(jar)
+		ClassFingerprintIndex.read(unused).walk(jar)
+		Files.setLastModifiedTime(used, FileTime.from(Instant.now().minus(Duration.ofDays(30))))
+		Files.setLastModifiedTime(unused, FileTime.from(Instant.now().minus(Duration.ofDays(30))))
+
+		when:
+		// Walking an unchanged jar marks its index as used
+		ClassFingerprintIndex.read(used).walk(jar)
+		ClassFingerprintIndex.deleteUnused(indexDir, Duration.ofDays(7))
+
+		then:
+		Files.exists(used)
+		Files.notExists(unused)
+	}
+
+	// Computed in the same way as CachedJarProcessor does without an index
+	private static Map<String, String> hierarchyHashes(JarWalker.WalkResult result) {
+		def entryHashes = [:]
+
+		for (ClassEntry entry : result.classes()) {
+			def hash = entry.hash(result.fileHashes())
+			entryHashes[entry.name()] = hash
+			entry.innerClasses().each { entryHashes[it] = hash }
+		}
+
+		return result.classes().collectEntries { [(it.name()): it.hashSuperHierarchy(entryHashes)] }
+	}
+
+	private static byte[] newClass(String name, String[] interfaces = null, String superName = "java/lang/Object") {
+		def writer = new ClassWriter(0)
+		writer.visit(Opcodes.V17, Opcodes.ACC_PUBLIC, name, null, superName, interfaces)
+		return writer.toByteArray()
+	}
+}
@@ -151,6 +151,30 @@ class JarWalkerTest extends Specification {
 		]
 	}
 
+	def "streaming walk"() {
+		given:
+		def jarEntries = [
+			"net/fabricmc/Example.class": newClass("net/fabricmc/Example"),
+			"net/fabricmc/other/Test.class": newClass("net/fabricmc/other/Test"),
+			"net/fabricmc/other/Test\$Inner.class": newInnerClass("net/fabricmc/other/Test\$Inner", "net/fabricmc/other/Test", "Inner", null, "net/fabricmc/other/Super"),
+			"net/fabricmc/other/Test\$1.class": newInnerClass("net/fabricmc/other/Test\$1", "net/fabricmc/other/Test", null, ["java/lang/Runnable"] as String[]),
+		]
+		def jar = ZipTestUtils.createZipFromBytes(jarEntries)
+
+		when:
+		def classes = JarWalker.findClasses(jar)
+		def result = JarWalker.walk(jar)
+		def hashes = FileSystemUtil.getJarFileSystem(jar).withCloseable { fs ->
+			return classes.collect { it.hash(fs.root) }
+		}
+
+		then:
+		result.classes() == classes
+		result.classes().collect { it.hash(result.fileHashes()) } == hashes
+		result.classBytes().size() == 4
+		result.classBytes()["net/fabricmc/Example.class"] == jarEntries["net/fabricmc/Example.class"]
+	}
+
 	private static byte[] newClass(String name, String[] interfaces = null, String superName = "java/lang/Object") {
 		def writer = new ClassWriter(0)
 		writer.visit(Opcodes.V17, Opcodes.ACC_PUBLIC, name, null, superName, interfaces)
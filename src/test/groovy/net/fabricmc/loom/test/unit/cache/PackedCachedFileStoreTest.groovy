@@ -0,0 +1,228 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.test.unit.cache
+
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.attribute.FileTime
+import java.time.Duration
+import java.time.Instant
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import net.fabricmc.loom.decompilers.cache.CachedFileStore
+import net.fabricmc.loom.decompilers.cache.CachedFileStoreImpl
+import net.fabricmc.loom.decompilers.cache.PackedCachedFileStore
+
+class PackedCachedFileStoreTest extends Specification {
+	@TempDir
+	Path testPath
+
+	def "getEntry"() {
+		given:
+		def store = open(new CachedFileStoreImpl.CacheRules(100, Duration.ofDays(7)))
+		when:
+		store.putEntry("abc", "Hello world".bytes)
+		store.putEntry("def", "Hello loom".bytes)
+		def entry = store.getEntry("abc")
+		def otherEntry = store.getEntry("def")
+		def unknownEntry = store.getEntry("123")
+		store.close()
+		then:
+		entry == "Hello world".bytes
+		otherEntry == "Hello loom".bytes
+		unknownEntry == null
+	}
+
+	def "reopen"() {
+		given:
+		def rules = new CachedFileStoreImpl.CacheRules(100, Duration.ofDays(7))
+		when:
+		def store = open(rules)
+		store.putEntry("abc", "Hello world".bytes)
+		store.close()
+
+		store = open(rules)
+		def entry = store.getEntry("abc")
+		store.close()
+		then:
+		entry == "Hello world".bytes
+	}
+
+	def "replace entry"() {
+		given:
+		def store = open(new CachedFileStoreImpl.CacheRules(100, Duration.ofDays(7)))
+		when:
+		store.putEntry("abc", "Hello world".bytes)
+		store.putEntry("abc", "Goodbye world".bytes)
+		def entry = store.getEntry("abc")
+		store.close()
+		then:
+		entry == "Goodbye world".bytes
+	}
+
+	def "grow index"() {
+		given:
+		def rules = new CachedFileStoreImpl.CacheRules(100_000, Duration.ofDays(7))
+		def store = open(rules)
+		when:
+		for (i in 0..<50_000) {
+			store.putEntry("test_" + i, ("Hello " + i).bytes)
+		}
+
+		store.close()
+		store = open(rules)
+		def first = store.getEntry("test_0")
+		def last = store.getEntry("test_49999")
+		store.close()
+		then:
+		first == "Hello 0".bytes
+		last == "Hello 49999".bytes
+	}
+
+	def "prune many files"() {
+		given:
+		def store = open(new CachedFileStoreImpl.CacheRules(250, Duration.ofDays(7)))
+		when:
+		for (i in 0..<500) {
+			store.putEntry("test_" + i, "Hello world".bytes)
+		}
+
+		store.close()
+
+		// Use a new store so the recently read entries have a newer access time
+		Thread.sleep(10)
+		store = open(new CachedFileStoreImpl.CacheRules(250, Duration.ofDays(7)))
+
+		for (i in 0..<250) {
+			store.getEntry("test_" + i)
+		}
+
+		store.prune()
+		then:
+		store.getEntry("test_0") == "Hello world".bytes
+		store.getEntry("test_100") == "Hello world".bytes
+		store.getEntry("test_300") == null
+		cleanup:
+		store.close()
+	}
+
+	def "prune old files"() {
+		given:
+		def legacyRoot = testPath.resolve("legacy")
+		def legacyStore = new CachedFileStoreImpl(legacyRoot, BYTE_ARRAY_SERIALIZER, new CachedFileStoreImpl.CacheRules(1000, Duration.ofDays(7)))
+		def store = open(new CachedFileStoreImpl.CacheRules(1000, Duration.ofSeconds(250)))
+		when:
+		for (i in 0..<500) {
+			def key = "test_" + i
+			legacyStore.putEntry(key, "Hello world".bytes)
+			// Higher files are older and should be removed.
+			Files.setLastModifiedTime(legacyRoot.resolve(key), FileTime.from(Instant.now().minusSeconds(i)))
+		}
+
+		def migrated = store.migrateFrom(legacyRoot)
+		store.prune()
+		then:
+		migrated == 500
+		store.getEntry("test_0") == "Hello world".bytes
+		store.getEntry("test_100") == "Hello world".bytes
+		store.getEntry("test_300") == null
+		cleanup:
+		store.close()
+	}
+
+	def "migrate nested keys"() {
+		given:
+		def legacyRoot = testPath.resolve("legacy")
+		def legacyStore = new CachedFileStoreImpl(legacyRoot, BYTE_ARRAY_SERIALIZER, new CachedFileStoreImpl.CacheRules(1000, Duration.ofDays(7)))
+		def store = open(new CachedFileStoreImpl.CacheRules(1000, Duration.ofDays(7)))
+		when:
+		legacyStore.putEntry("base/abc", "Hello world".bytes)
+		def migrated = store.migrateFrom(legacyRoot)
+		def entry = store.getEntry("base/abc")
+		store.close()
+		then:
+		migrated == 1
+		entry == "Hello world".bytes
+	}
+
+	def "threads wait for the store to be closed"() {
+		given:
+		def rules = new CachedFileStoreImpl.CacheRules(100, Duration.ofDays(7))
+		def store = open(rules)
+		def opened = new CountDownLatch(1)
+		def thread = Thread.start {
+			def other = open(rules)
+			opened.countDown()
+			other.putEntry("def", "Hello loom".bytes)
+			other.close()
+		}
+		when:
+		def waited = !opened.await(500, TimeUnit.MILLISECONDS)
+		store.putEntry("abc", "Hello world".bytes)
+		store.close()
+		thread.join(10_000)
+		store = open(rules)
+		def entry = store.getEntry("abc")
+		def otherEntry = store.getEntry("def")
+		store.close()
+		then:
+		waited
+		opened.count == 0
+		entry == "Hello world".bytes
+		otherEntry == "Hello loom".bytes
+	}
+
+	private PackedCachedFileStore<byte[]> open(CachedFileStoreImpl.CacheRules rules) {
+		return PackedCachedFileStore.open(testPath.resolve("packed"), BYTE_ARRAY_SERIALIZER, rules)
+	}
+
+	private static CachedFileStore.ChannelEntrySerializer<byte[]> BYTE_ARRAY_SERIALIZER = new CachedFileStore.ChannelEntrySerializer<byte[]>() {
+		@Override
+		byte[] read(Path path) throws IOException {
+			return Files.readAllBytes(path)
+		}
+
+		@Override
+		void write(byte[] entry, Path path) throws IOException {
+			Files.write(path, entry)
+		}
+
+		@Override
+		byte[] read(InputStream inputStream) throws IOException {
+			return inputStream.readAllBytes()
+		}
+
+		@Override
+		void write(byte[] entry, FileChannel fileChannel) throws IOException {
+			fileChannel.write(ByteBuffer.wrap(entry))
+		}
+	}
+}
@@ -0,0 +1,201 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.test.unit.download
+
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+
+import io.javalin.http.HttpStatus
+
+import net.fabricmc.loom.util.Checksum
+import net.fabricmc.loom.util.download.Download
+import net.fabricmc.loom.util.download.DownloadException
+
+class BulkDownloadTest extends DownloadTest {
+	def "Bulk: Multiple files"() {
+		setup:
+		server.get("/bulk/{name}") {
+			it.result("Hello " + it.pathParam("name"))
+		}
+
+		def dir = File.createTempDir().toPath()
+		def downloader = Download.createBulk()
+
+		for (name in ["a", "b", "c"]) {
+			downloader.add("$PATH/bulk/$name", sha1("Hello $name"), dir.resolve("$name/file.txt"))
+		}
+
+		when:
+		def progress = downloader.download { }
+
+		then:
+		progress.completed() == 3
+		progress.downloaded() == 3
+		Files.readString(dir.resolve("a/file.txt")) == "Hello a"
+		Files.readString(dir.resolve("b/file.txt")) == "Hello b"
+		Files.readString(dir.resolve("c/file.txt")) == "Hello c"
+	}
+
+	def "Bulk: Same hash is only downloaded once"() {
+		setup:
+		int requestCount = 0
+
+		server.get("/bulkDedup") {
+			requestCount++
+			it.result("Hello World")
+		}
+
+		def dir = File.createTempDir().toPath()
+		def hash = sha1("Hello World")
+
+		when:
+		def progress = Download.createBulk()
+				.add("$PATH/bulkDedup", hash, dir.resolve("one.txt"))
+				.add("$PATH/bulkDedup", hash, dir.resolve("two.txt"))
+				.download { }
+
+		then:
+		requestCount == 1
+		progress.total() == 1
+		Files.readString(dir.resolve("one.txt")) == "Hello World"
+		Files.readString(dir.resolve("two.txt")) == "Hello World"
+	}
+
+	def "Bulk: Valid files are not downloaded again"() {
+		setup:
+		int requestCount = 0
+
+		server.get("/bulkCached") {
+			requestCount++
+			it.result("Hello World")
+		}
+
+		def output = new File(File.createTempDir(), "file.txt").toPath()
+		def hash = sha1("Hello World")
+
+		when:
+		Download.createBulk().add("$PATH/bulkCached", hash, output).download { }
+		def progress = Download.createBulk().add("$PATH/bulkCached", hash, output).download { }
+
+		then:
+		requestCount == 1
+		progress.completed() == 1
+		progress.downloaded() == 0
+	}
+
+	def "Bulk: Resume partial download"() {
+		setup:
+		String range = null
+
+		server.get("/bulkResume") {
+			range = it.header("Range")
+
+			if (range == "bytes=6-") {
+				it.status(HttpStatus.PARTIAL_CONTENT)
+				it.header("Content-Range", "bytes 6-10/11")
+				it.result("World")
+			} else {
+				it.result("Hello World")
+			}
+		}
+
+		def output = new File(File.createTempDir(), "file.txt").toPath()
+		Files.writeString(output.resolveSibling("file.txt.part"), "Hello ")
+
+		when:
+		Download.createBulk().add("$PATH/bulkResume", sha1("Hello World"), output).download { }
+
+		then:
+		range == "bytes=6-"
+		Files.readString(output) == "Hello World"
+		Files.notExists(output.resolveSibling("file.txt.part"))
+	}
+
+	def "Bulk: Copy from object store"() {
+		setup:
+		int requestCount = 0
+
+		server.get("/bulkObjectStore") {
+			requestCount++
+			it.result("Hello World")
+		}
+
+		def hash = sha1("Hello World")
+		def objectStore = File.createTempDir().toPath()
+		def stored = objectStore.resolve(hash.substring(0, 2)).resolve(hash)
+		Files.createDirectories(stored.parent)
+		Files.writeString(stored, "Hello World")
+
+		def output = new File(File.createTempDir(), "file.txt").toPath()
+
+		when:
+		Download.createBulk()
+				.objectStore(objectStore)
+				.add("$PATH/bulkObjectStore", hash, output)
+				.download { }
+
+		then:
+		requestCount == 0
+		Files.readString(output) == "Hello World"
+	}
+
+	def "Bulk: Hash mismatch"() {
+		setup:
+		server.get("/bulkMismatch") {
+			it.result("Hello World")
+		}
+
+		def output = new File(File.createTempDir(), "file.txt").toPath()
+
+		when:
+		Download.createBulk()
+				.maxRetries(0)
+				.add("$PATH/bulkMismatch", sha1("Goodbye World"), output)
+				.download { }
+
+		then:
+		def e = thrown DownloadException
+		e.suppressed.length == 1
+		Files.notExists(output)
+	}
+
+	def "Bulk: Offline"() {
+		setup:
+		def output = new File(File.createTempDir(), "file.txt").toPath()
+
+		when:
+		Download.createBulk()
+				.offline()
+				.add("$PATH/bulkOffline", sha1("Hello World"), output)
+				.download { }
+
+		then:
+		thrown DownloadException
+	}
+
+	private static String sha1(String input) {
+		return Checksum.sha1Hex(input.getBytes(StandardCharsets.UTF_8))
+	}
+}
@@ -365,6 +365,26 @@ class DownloadFileTest extends DownloadTest {
 		Files.readString(dir.resolve("4.txt")) == "Hello World"
 	}
 
+	def "File: Async Progress"() {
+		setup:
+		server.get("/async3") {
+			it.result("Hello World")
+		}
+
+		def dir = File.createTempDir().toPath()
+		def completed = []
+
+		when:
+		new DownloadExecutor(2, { completed.add(it) }).withCloseable {
+			Download.create("$PATH/async3").downloadPathAsync(dir.resolve("1.txt"), it)
+			Download.create("$PATH/async3").downloadPathAsync(dir.resolve("2.txt"), it)
+			Download.create("$PATH/async3").downloadPathAsync(dir.resolve("3.txt"), it)
+		}
+
+		then:
+		completed == [1, 2, 3]
+	}
+
 	def "File: Async Error"() {
 		setup:
 		server.get("/async2") {
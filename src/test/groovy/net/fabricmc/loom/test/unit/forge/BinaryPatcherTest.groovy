@@ -0,0 +1,287 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.test.unit.forge
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.zip.Adler32
+import java.util.zip.ZipEntry
+import java.util.zip.ZipFile
+import java.util.zip.ZipOutputStream
+
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import net.fabricmc.loom.configuration.providers.forge.binpatch.BinaryPatcher
+import net.fabricmc.loom.test.LoomTestConstants
+import net.fabricmc.loom.util.download.Download
+
+class BinaryPatcherTest extends Specification {
+	private static final String BINARY_PATCHER_URL = "https://maven.minecraftforge.net/net/minecraftforge/binarypatcher/1.1.1/binarypatcher-1.1.1-fatjar.jar"
+
+	@TempDir
+	Path tempDir
+
+	def "apply patches"() {
+		given:
+		def clean = writeJar("clean.jar", [
+			"a/A.class": "Hello, world",
+			"c/Gone.class": "Goodbye",
+			"d/Same.class": "Unchanged",
+			"data.txt": "Data"
+		])
+		def patches = new ByteArrayInputStream(patchJar([
+			"a/A.class.binpatch": patch("a/A", "Hello, world", gdiff { copy(0, 5); data("!") }),
+			"b/New.class.binpatch": patch("b/New", null, gdiff { data("New") }),
+			"c/Gone.class.binpatch": patch("c/Gone", "Goodbye", new byte[0])
+		]))
+		def output = tempDir.resolve("output.jar")
+
+		when:
+		BinaryPatcher.read(patches, null)
+				.keepData(keepData)
+				.copyMissingClasses(copyMissingClasses)
+				.apply(clean, output)
+
+		then:
+		readJar(output) == expected
+
+		where:
+		keepData | copyMissingClasses | expected
+		false    | false              | ["a/A.class": "Hello!", "b/New.class": "New"]
+		true     | false              | ["a/A.class": "Hello!", "b/New.class": "New", "data.txt": "Data"]
+		false    | true               | ["a/A.class": "Hello!", "b/New.class": "New", "c/Gone.class": "Goodbye", "d/Same.class": "Unchanged"]
+	}
+
+	def "apply patches with a prefix"() {
+		given:
+		def clean = writeJar("clean.jar", ["a/A.class": "Hello, world"])
+		def patches = new ByteArrayInputStream(patchJar([
+			"client/a/A.class.binpatch": patch("a/A", "Hello, world", gdiff { data("Client") }),
+			"server/a/A.class.binpatch": patch("a/A", "Hello, world", gdiff { data("Server") })
+		]))
+		def output = tempDir.resolve("output.jar")
+
+		when:
+		BinaryPatcher.read(patches, "server").apply(clean, output)
+
+		then:
+		readJar(output) == ["a/A.class": "Server"]
+	}
+
+	def "transform patched classes"() {
+		given:
+		def clean = writeJar("clean.jar", ["a/A.class": "Hello, world", "d/Same.class": "Unchanged"])
+		def patches = new ByteArrayInputStream(patchJar([
+			"a/A.class.binpatch": patch("a/A", "Hello, world", gdiff { copy(7, 5) })
+		]))
+		def output = tempDir.resolve("output.jar")
+
+		when:
+		BinaryPatcher.read(patches, null)
+				.copyMissingClasses(true)
+				.classTransformer { new String(it).toUpperCase().bytes }
+				.apply(clean, output)
+
+		then:
+		readJar(output) == ["a/A.class": "WORLD", "d/Same.class": "UNCHANGED"]
+	}
+
+	def "reject a class with a different checksum"() {
+		given:
+		def clean = writeJar("clean.jar", ["a/A.class": "Hello, world"])
+		def patches = new ByteArrayInputStream(patchJar([
+			"a/A.class.binpatch": patch("a/A", "Hello, there", gdiff { data("Hello!") })
+		]))
+
+		when:
+		BinaryPatcher.read(patches, null).apply(clean, tempDir.resolve("output.jar"))
+
+		then:
+		def e = thrown(IOException)
+		e.message.contains("checksum")
+	}
+
+	def "reject an invalid delta"() {
+		given:
+		def clean = writeJar("clean.jar", ["a/A.class": "Hello, world"])
+		def patches = new ByteArrayInputStream(patchJar([
+			"a/A.class.binpatch": patch("a/A", "Hello, world", gdiff { copy(10, 5) })
+		]))
+
+		when:
+		BinaryPatcher.read(patches, null).apply(clean, tempDir.resolve("output.jar"))
+
+		then:
+		thrown(IOException)
+	}
+
+	def "match the output of Forge's binarypatcher"() {
+		given:
+		def tool = downloadBinaryPatcher()
+		def clean = writeJar("clean.jar", [
+			"a/A.class": "public class A { int field; void method() {} }" * 20,
+			"b/B.class": "public class B { }",
+			"c/C.class": "public class C { String name; }" * 10,
+			"data.txt": "Data"
+		])
+		def dirty = writeJar("dirty.jar", [
+			"a/A.class": "public class A { long field; void method(int arg) {} }" * 20,
+			"b/B.class": "public class B { }",
+			"c/C.class": "public class C { String name; String other; }" * 10,
+			"d/New.class": "public class New { }",
+			"data.txt": "Data"
+		])
+		def patches = tempDir.resolve("patches.lzma")
+		def expected = tempDir.resolve("expected.jar")
+		def output = tempDir.resolve("output.jar")
+
+		when:
+		runTool(tool, "--clean", clean, "--create", dirty, "--output", patches)
+		runTool(tool, "--clean", clean, "--apply", patches, "--output", expected, "--unpatched", "--data")
+
+		BinaryPatcher.load(patches, null)
+				.keepData(true)
+				.copyMissingClasses(true)
+				.apply(clean, output)
+
+		then:
+		readJar(output) == readJar(expected)
+		readJar(output) == readJar(dirty)
+	}
+
+	private Path writeJar(String name, Map<String, String> entries) {
+		def path = tempDir.resolve(name)
+
+		new ZipOutputStream(Files.newOutputStream(path)).withCloseable { zos ->
+			entries.each { entryName, content ->
+				zos.putNextEntry(new ZipEntry(entryName))
+				zos.write(content.bytes)
+				zos.closeEntry()
+			}
+		}
+
+		return path
+	}
+
+	private static Map<String, String> readJar(Path path) {
+		new ZipFile(path.toFile()).withCloseable { zip ->
+			zip.entries().toList()
+					.findAll { !it.directory && !it.name.startsWith("META-INF/") }
+					.collectEntries { [it.name, new String(zip.getInputStream(it).bytes)] }
+		}
+	}
+
+	private static byte[] patchJar(Map<String, byte[]> entries) {
+		def bytes = new ByteArrayOutputStream()
+
+		new ZipOutputStream(bytes).withCloseable { zos ->
+			entries.each { name, content ->
+				zos.putNextEntry(new ZipEntry(name))
+				zos.write(content)
+				zos.closeEntry()
+			}
+		}
+
+		return bytes.toByteArray()
+	}
+
+	private static byte[] patch(String name, String original, byte[] delta) {
+		def bytes = new ByteArrayOutputStream()
+		def out = new DataOutputStream(bytes)
+		out.writeByte(1)
+		out.writeUTF(name)
+		out.writeUTF(name)
+		out.writeBoolean(original != null)
+
+		if (original != null) {
+			def adler32 = new Adler32()
+			adler32.update(original.bytes)
+			out.writeInt((int) adler32.value)
+		}
+
+		out.writeInt(delta.length)
+		out.write(delta)
+		return bytes.toByteArray()
+	}
+
+	private static byte[] gdiff(@DelegatesTo(GDiffWriter) Closure closure) {
+		def writer = new GDiffWriter()
+		writer.with(closure)
+		return writer.finish()
+	}
+
+	private static class GDiffWriter {
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream()
+		private final DataOutputStream out = new DataOutputStream(bytes)
+
+		GDiffWriter() {
+			out.writeInt(0xD1FFD1FF)
+			out.writeByte(4)
+		}
+
+		void data(String data) {
+			out.writeByte(247)
+			out.writeShort(data.length())
+			out.write(data.bytes)
+		}
+
+		void copy(int offset, int length) {
+			out.writeByte(249)
+			out.writeShort(offset)
+			out.writeByte(length)
+		}
+
+		byte[] finish() {
+			out.writeByte(0)
+			return bytes.toByteArray()
+		}
+	}
+
+	private static Path downloadBinaryPatcher() {
+		def path = new File(LoomTestConstants.TEST_DIR, "binarypatcher/binarypatcher-1.1.1-fatjar.jar").toPath()
+
+		if (Files.notExists(path)) {
+			Files.createDirectories(path.parent)
+			Download.create(BINARY_PATCHER_URL)
+					.defaultCache()
+					.downloadPath(path)
+		}
+
+		return path
+	}
+
+	private static void runTool(Path tool, Object... args) {
+		def java = Path.of(System.getProperty("java.home"), "bin", "java").toString()
+		def process = new ProcessBuilder([java, "-jar", tool.toString()] + args*.toString())
+				.redirectErrorStream(true)
+				.start()
+		def output = process.inputStream.text
+
+		if (process.waitFor() != 0) {
+			throw new IllegalStateException("binarypatcher failed:\n" + output)
+		}
+	}
+}
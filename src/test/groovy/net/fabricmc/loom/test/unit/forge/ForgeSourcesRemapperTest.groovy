@@ -0,0 +1,170 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.test.unit.forge
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.attribute.FileTime
+import java.time.Duration
+import java.time.Instant
+
+import org.gradle.api.logging.Logger
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import net.fabricmc.loom.configuration.sources.ForgeSourcesRemapper
+
+class ForgeSourcesRemapperTest extends Specification {
+	@TempDir
+	Path tempDir
+
+	def "partitions are balanced by size"() {
+		given:
+		def sources = new TreeMap<String, byte[]>()
+		sources["/a/A1.java"] = new byte[60]
+		sources["/a/A2.java"] = new byte[40]
+		sources["/b/B.java"] = new byte[60]
+		sources["/c/C.java"] = new byte[50]
+		sources["/d/D.java"] = new byte[40]
+
+		when:
+		def partitions = ForgeSourcesRemapper.partition(sources, 2)
+
+		then:
+		// Largest package first, each into the smallest partition: a (100), b (60), c (50 -> 110), d (40 -> 140)
+		partitions*.keySet() == [
+			["/a/A1.java", "/a/A2.java", "/d/D.java"] as Set,
+			["/b/B.java", "/c/C.java"] as Set
+		]
+	}
+
+	def "partitions only contain whole packages"() {
+		given:
+		def sources = new TreeMap<String, byte[]>()
+
+		for (int i = 0; i < 20; i++) {
+			sources["/pkg${i % 5}/Class${i}.java".toString()] = new byte[i]
+		}
+
+		when:
+		def partitions = ForgeSourcesRemapper.partition(sources, 3)
+
+		then:
+		partitions.size() == 3
+		partitions.sum { it.size() } == sources.size()
+		partitions.collectMany { it.keySet() } as Set == sources.keySet()
+		// Each package is in exactly one partition
+		partitions.collectMany { packagesOf(it.keySet()) }.size() == 5
+	}
+
+	def "a single partition is used when no partitions are requested"() {
+		given:
+		def sources = new TreeMap<String, byte[]>()
+		sources["/a/A.java"] = new byte[1]
+		sources["/b/B.java"] = new byte[1]
+
+		when:
+		def partitions = ForgeSourcesRemapper.partition(sources, 0)
+
+		then:
+		partitions.size() == 1
+		partitions[0].keySet() == sources.keySet()
+	}
+
+	def "a single package is not split"() {
+		given:
+		def sources = new TreeMap<String, byte[]>()
+		sources["/a/A.java"] = new byte[10]
+		sources["/a/B.java"] = new byte[10]
+		sources["/a/C.java"] = new byte[10]
+
+		when:
+		def partitions = ForgeSourcesRemapper.partition(sources, 4)
+
+		then:
+		partitions.size() == 1
+		partitions[0].keySet() == sources.keySet()
+	}
+
+	def "remapped sources are cached"() {
+		given:
+		def cacheFile = tempDir.resolve("v1/ab/abcd.jar")
+		def remapped = new TreeMap<String, byte[]>()
+		remapped["/a/A.java"] = "remapped A".bytes
+		remapped["/b/B.java"] = "remapped B".bytes
+		def sources = new TreeMap<String, byte[]>()
+		sources["/a/A.java"] = "A".bytes
+		sources["/b/B.java"] = "B".bytes
+
+		when:
+		def missing = ForgeSourcesRemapper.readCache(Mock(Logger), cacheFile, new TreeMap<String, byte[]>(sources))
+		ForgeSourcesRemapper.writeCache(Mock(Logger), cacheFile, remapped)
+		def restored = ForgeSourcesRemapper.readCache(Mock(Logger), cacheFile, sources)
+
+		then:
+		!missing
+		restored
+		sources.collectEntries { name, bytes -> [name, new String(bytes)] } == ["/a/A.java": "remapped A", "/b/B.java": "remapped B"]
+	}
+
+	def "cached sources must match the sources"() {
+		given:
+		def cacheFile = tempDir.resolve("v1/ab/abcd.jar")
+		def cached = new TreeMap<String, byte[]>()
+		cached["/a/A.java"] = "remapped A".bytes
+		ForgeSourcesRemapper.writeCache(Mock(Logger), cacheFile, cached)
+		def sources = new TreeMap<String, byte[]>()
+		sources["/a/A.java"] = "A".bytes
+		sources["/b/B.java"] = "B".bytes
+
+		when:
+		def restored = ForgeSourcesRemapper.readCache(Mock(Logger), cacheFile, sources)
+
+		then:
+		!restored
+		new String(sources["/a/A.java"]) == "A"
+	}
+
+	def "unused cache files are deleted"() {
+		given:
+		def unused = tempDir.resolve("v1/cd/cdef.jar")
+		Files.createDirectories(unused.parent)
+		Files.writeString(unused, "unused")
+		Files.setLastModifiedTime(unused, FileTime.from(Instant.now().minus(Duration.ofDays(15))))
+		def sources = new TreeMap<String, byte[]>()
+		sources["/a/A.java"] = "A".bytes
+
+		when:
+		ForgeSourcesRemapper.writeCache(Mock(Logger), tempDir.resolve("v1/ab/abcd.jar"), sources)
+
+		then:
+		Files.notExists(unused)
+		Files.exists(tempDir.resolve("v1/ab/abcd.jar"))
+	}
+
+	private static Set<String> packagesOf(Set<String> names) {
+		return names.collect { it.substring(0, it.lastIndexOf('/')) } as Set
+	}
+}
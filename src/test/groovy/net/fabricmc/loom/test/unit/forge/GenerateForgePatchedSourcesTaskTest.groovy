@@ -0,0 +1,99 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.test.unit.forge
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+import org.gradle.api.logging.Logging
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import net.fabricmc.loom.configuration.providers.forge.mcpconfig.McpStepCache
+import net.fabricmc.loom.task.GenerateForgePatchedSourcesTask
+
+class GenerateForgePatchedSourcesTaskTest extends Specification {
+	@TempDir
+	Path tempDir
+
+	Map<String, Integer> executed = [:]
+
+	def "stages are restored from the cache"() {
+		given:
+		def cache = McpStepCache.create(tempDir.resolve("cache"))
+		def input = Files.writeString(tempDir.resolve("input.jar"), "input")
+
+		when:
+		def first = runStages(cache, input, "at-1", "mappings-1")
+		def second = runStages(McpStepCache.create(tempDir.resolve("cache")), input, "at-1", "mappings-1")
+
+		then:
+		first == second
+		executed == [accessTransform: 1, stripSideAnnotations: 1, sourcePatch: 1, remap: 2]
+	}
+
+	def "a mappings only change reruns only the remap stage"() {
+		given:
+		def cache = McpStepCache.create(tempDir.resolve("cache"))
+		def input = Files.writeString(tempDir.resolve("input.jar"), "input")
+
+		when:
+		runStages(cache, input, "at-1", "mappings-1")
+		def remapped = runStages(cache, input, "at-1", "mappings-2")
+
+		then:
+		executed == [accessTransform: 1, stripSideAnnotations: 1, sourcePatch: 1, remap: 2]
+		remapped == "input+accessTransform+stripSideAnnotations+sourcePatch+mappings-2"
+	}
+
+	def "an access transformer change reruns every stage"() {
+		given:
+		def cache = McpStepCache.create(tempDir.resolve("cache"))
+		def input = Files.writeString(tempDir.resolve("input.jar"), "input")
+
+		when:
+		runStages(cache, input, "at-1", "mappings-1")
+		runStages(cache, input, "at-2", "mappings-1")
+
+		then:
+		executed == [accessTransform: 2, stripSideAnnotations: 2, sourcePatch: 2, remap: 2]
+	}
+
+	// Mirrors the stages of the task: every cached stage is keyed on the output of the previous one, the remap is not cached
+	private String runStages(McpStepCache cache, Path input, String ats, String mappings) {
+		def accessTransformed = runStage(cache, "accessTransform", input, [atTool: "tool", ats: ats])
+		def stripped = runStage(cache, "stripSideAnnotations", accessTransformed, [sass: "sas"])
+		def patched = runStage(cache, "sourcePatch", stripped, [:])
+		executed.merge("remap", 1, Integer::sum)
+		return Files.readString(patched) + "+" + mappings
+	}
+
+	private Path runStage(McpStepCache cache, String stage, Path input, Map<String, String> inputs) {
+		return GenerateForgePatchedSourcesTask.runCached(cache, stage, inputs + [input: cache.hashInput(input), userdev: "userdev"], Logging.getLogger(getClass())) { dir ->
+			executed.merge(stage, 1, Integer::sum)
+			Files.writeString(dir.resolve(stage + ".jar"), Files.readString(input) + "+" + stage)
+		}
+	}
+}
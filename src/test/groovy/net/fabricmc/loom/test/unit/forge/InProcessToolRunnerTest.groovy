@@ -0,0 +1,200 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.test.unit.forge
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+import javax.tools.ToolProvider
+
+import dev.architectury.loom.forge.tool.ForgeToolExecutor
+import org.gradle.api.provider.ListProperty
+import org.gradle.api.provider.Property
+import org.gradle.process.ExecOperations
+import spock.lang.Specification
+import spock.lang.TempDir
+import spock.lang.Timeout
+
+import static net.fabricmc.loom.test.util.GradleTestUtil.mockConfigurableFileCollection
+import static net.fabricmc.loom.test.util.GradleTestUtil.mockProperty
+import static org.mockito.ArgumentMatchers.any
+import static org.mockito.Mockito.mock
+import static org.mockito.Mockito.when
+
+@Timeout(60)
+class InProcessToolRunnerTest extends Specification {
+	private static final String TOOL_SOURCE = '''
+			import java.nio.file.Files;
+			import java.nio.file.Path;
+
+			public class %s {
+				static int runs;
+
+				public static void main(String[] args) throws Exception {
+					runs++;
+
+					switch (args[0]) {
+					case "count" -> Files.writeString(Path.of(args[1]), String.valueOf(runs));
+					case "exit" -> System.exit(3);
+					case "halt" -> Runtime.getRuntime().halt(0);
+					case "fail" -> throw new IllegalStateException("failed");
+					case "thread-exit" -> new Thread(() -> {
+						try {
+							Thread.sleep(200);
+						} catch (InterruptedException e) {
+							throw new RuntimeException(e);
+						}
+
+						System.exit(4);
+					}).start();
+					case "thread-exit-blocked" -> {
+						new Thread(() -> System.exit(5)).start();
+						Thread.sleep(Long.MAX_VALUE);
+					}
+					case "leak" -> {
+						Thread thread = new Thread(() -> {
+							while (true) {
+								try {
+									Thread.sleep(Long.MAX_VALUE);
+								} catch (InterruptedException ignored) {
+								}
+							}
+						});
+						thread.setDaemon(true);
+						thread.start();
+					}
+					}
+				}
+			}
+			'''
+
+	@TempDir
+	Path tempDir
+
+	def "exit calls are returned as the exit value"() {
+		given:
+		def classpath = compileTool("ExitTool")
+
+		when:
+		def result = exec(classpath, "ExitTool", args)
+
+		then:
+		result.exitValue == exitValue
+
+		where:
+		args                    | exitValue
+		["exit"]                | 3
+		["halt"]                | 0
+		["thread-exit"]         | 4
+		["thread-exit-blocked"] | 5
+	}
+
+	def "class loaders are reused"() {
+		given:
+		def classpath = compileTool("CountTool")
+		def count = tempDir.resolve("count.txt")
+
+		when:
+		exec(classpath, "CountTool", ["count", count.toString()])
+		exec(classpath, "CountTool", ["halt"])
+		exec(classpath, "CountTool", ["count", count.toString()])
+
+		then:
+		Files.readString(count) == "3"
+	}
+
+	def "class loaders of failed runs are not reused"() {
+		given:
+		def classpath = compileTool("FailTool")
+		def count = tempDir.resolve("count.txt")
+
+		when:
+		exec(classpath, "FailTool", ["count", count.toString()])
+		def result = exec(classpath, "FailTool", ["fail"])
+		result.rethrowFailure()
+
+		then:
+		def e = thrown(RuntimeException)
+		e.cause instanceof IllegalStateException
+
+		when:
+		exec(classpath, "FailTool", ["count", count.toString()])
+
+		then:
+		Files.readString(count) == "1"
+	}
+
+	def "tools that leave threads running are forked"() {
+		given:
+		def classpath = compileTool("LeakTool")
+		def execOperations = Mock(ExecOperations)
+
+		when:
+		def result = ForgeToolExecutor.exec(execOperations, settings(classpath, "LeakTool", ["leak"]))
+
+		then:
+		result.exitValue == 0
+		0 * execOperations.javaexec(_)
+
+		when:
+		ForgeToolExecutor.exec(execOperations, settings(classpath, "LeakTool", ["leak"]))
+
+		then:
+		1 * execOperations.javaexec(_)
+	}
+
+	private Path compileTool(String name) {
+		def source = Files.writeString(tempDir.resolve(name + ".java"), TOOL_SOURCE.formatted(name))
+		def classes = Files.createDirectories(tempDir.resolve("classes"))
+		int status = ToolProvider.systemJavaCompiler.run(null, null, null, "-d", classes.toString(), source.toString())
+		assert status == 0
+		return classes
+	}
+
+	private static exec(Path classpath, String mainClass, List<String> args) {
+		return ForgeToolExecutor.exec(mock(ExecOperations), settings(classpath, mainClass, args))
+	}
+
+	private static ForgeToolExecutor.Settings settings(Path classpath, String mainClass, List<String> args) {
+		def settings = mock(ForgeToolExecutor.Settings)
+		def inProcess = mockProperty(true)
+		when(inProcess.getOrElse(any())).thenReturn(true)
+		when(settings.getExecutable()).thenReturn(mock(Property))
+		when(settings.getMainClass()).thenReturn(mockProperty(mainClass))
+		when(settings.getProgramArgs()).thenReturn(mockListProperty(args))
+		when(settings.getJvmArgs()).thenReturn(mockListProperty([]))
+		when(settings.getExecClasspath()).thenReturn(mockConfigurableFileCollection(classpath.toFile()))
+		when(settings.getShowVerboseStdout()).thenReturn(mockProperty(false))
+		when(settings.getShowVerboseStderr()).thenReturn(mockProperty(false))
+		when(settings.getInProcess()).thenReturn(inProcess)
+		return settings
+	}
+
+	private static ListProperty<String> mockListProperty(List<String> values) {
+		def mock = mock(ListProperty)
+		when(mock.get()).thenReturn(values)
+		return mock
+	}
+}
@@ -0,0 +1,120 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.test.unit.forge
+
+import java.nio.file.Files
+import java.nio.file.NoSuchFileException
+import java.nio.file.Path
+
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import net.fabricmc.loom.configuration.providers.forge.mcpconfig.McpStepCache
+
+class McpStepCacheTest extends Specification {
+	@TempDir
+	Path tempDir
+
+	def "steps are only executed once"() {
+		given:
+		def cache = McpStepCache.create(tempDir.resolve("cache"))
+		def key = cache.getKey("strip", "logic", new TreeMap([input: "a"]))
+		int executed = 0
+
+		when:
+		def missing = cache.get(key)
+		def stored = cache.put(key) { dir ->
+			executed++
+			Files.writeString(dir.resolve("rejects.txt"), "rejects")
+			Files.writeString(dir.resolve("output.jar"), "output")
+		}
+		def restored = cache.get(key)
+
+		then:
+		missing == null
+		executed == 1
+		restored == stored
+		Files.readString(restored) == "output"
+		Files.readString(restored.resolveSibling("rejects.txt")) == "rejects"
+	}
+
+	def "outputs must be written to the working directory"() {
+		given:
+		def cache = McpStepCache.create(tempDir.resolve("cache"))
+		def key = cache.getKey("strip", "logic", new TreeMap())
+
+		when:
+		cache.put(key) { dir -> Files.writeString(tempDir.resolve("elsewhere.jar"), "output") }
+
+		then:
+		thrown(IOException)
+		cache.get(key) == null
+	}
+
+	def "files are hashed by their contents"() {
+		given:
+		def cache = McpStepCache.create(tempDir.resolve("cache"))
+		def a = Files.writeString(tempDir.resolve("a.jar"), "same")
+		def b = Files.writeString(tempDir.resolve("b.jar"), "same")
+		def c = Files.writeString(tempDir.resolve("c.jar"), "different")
+
+		expect:
+		cache.hashInput(a) == cache.hashInput(b)
+		cache.hashInput(a) != cache.hashInput(c)
+	}
+
+	def "missing inputs are not hashed"() {
+		given:
+		def cache = McpStepCache.create(tempDir.resolve("cache"))
+
+		when:
+		cache.hashInput(tempDir.resolve("missing.jar"))
+
+		then:
+		thrown(NoSuchFileException)
+	}
+
+	def "cached outputs are identified by their key"() {
+		given:
+		def cache = McpStepCache.create(tempDir.resolve("cache"))
+		def key = cache.getKey("patch", "logic", new TreeMap())
+		def output = cache.put(key) { dir -> Files.writeString(dir.resolve("output.jar"), "output") }
+
+		expect:
+		cache.hashInput(output) == "step:" + key
+	}
+
+	def "keys depend on the type, logic and config"() {
+		given:
+		def cache = McpStepCache.create(tempDir.resolve("cache"))
+		def key = cache.getKey("strip", "logic", new TreeMap([input: "a"]))
+
+		expect:
+		cache.getKey("strip", "logic", new TreeMap([input: "a"])) == key
+		cache.getKey("patch", "logic", new TreeMap([input: "a"])) != key
+		cache.getKey("strip", "other", new TreeMap([input: "a"])) != key
+		cache.getKey("strip", "logic", new TreeMap([input: "b"])) != key
+	}
+}
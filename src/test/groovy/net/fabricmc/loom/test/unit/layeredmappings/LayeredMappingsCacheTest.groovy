@@ -0,0 +1,98 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.test.unit.layeredmappings
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+import net.fabricmc.loom.api.mappings.layered.MappingLayer
+import net.fabricmc.loom.configuration.providers.mappings.LayeredMappingSpec
+import net.fabricmc.loom.configuration.providers.mappings.LayeredMappingsCache
+import net.fabricmc.loom.configuration.providers.mappings.LayeredMappingsProcessor
+import net.fabricmc.loom.configuration.providers.mappings.file.FileMappingsLayer
+import net.fabricmc.mappingio.tree.MemoryMappingTree
+
+class LayeredMappingsCacheTest extends LayeredMappingsSpecification {
+	Path cacheDir = tempDir.toPath().resolve("cache")
+
+	def cleanup() {
+		cacheDir.deleteDir()
+	}
+
+	def "caches each layer and each merged prefix"() {
+		setup:
+		def base = layer("base.tiny", "c\tclass_1\tFoo\nc\tclass_2\tBaz\n")
+		def top = layer("top.tiny", "c\tclass_1\tBar\n")
+		def uncached = getMappings(null, [base, top])
+
+		when:
+		def first = getMappings(LayeredMappingsCache.create(cacheDir, mappingContext), [base, top])
+		def second = getMappings(LayeredMappingsCache.create(cacheDir, mappingContext), [base, top])
+
+		then:
+		getTiny(first) == getTiny(uncached)
+		getTiny(second) == getTiny(uncached)
+		getTiny(second).contains("Bar")
+		getTiny(second).contains("Baz")
+		!getTiny(second).contains("Foo")
+		// Two layers and two prefixes
+		cacheEntries() == 4
+	}
+
+	def "reuses the lower layers when only the top layer changes"() {
+		setup:
+		def base = layer("base.tiny", "c\tclass_1\tFoo\nc\tclass_2\tBaz\n")
+		def cache = LayeredMappingsCache.create(cacheDir, mappingContext)
+		getMappings(cache, [base, layer("top.tiny", "c\tclass_1\tBar\n")])
+
+		when:
+		def mappings = getMappings(cache, [base, layer("top2.tiny", "c\tclass_1\tQux\n")])
+
+		then:
+		getTiny(mappings).contains("Qux")
+		getTiny(mappings).contains("Baz")
+		!getTiny(mappings).contains("Bar")
+		// Only the new top layer and its prefix were added
+		cacheEntries() == 6
+	}
+
+	private FileMappingsLayer layer(String name, String content) {
+		def path = tempDir.toPath().resolve(name)
+		Files.createDirectories(path.parent)
+		path.text = "tiny\t2\t0\tintermediary\tnamed\n" + content
+		return new FileMappingsLayer(path, "mappings/mappings.tiny", "intermediary", "named", false, false, "intermediary")
+	}
+
+	private static MemoryMappingTree getMappings(LayeredMappingsCache cache, List<MappingLayer> layers) {
+		def processor = new LayeredMappingsProcessor(new LayeredMappingSpec([]), false, cache)
+		return processor.getMappings(layers)
+	}
+
+	private int cacheEntries() {
+		return Files.walk(cacheDir).withCloseable { stream ->
+			stream.filter { it.fileName.toString().endsWith(".tiny") }.count() as int
+		}
+	}
+}
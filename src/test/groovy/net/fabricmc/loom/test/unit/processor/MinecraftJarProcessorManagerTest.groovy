@@ -24,11 +24,22 @@
 
 package net.fabricmc.loom.test.unit.processor
 
+import java.nio.file.Path
+
+import org.objectweb.asm.ClassReader
+import org.objectweb.asm.ClassVisitor
+import org.objectweb.asm.ClassWriter
+import org.objectweb.asm.Opcodes
 import spock.lang.Specification
 
+import net.fabricmc.loom.api.processor.MinecraftJarProcessor
+import net.fabricmc.loom.api.processor.ProcessorContext
 import net.fabricmc.loom.api.processor.SpecContext
 import net.fabricmc.loom.configuration.processors.MinecraftJarProcessorManager
+import net.fabricmc.loom.test.util.ZipTestUtils
 import net.fabricmc.loom.test.util.processor.TestMinecraftJarProcessor
+import net.fabricmc.loom.util.Constants
+import net.fabricmc.loom.util.ZipUtils
 
 class MinecraftJarProcessorManagerTest extends Specification {
 	def "Cache value matches"() {
@@ -59,4 +70,97 @@ class MinecraftJarProcessorManagerTest extends Specification {
 		manager1.jarHash == "a714eb2de6"
 		manager2.jarHash == "eb6faafa72"
 	}
+
+	def "Shared cache key requires a stable key from every spec"() {
+		when:
+		def specContext = Mock(SpecContext)
+
+		def keyed1 = MinecraftJarProcessorManager.create([new KeyedProcessor("Test1")], specContext)
+		def keyed2 = MinecraftJarProcessorManager.create([new KeyedProcessor("Test1")], specContext)
+		def keyed3 = MinecraftJarProcessorManager.create([new KeyedProcessor("Test2")], specContext)
+		def mixed = MinecraftJarProcessorManager.create([new KeyedProcessor("Test1"), new TestMinecraftJarProcessor(input: "Test1")], specContext)
+
+		then:
+		keyed1.sharedCacheKey != null
+		keyed1.sharedCacheKey == keyed2.sharedCacheKey
+		keyed1.sharedCacheKey != keyed3.sharedCacheKey
+		mixed.sharedCacheKey == null
+	}
+
+	def "Class visitors are chained in order"() {
+		given:
+		def writer = new ClassWriter(0)
+		writer.visit(Opcodes.V17, Opcodes.ACC_PUBLIC, "net/minecraft/Test", null, "java/lang/Object", null)
+		writer.visitEnd()
+		def jar = ZipTestUtils.createZipFromBytes([
+			"net/minecraft/Test.class": writer.toByteArray(),
+			"net/minecraft/Other.class": writer.toByteArray(),
+		], ".jar")
+
+		when:
+		MinecraftJarProcessorManager.transformClasses(jar, [
+			new InterfaceAddingFactory("net/minecraft/First"),
+			new InterfaceAddingFactory("net/minecraft/Second"),
+		])
+		def reader = new ClassReader(ZipUtils.unpack(jar, "net/minecraft/Test.class"))
+		def otherReader = new ClassReader(ZipUtils.unpack(jar, "net/minecraft/Other.class"))
+
+		then:
+		reader.interfaces as List == ["net/minecraft/First", "net/minecraft/Second"]
+		otherReader.interfaces as List == []
+	}
+
+	private static class KeyedProcessor implements MinecraftJarProcessor<KeyedSpec> {
+		final String name = "KeyedProcessor"
+		final String input
+
+		KeyedProcessor(String input) {
+			this.input = input
+		}
+
+		@Override
+		KeyedSpec buildSpec(SpecContext context) {
+			return new KeyedSpec(input)
+		}
+
+		@Override
+		void processJar(Path jar, KeyedSpec spec, ProcessorContext context) throws IOException {
+		}
+	}
+
+	private static class KeyedSpec implements MinecraftJarProcessor.Spec {
+		final String input
+
+		KeyedSpec(String input) {
+			this.input = input
+		}
+
+		@Override
+		String getCacheKey() {
+			return input
+		}
+	}
+
+	private static class InterfaceAddingFactory implements MinecraftJarProcessor.ClassVisitorFactory {
+		final String iface
+
+		InterfaceAddingFactory(String iface) {
+			this.iface = iface
+		}
+
+		@Override
+		boolean shouldVisit(String className) {
+			return className == "net/minecraft/Test"
+		}
+
+		@Override
+		ClassVisitor createVisitor(String className, ClassVisitor next) {
+			return new ClassVisitor(Constants.ASM_VERSION, next) {
+				@Override
+				void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+					super.visit(version, access, name, signature, superName, (interfaces + [iface]) as String[])
+				}
+			}
+		}
+	}
 }
@@ -0,0 +1,112 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.test.unit.processor
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.attribute.FileTime
+import java.time.Duration
+import java.time.Instant
+
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import net.fabricmc.loom.configuration.processors.ProcessedJarCache
+
+class ProcessedJarCacheTest extends Specification {
+	@TempDir
+	Path tempDir
+
+	def "jars are only created once"() {
+		given:
+		def cache = ProcessedJarCache.create(tempDir.resolve("cache"), Long.MAX_VALUE)
+		def input = Files.writeString(tempDir.resolve("input.jar"), "input")
+		def key = cache.getKey(input, "processors")
+		int created = 0
+
+		when:
+		def first = cache.getOrCreate(key, false) { output ->
+			created++
+			Files.writeString(output, "processed")
+		}
+		def second = cache.getOrCreate(key, false) { output ->
+			created++
+			Files.writeString(output, "processed again")
+		}
+
+		then:
+		created == 1
+		first == second
+		Files.readString(second) == "processed"
+	}
+
+	def "refreshing replaces the cached jar"() {
+		given:
+		def cache = ProcessedJarCache.create(tempDir.resolve("cache"), Long.MAX_VALUE)
+		def input = Files.writeString(tempDir.resolve("input.jar"), "input")
+		def key = cache.getKey(input, "processors")
+
+		when:
+		cache.getOrCreate(key, false) { Files.writeString(it, "processed") }
+		def refreshed = cache.getOrCreate(key, true) { Files.writeString(it, "refreshed") }
+
+		then:
+		Files.readString(refreshed) == "refreshed"
+	}
+
+	def "keys depend on the input and context"() {
+		given:
+		def cache = ProcessedJarCache.create(tempDir.resolve("cache"), Long.MAX_VALUE)
+		def input = Files.writeString(tempDir.resolve("input.jar"), "input")
+		def otherInput = Files.writeString(tempDir.resolve("other.jar"), "other")
+
+		expect:
+		cache.getKey(input, "a") == cache.getKey(input, "a")
+		cache.getKey(input, "a") != cache.getKey(otherInput, "a")
+		cache.getKey(input, "a") != cache.getKey(input, "b")
+		cache.getKey(input, "a", "b") != cache.getKey(input, "ab")
+	}
+
+	def "least recently used jars are evicted"() {
+		given:
+		def cache = ProcessedJarCache.create(tempDir.resolve("cache"), 25)
+		def paths = (0..<3).collect { i ->
+			def input = Files.writeString(tempDir.resolve("input${i}.jar"), "input${i}")
+			def path = cache.getOrCreate(cache.getKey(input), false) { Files.writeString(it, "0123456789") }
+			Files.setLastModifiedTime(path, FileTime.from(Instant.now() - Duration.ofHours(3 - i)))
+			return path
+		}
+
+		when:
+		def input = Files.writeString(tempDir.resolve("input3.jar"), "input3")
+		def newest = cache.getOrCreate(cache.getKey(input), false) { Files.writeString(it, "0123456789") }
+
+		then:
+		Files.notExists(paths[0])
+		Files.notExists(paths[1])
+		Files.exists(paths[2])
+		Files.exists(newest)
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.test.unit.providers
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.concurrent.Executors
+import java.util.zip.ZipFile
+
+import spock.lang.Specification
+
+import net.fabricmc.loom.api.mappings.layered.MappingsNamespace
+import net.fabricmc.loom.configuration.mods.dependency.LocalMavenHelper
+import net.fabricmc.loom.configuration.providers.minecraft.MinecraftJar
+import net.fabricmc.loom.configuration.providers.minecraft.mapped.AbstractMappedMinecraftProvider
+import net.fabricmc.loom.configuration.providers.minecraft.mapped.AbstractMappedMinecraftProvider.RemapInputs
+import net.fabricmc.loom.configuration.providers.minecraft.mapped.AbstractMappedMinecraftProvider.RemapJob
+import net.fabricmc.loom.configuration.providers.minecraft.mapped.AbstractMappedMinecraftProvider.RemappedJars
+import net.fabricmc.loom.test.util.ZipTestUtils
+import net.fabricmc.loom.util.Checksum
+import net.fabricmc.loom.util.ZipUtils
+import net.fabricmc.mappingio.MappingReader
+import net.fabricmc.mappingio.tree.MemoryMappingTree
+
+class MappedMinecraftRemapTest extends Specification {
+	private static final String MAPPINGS = """
+tiny\t2\t0\tintermediary\tnamed
+c\tnet/fabricmc/loom/util/Checksum\tnet/fabricmc/loom/util/RenamedChecksum
+c\tnet/fabricmc/loom/util/ZipUtils\tnet/fabricmc/loom/util/RenamedZipUtils
+""".trim()
+
+	def "jars remapped concurrently match the sequential remap"() {
+		given:
+		def inputs = createInputs()
+		def commonJar = ZipTestUtils.createZipFromBytes([
+			"net/fabricmc/loom/util/Checksum.class": classBytes(Checksum),
+			"common.txt": "common".bytes,
+		], ".jar")
+		def clientJar = ZipTestUtils.createZipFromBytes([
+			"net/fabricmc/loom/util/ZipUtils.class": classBytes(ZipUtils),
+			"client.txt": "client".bytes,
+		], ".jar")
+		def sequentialDir = Files.createTempDirectory("loom-remap-sequential")
+		def concurrentDir = Files.createTempDirectory("loom-remap-concurrent")
+		def executor = Executors.newFixedThreadPool(2)
+
+		when:
+		AbstractMappedMinecraftProvider.remapJars(createJobs(commonJar, clientJar, sequentialDir), inputs, null)
+		AbstractMappedMinecraftProvider.remapJars(createJobs(commonJar, clientJar, concurrentDir), inputs, executor)
+
+		def sequentialCommon = readEntries(sequentialDir.resolve("common.jar"))
+		def sequentialClient = readEntries(sequentialDir.resolve("client.jar"))
+
+		then:
+		sequentialCommon.keySet() == ["net/fabricmc/loom/util/RenamedChecksum.class", "common.txt"] as Set
+		sequentialClient.keySet() == ["net/fabricmc/loom/util/RenamedZipUtils.class", "client.txt"] as Set
+		readEntries(concurrentDir.resolve("common.jar")) == sequentialCommon
+		readEntries(concurrentDir.resolve("client.jar")) == sequentialClient
+
+		cleanup:
+		executor.shutdown()
+	}
+
+	private static RemapInputs createInputs() {
+		def mappings = new MemoryMappingTree()
+		new StringReader(MAPPINGS).withCloseable {
+			MappingReader.read(it, mappings)
+		}
+
+		return new RemapInputs(mappings, MappingsNamespace.NAMED.toString(), [:], [] as Set, false, false, false, null, MappingsNamespace.INTERMEDIARY.toString(), "test mappings")
+	}
+
+	private static List<RemapJob> createJobs(Path commonJar, Path clientJar, Path outputDir) {
+		def common = new RemappedJars(commonJar, new MinecraftJar.Common(outputDir.resolve("common.jar")), MappingsNamespace.INTERMEDIARY)
+		def client = new RemappedJars(clientJar, new MinecraftJar.ClientOnly(outputDir.resolve("client.jar")), MappingsNamespace.INTERMEDIARY, commonJar)
+
+		return [common, client].collect { remappedJars ->
+			def mavenHelper = new LocalMavenHelper("net.minecraft", remappedJars.name(), "1.0", null, outputDir.resolve("maven"))
+			Files.createDirectories(mavenHelper.getOutputFile(null).parent)
+			new RemapJob(remappedJars, mavenHelper, { builder -> AbstractMappedMinecraftProvider.configureSplitRemapper(remappedJars, builder) })
+		}
+	}
+
+	private static byte[] classBytes(Class<?> clazz) {
+		return clazz.getResourceAsStream(clazz.simpleName + ".class").readAllBytes()
+	}
+
+	private static Map<String, List<Byte>> readEntries(Path jar) {
+		return new ZipFile(jar.toFile()).withCloseable { zip ->
+			zip.entries().findAll { !it.directory }.collectEntries { [(it.name): zip.getInputStream(it).readAllBytes().toList()] }
+		}
+	}
+}
@@ -0,0 +1,172 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.test.unit.providers
+
+import java.nio.charset.StandardCharsets
+import java.nio.file.Path
+import java.util.zip.ZipFile
+
+import org.objectweb.asm.ClassReader
+import org.objectweb.asm.ClassWriter
+import org.objectweb.asm.Opcodes
+import org.objectweb.asm.tree.ClassNode
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import net.fabricmc.loom.configuration.providers.minecraft.MinecraftClassMerger
+import net.fabricmc.loom.configuration.providers.minecraft.MinecraftJarMerger
+import net.fabricmc.loom.test.util.ZipTestUtils
+import net.fabricmc.loom.util.Constants
+
+class MinecraftJarMergerTest extends Specification {
+	private static final String MANIFEST = "Manifest-Version: 1.0\nMain-Class: net.minecraft.client.Main\n"
+
+	@TempDir
+	Path tempDir
+
+	def "streamed merge matches the baseline merge"() {
+		given:
+		def client = [
+			"META-INF/MANIFEST.MF": "Manifest-Version: 1.0\nMain-Class: net.minecraft.client.main.Main\n".bytes,
+			"META-INF/MOJANGCS.SF": "signature".bytes,
+			"META-INF/MOJANGCS.RSA": "signature".bytes,
+			"net/minecraft/Same.class": newClass("net/minecraft/Same", ["shared"]),
+			"net/minecraft/client/ClientOnly.class": newClass("net/minecraft/client/ClientOnly", ["render"]),
+			"Obfuscated.class": newClass("Obfuscated", ["a", "b"]),
+			"assets/minecraft/lang/en_us.json": "{}".bytes,
+			"version.json": "client".bytes,
+		]
+		def server = [
+			"META-INF/MANIFEST.MF": "Manifest-Version: 1.0\nMain-Class: net.minecraft.server.Main\n".bytes,
+			"net/minecraft/Same.class": newClass("net/minecraft/Same", ["shared"]),
+			"net/minecraft/server/ServerOnly.class": newClass("net/minecraft/server/ServerOnly", ["tick"]),
+			"Obfuscated.class": newClass("Obfuscated", ["a", "c"]),
+			"com/google/common/Library.class": newClass("com/google/common/Library", ["library"]),
+			"data/minecraft/recipes/stick.json": "{}".bytes,
+			"version.json": "server".bytes,
+		]
+
+		// Enough merged classes to be processed concurrently
+		for (int i = 0; i < 100; i++) {
+			client["net/minecraft/Merged${i}.class".toString()] = newClass("net/minecraft/Merged${i}", ["both", "client${i}"])
+			server["net/minecraft/Merged${i}.class".toString()] = newClass("net/minecraft/Merged${i}", ["both", "server${i}"])
+		}
+
+		def output = tempDir.resolve("merged.jar")
+
+		when:
+		new MinecraftJarMerger(ZipTestUtils.createZipFromBytes(client, ".jar").toFile(), ZipTestUtils.createZipFromBytes(server, ".jar").toFile(), output.toFile()).withCloseable {
+			it.merge()
+		}
+
+		def merged = readJar(output)
+		def expected = baselineMerge(client, server)
+
+		then:
+		merged.keySet() == expected.keySet()
+		expected.every { name, data -> Arrays.equals(merged[name], data) }
+
+		// Side annotations are only added to classes on one side, and resources on one side are kept as they are
+		getSide(merged["net/minecraft/client/ClientOnly.class"]) == "CLIENT"
+		getSide(merged["net/minecraft/server/ServerOnly.class"]) == "SERVER"
+		getSide(merged["net/minecraft/Same.class"]) == null
+		new String(merged["assets/minecraft/lang/en_us.json"]) == "{}"
+		new String(merged["data/minecraft/recipes/stick.json"]) == "{}"
+		new String(merged["version.json"]) == "client"
+		new String(merged["META-INF/MANIFEST.MF"]) == MANIFEST
+		!merged.containsKey("com/google/common/Library.class")
+		!merged.containsKey("META-INF/MOJANGCS.SF")
+	}
+
+	// The merger before entries were streamed, with both jars read into memory up front
+	private static Map<String, byte[]> baselineMerge(Map<String, byte[]> client, Map<String, byte[]> server) {
+		def classMerger = new MinecraftClassMerger()
+		def names = new TreeSet<String>(client.keySet() + server.keySet())
+		names.removeIf { it.startsWith("META-INF/") && (it.endsWith(".SF") || it.endsWith(".RSA")) }
+		Map<String, byte[]> merged = [:]
+
+		for (String name : names) {
+			boolean isClass = name.endsWith(".class")
+			boolean isMinecraft = client.containsKey(name) || name.startsWith("net/minecraft") || !name.contains("/")
+			byte[] clientData = client[name]
+			byte[] serverData = server[name]
+			byte[] data
+			String side = null
+
+			if (clientData != null && serverData != null) {
+				data = isClass && !Arrays.equals(clientData, serverData) ? classMerger.merge(clientData, serverData) : clientData
+			} else if (clientData != null) {
+				data = clientData
+				side = "CLIENT"
+			} else {
+				data = serverData
+				side = "SERVER"
+			}
+
+			if (isClass && !isMinecraft && side == "SERVER") {
+				continue
+			}
+
+			if (name == "META-INF/MANIFEST.MF") {
+				data = MANIFEST.getBytes(StandardCharsets.UTF_8)
+			}
+
+			if (isMinecraft && isClass && side != null) {
+				def writer = new ClassWriter(0)
+				new ClassReader(data).accept(new MinecraftClassMerger.SidedClassVisitor(Constants.ASM_VERSION, writer, side), 0)
+				data = writer.toByteArray()
+			}
+
+			merged[name] = data
+		}
+
+		return merged
+	}
+
+	private static Map<String, byte[]> readJar(Path jar) {
+		return new ZipFile(jar.toFile()).withCloseable { zip ->
+			zip.entries().findAll { !it.directory }.collectEntries { [(it.name): zip.getInputStream(it).readAllBytes()] }
+		}
+	}
+
+	private static String getSide(byte[] data) {
+		def node = new ClassNode()
+		new ClassReader(data).accept(node, 0)
+		def annotation = node.visibleAnnotations?.find { it.desc == "Lnet/fabricmc/api/Environment;" }
+		return annotation != null ? (annotation.values[1] as String[])[1] : null
+	}
+
+	private static byte[] newClass(String name, List<String> methods) {
+		def writer = new ClassWriter(0)
+		writer.visit(Opcodes.V17, Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, name, null, "java/lang/Object", null)
+
+		for (String method : methods) {
+			writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, method, "()V", null, null).visitEnd()
+		}
+
+		writer.visitEnd()
+		return writer.toByteArray()
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.test.unit.service
+
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CountDownLatch
+
+import spock.lang.Specification
+import spock.lang.Timeout
+
+import net.fabricmc.loom.task.service.MappingsService
+import net.fabricmc.loom.test.util.GradleTestUtil
+import net.fabricmc.loom.util.service.ScopedServiceFactory
+import net.fabricmc.loom.util.service.SharedServiceCache
+
+class SharedServiceCacheTest extends Specification {
+	def cleanup() {
+		SharedServiceCache.reset()
+	}
+
+	def "not configured"() {
+		when:
+		def handle1 = SharedServiceCache.acquire("test", "key") { new Object() }
+		def handle2 = SharedServiceCache.acquire("test", "key") { new Object() }
+
+		then:
+		!handle1.get().is(handle2.get())
+	}
+
+	@Timeout(10)
+	def "values are loaded outside of the lock when not configured"() {
+		given:
+		def loading = new CountDownLatch(1)
+		def finish = new CountDownLatch(1)
+
+		when:
+		def slow = CompletableFuture.supplyAsync {
+			SharedServiceCache.acquire("test", "slow") {
+				loading.countDown()
+				finish.await()
+				"slow"
+			}
+		}
+		loading.await()
+		// Must not wait for the slow loader
+		def fast = SharedServiceCache.acquire("test", "fast") { "fast" }
+		finish.countDown()
+
+		then:
+		fast.get() == "fast"
+		slow.join().get() == "slow"
+	}
+
+	def "values are shared and kept after release"() {
+		given:
+		SharedServiceCache.configure()
+		int loads = 0
+
+		when:
+		def handle1 = SharedServiceCache.acquire("test", "key") { loads++; new Object() }
+		def handle2 = SharedServiceCache.acquire("test", "key") { loads++; new Object() }
+		def value = handle1.get()
+		handle1.close()
+		handle2.close()
+		def handle3 = SharedServiceCache.acquire("test", "key") { loads++; new Object() }
+
+		then:
+		handle2.get().is(value)
+		handle3.get().is(value)
+		loads == 1
+		SharedServiceCache.report() == "test 2 hits, 1 misses (66% hit rate), 0 evicted"
+	}
+
+	def "mapping trees are shared between service factories"() {
+		given:
+		SharedServiceCache.configure()
+		def options = new MappingsServiceTest.TestOptions(
+				mappingsFile: GradleTestUtil.mockRegularFileProperty(new File("src/test/resources/mappings/PosInChunk.mappings")),
+				from: GradleTestUtil.mockProperty("intermediary"),
+				to: GradleTestUtil.mockProperty("named"),
+				)
+
+		when:
+		def factory1 = new ScopedServiceFactory()
+		def factory2 = new ScopedServiceFactory()
+		def tree1 = factory1.get(options).memoryMappingTree
+		def tree2 = factory2.get(options).memoryMappingTree
+		factory1.close()
+		factory2.close()
+
+		then:
+		tree1.is(tree2)
+	}
+}